@@ -0,0 +1,110 @@
+package bench.aggregation;
+
+import com.google.gson.JsonObject;
+import main.aggregation.DataStoreService;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DataStoreContentionBenchmark {
+    @Param({"16"})
+    public int stations;
+
+    private final DataStoreService dataStore = DataStoreService.getInstance();
+    private final AtomicInteger lamportTime = new AtomicInteger(0);
+    private String[] stationIds;
+    private JsonObject[] readings;
+
+    /**
+     * Builds a reading per station from the bundled input file and stores one of each, so that
+     * reads always find a station. Every thread shares the one data store, as the servers do.
+     * @throws Exception If the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        JsonObject sample = JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt"));
+        stationIds = new String[stations];
+        readings = new JsonObject[stations];
+        for (int i = 0; i < stations; i++) {
+            stationIds[i] = "BENCH" + i;
+            readings[i] = sample.deepCopy();
+            readings[i].addProperty("id", stationIds[i]);
+            dataStore.putData(stationIds[i], new WeatherData(readings[i], lamportTime.incrementAndGet(), "bench-sender"));
+        }
+    }
+
+    /**
+     * Removes the benchmark's stations from the data store.
+     */
+    @TearDown
+    public void tearDown() {
+        for (String stationId : stationIds) {
+            dataStore.removeDataKey(stationId);
+        }
+    }
+
+    /**
+     * Stores a new reading for a random station.
+     */
+    @Benchmark
+    public void put() {
+        int station = ThreadLocalRandom.current().nextInt(stations);
+        dataStore.putData(stationIds[station], new WeatherData(readings[station], lamportTime.incrementAndGet(), "bench-sender"));
+    }
+
+    /**
+     * Reads the history of a random station.
+     * @return The history.
+     */
+    @Benchmark
+    public PriorityQueue<WeatherData> get() {
+        return dataStore.getData(stationIds[ThreadLocalRandom.current().nextInt(stations)]);
+    }
+
+    /**
+     * Stores readings on one thread while three others read, as content servers and GET clients share a server.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPut() {
+        put();
+    }
+
+    /**
+     * Reads histories on three threads while one stores readings.
+     * @return The history.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public PriorityQueue<WeatherData> mixedGet() {
+        return get();
+    }
+}
@@ -0,0 +1,88 @@
+package bench.aggregation;
+
+import main.aggregation.AggregationServer;
+import main.common.JsonHandler;
+import main.network.SocketNetworkHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHandlingBenchmark {
+    private static final String SENDER_ID = "6f1e2d3c-4b5a-4968-8776-a5b4c3d2e1f0";
+    private static final String STATION_ID = "IDS60901";
+
+    private AggregationServer server;
+    private String getRequest;
+    private String putRequest;
+
+    /**
+     * Stores the bundled reading and builds a GET and a PUT request for it as text, the way the
+     * server's intake hands a request read from the socket to handleRequest.
+     * @throws Exception If the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        server = new AggregationServer(new SocketNetworkHandler());
+        String body = JsonHandler.toWireJson(JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt")), false);
+        server.processWeatherData(body, 1, SENDER_ID);
+
+        getRequest = "GET /weather.json HTTP/1.1\r\n" +
+                "User-Agent: ATOMClient/1/0\r\n" +
+                "SenderID: " + SENDER_ID + "\r\n" +
+                "LamportClock: 2\r\n" +
+                "StationID: " + STATION_ID + "\r\n" +
+                "\r\n";
+        putRequest = "PUT /weather.json HTTP/1.1\r\n" +
+                "User-Agent: ATOMClient/1/0\r\n" +
+                "Host: localhost\r\n" +
+                "SenderID: " + SENDER_ID + "\r\n" +
+                "LamportClock: 2\r\n" +
+                "Content-Type: application/json\r\n" +
+                "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n" +
+                "\r\n" +
+                body;
+    }
+
+    /**
+     * Releases the server's registration with the data store.
+     */
+    @TearDown
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    /**
+     * Handles a GET for the stored station, from the request text to the response text.
+     * @return The response.
+     */
+    @Benchmark
+    public String get() {
+        return server.handleRequest(getRequest);
+    }
+
+    /**
+     * Handles a PUT of the bundled reading, which decodes and stores it, from the request text to the response text.
+     * @return The response.
+     */
+    @Benchmark
+    public String put() {
+        return server.handleRequest(putRequest);
+    }
+}
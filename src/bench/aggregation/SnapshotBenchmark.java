@@ -0,0 +1,154 @@
+package bench.aggregation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import main.aggregation.SnapshotFiles;
+import main.aggregation.StationSnapshotAdapter;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final int READINGS_PER_STATION = 10;
+    private static final Gson gson = new Gson();
+
+    @Param({"1000"})
+    public int stations;
+
+    private final StationSnapshotAdapter adapter = new StationSnapshotAdapter();
+    private Map<String, List<WeatherData>> snapshot;
+    private Path directory;
+    private String treeFile;
+    private String streamFile;
+    private String backupFile;
+
+    /**
+     * Builds a snapshot of stations with ten readings each from the bundled input file, and saves it
+     * once in both ways so the load benchmarks have a file to read.
+     * @throws Exception If the input file cannot be read or the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        JsonObject sample = JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt"));
+        snapshot = new HashMap<>();
+        for (int station = 0; station < stations; station++) {
+            List<WeatherData> readings = new ArrayList<>();
+            for (int i = 0; i < READINGS_PER_STATION; i++) {
+                JsonObject reading = sample.deepCopy();
+                reading.addProperty("id", "IDS" + station);
+                reading.addProperty("local_date_time_full", String.valueOf(20230715160000L + i));
+                readings.add(new WeatherData(reading, station * READINGS_PER_STATION + i, "sender-" + (station % 50)));
+            }
+            snapshot.put("IDS" + station, readings);
+        }
+
+        directory = Files.createTempDirectory("snapshot-bench");
+        treeFile = directory.resolve("tree.json").toString();
+        streamFile = directory.resolve("stream.json").toString();
+        backupFile = directory.resolve("backup.json").toString();
+        treeSave();
+        streamingSave();
+    }
+
+    /**
+     * Deletes the files written by the benchmarks.
+     * @throws Exception If a file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SnapshotFiles.delete(treeFile, streamFile, backupFile);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * The save path before the streaming adapters: a JsonObject per reading, the whole JSON string
+     * in memory, then one write of its bytes.
+     * @throws Exception If the file cannot be written.
+     */
+    @Benchmark
+    public void treeSave() throws Exception {
+        JsonObject root = new JsonObject();
+        snapshot.forEach((stationId, readings) -> {
+            JsonArray array = new JsonArray();
+            for (WeatherData weatherData : readings) {
+                JsonObject element = new JsonObject();
+                element.addProperty("lamportTime", weatherData.getLamportTime());
+                element.addProperty("senderID", weatherData.getSenderID());
+                element.add("data", weatherData.getData());
+                array.add(element);
+            }
+            root.add(stationId, array);
+        });
+        Files.write(Paths.get(treeFile), gson.toJson(root).getBytes());
+    }
+
+    /**
+     * The current save path: the snapshot adapter streaming through a buffered file channel.
+     */
+    @Benchmark
+    public void streamingSave() {
+        SnapshotFiles.save(snapshot, adapter, streamFile, backupFile);
+    }
+
+    /**
+     * The load path before the streaming adapters: the whole file as a string, parsed into a tree,
+     * then every reading encoded from its JsonObject.
+     * @return The loaded snapshot.
+     * @throws Exception If the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, List<WeatherData>> treeLoad() throws Exception {
+        JsonObject root = JsonParser.parseString(new String(Files.readAllBytes(Paths.get(treeFile)))).getAsJsonObject();
+        Map<String, List<WeatherData>> loaded = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : root.entrySet()) {
+            List<WeatherData> readings = new ArrayList<>();
+            for (JsonElement element : entry.getValue().getAsJsonArray()) {
+                JsonObject object = element.getAsJsonObject();
+                readings.add(new WeatherData(object.getAsJsonObject("data"),
+                        object.get("lamportTime").getAsInt(), object.get("senderID").getAsString()));
+            }
+            loaded.put(entry.getKey(), readings);
+        }
+        return loaded;
+    }
+
+    /**
+     * The current load path: the snapshot adapter streaming from a buffered file channel.
+     * @return The loaded snapshot.
+     */
+    @Benchmark
+    public Map<String, List<WeatherData>> streamingLoad() {
+        return SnapshotFiles.load(streamFile, backupFile, adapter);
+    }
+}
@@ -0,0 +1,123 @@
+package bench.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class BenchmarkDiff {
+    private static final String MISSING = "-";
+
+    /**
+     * Compares two JMH result files written with -rf json, such as the results of two commits, and prints
+     * each benchmark's score in both with the change. A change larger than the two error margins combined
+     * is marked as a regression or an improvement; throughput is better higher, the other modes lower.
+     * @param args The old result file and the new result file.
+     * @throws IOException If a result file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: BenchmarkDiff <old results.json> <new results.json>");
+            return;
+        }
+        Map<String, JsonObject> oldResults = read(Path.of(args[0]));
+        Map<String, JsonObject> newResults = read(Path.of(args[1]));
+        Set<String> names = new TreeSet<>(oldResults.keySet());
+        names.addAll(newResults.keySet());
+
+        System.out.printf("%-70s %14s %14s %9s  %s%n", "Benchmark", "Old", "New", "Change", "Unit");
+        for (String name : names) {
+            JsonObject oldMetric = oldResults.get(name);
+            JsonObject newMetric = newResults.get(name);
+            JsonObject metric = newMetric != null ? newMetric : oldMetric;
+            String unit = metric.get("scoreUnit").getAsString();
+            if (oldMetric == null || newMetric == null) {
+                System.out.printf("%-70s %14s %14s %9s  %s%n", name, format(oldMetric), format(newMetric), MISSING, unit);
+                continue;
+            }
+            double oldScore = oldMetric.get("score").getAsDouble();
+            double newScore = newMetric.get("score").getAsDouble();
+            double change = oldScore == 0 ? 0 : (newScore - oldScore) / oldScore * 100;
+            System.out.printf("%-70s %14s %14s %+8.1f%%  %s%s%n", name, format(oldMetric), format(newMetric), change, unit,
+                    verdict(oldMetric, newMetric, metric.get("mode").getAsString()));
+        }
+    }
+
+    /**
+     * Reads a JMH result file into the primary metric of each benchmark, keyed by the benchmark name and its parameters.
+     * @param file The result file.
+     * @return The primary metrics with the benchmark mode added, in file order.
+     * @throws IOException If the file cannot be read.
+     */
+    private static Map<String, JsonObject> read(Path file) throws IOException {
+        Map<String, JsonObject> results = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            JsonArray runs = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                StringBuilder name = new StringBuilder(run.get("benchmark").getAsString().replaceFirst("^bench\\.", ""));
+                if (run.has("params")) {
+                    for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                        name.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+                    }
+                }
+                JsonObject metric = run.getAsJsonObject("primaryMetric").deepCopy();
+                metric.addProperty("mode", run.get("mode").getAsString());
+                results.put(name.toString(), metric);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Formats a score.
+     * @param metric The primary metric, or null if the benchmark did not run.
+     * @return The formatted score.
+     */
+    private static String format(JsonObject metric) {
+        if (metric == null) {
+            return MISSING;
+        }
+        return String.format("%.1f", metric.get("score").getAsDouble());
+    }
+
+    /**
+     * Decides whether a change is larger than the noise.
+     * @param oldMetric The old primary metric.
+     * @param newMetric The new primary metric.
+     * @param mode The benchmark mode; thrpt is better higher.
+     * @return A marker for a regression or an improvement, or an empty string.
+     */
+    private static String verdict(JsonObject oldMetric, JsonObject newMetric, String mode) {
+        double difference = newMetric.get("score").getAsDouble() - oldMetric.get("score").getAsDouble();
+        double noise = error(oldMetric) + error(newMetric);
+        if (Math.abs(difference) <= noise) {
+            return "";
+        }
+        boolean better = "thrpt".equals(mode) ? difference > 0 : difference < 0;
+        return better ? "  improvement" : "  REGRESSION";
+    }
+
+    /**
+     * Returns the error margin of a score, which JMH reports as NaN for a single measurement.
+     * @param metric The primary metric.
+     * @return The error margin, or 0 if it is unknown.
+     */
+    private static double error(JsonObject metric) {
+        JsonElement error = metric.get("scoreError");
+        if (error == null || !error.isJsonPrimitive() || !error.getAsJsonPrimitive().isNumber()) {
+            return 0;
+        }
+        double value = error.getAsDouble();
+        return Double.isNaN(value) ? 0 : value;
+    }
+}
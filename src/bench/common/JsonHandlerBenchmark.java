@@ -0,0 +1,67 @@
+package bench.common;
+
+import com.google.gson.JsonObject;
+import main.common.JsonHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonHandlerBenchmark {
+    private String inputText;
+    private String body;
+    private JsonObject reading;
+
+    /**
+     * Loads the bundled input file, and converts and encodes it once so each benchmark has its input.
+     * @throws Exception If the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        inputText = JsonHandler.readFile("src/main/content/input_v1.txt");
+        reading = JsonHandler.convertTextToJSON(inputText);
+        body = JsonHandler.toWireJson(reading, false);
+    }
+
+    /**
+     * Converts the key:value input file to JSON, as the content server does when it loads a file.
+     * @return The reading.
+     * @throws Exception If the text cannot be converted.
+     */
+    @Benchmark
+    public JsonObject convertTextToJSON() throws Exception {
+        return JsonHandler.convertTextToJSON(inputText);
+    }
+
+    /**
+     * Parses a compact JSON body.
+     * @return The reading.
+     */
+    @Benchmark
+    public JsonObject parseJSONObject() {
+        return JsonHandler.parseJSONObject(body);
+    }
+
+    /**
+     * Pretty-prints a reading.
+     * @return The indented JSON.
+     */
+    @Benchmark
+    public String prettyPrint() {
+        return JsonHandler.prettyPrint(reading);
+    }
+}
@@ -0,0 +1,56 @@
+package bench.common;
+
+import main.common.LamportClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LamportClockBenchmark {
+    private final LamportClock sharedClock = new LamportClock();
+
+    @State(Scope.Thread)
+    public static class OwnClock {
+        public final LamportClock clock = new LamportClock();
+    }
+
+    /**
+     * Receives a time ahead of the shared clock on every thread, so each call races the others to move it.
+     */
+    @Benchmark
+    public void receiveAheadShared() {
+        sharedClock.receive(sharedClock.getTime() + 1);
+    }
+
+    /**
+     * Receives a time behind the shared clock, which only reads it.
+     */
+    @Benchmark
+    public void receiveBehindShared() {
+        sharedClock.receive(0);
+    }
+
+    /**
+     * Receives a time ahead of a clock of this thread's own, the uncontended baseline.
+     * @param own The clock of this thread.
+     */
+    @Benchmark
+    public void receiveAheadOwn(OwnClock own) {
+        own.clock.receive(own.clock.getTime() + 1);
+    }
+}
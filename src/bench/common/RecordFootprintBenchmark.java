@@ -0,0 +1,131 @@
+package bench.common;
+
+import com.google.gson.JsonObject;
+import main.aggregation.ColumnarStationHistory;
+import main.aggregation.StationHistory;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+public class RecordFootprintBenchmark {
+    private static final String[] INPUT_FILES = {
+            "src/main/content/input_v1.txt",
+            "src/main/content/input_v2.txt",
+            "src/main/content/input_v3.txt"
+    };
+    private static final String[] NUMERIC_FIELDS = {"air_temp", "apparent_t", "dewpt", "press", "rel_hum", "wind_spd_kmh", "wind_spd_kt"};
+    private static final int HISTORY_CAPACITY = 10;
+    private static Object retained; // Keeps the measured records reachable while the heap is sampled
+
+    /**
+     * Holds a record the way WeatherData did before dictionary encoding: one Gson tree per record.
+     */
+    private static class JsonObjectRecord {
+        private final JsonObject data;
+        private final int lamportTime;
+        private final String senderID;
+
+        JsonObjectRecord(JsonObject data, int lamportTime, String senderID) {
+            this.data = data;
+            this.lamportTime = lamportTime;
+            this.senderID = senderID;
+        }
+    }
+
+    /**
+     * Measures the retained heap of N stored readings in the JsonObject-per-record layout
+     * in the dictionary-encoded WeatherData layout and in columnar station histories, and prints the result as JSON.
+     * @param args Optional number of records to create (default 100000).
+     * @throws Exception If the sample input files cannot be read.
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        List<JsonObject> samples = new ArrayList<>();
+        for (String inputFile : INPUT_FILES) {
+            samples.add(JsonHandler.convertTextToJSON(JsonHandler.readFile(inputFile)));
+        }
+        String[] senders = new String[50];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = UUID.randomUUID().toString();
+        }
+
+        long baseline = usedHeap();
+        List<JsonObjectRecord> jsonRecords = new ArrayList<>(count);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            // Every record is parsed from the wire, so it owns fresh key and value strings.
+            String body = JsonHandler.serializeObject(reading(samples, random, i));
+            jsonRecords.add(new JsonObjectRecord(JsonHandler.parseJSONObject(body), i, new String(senders[i % senders.length])));
+        }
+        retained = jsonRecords;
+        long jsonBytes = usedHeap() - baseline;
+        jsonRecords = null;
+        retained = null;
+
+        baseline = usedHeap();
+        List<WeatherData> compactRecords = new ArrayList<>(count);
+        random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            String body = JsonHandler.serializeObject(reading(samples, random, i));
+            compactRecords.add(new WeatherData(JsonHandler.parseJSONObject(body), i, new String(senders[i % senders.length])));
+        }
+        retained = compactRecords;
+        long compactBytes = usedHeap() - baseline;
+        compactRecords = null;
+        retained = null;
+
+        baseline = usedHeap();
+        List<StationHistory> histories = new ArrayList<>(count / HISTORY_CAPACITY + 1);
+        random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            if (i % HISTORY_CAPACITY == 0) {
+                histories.add(new ColumnarStationHistory(HISTORY_CAPACITY));
+            }
+            String body = JsonHandler.serializeObject(reading(samples, random, i));
+            WeatherData data = new WeatherData(JsonHandler.parseJSONObject(body), i, new String(senders[i % senders.length]));
+            histories.get(histories.size() - 1).add(data, i);
+        }
+        retained = histories;
+        long columnarBytes = usedHeap() - baseline;
+
+        System.out.println("{\"benchmark\":\"RecordFootprint\",\"records\":" + count
+                + ",\"jsonObjectBytesPerRecord\":" + jsonBytes / count
+                + ",\"compactBytesPerRecord\":" + compactBytes / count
+                + ",\"columnarBytesPerRecord\":" + columnarBytes / count
+                + ",\"reduction\":" + String.format("%.2f", (double) jsonBytes / compactBytes)
+                + ",\"columnarReduction\":" + String.format("%.2f", (double) jsonBytes / columnarBytes) + "}");
+    }
+
+    /**
+     * Builds one reading from a sample station with randomized numeric fields.
+     * @param samples The sample stations.
+     * @param random The random source.
+     * @param index The reading number.
+     * @return A new JSON object for the reading.
+     */
+    private static JsonObject reading(List<JsonObject> samples, Random random, int index) {
+        JsonObject reading = samples.get(index % samples.size()).deepCopy();
+        for (String field : NUMERIC_FIELDS) {
+            reading.addProperty(field, String.format("%.1f", random.nextDouble() * 100));
+        }
+        return reading;
+    }
+
+    /**
+     * Returns the used heap after encouraging a full garbage collection.
+     * @return The used heap in bytes.
+     * @throws InterruptedException If interrupted while waiting for the collector.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,70 @@
+package bench.common;
+
+import com.google.gson.JsonObject;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import main.common.WeatherDataDecoder;
+import main.common.WeatherSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherDataDecodeBenchmark {
+    private static final String SENDER_ID = "0b4c7a8e-3f64-4a0e-9b7d-1c2d3e4f5a6b";
+
+    @Param({"src/main/content/input_v1.txt", "src/main/content/input_v2.txt", "src/main/content/input_v3.txt"})
+    public String inputFile;
+
+    private String body;
+    private WeatherDataDecoder decoder;
+
+    /**
+     * Builds the PUT body the content server would send for the input file.
+     * @throws Exception If the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        body = JsonHandler.prettyPrint(JsonHandler.convertTextToJSON(JsonHandler.readFile(inputFile)));
+        decoder = new WeatherDataDecoder(WeatherSchema.DEFAULT);
+    }
+
+    /**
+     * The ingest path before streaming decoding: parse the body into a JsonObject tree,
+     * read the station id from it and encode the tree into a WeatherData.
+     * @return The decoded reading.
+     */
+    @Benchmark
+    public WeatherData treeParse() {
+        JsonObject json = JsonHandler.parseJSONObject(body);
+        String stationId = json.has("id") ? json.get("id").getAsString() : null;
+        if (stationId == null || stationId.isEmpty()) {
+            throw new IllegalStateException("Missing station id");
+        }
+        return new WeatherData(json, 1, SENDER_ID);
+    }
+
+    /**
+     * The current ingest path: decode the body in one streaming pass straight into a compact record.
+     * @return The decoded reading.
+     */
+    @Benchmark
+    public WeatherData streamingDecode() {
+        return WeatherData.fromRecord(decoder.decode(body), 1, SENDER_ID);
+    }
+}
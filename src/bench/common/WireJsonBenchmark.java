@@ -0,0 +1,62 @@
+package bench.common;
+
+import com.google.gson.JsonObject;
+import main.common.JsonHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireJsonBenchmark {
+    @Param({"false", "true"})
+    public boolean pretty;
+
+    private JsonObject reading;
+    private String body;
+
+    /**
+     * Loads the bundled reading and encodes it once, so the parse benchmark has a body to read.
+     * Prints the body size of the selected encoding.
+     * @throws Exception If the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        reading = JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt"));
+        body = JsonHandler.toWireJson(reading, pretty);
+        System.out.println((pretty ? "Pretty" : "Compact") + " body: " + body.getBytes(StandardCharsets.UTF_8).length + " bytes");
+    }
+
+    /**
+     * Encodes a reading the way the server builds a GET body and the content server builds a PUT body.
+     * @return The encoded body.
+     */
+    @Benchmark
+    public String encode() {
+        return JsonHandler.toWireJson(reading, pretty);
+    }
+
+    /**
+     * Parses a body the way the GET client reads a response.
+     * @return The parsed reading.
+     */
+    @Benchmark
+    public JsonObject parse() {
+        return JsonHandler.parseJSONObject(JsonHandler.extractJSONContent(body));
+    }
+}
@@ -0,0 +1,102 @@
+package bench.network;
+
+import main.common.JsonHandler;
+import main.network.Connection;
+import main.network.HttpCompression;
+import main.network.SocketConnection;
+import main.network.SocketNetworkHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientDataReadBenchmark {
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private final SocketNetworkHandler networkHandler = new SocketNetworkHandler();
+    private ServerSocketChannel serverChannel;
+    private Socket writer;
+    private OutputStream writerStream;
+    private Connection serverSide;
+    private byte[] request;
+
+    /**
+     * Connects a loopback socket pair through a server socket channel, as the server accepts clients,
+     * and encodes a PUT of the bundled reading the way the content server sends it.
+     * @throws Exception If the socket pair cannot be set up or the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+        writer = new Socket("localhost", serverChannel.socket().getLocalPort());
+        writerStream = writer.getOutputStream();
+        serverSide = new SocketConnection(serverChannel.accept().socket());
+
+        byte[] body = JsonHandler.toWireJson(JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt")), false)
+                .getBytes(StandardCharsets.UTF_8);
+        if (gzip) {
+            body = HttpCompression.gzip(body);
+        }
+        ByteArrayOutputStream put = new ByteArrayOutputStream();
+        put.writeBytes(("PUT /weather.json HTTP/1.1\r\n" +
+                "User-Agent: ATOMClient/1/0\r\n" +
+                "Host: localhost\r\n" +
+                "SenderID: 0b4c7a8e-3f64-4a0e-9b7d-1c2d3e4f5a6b\r\n" +
+                "LamportClock: 2\r\n" +
+                "Content-Type: application/json\r\n" +
+                (gzip ? "Content-Encoding: " + HttpCompression.GZIP + "\r\n" : "") +
+                "Content-Length: " + body.length + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8));
+        put.writeBytes(body);
+        request = put.toByteArray();
+    }
+
+    /**
+     * Closes the socket pair and the server socket.
+     * @throws IOException If a socket cannot be closed.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+        serverSide.close();
+        serverChannel.close();
+    }
+
+    /**
+     * Sends one PUT over the loopback connection and reads it on the server side with its read
+     * deadlines, header parsing and, for a gzip body, decompression. The request is small enough
+     * for the socket buffer, so one thread can write it and then read it.
+     * @return The request as the server reads it.
+     * @throws IOException If the write fails.
+     */
+    @Benchmark
+    public String waitForClientData() throws IOException {
+        writerStream.write(request);
+        writerStream.flush();
+        return networkHandler.waitForClientData(serverSide);
+    }
+}
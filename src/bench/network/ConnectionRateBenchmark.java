@@ -0,0 +1,107 @@
+package bench.network;
+
+import main.network.AcceptorPool;
+import main.network.Connection;
+import main.network.SocketNetworkHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ConnectionRateBenchmark {
+    private static final byte[] GREETING = "LamportClock: 0\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"1", "4"})
+    public int acceptors;
+
+    @Param({"false", "true"})
+    public boolean reusePort;
+
+    private SocketNetworkHandler handler;
+    private AcceptorPool pool;
+    private int port;
+
+    /**
+     * Starts an acceptor pool on a free loopback port whose handoff greets each client with a Lamport
+     * clock line and closes the connection, as a server does for a client it cannot take. Sharding is
+     * skipped where SO_REUSEPORT is not supported, so those runs measure the shared listener.
+     * @throws IOException If the pool cannot listen.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        handler = new SocketNetworkHandler();
+        pool = new AcceptorPool(acceptors, reusePort, Math.max(2, Runtime.getRuntime().availableProcessors()), 4096);
+        pool.start(handler, port, ConnectionRateBenchmark::greet);
+    }
+
+    /**
+     * Stops the acceptor pool and closes its listener.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.stop();
+        handler.closeServer();
+    }
+
+    /**
+     * Writes the greeting to a handed-off connection and closes it.
+     * @param socket The accepted connection.
+     */
+    private static void greet(Connection socket) {
+        try (Connection s = socket) {
+            OutputStream out = s.getOutputStream();
+            out.write(GREETING);
+            out.flush();
+        } catch (IOException e) {
+            // The client gave up; nothing to report in a benchmark
+        }
+    }
+
+    /**
+     * Opens a connection and reads the greeting until the server closes it, which measures
+     * connection setup through accept and handoff.
+     * @return The number of bytes read, so the work is not optimised away.
+     * @throws IOException If the connection fails.
+     */
+    @Benchmark
+    public int connect() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoLinger(true, 0); // Skip TIME_WAIT so that the loopback ports are not exhausted
+            InputStream in = socket.getInputStream();
+            int total = 0;
+            byte[] buffer = new byte[64];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package bench.network;
+
+import main.aggregation.EncodedBodyCache;
+import main.aggregation.EncodedBodyCache.EncodedBody;
+import main.common.JsonHandler;
+import main.network.HttpResponseHead;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWriteBenchmark {
+    private ServerSocketChannel serverChannel;
+    private SocketChannel channel;
+    private OutputStream stream;
+    private Socket reader;
+    private Thread drainThread;
+    private EncodedBody body;
+    private int lamportTime = 5;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Written {
+        public long bytes;
+
+        /**
+         * Resets the byte count before each iteration, so JMH reports it as bytes per second.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Connects a loopback socket pair through a server socket channel, as the server accepts clients,
+     * and drains the client side on a background thread. The body is the bundled reading from the body cache.
+     * @throws Exception If the socket pair cannot be set up or the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+        reader = new Socket("localhost", serverChannel.socket().getLocalPort());
+        channel = serverChannel.accept();
+        stream = channel.socket().getOutputStream();
+
+        drainThread = new Thread(() -> {
+            byte[] sink = new byte[64 * 1024];
+            try (InputStream in = reader.getInputStream()) {
+                while (in.read(sink) != -1) {
+                    // Discard the responses
+                }
+            } catch (IOException e) {
+                // The socket is closed at tear down
+            }
+        });
+        drainThread.setDaemon(true);
+        drainThread.start();
+
+        String json = JsonHandler.toWireJson(JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt")), false);
+        body = new EncodedBodyCache(1).get("IDS60901", () -> json);
+    }
+
+    /**
+     * Closes the socket pair and stops the drain thread.
+     * @throws Exception If a socket cannot be closed.
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        channel.close();
+        reader.close();
+        serverChannel.close();
+        drainThread.join(1000);
+    }
+
+    /**
+     * The response path before gathering writes: build the head in a StringBuilder, encode it,
+     * copy head and body into one array and write it to the socket's output stream.
+     * @param written Counts the bytes written.
+     * @throws IOException If the write fails.
+     */
+    @Benchmark
+    public void copiedStreamWrite(Written written) throws IOException {
+        byte[] bodyBytes = body.getBytes();
+        StringBuilder response = new StringBuilder();
+        response.append("HTTP/1.1 ").append("200 OK").append("\r\n");
+        response.append("LamportClock: ").append(lamportTime++).append("\r\n");
+        response.append("Content-Type: application/json\r\n");
+        response.append("Content-Length: ").append(bodyBytes.length).append("\r\n");
+        response.append("\r\n");
+
+        byte[] head = response.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] message = Arrays.copyOf(head, head.length + bodyBytes.length);
+        System.arraycopy(bodyBytes, 0, message, head.length, bodyBytes.length);
+        stream.write(message);
+        stream.flush();
+        written.bytes += message.length;
+    }
+
+    /**
+     * The current response path: encode the head straight into bytes and write it together with the
+     * cached direct body buffer in one gathering write on the socket channel.
+     * @param written Counts the bytes written.
+     * @throws IOException If the write fails.
+     */
+    @Benchmark
+    public void gatheringChannelWrite(Written written) throws IOException {
+        ByteBuffer bodyBuffer = body.getBuffer();
+        ByteBuffer[] response = {HttpResponseHead.encode("200 OK", lamportTime++, null, bodyBuffer.remaining()), bodyBuffer};
+        long remaining = response[0].remaining() + bodyBuffer.remaining();
+        written.bytes += remaining;
+        while (remaining > 0) {
+            remaining -= channel.write(response);
+        }
+    }
+}
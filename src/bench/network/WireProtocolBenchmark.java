@@ -0,0 +1,192 @@
+package bench.network;
+
+import main.aggregation.AggregationServer;
+import main.common.JsonHandler;
+import main.network.ClientRequest;
+import main.network.Connection;
+import main.network.Frame;
+import main.network.SocketNetworkHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireProtocolBenchmark {
+    private static final String SENDER_ID = "0b4c7a8e-3f64-4a0e-9b7d-1c2d3e4f5a6b";
+    private static final String STATION_ID = "IDS60901";
+
+    private final SocketNetworkHandler networkHandler = new SocketNetworkHandler();
+    private AggregationServer server;
+    private byte[] httpGet;
+    private byte[] frameGet;
+    private byte[] httpPut;
+    private byte[] framePut;
+
+    /**
+     * Stores the bundled reading and encodes a GET and a PUT request for it in both protocols,
+     * the same way GETClient and ContentServer do.
+     * @throws Exception If the input file cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        server = new AggregationServer(networkHandler);
+        String body = JsonHandler.toWireJson(JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt")), false);
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        server.processWeatherData(body, 1, SENDER_ID);
+
+        httpGet = ("GET /weather.json HTTP/1.1\r\n" +
+                "User-Agent: ATOMClient/1/0\r\n" +
+                "SenderID: " + SENDER_ID + "\r\n" +
+                "LamportClock: 2\r\n" +
+                "StationID: " + STATION_ID + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8);
+        frameGet = Frame.get(2, SENDER_ID, STATION_ID).encode();
+
+        ByteArrayOutputStream put = new ByteArrayOutputStream();
+        put.writeBytes(("PUT /weather.json HTTP/1.1\r\n" +
+                "User-Agent: ATOMClient/1/0\r\n" +
+                "Host: localhost\r\n" +
+                "SenderID: " + SENDER_ID + "\r\n" +
+                "LamportClock: 2\r\n" +
+                "Content-Type: application/json\r\n" +
+                "Content-Length: " + bodyBytes.length + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8));
+        put.writeBytes(bodyBytes);
+        httpPut = put.toByteArray();
+        framePut = Frame.put(2, SENDER_ID, STATION_ID, bodyBytes).encode();
+
+        System.out.println("GET request: " + httpGet.length + " bytes as HTTP, " + frameGet.length + " bytes as a frame");
+        System.out.println("PUT request: " + httpPut.length + " bytes as HTTP, " + framePut.length + " bytes as a frame");
+    }
+
+    /**
+     * Releases the server's registration with the data store.
+     */
+    @TearDown
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    /**
+     * Reads a GET request sent as HTTP text and builds the HTTP response, as the server does per request.
+     * @return The response bytes.
+     */
+    @Benchmark
+    public byte[] httpGet() {
+        return handle(httpGet);
+    }
+
+    /**
+     * Reads a GET request sent as a frame and builds the response frame.
+     * @return The response bytes.
+     */
+    @Benchmark
+    public byte[] frameGet() {
+        return handle(frameGet);
+    }
+
+    /**
+     * Reads a PUT request sent as HTTP text, stores the reading and builds the HTTP response.
+     * @return The response bytes.
+     */
+    @Benchmark
+    public byte[] httpPut() {
+        return handle(httpPut);
+    }
+
+    /**
+     * Reads a PUT request sent as a frame, stores the reading and builds the response frame.
+     * @return The response bytes.
+     */
+    @Benchmark
+    public byte[] framePut() {
+        return handle(framePut);
+    }
+
+    /**
+     * Runs the server's per-request path, from the bytes on the socket to the response bytes.
+     * @param request The request bytes as the client sends them.
+     * @return The response bytes.
+     */
+    private byte[] handle(byte[] request) {
+        ClientRequest received = networkHandler.waitForClientRequest(new ReplayConnection(request));
+        return received.isFrame() ? server.handleFrameRequest(received.getFrame()) : server.handleWireRequest(received.getHttpText());
+    }
+
+    private static final class ReplayConnection implements Connection {
+        private final byte[] request;
+
+        /**
+         * Constructs a connection whose input is the given request.
+         * @param request The bytes the connection reads.
+         */
+        ReplayConnection(byte[] request) {
+            this.request = request;
+        }
+
+        /**
+         * Returns a stream over the request bytes.
+         * @return The input stream.
+         */
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(request);
+        }
+
+        /**
+         * Returns a stream that discards what is written; responses are returned, not sent.
+         * @return The output stream.
+         */
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        /**
+         * Returns no channel, as nothing is connected.
+         * @return Null.
+         */
+        @Override
+        public SocketChannel getChannel() {
+            return null;
+        }
+
+        /**
+         * Returns no address, as nothing is connected.
+         * @return Null.
+         */
+        @Override
+        public InetAddress getInetAddress() {
+            return null;
+        }
+
+        /**
+         * Does nothing, as nothing is connected.
+         */
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package main.aggregation;
+
+import main.network.Connection;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AdmissionQueue {
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_DEADLINE_MILLIS = 10000;
+    public static final double DEFAULT_GET_SHED_RATIO = 0.75;
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+    public static final String PRIORITY_PUT = "put";
+    public static final String PRIORITY_NONE = "none";
+
+    private final LinkedBlockingQueue<QueuedRequest> queue;
+    private final int capacity;
+    private final long deadlineNanos;
+    private final boolean prioritisePuts;
+    private final int getShedDepth;
+    private final int retryAfterSeconds;
+    private final AtomicLong admittedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong expiredCount = new AtomicLong(0);
+    private final AtomicLong shedGetCount = new AtomicLong(0);
+
+    /**
+     * Constructs a bounded queue of client sockets waiting to be served.
+     * @param capacity The maximum number of waiting sockets; further sockets are rejected.
+     * @param deadlineMillis How long a request may wait before it is shed instead of served.
+     * @param prioritisePuts True to shed GETs once the backlog reaches the GET shed depth, keeping room for PUTs.
+     * @param getShedRatio The fraction of the capacity at which GETs start to be shed.
+     * @param retryAfterSeconds The Retry-After value sent with a 503 response.
+     */
+    public AdmissionQueue(int capacity, long deadlineMillis, boolean prioritisePuts, double getShedRatio, int retryAfterSeconds) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1.");
+        }
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.prioritisePuts = prioritisePuts;
+        this.getShedDepth = Math.max(1, (int) Math.ceil(capacity * getShedRatio));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Builds the queue from system properties, falling back to the defaults:
+     * aggregation.queue.capacity, aggregation.queue.deadlineMillis, aggregation.queue.shedPriority
+     * ("put" or "none"), aggregation.queue.getShedRatio and aggregation.queue.retryAfterSeconds.
+     * @return The configured queue.
+     */
+    public static AdmissionQueue fromSystemProperties() {
+        String priority = System.getProperty("aggregation.queue.shedPriority", PRIORITY_PUT);
+        if (!PRIORITY_PUT.equalsIgnoreCase(priority) && !PRIORITY_NONE.equalsIgnoreCase(priority)) {
+            throw new IllegalArgumentException("Unknown shed priority: " + priority);
+        }
+        return new AdmissionQueue(
+                Integer.getInteger("aggregation.queue.capacity", DEFAULT_CAPACITY),
+                Long.getLong("aggregation.queue.deadlineMillis", DEFAULT_DEADLINE_MILLIS),
+                PRIORITY_PUT.equalsIgnoreCase(priority),
+                Double.parseDouble(System.getProperty("aggregation.queue.getShedRatio", String.valueOf(DEFAULT_GET_SHED_RATIO))),
+                Integer.getInteger("aggregation.queue.retryAfterSeconds", DEFAULT_RETRY_AFTER_SECONDS));
+    }
+
+    /**
+     * Checks whether a new socket would be rejected.
+     * @return True if the queue is full, otherwise false.
+     */
+    public boolean isFull() {
+        return queue.remainingCapacity() == 0;
+    }
+
+    /**
+     * Adds a socket to the queue unless it is full.
+     * @param socket The client socket.
+     * @return True if the socket was queued, false if it was rejected.
+     */
+    public boolean offer(Connection socket) {
+        if (queue.offer(new QueuedRequest(socket, System.nanoTime()))) {
+            admittedCount.incrementAndGet();
+            return true;
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Counts a socket that was turned away without being offered, because the queue was full.
+     */
+    public void recordRejected() {
+        rejectedCount.incrementAndGet();
+    }
+
+    /**
+     * Takes the oldest waiting socket, waiting up to the given time for one to arrive.
+     * @param timeout How long to wait.
+     * @param unit The unit of the timeout.
+     * @return The oldest waiting request, or null if none arrived in time.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public QueuedRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Decides whether a dequeued request is shed instead of served. A request is shed if it waited
+     * past the deadline. With PUT priority, a GET is also shed while the backlog behind it is at the
+     * GET shed depth, so that the remaining capacity is kept for PUTs.
+     * @param request The dequeued request.
+     * @param isGet True if the request is a GET.
+     * @return True if the request should get a 503 response, otherwise false.
+     */
+    public boolean shouldShed(QueuedRequest request, boolean isGet) {
+        if (isExpired(request)) {
+            return true;
+        }
+        if (prioritisePuts && isGet && queue.size() >= getShedDepth) {
+            shedGetCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a request has waited past the deadline since it was queued, counting it as expired if so.
+     * Requests are checked again when a worker picks them up, as they may also wait in a request lane.
+     * @param request The queued request.
+     * @return True if the request should get a 503 response, otherwise false.
+     */
+    public boolean isExpired(QueuedRequest request) {
+        if (System.nanoTime() - request.getEnqueuedAtNanos() > deadlineNanos) {
+            expiredCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of sockets waiting to be served.
+     * @return The queue depth.
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the maximum number of waiting sockets.
+     * @return The queue capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the Retry-After value sent with a 503 response.
+     * @return The delay in seconds.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Returns how many sockets were queued.
+     * @return The number of admitted sockets.
+     */
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    /**
+     * Returns how many sockets were turned away because the queue was full.
+     * @return The number of rejected sockets.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns how many requests were shed because they waited past the deadline.
+     * @return The number of expired requests.
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * Returns how many GETs were shed to keep room for PUTs.
+     * @return The number of shed GETs.
+     */
+    public long getShedGetCount() {
+        return shedGetCount.get();
+    }
+
+    /**
+     * Returns how many requests got a 503 response in total, whether rejected, expired or shed.
+     * @return The number of shed requests.
+     */
+    public long getShedCount() {
+        return rejectedCount.get() + expiredCount.get() + shedGetCount.get();
+    }
+
+    public static class QueuedRequest {
+        private final Connection socket;
+        private final long enqueuedAtNanos;
+
+        /**
+         * Constructs a queued request.
+         * @param socket The client socket.
+         * @param enqueuedAtNanos The System.nanoTime at which the socket was queued.
+         */
+        QueuedRequest(Connection socket, long enqueuedAtNanos) {
+            this.socket = socket;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        /**
+         * Returns the client socket.
+         * @return The socket.
+         */
+        public Connection getSocket() {
+            return socket;
+        }
+
+        /**
+         * Returns when the socket was queued.
+         * @return The System.nanoTime at which the socket was queued.
+         */
+        public long getEnqueuedAtNanos() {
+            return enqueuedAtNanos;
+        }
+    }
+}
@@ -2,32 +2,77 @@ package main.aggregation;
 
 import com.google.gson.*;
 
+import main.common.CompactRecord;
 import main.common.JsonHandler;
 import main.common.WeatherData;
+import main.common.WeatherDataDecoder;
 import main.common.LamportClock;
+import main.aggregation.AdmissionQueue.QueuedRequest;
+import main.aggregation.EncodedBodyCache.EncodedBody;
+import main.aggregation.RateLimiter.Kind;
+import main.aggregation.RequestLanes.Assignment;
+import main.aggregation.RequestLanes.Lane;
+import main.network.ClientRequest;
+import main.network.Connection;
+import main.network.Frame;
+import main.network.HttpCompression;
+import main.network.HttpResponseHead;
 import main.network.NetworkHandler;
 import main.network.SocketNetworkHandler;
+import main.network.UnixDomainSocket;
 
-import java.io.PrintWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class AggregationServer {
+    public interface RequestOutcomeListener {
+        /**
+         * Called after a server has answered a request taken from its lanes.
+         * @param server The server that answered.
+         * @param status The HTTP status of the response, 500 if the request failed before a response was sent.
+         * @param latencyNanos The time from handoff to response, including the time spent queued.
+         */
+        void onRequestCompleted(AggregationServer server, int status, long latencyNanos);
+    }
+
     private static final int DEFAULT_PORT = 4567;
     private static final long THRESHOLD = 40000;
+    private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_READERS = 16;
     private static LamportClock sharedClock = new LamportClock();
     private static AtomicInteger asCount = new AtomicInteger(0);
     private static DataStoreService dataStoreService = DataStoreService.getInstance();
+    private static RequestCoalescer<String, StoredBody> getCoalescer = new RequestCoalescer<>();
+    private static EncodedBodyCache bodyCache = new EncodedBodyCache(Integer.getInteger("aggregation.bodyCacheEntries", EncodedBodyCache.DEFAULT_CAPACITY));
+    private static WeatherDataDecoder weatherDataDecoder = new WeatherDataDecoder(dataStoreService.getStorageConfig().getSchema());
     private volatile boolean shutdown;
     private int port;
+    private volatile UnixDomainSocketAddress socketAddress;
     private Thread acceptThread;
     private LamportClock lamportClock;
     private NetworkHandler networkHandler;
-    private LinkedBlockingQueue<Socket> requestQueue;
-    private String lastReceivedData = null;
+    private AdmissionQueue requestQueue;
+    private RequestLanes<LaneRequest> requestLanes;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final int readerCount = Integer.getInteger("aggregation.readers", DEFAULT_READERS);
+    private final Set<Connection> readingSockets = ConcurrentHashMap.newKeySet();
+    private ExecutorService readers;
+    private Semaphore readerPermits;
+    private volatile RateLimiter rateLimiter;
+    private volatile RequestOutcomeListener outcomeListener;
+    private volatile EdgeCache edgeCache;
+    private final AtomicInteger pendingRequests = new AtomicInteger(0);
+    private volatile boolean processing;
+    private volatile boolean draining;
+    private volatile boolean redirecting;
+    private final LatencyAverage latencyAverage = LatencyAverage.fromSystemProperties();
+    private volatile String lastReceivedData = null;
 
     /**
      * Constructor for AggregationServer.
@@ -35,7 +80,8 @@ public class AggregationServer {
      */
     public AggregationServer(NetworkHandler networkHandler) {
         this.networkHandler = networkHandler;
-        this.requestQueue = new LinkedBlockingQueue<>();
+        this.requestQueue = AdmissionQueue.fromSystemProperties();
+        this.requestLanes = RequestLanes.fromSystemProperties();
 
         this.lamportClock = new LamportClock();
         int sharedTime = sharedClock.getTime();
@@ -82,6 +128,10 @@ public class AggregationServer {
      * @return true if the server is reachable, false otherwise.
      */
     public boolean isAlive() {
+        UnixDomainSocketAddress address = socketAddress;
+        if (address != null) {
+            return UnixDomainSocket.isListening(address, 1000); // 1 second timeout
+        }
         try (Socket socket = new Socket()) {
             socket.connect(new InetSocketAddress("localhost", port), 1000); // 1 second timeout
             return true;
@@ -117,13 +167,41 @@ public class AggregationServer {
     public void start(int portNumber) {
         System.out.println("Started AggregationServer on port: " + portNumber);
         this.port = portNumber;
+        this.socketAddress = null;
+        start(() -> networkHandler.startServer(portNumber));
+    }
+
+    /**
+     * Starts the server on a UNIX domain socket, for a load balancer on the same host. Its health
+     * checks then connect to the socket file instead of taking a TCP port each.
+     * @param address The path of the socket on which the server will listen for incoming connections.
+     */
+    public void start(UnixDomainSocketAddress address) {
+        System.out.println("Started AggregationServer on " + UnixDomainSocket.SCHEME + address.getPath());
+        this.socketAddress = address;
+        start(() -> networkHandler.startServer(address));
+    }
+
+    /**
+     * Starts listening, waits until the server is reachable, then serves requests until it is shut down.
+     * @param startServer Starts the server socket.
+     */
+    private void start(Runnable startServer) {
         this.shutdown = false;
+        this.draining = false;
+        this.redirecting = false;
 
         if (acceptThread != null && acceptThread.isAlive()) {
             throw new RuntimeException("Server is still running or hasn't been properly shut down");
         }
 
-        networkHandler.startServer(portNumber); // Starting the server socket
+        startServer.run(); // Starting the server socket
+        if (socketAddress != null) {
+            // A UNIX domain connect waits instead of failing once the backlog is full, so health check connections are accepted and closed
+            acceptThread = new Thread(this::closeHealthCheckConnections, "AggregationServer-" + socketAddress.getPath() + "-health");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
 
         long startTime = System.currentTimeMillis();
         while (!isAlive() && (System.currentTimeMillis() - startTime) < 5000) {
@@ -139,37 +217,205 @@ public class AggregationServer {
             throw new RuntimeException("Server did not start successfully");
         }
 
+        startWorkers();                         // Start the workers serving the request lanes
         processClientRequests();                // Start processing client requests
 
     }
 
+    /**
+     * Accepts the health check connections made by isAlive on a UNIX domain socket and closes them,
+     * until the server is shut down. Client requests come from the load balancer, not this socket.
+     */
+    private void closeHealthCheckConnections() {
+        while (!shutdown) {
+            try {
+                Connection probe = networkHandler.acceptConnection();
+                if (probe != null) {
+                    probe.close();
+                }
+            } catch (IOException e) {
+                if (!shutdown) {
+                    e.printStackTrace();
+                }
+            } catch (IllegalStateException e) {
+                break; // The server socket was closed
+            }
+        }
+    }
+
     /**
      * This method is used by the LoadBalancer to directly inject a client socket into the
-     * Aggregation Server's processing logic.
+     * Aggregation Server's processing logic. If the request queue is full, or a drain is past its
+     * deadline, the client gets an immediate 503 response with Retry-After instead of the Lamport clock value.
      * @param clientSocket The client socket forwarded by the LoadBalancer.
      */
-    public void acceptExternalSocket(Socket clientSocket) {
+    public void acceptExternalSocket(Connection clientSocket) {
         try {
             System.out.println(getPort() + " received external socket from LoadBalancer: " + clientSocket);
 
+            if (redirecting) {
+                System.out.println(getPort() + " is draining, redirecting " + clientSocket);
+                networkHandler.sendResponseToClient(formatUnavailableResponse(), clientSocket);
+                return;
+            }
+
+            if (requestQueue.isFull()) {
+                requestQueue.recordRejected();
+                System.out.println(getPort() + " request queue is full, shedding " + clientSocket);
+                networkHandler.sendResponseToClient(formatUnavailableResponse(), clientSocket);
+                return;
+            }
+
             // Send the current Lamport clock value to the client.
             synchronizeWithSharedClock();
-            String clockValue = "LamportClock: " + lamportClock.getTime();
-            PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-            out.println(clockValue);
+            OutputStream out = clientSocket.getOutputStream();
+            out.write(("LamportClock: " + lamportClock.getTime() + "\r\n").getBytes(StandardCharsets.US_ASCII));
             out.flush();
 
             lamportClock.tick();
-            requestQueue.put(clientSocket);
-        } catch (IOException | InterruptedException e) {
+            pendingRequests.incrementAndGet();
+            if (!requestQueue.offer(clientSocket)) {
+                // Several acceptors may hand off at once, so the queue can fill up after the check above
+                pendingRequests.decrementAndGet();
+                networkHandler.sendResponseToClient(formatUnavailableResponse(), clientSocket);
+            }
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Initiates the server shutdown sequence, interrupting the client acceptance thread.
+     * Drains the server: requests already handed to it are served, and once the deadline passes,
+     * the rest get a 503 response with Retry-After, so that clients retry on another server.
+     * The load balancer stops routing to a draining server. A drain ends when no request is pending,
+     * or when the redirected requests are still not answered after a second deadline.
+     * @param timeoutMillis How long to keep serving pending requests before redirecting them.
+     * @return True if the server is drained, otherwise false.
+     */
+    public boolean drain(long timeoutMillis) {
+        draining = true;
+        System.out.println(getPort() + " draining " + pendingRequests.get() + " pending requests");
+        awaitPendingRequests(timeoutMillis);
+
+        if (pendingRequests.get() > 0) {
+            System.out.println(getPort() + " drain deadline passed, redirecting " + pendingRequests.get() + " pending requests");
+            redirecting = true;
+            if (!processing) {
+                redirectQueuedRequests();
+            }
+            awaitPendingRequests(timeoutMillis);
+        }
+
+        boolean drained = isDrained();
+        System.out.println(getPort() + (drained ? " drained" : " not drained, " + pendingRequests.get() + " requests still pending"));
+        return drained;
+    }
+
+    /**
+     * Waits until no request is pending, up to the given time. Without an intake thread the
+     * queued requests are never read, so there is nothing to wait for.
+     * @param timeoutMillis The longest time to wait.
+     */
+    private void awaitPendingRequests(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (processing && pendingRequests.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Answers every request still in the request queue with a 503 response and closes it. Used once
+     * nothing will read the queue any more, so that clients retry elsewhere instead of hanging.
+     */
+    private void redirectQueuedRequests() {
+        try {
+            QueuedRequest queuedRequest;
+            while ((queuedRequest = requestQueue.poll(0, TimeUnit.MILLISECONDS)) != null) {
+                redirectQueuedRequest(queuedRequest);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Answers a queued request with a 503 response before reading it, and closes it.
+     * @param queuedRequest The queued connection of the client.
+     */
+    private void redirectQueuedRequest(QueuedRequest queuedRequest) {
+        Connection clientSocket = queuedRequest.getSocket();
+        try {
+            networkHandler.sendResponseToClient(formatUnavailableResponse(), clientSocket);
+            clientSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            pendingRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * Checks whether the server is draining, so that the load balancer stops routing to it.
+     * @return True if the server is draining or drained, otherwise false.
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Checks whether a drain has finished, with no request left pending.
+     * @return True if the server is drained, otherwise false.
+     */
+    public boolean isDrained() {
+        return draining && pendingRequests.get() == 0;
+    }
+
+    /**
+     * Folds the latency of a served request, from handoff to response, into the moving average.
+     * @param latencyNanos The latency of the request.
+     */
+    private void recordLatency(long latencyNanos) {
+        latencyAverage.record(latencyNanos, System.nanoTime());
+    }
+
+    /**
+     * Returns the exponentially weighted moving average of the latency of served requests,
+     * from handoff to response, including the time spent queued. The average decays while no
+     * request is served, so an idle server stops reporting the latency of its last burst.
+     * @return The average latency in milliseconds, or 0 if no request was served.
+     */
+    public double getAverageLatencyMillis() {
+        return latencyAverage.getMillis(System.nanoTime());
+    }
+
+    /**
+     * Returns the number of requests handed to the server and not yet answered.
+     * @return The number of pending requests.
+     */
+    public int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    /**
+     * Initiates the server shutdown sequence: drains the pending requests within the drain deadline
+     * from aggregation.drain.timeoutMillis, then stops the intake, reader and worker threads.
      */
     public void shutdown() {
+        shutdown(Long.getLong("aggregation.drain.timeoutMillis", DEFAULT_DRAIN_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Initiates the server shutdown sequence with the given drain deadline. A caller that has already
+     * drained the server passes 0, so that the requests still pending are redirected at once.
+     * @param drainTimeoutMillis How long to keep serving pending requests before redirecting them.
+     */
+    public void shutdown(long drainTimeoutMillis) {
+        drain(drainTimeoutMillis);
         this.shutdown = true;
 
         // Interrupt the acceptThread to break the potential blocking call
@@ -183,6 +429,9 @@ public class AggregationServer {
             }
         }
 
+        stopWorkers();
+        redirectQueuedRequests();
+
         networkHandler.closeServer();
 
         dataStoreService.deregisterAS();
@@ -198,55 +447,323 @@ public class AggregationServer {
     }
 
     /**
-     * Continuously processes incoming client requests until the server is shut down.
+     * Continuously hands incoming client requests to the reader threads, which read them and sort them
+     * into the request lanes, until the server is shut down. A connection is only taken from the request
+     * queue once a reader is free, so while every reader is busy, requests keep waiting in the queue
+     * under its deadline instead of piling up unread.
      */
     private void processClientRequests() {
+        processing = true;
         try {
             while (!shutdown) {
-                Socket clientSocket = waitForClient();
-                if (clientSocket != null) {
-                    handleClientSocket(clientSocket);
+                if (!readerPermits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                QueuedRequest queuedRequest = waitForClient();
+                if (queuedRequest == null) {
+                    readerPermits.release();
+                    continue;
+                }
+                try {
+                    readers.execute(() -> {
+                        try {
+                            handleClientSocket(queuedRequest);
+                        } finally {
+                            readerPermits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The readers were stopped by a shutdown after the request was taken
+                    readerPermits.release();
+                    redirectQueuedRequest(queuedRequest);
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            processing = false;
+        }
+    }
+
+    /**
+     * Starts the reader threads, which read requests under their read deadlines so that a slow client
+     * holds up only its own reader, and the worker threads that take requests from the request lanes
+     * and serve them, unless the server was shut down while it was starting.
+     */
+    private void startWorkers() {
+        synchronized (workerThreads) {
+            if (shutdown) {
+                return;
+            }
+            AtomicInteger readerIndex = new AtomicInteger(0);
+            readerPermits = new Semaphore(readerCount);
+            readers = Executors.newFixedThreadPool(readerCount, task -> {
+                Thread reader = new Thread(task, "AggregationServer-" + port + "-reader-" + readerIndex.getAndIncrement());
+                reader.setDaemon(true);
+                return reader;
+            });
+            for (int i = 0; i < requestLanes.getWorkers(); i++) {
+                Thread worker = new Thread(this::serveRequestLanes, "AggregationServer-" + port + "-worker-" + i);
+                worker.setDaemon(true);
+                workerThreads.add(worker);
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Stops the reader threads, disconnecting clients whose request is still being read, waits for
+     * the worker threads to finish their current request, then closes the sockets of any requests
+     * still waiting in the lanes.
+     */
+    private void stopWorkers() {
+        List<Thread> workers;
+        ExecutorService stoppedReaders;
+        synchronized (workerThreads) {
+            workers = new ArrayList<>(workerThreads);
+            workerThreads.clear();
+            stoppedReaders = readers;
+        }
+        if (stoppedReaders != null) {
+            stoppedReaders.shutdown();
+            for (Connection readingSocket : readingSockets) {
+                try {
+                    readingSocket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            try {
+                stoppedReaders.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("Error while waiting for the readers to finish");
+            }
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("Error while waiting for worker " + worker.getName() + " to finish");
+            }
+        }
+
+        try {
+            Assignment<LaneRequest> assignment;
+            while ((assignment = requestLanes.take(0, TimeUnit.MILLISECONDS)) != null) {
+                requestLanes.complete(assignment);
+                pendingRequests.decrementAndGet();
+                assignment.getRequest().getQueuedRequest().getSocket().close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Takes requests from the request lanes and serves them until the server is shut down.
+     * Runs on each worker thread.
+     */
+    private void serveRequestLanes() {
+        try {
+            while (!shutdown) {
+                Assignment<LaneRequest> assignment = requestLanes.take(10, TimeUnit.MILLISECONDS);
+                if (assignment != null) {
+                    try {
+                        serveLaneRequest(assignment.getRequest());
+                    } finally {
+                        requestLanes.complete(assignment);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
      * Waits for an incoming client connection from the request queue.
-     * @return A socket representing the client connection or null if server is shutting down.
+     * @return The queued client connection or null if server is shutting down.
      * @throws InterruptedException If the waiting thread is interrupted.
      */
-    private Socket waitForClient() throws InterruptedException {
+    private QueuedRequest waitForClient() throws InterruptedException {
         if(shutdown) return null;
         return requestQueue.poll(10, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Handles communication with a connected client, including reading request data and sending a response.
-     * @param clientSocket The socket through which the client is connected.
+     * Reads the request of a connected client and queues it in the lane for its type: PUTs go to the
+     * ingest lane and everything else to the query lane, so that GET floods cannot hold up PUTs.
+     * Runs on a reader thread.
+     * A sender over its rate limit gets a 429 response. A request that waited past the queue deadline,
+     * a GET shed to keep room for PUTs, a request whose lane is full, or any request once a drain has
+     * passed its deadline gets a 503 response.
+     * @param queuedRequest The queued connection of the client.
      */
-    private void handleClientSocket(Socket clientSocket) {
+    private void handleClientSocket(QueuedRequest queuedRequest) {
+        Connection clientSocket = queuedRequest.getSocket();
+        boolean queued = false;
         try {
-            String requestData = networkHandler.waitForClientData(clientSocket);
-            System.out.println(requestData);
-            System.out.println();
-            if (requestData != null) {
-                String responseData = handleRequest(requestData);
-                networkHandler.sendResponseToClient(responseData, clientSocket);
+            ClientRequest request;
+            readingSockets.add(clientSocket);
+            try {
+                request = networkHandler.waitForClientRequest(clientSocket);
+            } finally {
+                readingSockets.remove(clientSocket);
+            }
+            if (request == null) {
+                return;
+            }
+
+            if (redirecting) {
+                System.out.println(getPort() + " is draining, redirecting request from " + clientSocket);
+                sendUnavailableResponse(request, clientSocket);
+                return;
+            }
+
+            boolean isGet = request.isFrame() ? request.getFrame().getOpCode() == Frame.OP_GET : request.getHttpText().startsWith("GET");
+            boolean isPut = request.isFrame() ? request.getFrame().getOpCode() == Frame.OP_PUT : request.getHttpText().startsWith("PUT");
+            RateLimiter limiter = rateLimiter;
+            if (limiter != null) {
+                String senderId = request.isFrame() ? request.getFrame().getSenderId() : findHeader(request.getHttpText(), "SenderID");
+                int retryAfter = limiter.tryAcquire(isPut ? Kind.CONTENT_SERVER : Kind.GET_CLIENT, senderId);
+                if (retryAfter > 0) {
+                    System.out.println(getPort() + " rate limit exceeded by sender " + senderId + ", retry after " + retryAfter + "s");
+                    byte[] limited = request.isFrame()
+                            ? Frame.response(429, lamportClock.getTime(), retryAfterPayload(retryAfter)).encode()
+                            : formatTooManyRequestsResponse(retryAfter);
+                    networkHandler.sendResponseToClient(limited, clientSocket);
+                    return;
+                }
+            }
+            EdgeCache cache = edgeCache;
+            if (cache != null && isGet && !request.isFrame() && serveFromEdgeCache(cache, request.getHttpText(), clientSocket)) {
+                return;
+            }
+            if (requestQueue.shouldShed(queuedRequest, isGet)) {
+                System.out.println(getPort() + " shedding " + (isGet ? "GET" : "request") + " from " + clientSocket);
+                sendUnavailableResponse(request, clientSocket);
+                return;
+            }
+
+            Lane lane = isPut ? Lane.PUT : Lane.GET;
+            queued = requestLanes.offer(lane, new LaneRequest(queuedRequest, request));
+            if (!queued) {
+                System.out.println(getPort() + " " + lane + " lane is full, shedding request from " + clientSocket);
+                sendUnavailableResponse(request, clientSocket);
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (!queued) {
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                pendingRequests.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Serves a request taken from a request lane and sends the response. The client may speak HTTP
+     * or binary frames; the response uses the protocol of the request. A request that waited in the
+     * lane until past the queue deadline, or until a drain passed its deadline, gets a 503 response.
+     * The outcome listener, if any, is told the status and latency of every request except those
+     * redirected by a drain, which say nothing about the health of the server.
+     * @param laneRequest The request taken from the lane.
+     */
+    private void serveLaneRequest(LaneRequest laneRequest) {
+        Connection clientSocket = laneRequest.getQueuedRequest().getSocket();
+        ClientRequest request = laneRequest.getRequest();
+        int status = 0;
+        try {
+            if (redirecting) {
+                System.out.println(getPort() + " is draining, redirecting request from " + clientSocket);
+                sendUnavailableResponse(request, clientSocket);
+                return;
+            }
+            if (requestQueue.isExpired(laneRequest.getQueuedRequest())) {
+                System.out.println(getPort() + " shedding expired request from " + clientSocket);
+                sendUnavailableResponse(request, clientSocket);
+                status = 503;
+                return;
+            }
+
+            ByteBuffer[] responseData;
+            if (request.isFrame()) {
+                Frame frame = request.getFrame();
+                System.out.println("Frame op " + frame.getOpCode() + " from " + frame.getSenderId() + ", station " + frame.getStationId());
+                byte[] response = handleFrameRequest(frame);
+                status = Frame.statusOf(response);
+                responseData = new ByteBuffer[] {ByteBuffer.wrap(response)};
+            } else {
+                System.out.println(request.getHttpText());
+                responseData = handleWireRequestBuffers(request.getHttpText());
+                status = HttpResponseHead.statusOf(responseData[0]);
             }
+            System.out.println();
+            networkHandler.sendResponseToClient(responseData, clientSocket);
+            recordLatency(System.nanoTime() - laneRequest.getQueuedRequest().getEnqueuedAtNanos());
         } catch(Exception e) {
             e.printStackTrace(); // Depending on your use-case, you might want to handle this differently.
+            status = 500;
         } finally {
+            RequestOutcomeListener listener = outcomeListener;
+            if (listener != null && status > 0) {
+                listener.onRequestCompleted(this, status, System.nanoTime() - laneRequest.getQueuedRequest().getEnqueuedAtNanos());
+            }
             try {
                 clientSocket.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            pendingRequests.decrementAndGet();
         }
     }
 
+    /**
+     * Finds the value of a header in the head of an HTTP request, without parsing the whole request.
+     * @param httpText The request text.
+     * @param name The header name.
+     * @return The header value, or null if the header is absent.
+     */
+    private static String findHeader(String httpText, String name) {
+        int headEnd = httpText.indexOf("\r\n\r\n");
+        String head = headEnd < 0 ? httpText : httpText.substring(0, headEnd);
+        for (String line : head.split("\r\n")) {
+            if (line.startsWith(name + ": ")) {
+                return line.substring(name.length() + 2);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a 503 response to a shed request, in the protocol of the request.
+     * @param request The shed request.
+     * @param clientSocket The client socket.
+     */
+    private void sendUnavailableResponse(ClientRequest request, Connection clientSocket) {
+        byte[] unavailable = request.isFrame()
+                ? Frame.response(503, lamportClock.getTime(), retryAfterPayload(requestQueue.getRetryAfterSeconds())).encode()
+                : formatUnavailableResponse();
+        networkHandler.sendResponseToClient(unavailable, clientSocket);
+    }
+
+    /**
+     * Encodes the Retry-After seconds of a 503 or 429 response frame, which has no headers, as its payload.
+     * @param retryAfterSeconds The number of seconds until the client may retry.
+     * @return The ASCII payload.
+     */
+    private static byte[] retryAfterPayload(int retryAfterSeconds) {
+        return Integer.toString(retryAfterSeconds).getBytes(StandardCharsets.US_ASCII);
+    }
+
     /**
      * Extracts the Lamport time from the given headers and synchronizes the local Lamport clock
      * with the extracted time. After synchronization, it retrieves and returns the updated Lamport clock's time.
@@ -254,7 +771,15 @@ public class AggregationServer {
      * @return Updated Lamport clock time.
      */
     private int getLamportTimeFromHeaders(Map<String, String> headers) {
-        int lamportTime = Integer.parseInt(headers.getOrDefault("LamportClock", "-1"));
+        return receiveLamportTime(Integer.parseInt(headers.getOrDefault("LamportClock", "-1")));
+    }
+
+    /**
+     * Synchronizes the local Lamport clock with the Lamport time of a request.
+     * @param lamportTime The Lamport time sent by the client.
+     * @return The Lamport time sent by the client.
+     */
+    private int receiveLamportTime(int lamportTime) {
         lamportClock.receive(lamportTime);
         synchronizeWithSharedClock();
         lamportClock.tick();
@@ -262,11 +787,43 @@ public class AggregationServer {
     }
 
     /**
-     * Processes a given client request and returns an appropriate response.
+     * Processes a given client request and returns an appropriate response. The response body is
+     * never compressed; see handleWireRequest for the response sent over the network.
      * @param requestData The client's request data as a string.
      * @return A string representing the server's response.
      */
     public String handleRequest(String requestData) {
+        return new String(toBytes(handleRequest(requestData, false)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Processes a client request received over the network and returns the response bytes to send.
+     * GET response bodies are gzip-compressed if the client sends Accept-Encoding: gzip.
+     * @param requestData The client's request data as a string.
+     * @return The server's response.
+     */
+    public byte[] handleWireRequest(String requestData) {
+        return toBytes(handleWireRequestBuffers(requestData));
+    }
+
+    /**
+     * Processes a client request received over the network and returns the response as the encoded head
+     * followed by the body, if any. The body is a view of the cached encoded body, so the response can be
+     * sent with one gathering write without copying the body.
+     * @param requestData The client's request data as a string.
+     * @return The buffers of the server's response, ready to be written in order.
+     */
+    public ByteBuffer[] handleWireRequestBuffers(String requestData) {
+        return handleRequest(requestData, true);
+    }
+
+    /**
+     * Processes a given client request and returns an appropriate response.
+     * @param requestData The client's request data as a string.
+     * @param allowCompression True to compress the response body if the client accepts gzip.
+     * @return The server's response.
+     */
+    private ByteBuffer[] handleRequest(String requestData, boolean allowCompression) {
         setLastReceivedData(requestData);
         String[] lines = requestData.split("\r\n");
         String requestType = lines[0].split(" ")[0].trim();
@@ -291,97 +848,340 @@ public class AggregationServer {
 
         String content = contentBuilder.toString();
 
-        if ("GET".equalsIgnoreCase(requestType)) {
-            return handleGetRequest(headers);
-        } else if ("PUT".equalsIgnoreCase(requestType)) {
-            return handlePutRequest(headers, content);
-        } else {
-            return formatHttpResponse("400 Bad Request", null);
+        try {
+            if ("GET".equalsIgnoreCase(requestType)) {
+                boolean gzip = allowCompression && HttpCompression.acceptsGzip(headers.get("Accept-Encoding"));
+                return handleGetRequest(headers, isPrettyRequested(lines[0], headers.get("Accept")), gzip);
+            } else if ("PUT".equalsIgnoreCase(requestType)) {
+                return handlePutRequest(headers, content);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Bad LamportClock header: " + e.getMessage());
         }
+        return formatHttpResponse("400 Bad Request", null, null);
     }
 
     /**
-     * Processes a GET request and returns an appropriate response.
+     * Processes a request received as a binary frame and returns the encoded response frame.
+     * GET and PUT frames are handled like their HTTP counterparts, without parsing any text headers.
+     * Response bodies are compact JSON and never compressed.
+     * @param request The request frame.
+     * @return The encoded response frame.
+     */
+    public byte[] handleFrameRequest(Frame request) {
+        switch (request.getOpCode()) {
+            case Frame.OP_GET: {
+                int lamportTime = receiveLamportTime(request.getLamportTime());
+                StoredBody storedData = findEncodedWeatherData(request.getStationId(), lamportTime, false);
+                if (storedData == null) {
+                    return formatFrameResponse("204 No Content", null);
+                }
+                return formatFrameResponse("200 OK", storedData.getBody().getBytes());
+            }
+            case Frame.OP_PUT: {
+                int lamportTime = receiveLamportTime(request.getLamportTime());
+                return formatFrameResponse(storeWeatherData(request.getPayloadText(), lamportTime, request.getSenderId()), null);
+            }
+            default:
+                return formatFrameResponse("400 Bad Request", null);
+        }
+    }
+
+    /**
+     * Checks whether the client asked for indented JSON, either with a pretty query parameter
+     * (GET /weather.json?pretty=true) or with a pretty parameter on the Accept header
+     * (Accept: application/json; pretty=true). Responses are compact otherwise.
+     * @param requestLine The first line of the request.
+     * @param accept The Accept header, or null if there is none.
+     * @return True if the response body should be pretty-printed, otherwise false.
+     */
+    private boolean isPrettyRequested(String requestLine, String accept) {
+        String[] requestParts = requestLine.split(" ");
+        if (requestParts.length > 1) {
+            int queryStart = requestParts[1].indexOf('?');
+            if (queryStart >= 0 && hasPrettyParameter(requestParts[1].substring(queryStart + 1).split("&"))) {
+                return true;
+            }
+        }
+
+        return accept != null && hasPrettyParameter(accept.split(";"));
+    }
+
+    /**
+     * Checks a list of name=value parameters for pretty, pretty=true or pretty=1.
+     * @param parameters The parameters to check.
+     * @return True if pretty output is requested, otherwise false.
+     */
+    private boolean hasPrettyParameter(String[] parameters) {
+        for (String parameter : parameters) {
+            String[] nameValue = parameter.trim().split("=", 2);
+            if ("pretty".equalsIgnoreCase(nameValue[0])) {
+                return nameValue.length == 1 || "true".equalsIgnoreCase(nameValue[1].trim()) || "1".equals(nameValue[1].trim());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Processes a GET request and returns an appropriate response with a compact JSON body.
      * @param headers A map containing request headers.
      * @return A string representing the server's response.
      */
     public String handleGetRequest(Map<String, String> headers) {
+        return handleGetRequest(headers, false);
+    }
+
+    /**
+     * Processes a GET request and returns an appropriate response.
+     * @param headers A map containing request headers.
+     * @param pretty True to pretty-print the response body, false for compact JSON.
+     * @return A string representing the server's response.
+     */
+    public String handleGetRequest(Map<String, String> headers, boolean pretty) {
+        return new String(toBytes(handleGetRequest(headers, pretty, false)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Processes a GET request and returns the response buffers.
+     * @param headers A map containing request headers.
+     * @param pretty True to pretty-print the response body, false for compact JSON.
+     * @param gzip True to gzip-compress the response body.
+     * @return The server's response.
+     */
+    private ByteBuffer[] handleGetRequest(Map<String, String> headers, boolean pretty, boolean gzip) {
         int lamportTime = getLamportTimeFromHeaders(headers);
+        String stationId = headers.get("StationID");
+        EdgeCache cache = edgeCache;
+        // GETs for the default station are not cached, as the default station can change
+        StoredBody storedData = cache != null && stationId != null && !stationId.isEmpty()
+                ? findAndCacheWeatherData(cache, stationId, lamportTime, pretty)
+                : findEncodedWeatherData(stationId, lamportTime, pretty);
+
+        if (storedData == null) {
+            return formatHttpResponse("204 No Content", null, null);
+        }
+        return formatGetResponse(storedData.getBody(), gzip);
+    }
 
-        // Retrieve station ID from headers or use default if not provided.
-        String stationId = getStationIdFromHeadersOrDefault(headers);
-        if (stationId == null) {
-            return formatHttpResponse("204 No Content", null);
+    /**
+     * Formats the 200 response of a GET, compressing the body if the client accepts gzip and the body is large enough.
+     * @param encodedData The encoded weather data.
+     * @param gzip True if the client accepts gzip.
+     * @return The server's response.
+     */
+    private ByteBuffer[] formatGetResponse(EncodedBody encodedData, boolean gzip) {
+        if (gzip && encodedData.getBytes().length >= HttpCompression.MIN_GZIP_BYTES) {
+            return formatHttpResponse("200 OK", encodedData.getGzipBuffer(), HttpCompression.GZIP);
+        }
+        return formatHttpResponse("200 OK", encodedData.getBuffer(), null);
+    }
+
+    /**
+     * Finds the encoded weather data a GET for a station should return and puts it into the edge cache.
+     * Only the station's newest record may be cached, as it is what any GET whose bound is at least the
+     * record's Lamport time reads. So the newest record is looked up first, and serves the GET when its
+     * bound allows. A GET bounded before the newest record, which is rare, reads an older record
+     * that is not cached. The cache turns away the fill if a PUT for the station is stored meanwhile.
+     * @param cache The edge cache.
+     * @param stationId The station asked for.
+     * @param lamportTime The Lamport time bound of the request.
+     * @param pretty True to pretty-print the encoded data, false for compact JSON.
+     * @return The encoded weather data, or null if there is nothing to return.
+     */
+    private StoredBody findAndCacheWeatherData(EdgeCache cache, String stationId, int lamportTime, boolean pretty) {
+        long cacheVersion = cache.getVersion(stationId);
+        StoredBody newest = findEncodedWeatherData(stationId, Integer.MAX_VALUE, pretty);
+        if (newest == null) {
+            return null;
+        }
+        if (newest.getLamportTime() > lamportTime) {
+            return findEncodedWeatherData(stationId, lamportTime, pretty);
+        }
+        cache.put(stationId, pretty, newest.getLamportTime(), newest.getBody(), cacheVersion);
+        return newest;
+    }
+
+    /**
+     * Answers a GET from the edge cache as soon as it is read, if the cache holds the body it would
+     * read. The Lamport clock advances as it would for a GET served by a worker. A GET whose
+     * LamportClock header is not a number gets 400 Bad Request, as it would from a worker.
+     * @param cache The edge cache.
+     * @param httpText The request text.
+     * @param clientSocket The client socket.
+     * @return True if the request was answered, false if it must be served by a worker.
+     */
+    private boolean serveFromEdgeCache(EdgeCache cache, String httpText, Connection clientSocket) {
+        String stationId = findHeader(httpText, "StationID");
+        if (stationId == null || stationId.isEmpty()) {
+            return false;
         }
+        int lamportTime;
+        try {
+            lamportTime = Integer.parseInt(Optional.ofNullable(findHeader(httpText, "LamportClock")).orElse("-1"));
+        } catch (NumberFormatException e) {
+            System.out.println("Bad LamportClock header: " + e.getMessage());
+            networkHandler.sendResponseToClient(formatHttpResponse("400 Bad Request", null, null), clientSocket);
+            return true;
+        }
+        String requestLine = httpText.substring(0, Math.max(0, httpText.indexOf("\r\n")));
+        EncodedBody encodedData = cache.get(stationId, isPrettyRequested(requestLine, findHeader(httpText, "Accept")), lamportTime);
+        if (encodedData == null) {
+            return false;
+        }
+
+        receiveLamportTime(lamportTime);
+        boolean gzip = HttpCompression.acceptsGzip(findHeader(httpText, "Accept-Encoding"));
+        networkHandler.sendResponseToClient(formatGetResponse(encodedData, gzip), clientSocket);
+        return true;
+    }
 
-        // Get weather data for the specified station ID.
-        PriorityQueue<WeatherData> weatherDataQueue = dataStoreService.getData(stationId);
-        if (isWeatherDataQueueEmpty(weatherDataQueue)) {
-            return formatHttpResponse("204 No Content", null);
+    /**
+     * Finds the encoded weather data a GET request should return.
+     * @param requestedStationId The station asked for, or null or empty for the default station.
+     * @param lamportTime The Lamport time bound of the request.
+     * @param pretty True to pretty-print the encoded data, false for compact JSON.
+     * @return The encoded weather data, or null if there is nothing to return.
+     */
+    private StoredBody findEncodedWeatherData(String requestedStationId, int lamportTime, boolean pretty) {
+        // Use the requested station ID or the default if none is provided.
+        String stationId = getStationIdOrDefault(requestedStationId);
+        if (stationId == null) {
+            return null;
         }
 
-        // Retrieve the first WeatherData with a Lamport time less than or equal to the request's Lamport time.
-        Optional<WeatherData> targetData = getWeatherDataForLamportTime(weatherDataQueue, lamportTime);
+        // Concurrent GETs for the same station, Lamport bound and encoding share one lookup and one encoded body.
+        return getCoalescer.execute(stationId + "@" + lamportTime + (pretty ? "/pretty" : ""),
+                () -> lookupEncodedWeatherData(stationId, lamportTime, pretty));
+    }
 
+    /**
+     * Looks up the weather data visible at the given Lamport time and encodes it for the response body.
+     * Encoded bodies are cached per stored record, so repeated reads of a record skip the encoding and compression.
+     * @param stationId The station whose data is requested.
+     * @param lamportTime The Lamport time bound of the request.
+     * @param pretty True to pretty-print the encoded data, false for compact JSON.
+     * @return The encoded weather data, or null if there is nothing to return.
+     */
+    private StoredBody lookupEncodedWeatherData(String stationId, int lamportTime, boolean pretty) {
+        // Retrieve the latest WeatherData with a Lamport time less than or equal to the request's Lamport time.
+        Optional<WeatherData> targetData = dataStoreService.getDataAt(stationId, lamportTime);
+
+        // A stored record is identified by its station, Lamport time and sender.
         return targetData
-                .map(weatherData -> formatHttpResponse("200 OK", weatherData.getData()))
-                .orElse(formatHttpResponse("204 No Content", null));
+                .map(weatherData -> new StoredBody(bodyCache.get(
+                        stationId + "@" + weatherData.getLamportTime() + "/" + weatherData.getSenderID() + (pretty ? "/pretty" : ""),
+                        () -> JsonHandler.toWireJson(weatherData.getData(), pretty)),
+                        weatherData.getLamportTime(), weatherData.getSenderID()))
+                .orElse(null);
     }
 
     /**
-     * Checks if the provided weather data queue is empty or null.
-     * @param queue The queue to check.
-     * @return True if the queue is null or empty, otherwise false.
+     * Returns how many GET lookups were actually executed against the data store.
+     * @return The number of executed GET lookups.
      */
-    private boolean isWeatherDataQueueEmpty(PriorityQueue<WeatherData> queue) {
-        return queue == null || queue.isEmpty();
+    public static long getExecutedGetLookups() {
+        return getCoalescer.getExecutedCount();
     }
 
     /**
-     * Extracts the Station ID from the given headers or defaults to the first available
-     * station ID from the datastore if not found in the headers.
-     * @param headers Headers from which to extract the Station ID.
-     * @return Extracted or default Station ID.
+     * Returns how many GET requests were merged into a lookup that was already in flight.
+     * @return The number of coalesced GET requests.
      */
-    private String getStationIdFromHeadersOrDefault(Map<String, String> headers) {
-        String stationId = headers.get("StationID");
-        if (stationId != null && !stationId.isEmpty()) {
-            return stationId;
-        }
-        return dataStoreService.getAllDataKeys().stream().findFirst().orElse(null);
+    public static long getCoalescedGetRequests() {
+        return getCoalescer.getCoalescedCount();
+    }
+
+    /**
+     * Returns the queue of client sockets waiting to be served, with its depth and shed counters.
+     * @return The request queue.
+     */
+    public AdmissionQueue getRequestQueue() {
+        return requestQueue;
+    }
+
+    /**
+     * Sets the rate limiter applied to each SenderID once its request is read. The load balancer
+     * shares one limiter across its servers, so a sender cannot spread its requests to get around it.
+     * @param rateLimiter The rate limiter, or null to disable sender limits.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the listener told about the status and latency of each request this server answers.
+     * The load balancer uses it to eject servers that fail or slow down.
+     * @param outcomeListener The listener, or null for none.
+     */
+    public void setOutcomeListener(RequestOutcomeListener outcomeListener) {
+        this.outcomeListener = outcomeListener;
+    }
+
+    /**
+     * Sets the edge cache that answers repeated GETs as soon as they are read. The load balancer
+     * shares one cache across its servers, and every server invalidates it when it stores a PUT.
+     * @param edgeCache The edge cache, or null to disable it.
+     */
+    public void setEdgeCache(EdgeCache edgeCache) {
+        this.edgeCache = edgeCache;
+    }
+
+    /**
+     * Returns the ingest and query lanes that read requests wait in for a worker.
+     * @return The request lanes.
+     */
+    public RequestLanes<?> getRequestLanes() {
+        return requestLanes;
+    }
+
+    /**
+     * Returns the cache of encoded GET response bodies.
+     * @return The response body cache.
+     */
+    public static EncodedBodyCache getBodyCache() {
+        return bodyCache;
     }
 
     /**
-     * Retrieves the weather data for a given Lamport time from the provided queue.
-     * The method finds the entry with the largest Lamport time that is less than or equal to the provided time.
-     * @param queue Queue containing weather data.
-     * @param lamportTime The Lamport time for which data is needed.
-     * @return An optional containing the weather data if found, or empty otherwise.
+     * Returns the requested Station ID or defaults to the first available station ID from the datastore
+     * if none was requested.
+     * @param stationId The requested Station ID, or null or empty if none was given.
+     * @return Requested or default Station ID.
      */
-    private Optional<WeatherData> getWeatherDataForLamportTime(PriorityQueue<WeatherData> queue, int lamportTime) {
-        return queue.stream()
-                .filter(data -> data.getLamportTime() <= lamportTime)  // This line ensures the data is less than or equal to provided clock
-                .max(Comparator.comparingInt(WeatherData::getLamportTime));  // This line finds the largest among those
+    private String getStationIdOrDefault(String stationId) {
+        if (stationId != null && !stationId.isEmpty()) {
+            return stationId;
+        }
+        return dataStoreService.getAllDataKeys().stream().findFirst().orElse(null);
     }
 
     /**
      * Processes a PUT request and returns an appropriate response.
      * @param headers A map containing request headers.
      * @param content The content/body of the request.
-     * @return A string representing the server's response.
+     * @return The buffers of the server's response.
      */
-    private String handlePutRequest(Map<String, String> headers, String content) {
+    private ByteBuffer[] handlePutRequest(Map<String, String> headers, String content) {
         int lamportTime = getLamportTimeFromHeaders(headers);
+        return formatHttpResponse(storeWeatherData(content, lamportTime, headers.get("SenderID")), null, null);
+    }
 
-        String senderID = headers.get("SenderID");
+    /**
+     * Validates and stores the weather data of a PUT request.
+     * @param content The content/body of the request.
+     * @param lamportTime The Lamport time of the request.
+     * @param senderID The ID of the content server that sent the data.
+     * @return The HTTP status of the response.
+     */
+    private String storeWeatherData(String content, int lamportTime, String senderID) {
         if (isValidSender(senderID)) {
             if (processWeatherData(content, lamportTime, senderID)) {
                 return generateResponseBasedOnTimestamp(senderID);
             } else {
-                return formatHttpResponse("500 Internal Server Error", null);
+                return "500 Internal Server Error";
             }
         } else {
-            return formatHttpResponse("400 Bad Request", null);
+            return "400 Bad Request";
         }
     }
 
@@ -406,24 +1206,22 @@ public class AggregationServer {
     }
 
     /**
-     * Adds weather data to the server's data store.
+     * Adds weather data to the server's data store. The body is decoded in one streaming pass
+     * straight into the store's record format, validating the station id and field types on the way.
      * @param content The String representation of the weather data.
      * @param lamportTime The Lamport timestamp associated with the data.
      * @param senderID The identifier of the server sending the data.
      * @return True if the data was added successfully, false otherwise.
      */
-
     public boolean processWeatherData(String content, int lamportTime, String senderID) {
         try {
-            JsonObject weatherDataJSON = JsonHandler.parseJSONObject(content);
-            String stationId = extractStationId(weatherDataJSON);
-
-            if (!isValidStation(stationId)) {
-                return false;
+            CompactRecord record = weatherDataDecoder.decode(content);
+            WeatherData newWeatherData = WeatherData.fromRecord(record, lamportTime, senderID);
+            dataStoreService.putData(record.getText("id"), newWeatherData);
+            EdgeCache cache = edgeCache;
+            if (cache != null) {
+                cache.invalidate(record.getText("id"));
             }
-
-            WeatherData newWeatherData = new WeatherData(weatherDataJSON, lamportTime, senderID);
-            dataStoreService.putData(stationId, newWeatherData);
             return true;
         } catch (JsonParseException e) {
             System.err.println("JSON Parsing Error: " + e.getMessage());
@@ -431,31 +1229,12 @@ public class AggregationServer {
         }
     }
 
-    /**
-     * Validates if the provided station ID is neither null nor empty.
-     * @param stationId The Station ID to validate.
-     * @return True if the stationId is valid, otherwise false.
-     */
-    private boolean isValidStation(String stationId) {
-        return stationId != null && !stationId.isEmpty();
-    }
-
-    /**
-     * Extracts and returns the station ID from the provided JSON object representing weather data.
-     * Returns null if the ID is not present in the JSON.
-     * @param weatherDataJSON JSON object containing weather data.
-     * @return Extracted station ID or null if not found.
-     */
-    private String extractStationId(JsonObject weatherDataJSON) {
-        return weatherDataJSON.has("id") ? weatherDataJSON.get("id").getAsString() : null;
-    }
-
     /**
      * Generates an HTTP response based on the difference between the current timestamp
      * and the last known timestamp for the given senderID. If the request is new or delayed,
      * it returns a "201 HTTP_CREATED" response; otherwise, it returns a "200 OK" response.
      * @param senderID The ID of the sender making the request.
-     * @return HTTP response string.
+     * @return The HTTP status of the response.
      */
     private String generateResponseBasedOnTimestamp(String senderID) {
         long currentTimestamp = System.currentTimeMillis();
@@ -465,39 +1244,97 @@ public class AggregationServer {
         dataStoreService.putTimestamp(senderID, currentTimestamp);
 
         if (isNewOrDelayedRequest(lastTimestamp, currentTimestamp)) {
-            return formatHttpResponse("201 HTTP_CREATED", null);
+            return "201 HTTP_CREATED";
         } else {
-            return formatHttpResponse("200 OK", null);
+            return "200 OK";
         }
     }
 
     /**
-     * Formats the provided HTTP status and JSON data into a full HTTP response string.
+     * Formats the provided HTTP status and body into an HTTP response. The head is encoded straight
+     * into bytes and the body is passed through as is, so neither is copied into a combined message.
+     * Content-Length counts the bytes of the body as sent, after any compression.
      * This method also updates the Lamport clock and synchronizes it with the shared clock.
      * @param status The HTTP status code and message.
-     * @param jsonData JSON data to be included in the response body.
-     * @return Formatted HTTP response string.
+     * @param body The response body, or null for a response without a body.
+     * @param contentEncoding The Content-Encoding of the body, or null if it is not compressed.
+     * @return The head and, if there is one, the body.
      */
-    private String formatHttpResponse(String status, JsonObject jsonData) {
-        StringBuilder response = new StringBuilder();
-        lamportClock.tick();
-        synchronizeWithSharedClock();
-        lamportClock.tick();
+    private ByteBuffer[] formatHttpResponse(String status, ByteBuffer body, String contentEncoding) {
+        int lamportTime = advanceClockForResponse();
+        if (body == null) {
+            return new ByteBuffer[] {HttpResponseHead.encode(status, lamportTime, null, -1)};
+        }
+        return new ByteBuffer[] {HttpResponseHead.encode(status, lamportTime, contentEncoding, body.remaining()), body};
+    }
 
-        response.append("HTTP/1.1 ").append(status).append("\r\n");
-        response.append("LamportClock: ").append(lamportClock.getTime()).append("\r\n");
+    /**
+     * Formats the 503 response sent to a request that is shed. The request is not processed, so the
+     * Lamport clock is reported without being advanced.
+     * @return The formatted HTTP response.
+     */
+    private byte[] formatUnavailableResponse() {
+        return ("HTTP/1.1 503 Service Unavailable\r\n" +
+                "LamportClock: " + lamportClock.getTime() + "\r\n" +
+                "Retry-After: " + requestQueue.getRetryAfterSeconds() + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
 
-        if (jsonData != null) {
-            String prettyData = JsonHandler.prettyPrint(jsonData);
-            response.append("Content-Type: application/json\r\n");
-            response.append("Content-Length: ").append(prettyData.length()).append("\r\n");
-            response.append("\r\n");
-            response.append(prettyData);
-        } else {
-            response.append("\r\n");
+    /**
+     * Formats the 429 response sent to a sender over its rate limit. The request is not processed,
+     * so the Lamport clock is reported without being advanced.
+     * @param retryAfterSeconds The number of seconds until the sender may retry.
+     * @return The formatted HTTP response.
+     */
+    private byte[] formatTooManyRequestsResponse(int retryAfterSeconds) {
+        return ("HTTP/1.1 429 Too Many Requests\r\n" +
+                "LamportClock: " + lamportClock.getTime() + "\r\n" +
+                "Retry-After: " + retryAfterSeconds + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Copies response buffers into one array, for callers that need the whole response at once.
+     * The buffers themselves are left unchanged.
+     * @param buffers The response buffers.
+     * @return The concatenated bytes.
+     */
+    private static byte[] toBytes(ByteBuffer[] buffers) {
+        int length = 0;
+        for (ByteBuffer buffer : buffers) {
+            length += buffer.remaining();
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            int remaining = buffer.remaining();
+            buffer.duplicate().get(bytes, offset, remaining);
+            offset += remaining;
         }
+        return bytes;
+    }
+
+    /**
+     * Formats the provided HTTP status and body into an encoded response frame.
+     * This method also updates the Lamport clock and synchronizes it with the shared clock.
+     * @param status The HTTP status code and message; the frame carries only the code.
+     * @param body The response body, or null for a response without a body.
+     * @return The encoded response frame.
+     */
+    private byte[] formatFrameResponse(String status, byte[] body) {
+        int statusCode = Integer.parseInt(status.substring(0, status.indexOf(' ')));
+        return Frame.response(statusCode, advanceClockForResponse(), body).encode();
+    }
 
-        return response.toString();
+    /**
+     * Ticks the Lamport clock for a response and synchronizes it with the shared clock.
+     * @return The Lamport time sent with the response.
+     */
+    private int advanceClockForResponse() {
+        lamportClock.tick();
+        synchronizeWithSharedClock();
+        lamportClock.tick();
+        return lamportClock.getTime();
     }
 
     /**
@@ -513,4 +1350,77 @@ public class AggregationServer {
         AggregationServer server = new AggregationServer(networkHandler);
         server.start(port);
     }
+
+    private static class LaneRequest {
+        private final QueuedRequest queuedRequest;
+        private final ClientRequest request;
+
+        /**
+         * Constructs a request waiting in a request lane.
+         * @param queuedRequest The queued connection of the client.
+         * @param request The request read from the connection.
+         */
+        LaneRequest(QueuedRequest queuedRequest, ClientRequest request) {
+            this.queuedRequest = queuedRequest;
+            this.request = request;
+        }
+
+        /**
+         * Returns the queued connection of the client.
+         * @return The queued request.
+         */
+        QueuedRequest getQueuedRequest() {
+            return queuedRequest;
+        }
+
+        /**
+         * Returns the request read from the connection.
+         * @return The client request.
+         */
+        ClientRequest getRequest() {
+            return request;
+        }
+    }
+
+    private static class StoredBody {
+        private final EncodedBody body;
+        private final int lamportTime;
+        private final String senderId;
+
+        /**
+         * Constructs the encoded body of a stored record, with the fields that identify the record.
+         * @param body The encoded body.
+         * @param lamportTime The Lamport time of the record.
+         * @param senderId The content server that sent the record.
+         */
+        StoredBody(EncodedBody body, int lamportTime, String senderId) {
+            this.body = body;
+            this.lamportTime = lamportTime;
+            this.senderId = senderId;
+        }
+
+        /**
+         * Returns the encoded body.
+         * @return The encoded body.
+         */
+        EncodedBody getBody() {
+            return body;
+        }
+
+        /**
+         * Returns the Lamport time of the record.
+         * @return The Lamport time.
+         */
+        int getLamportTime() {
+            return lamportTime;
+        }
+
+        /**
+         * Returns the content server that sent the record.
+         * @return The SenderID.
+         */
+        String getSenderId() {
+            return senderId;
+        }
+    }
 }
@@ -0,0 +1,248 @@
+package main.aggregation;
+
+import main.network.SocketNetworkHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Autoscaler {
+    public static final double DEFAULT_SCALE_UP_DEPTH = 8;
+    public static final double DEFAULT_SCALE_UP_LATENCY_MILLIS = 500;
+    public static final double DEFAULT_SCALE_DOWN_DEPTH = 1;
+    public static final int DEFAULT_SUSTAIN_CHECKS = 3;
+    public static final long DEFAULT_UP_COOLDOWN_MILLIS = 30000;
+    public static final long DEFAULT_DOWN_COOLDOWN_MILLIS = 120000;
+    public static final long DEFAULT_INTERVAL_MILLIS = 5000;
+    public static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 10000;
+
+    public enum Decision {
+        SCALE_UP, SCALE_DOWN, HOLD
+    }
+
+    public interface ServerLauncher {
+        /**
+         * Starts a new AggregationServer.
+         * @param port The port for the server to listen on.
+         * @return The server, which may still be starting.
+         */
+        AggregationServer launch(int port);
+    }
+
+    private final LoadBalancer loadBalancer;
+    private final ServerLauncher launcher;
+    private final int minServers;
+    private final int maxServers;
+    private final double scaleUpDepth;
+    private final double scaleUpLatencyMillis;
+    private final double scaleDownDepth;
+    private final int sustainChecks;
+    private final long upCooldownMillis;
+    private final long downCooldownMillis;
+    private final long drainTimeoutMillis;
+    private final AtomicLong scaleUpCount = new AtomicLong(0);
+    private final AtomicLong scaleDownCount = new AtomicLong(0);
+    private int nextPort;
+    private int overloadedChecks;
+    private int underloadedChecks;
+    private long lastScaleUpMillis;
+    private long lastScaleMillis;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs an autoscaler for the servers of a load balancer. The pool grows while the average
+     * pending requests or latency per server stay at or above the scale-up thresholds, and shrinks
+     * while both stay well below them: at most the scale-down depth and half the scale-up latency.
+     * Either condition must hold for the given number of consecutive checks, and each step waits out
+     * its cooldown, so the pool does not flap around a threshold.
+     * @param loadBalancer The load balancer whose servers are scaled.
+     * @param launcher Starts new servers.
+     * @param firstPort The port of the first server this autoscaler starts; later ones take the next ports.
+     * @param minServers The smallest pool size.
+     * @param maxServers The largest pool size.
+     * @param scaleUpDepth Average pending requests per server at which the pool grows.
+     * @param scaleUpLatencyMillis Average latency per server at which the pool grows.
+     * @param scaleDownDepth Average pending requests per server at or below which the pool may shrink.
+     * @param sustainChecks Consecutive checks a condition must hold before the pool is resized.
+     * @param upCooldownMillis Time after growing before the pool may grow again.
+     * @param downCooldownMillis Time after any resize before the pool may shrink.
+     * @param drainTimeoutMillis How long a retired server may keep serving pending requests.
+     */
+    public Autoscaler(LoadBalancer loadBalancer, ServerLauncher launcher, int firstPort, int minServers, int maxServers,
+                      double scaleUpDepth, double scaleUpLatencyMillis, double scaleDownDepth, int sustainChecks,
+                      long upCooldownMillis, long downCooldownMillis, long drainTimeoutMillis) {
+        if (minServers < 1 || maxServers < minServers) {
+            throw new IllegalArgumentException("Invalid pool bounds: min " + minServers + ", max " + maxServers);
+        }
+        if (scaleDownDepth >= scaleUpDepth || sustainChecks < 1) {
+            throw new IllegalArgumentException("The scale-down depth must be below the scale-up depth, and checks at least 1.");
+        }
+        this.loadBalancer = loadBalancer;
+        this.launcher = launcher;
+        this.nextPort = firstPort;
+        this.minServers = minServers;
+        this.maxServers = maxServers;
+        this.scaleUpDepth = scaleUpDepth;
+        this.scaleUpLatencyMillis = scaleUpLatencyMillis;
+        this.scaleDownDepth = scaleDownDepth;
+        this.sustainChecks = sustainChecks;
+        this.upCooldownMillis = upCooldownMillis;
+        this.downCooldownMillis = downCooldownMillis;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    /**
+     * Builds an autoscaler from system properties, falling back to the defaults:
+     * aggregation.autoscale.min (the initial pool size), aggregation.autoscale.max (twice the minimum),
+     * aggregation.autoscale.scaleUpDepth, aggregation.autoscale.scaleUpLatencyMillis,
+     * aggregation.autoscale.scaleDownDepth, aggregation.autoscale.sustainChecks,
+     * aggregation.autoscale.upCooldownMillis, aggregation.autoscale.downCooldownMillis
+     * and aggregation.autoscale.drainTimeoutMillis. New servers run in this process.
+     * @param loadBalancer The load balancer whose servers are scaled.
+     * @param firstPort The port of the first server the autoscaler starts.
+     * @param initialServers The number of servers the load balancer started with.
+     * @return The configured autoscaler.
+     */
+    public static Autoscaler fromSystemProperties(LoadBalancer loadBalancer, int firstPort, int initialServers) {
+        int min = Integer.getInteger("aggregation.autoscale.min", initialServers);
+        return new Autoscaler(
+                loadBalancer,
+                Autoscaler::launchInProcess,
+                firstPort,
+                min,
+                Integer.getInteger("aggregation.autoscale.max", 2 * min),
+                Double.parseDouble(System.getProperty("aggregation.autoscale.scaleUpDepth", String.valueOf(DEFAULT_SCALE_UP_DEPTH))),
+                Double.parseDouble(System.getProperty("aggregation.autoscale.scaleUpLatencyMillis", String.valueOf(DEFAULT_SCALE_UP_LATENCY_MILLIS))),
+                Double.parseDouble(System.getProperty("aggregation.autoscale.scaleDownDepth", String.valueOf(DEFAULT_SCALE_DOWN_DEPTH))),
+                Integer.getInteger("aggregation.autoscale.sustainChecks", DEFAULT_SUSTAIN_CHECKS),
+                Long.getLong("aggregation.autoscale.upCooldownMillis", DEFAULT_UP_COOLDOWN_MILLIS),
+                Long.getLong("aggregation.autoscale.downCooldownMillis", DEFAULT_DOWN_COOLDOWN_MILLIS),
+                Long.getLong("aggregation.autoscale.drainTimeoutMillis", DEFAULT_DRAIN_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Starts an AggregationServer in this process on a thread of its own, as LoadBalancer.main does.
+     * @param port The port for the server to listen on.
+     * @return The server, which may still be starting.
+     */
+    public static AggregationServer launchInProcess(int port) {
+        AggregationServer server = new AggregationServer(new SocketNetworkHandler());
+        new Thread(() -> server.start(port), "AggregationServer-" + port).start();
+        return server;
+    }
+
+    /**
+     * Starts checking the pool at a fixed interval.
+     * @param intervalMillis The time between checks.
+     */
+    public void start(long intervalMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking the pool. Servers already started keep running.
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one check: decides whether to resize the pool and does so. A server that is added
+     * starts receiving work once it accepts connections; a server that is retired is drained first.
+     * @return The decision that was carried out.
+     */
+    public synchronized Decision check() {
+        Decision decision = evaluate();
+        long now = System.currentTimeMillis();
+        if (decision == Decision.SCALE_UP) {
+            int port = nextPort++;
+            System.out.println("Autoscaler starting Aggregation Server on port " + port);
+            loadBalancer.addServer(launcher.launch(port));
+            lastScaleUpMillis = now;
+            lastScaleMillis = now;
+            scaleUpCount.incrementAndGet();
+        } else if (decision == Decision.SCALE_DOWN) {
+            AggregationServer leastLoaded = null;
+            for (AggregationServer server : snapshotServers()) {
+                if (leastLoaded == null || server.getPendingRequests() < leastLoaded.getPendingRequests()) {
+                    leastLoaded = server;
+                }
+            }
+            System.out.println("Autoscaler retiring Aggregation Server on port " + leastLoaded.getPort());
+            loadBalancer.retireServer(leastLoaded, drainTimeoutMillis);
+            lastScaleMillis = now;
+            scaleDownCount.incrementAndGet();
+        }
+        return decision;
+    }
+
+    /**
+     * Decides whether the pool should grow, shrink or stay as it is, from the average pending
+     * requests and latency of the servers in rotation. A pool below the minimum grows at once.
+     * @return The decision.
+     */
+    private Decision evaluate() {
+        List<AggregationServer> servers = snapshotServers();
+        int count = servers.size();
+        if (count < minServers) {
+            return Decision.SCALE_UP;
+        }
+
+        double totalDepth = 0;
+        double totalLatency = 0;
+        for (AggregationServer server : servers) {
+            totalDepth += server.getPendingRequests();
+            totalLatency += server.getAverageLatencyMillis();
+        }
+        double averageDepth = totalDepth / count;
+        double averageLatency = totalLatency / count;
+
+        boolean overloaded = averageDepth >= scaleUpDepth || averageLatency >= scaleUpLatencyMillis;
+        boolean underloaded = averageDepth <= scaleDownDepth && averageLatency < scaleUpLatencyMillis / 2;
+        overloadedChecks = overloaded ? overloadedChecks + 1 : 0;
+        underloadedChecks = underloaded ? underloadedChecks + 1 : 0;
+
+        long now = System.currentTimeMillis();
+        if (overloadedChecks >= sustainChecks && count < maxServers && now - lastScaleUpMillis >= upCooldownMillis) {
+            overloadedChecks = 0;
+            return Decision.SCALE_UP;
+        }
+        if (underloadedChecks >= sustainChecks && count > minServers && now - lastScaleMillis >= downCooldownMillis) {
+            underloadedChecks = 0;
+            return Decision.SCALE_DOWN;
+        }
+        return Decision.HOLD;
+    }
+
+    /**
+     * Copies the load balancer's rotation, so that it can be read while servers are added or removed.
+     * @return The servers in rotation.
+     */
+    private List<AggregationServer> snapshotServers() {
+        synchronized (loadBalancer) {
+            return new ArrayList<>(loadBalancer.getAggregationServers());
+        }
+    }
+
+    /**
+     * Returns how many servers the autoscaler started.
+     * @return The number of scale-ups.
+     */
+    public long getScaleUpCount() {
+        return scaleUpCount.get();
+    }
+
+    /**
+     * Returns how many servers the autoscaler retired.
+     * @return The number of scale-downs.
+     */
+    public long getScaleDownCount() {
+        return scaleDownCount.get();
+    }
+}
@@ -0,0 +1,387 @@
+package main.aggregation;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import main.common.CompactRecord;
+import main.common.WeatherSchema;
+import main.common.WeatherSchema.FieldType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+
+public class ColumnarStationHistory extends StationHistory {
+    private final WeatherSchema schema;
+
+    private long[] presentMasks;    // Bit i set: schema field i is stored in its typed column
+    private long[] numberMasks;     // Bit i set: schema field i was a JSON number rather than a string
+    private boolean[] withoutData;
+    private CompactRecord[] extras; // Side table for fields outside the schema or not representable in their column
+    private int[][] keyOrders;      // Original key order of a slot, null when it is schema order followed by the side table
+
+    // Typed field columns, indexed by schema field; only the array matching the field type is allocated
+    private final double[][] doubleColumns;
+    private final long[][] longColumns;
+    private final String[][] stringColumns;
+    // Original text of numeric values that do not round-trip through their column, allocated per field on first use
+    private final String[][] rawTexts;
+
+    /**
+     * Constructs an empty history for the default input format.
+     * @param maxEntries The maximum number of entries kept for the station, or RetentionPolicy.UNLIMITED.
+     */
+    public ColumnarStationHistory(int maxEntries) {
+        this(maxEntries, WeatherSchema.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty history backed by a ring of typed columns.
+     * Numeric schema fields are kept in primitive double or long columns and string fields in string
+     * columns; anything else goes to a small per-entry side table.
+     * @param maxEntries The maximum number of entries kept for the station, or RetentionPolicy.UNLIMITED.
+     * @param schema The schema deciding which column each field is stored in.
+     */
+    public ColumnarStationHistory(int maxEntries, WeatherSchema schema) {
+        super(maxEntries);
+        this.schema = schema;
+        int capacity = capacity();
+        this.presentMasks = new long[capacity];
+        this.numberMasks = new long[capacity];
+        this.withoutData = new boolean[capacity];
+        this.extras = new CompactRecord[capacity];
+        this.keyOrders = new int[capacity][];
+        this.doubleColumns = new double[schema.size()][];
+        this.longColumns = new long[schema.size()][];
+        this.stringColumns = new String[schema.size()][];
+        this.rawTexts = new String[schema.size()][];
+
+        for (int field = 0; field < schema.size(); field++) {
+            switch (schema.getType(field)) {
+                case DOUBLE:
+                    doubleColumns[field] = new double[capacity];
+                    break;
+                case LONG:
+                    longColumns[field] = new long[capacity];
+                    break;
+                default:
+                    stringColumns[field] = new String[capacity];
+                    break;
+            }
+        }
+        addFixedBytes((8 + schema.size()) * ARRAY_OVERHEAD + slotBytes() * capacity);
+    }
+
+    /**
+     * Returns the bytes every ring slot preallocates across the mask arrays, the side table and the columns.
+     * @return The preallocated bytes per slot.
+     */
+    private long slotBytes() {
+        long bytes = 8 + 8 + 1 + REFERENCE_SIZE + REFERENCE_SIZE;
+        for (int field = 0; field < schema.size(); field++) {
+            bytes += schema.getType(field) == FieldType.STRING ? REFERENCE_SIZE : 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes statistics over a numeric field straight from its primitive column, without decoding entries.
+     * Values of the field that did not fit the column are read from the side table.
+     * @param field The name of a DOUBLE or LONG schema field.
+     * @return The statistics of the stored values; empty if the field is unknown, not numeric or absent.
+     */
+    @Override
+    public DoubleSummaryStatistics summarize(String field) {
+        int index = schema.indexOf(field);
+        if (index < 0 || schema.getType(index) == FieldType.STRING) {
+            return super.summarize(field);
+        }
+
+        DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+        long bit = 1L << index;
+        for (int slot = 0; slot < capacity(); slot++) {
+            // Empty slots have no bits set, so the whole column can be scanned
+            if ((presentMasks[slot] & bit) != 0) {
+                statistics.accept(schema.getType(index) == FieldType.DOUBLE
+                        ? doubleColumns[index][slot] : longColumns[index][slot]);
+            } else if (extras[slot] != null) {
+                CompactRecord extra = extras[slot];
+                for (int j = 0; j < extra.size(); j++) {
+                    if (extra.getKey(j).equals(field)) {
+                        acceptNumber(statistics, extra.getValue(j));
+                        break;
+                    }
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Splits a reading into the columns of the given slot. The key order is recorded when it differs from
+     * schema order followed by the side table, so the reading reads back exactly as it was sent.
+     * @param slot The ring slot to write.
+     * @param record The reading to store, may be null.
+     * @return The bytes of the strings, original texts, key order and side-table fields that are not shared.
+     */
+    @Override
+    protected long writePayload(int slot, CompactRecord record) {
+        withoutData[slot] = record == null;
+        if (record == null) {
+            return 0;
+        }
+
+        long bytes = 0;
+        List<String> extraKeys = new ArrayList<>();
+        List<Object> extraValues = new ArrayList<>();
+        int[] order = new int[record.size()];
+        boolean schemaOrder = true;
+        for (int i = 0; i < record.size(); i++) {
+            String key = record.getKey(i);
+            Object value = record.getValue(i);
+            int field = schema.indexOf(key);
+            if (field >= 0 && writeField(slot, field, value)) {
+                if (schema.getType(field) == FieldType.STRING) {
+                    bytes += sharedOrSized((String) value);
+                } else if (rawTexts[field] != null) {
+                    bytes += sharedOrSized(rawTexts[field][slot]);
+                }
+                order[i] = field;
+            } else {
+                // Side-table fields are numbered after every schema field
+                order[i] = WeatherSchema.MAX_FIELDS + extraKeys.size();
+                extraKeys.add(key);
+                extraValues.add(value);
+            }
+            schemaOrder &= i == 0 || order[i - 1] < order[i];
+        }
+        if (!extraKeys.isEmpty()) {
+            extras[slot] = CompactRecord.of(extraKeys.toArray(new String[0]), extraValues.toArray());
+            bytes += extras[slot].estimateSizeBytes();
+        }
+        if (!schemaOrder) {
+            keyOrders[slot] = order;
+            bytes += ARRAY_OVERHEAD + 4L * order.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Stores a field value in its typed column if its type fits there. A number whose text is not the
+     * canonical form of the column type, such as "13" in a DOUBLE column, keeps its original text as well.
+     * @param slot The ring slot to write.
+     * @param field The schema field index.
+     * @param value The encoded value from the compact record.
+     * @return True if the value was stored in the column, false if it belongs in the side table.
+     */
+    private boolean writeField(int slot, int field, Object value) {
+        long bit = 1L << field;
+        if (schema.getType(field) == FieldType.STRING) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            stringColumns[field][slot] = (String) value;
+            presentMasks[slot] |= bit;
+            return true;
+        }
+
+        boolean isNumber = value instanceof JsonPrimitive && ((JsonPrimitive) value).isNumber();
+        if (!isNumber && !(value instanceof String)) {
+            return false;
+        }
+        String text = isNumber ? ((JsonPrimitive) value).getAsString() : (String) value;
+
+        if (!WeatherSchema.isJsonNumber(text)) {
+            return false;
+        }
+        boolean canonical;
+        if (schema.getType(field) == FieldType.DOUBLE) {
+            double parsed = Double.parseDouble(text);
+            if (Double.isInfinite(parsed)) {
+                return false;
+            }
+            doubleColumns[field][slot] = parsed;
+            canonical = WeatherSchema.isCanonicalDouble(text);
+        } else {
+            try {
+                longColumns[field][slot] = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return false;   // Fractional or out of range, kept in the side table
+            }
+            canonical = WeatherSchema.isCanonicalLong(text);
+        }
+        if (!canonical) {
+            if (rawTexts[field] == null) {
+                rawTexts[field] = new String[presentMasks.length];
+                addFixedBytes(ARRAY_OVERHEAD + (long) REFERENCE_SIZE * presentMasks.length);
+            }
+            rawTexts[field][slot] = text;
+        }
+        presentMasks[slot] |= bit;
+        if (isNumber) {
+            numberMasks[slot] |= bit;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the reading stored in the given slot, in the key order it was stored with.
+     * @param slot The ring slot to read.
+     * @return The decoded reading, or null if the entry has no data.
+     */
+    @Override
+    protected CompactRecord readPayload(int slot) {
+        if (withoutData[slot]) {
+            return null;
+        }
+
+        long present = presentMasks[slot];
+        CompactRecord extra = extras[slot];
+        int fieldCount = Long.bitCount(present) + (extra == null ? 0 : extra.size());
+        String[] keys = new String[fieldCount];
+        Object[] values = new Object[fieldCount];
+
+        int[] order = keyOrders[slot];
+        if (order != null) {
+            for (int i = 0; i < order.length; i++) {
+                readKey(slot, order[i], keys, values, i);
+            }
+            return CompactRecord.of(keys, values);
+        }
+
+        int i = 0;
+        for (int field = 0; field < schema.size(); field++) {
+            if ((present & (1L << field)) != 0) {
+                readKey(slot, field, keys, values, i++);
+            }
+        }
+        if (extra != null) {
+            for (int j = 0; j < extra.size(); j++) {
+                readKey(slot, WeatherSchema.MAX_FIELDS + j, keys, values, i++);
+            }
+        }
+        return CompactRecord.of(keys, values);
+    }
+
+    /**
+     * Reads one key of a slot into the output arrays.
+     * @param slot The ring slot to read.
+     * @param code A schema field index, or MAX_FIELDS plus the index of a side-table field.
+     * @param keys The keys being rebuilt.
+     * @param values The values being rebuilt.
+     * @param i The position to fill.
+     */
+    private void readKey(int slot, int code, String[] keys, Object[] values, int i) {
+        if (code >= WeatherSchema.MAX_FIELDS) {
+            CompactRecord extra = extras[slot];
+            keys[i] = extra.getKey(code - WeatherSchema.MAX_FIELDS);
+            values[i] = extra.getValue(code - WeatherSchema.MAX_FIELDS);
+        } else {
+            keys[i] = schema.getName(code);
+            values[i] = readField(slot, code, (numberMasks[slot] & (1L << code)) != 0);
+        }
+    }
+
+    /**
+     * Reads a field from its typed column and restores its original JSON type.
+     * @param slot The ring slot to read.
+     * @param field The schema field index.
+     * @param isNumber Whether the value was sent as a JSON number.
+     * @return A String for JSON strings, a JsonElement for JSON numbers.
+     */
+    private Object readField(int slot, int field, boolean isNumber) {
+        String raw = rawTexts[field] == null ? null : rawTexts[field][slot];
+        if (raw != null) {
+            return isNumber ? JsonParser.parseString(raw) : raw;
+        }
+        switch (schema.getType(field)) {
+            case DOUBLE: {
+                double value = doubleColumns[field][slot];
+                return isNumber ? (JsonElement) new JsonPrimitive(value) : Double.toString(value);
+            }
+            case LONG: {
+                long value = longColumns[field][slot];
+                return isNumber ? (JsonElement) new JsonPrimitive(value) : Long.toString(value);
+            }
+            default:
+                return stringColumns[field][slot];
+        }
+    }
+
+    /**
+     * Moves every column of one slot to another slot and clears the source.
+     * @param from The source slot.
+     * @param to The destination slot.
+     */
+    @Override
+    protected void movePayload(int from, int to) {
+        presentMasks[to] = presentMasks[from];
+        numberMasks[to] = numberMasks[from];
+        withoutData[to] = withoutData[from];
+        extras[to] = extras[from];
+        keyOrders[to] = keyOrders[from];
+        for (int field = 0; field < schema.size(); field++) {
+            if (rawTexts[field] != null) {
+                rawTexts[field][to] = rawTexts[field][from];
+            }
+            if (doubleColumns[field] != null) {
+                doubleColumns[field][to] = doubleColumns[field][from];
+            } else if (longColumns[field] != null) {
+                longColumns[field][to] = longColumns[field][from];
+            } else {
+                stringColumns[field][to] = stringColumns[field][from];
+            }
+        }
+        clearPayload(from);
+    }
+
+    /**
+     * Grows the mask arrays, the side table and every typed column to the new capacity.
+     * @param newCapacity The new number of slots.
+     */
+    @Override
+    protected void growPayload(int newCapacity) {
+        long addedSlots = newCapacity - presentMasks.length;
+        presentMasks = Arrays.copyOf(presentMasks, newCapacity);
+        numberMasks = Arrays.copyOf(numberMasks, newCapacity);
+        withoutData = Arrays.copyOf(withoutData, newCapacity);
+        extras = Arrays.copyOf(extras, newCapacity);
+        keyOrders = Arrays.copyOf(keyOrders, newCapacity);
+        for (int field = 0; field < schema.size(); field++) {
+            if (rawTexts[field] != null) {
+                rawTexts[field] = Arrays.copyOf(rawTexts[field], newCapacity);
+                addFixedBytes((long) REFERENCE_SIZE * addedSlots);
+            }
+            if (doubleColumns[field] != null) {
+                doubleColumns[field] = Arrays.copyOf(doubleColumns[field], newCapacity);
+            } else if (longColumns[field] != null) {
+                longColumns[field] = Arrays.copyOf(longColumns[field], newCapacity);
+            } else {
+                stringColumns[field] = Arrays.copyOf(stringColumns[field], newCapacity);
+            }
+        }
+        addFixedBytes(slotBytes() * addedSlots);
+    }
+
+    /**
+     * Resets a slot and releases the references it holds.
+     * @param slot The slot to clear.
+     */
+    @Override
+    protected void clearPayload(int slot) {
+        presentMasks[slot] = 0;
+        numberMasks[slot] = 0;
+        withoutData[slot] = false;
+        extras[slot] = null;
+        keyOrders[slot] = null;
+        for (int field = 0; field < schema.size(); field++) {
+            if (stringColumns[field] != null) {
+                stringColumns[field][slot] = null;
+            }
+            if (rawTexts[field] != null) {
+                rawTexts[field][slot] = null;
+            }
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package main.aggregation;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
 import main.common.JsonHandler;
 import main.common.WeatherData;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -18,7 +19,6 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
-import java.lang.reflect.Type;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -26,17 +26,19 @@ public class DataStoreService {
     private static final long SAVE_INTERVAL_SECONDS = 60;
     private static final long CLEANUP_INTERVAL_SECONDS = 21;
     private static final long THRESHOLD = 40000;
-    private static final String DATA_FILE_PATH = "src" + File.separator + "data" + File.separator + "dataStore.json";
-    private static final String BACKUP_FILE_PATH = "src" + File.separator + "data" + File.separator + "dataStore_backup.json";
-    private static final String TIMESTAMP_FILE_PATH = "src" + File.separator + "data" + File.separator + "timestampStore.json";
-    private static final String TIMESTAMP_BACKUP_FILE_PATH = "src" + File.separator + "data" + File.separator + "timestampStore_backup.json";
+    private static final String TIMESTAMP_FILE_NAME = "timestampStore.json";
+    private static final String TIMESTAMP_BACKUP_FILE_NAME = "timestampStore_backup.json";
+    private static final TypeAdapter<Map<String, Long>> TIMESTAMP_ADAPTER = JsonHandler.getAdapter(new TypeToken<Map<String, Long>>(){});
     private static final AtomicInteger activeASCount = new AtomicInteger(0);
     private static volatile DataStoreService instance; // The single instance
     private final ReentrantLock lock = new ReentrantLock();
     private final ReentrantLock shutdownLock = new ReentrantLock();
     private final ScheduledExecutorService fileSaveScheduler = Executors.newScheduledThreadPool(1);
     private final ScheduledExecutorService cleanupScheduler = Executors.newScheduledThreadPool(1);
-    private Map<String, PriorityQueue<WeatherData>> dataStore = new ConcurrentHashMap<>();
+    private final StorageConfig storageConfig = StorageConfig.fromSystemProperties();
+    private final StorageEngine storageEngine = StorageEngine.fromName(System.getProperty("datastore.engine", HeapStorageEngine.NAME), storageConfig);
+    private final String timestampFilePath = storageConfig.getDataDirectory() + File.separator + TIMESTAMP_FILE_NAME;
+    private final String timestampBackupFilePath = storageConfig.getDataDirectory() + File.separator + TIMESTAMP_BACKUP_FILE_NAME;
     private Map<String, Long> timestampStore = new ConcurrentHashMap<>();
 
     /**
@@ -72,89 +74,34 @@ public class DataStoreService {
     }
 
     /**
-     * Saves the current state of dataStore and timestampStore to their respective files.
+     * Saves the stored weather data through the storage engine and the timestampStore to its file.
      */
     public void saveDataToFile() {
         lock.lock();
         try {
-            saveObjectToFile(getDataMap(), DATA_FILE_PATH, BACKUP_FILE_PATH);
-            saveObjectToFile(getTimestampMap(), TIMESTAMP_FILE_PATH, TIMESTAMP_BACKUP_FILE_PATH);
+            storageEngine.save();
+            SnapshotFiles.save(getTimestampMap(), TIMESTAMP_ADAPTER, timestampFilePath, timestampBackupFilePath);
         } finally {
             lock.unlock();
         }
     }
 
     /**
-     * Serializes the provided object to a JSON string and writes it to a file.
-     * If the primary file fails, it attempts to write to a backup file.
-     * @param object Object to be serialized.
-     * @param filePath Primary file path for saving the data.
-     * @param backupFilePath Backup file path for saving the data.
-     * @param <T> Type of the object.
-     */
-    private <T> void saveObjectToFile(T object, String filePath, String backupFilePath) {
-        try {
-            String jsonData = JsonHandler.serializeObject(object);
-            Files.write(Paths.get(backupFilePath), jsonData.getBytes());
-            Files.move(Paths.get(backupFilePath), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Loads data from the provided file paths into the dataStore and timestampStore.
-     * If the primary file fails to load, it attempts to load from a backup file.
+     * Loads the weather data saved by the storage engine and the timestampStore from its file.
+     * If the primary file fails to load, the backup file is used.
      */
     public void loadDataFromFile() {
         lock.lock();
         try {
-            Map<String, PriorityQueue<WeatherData>> loadedDataStore =
-                    loadObjectFromFile(DATA_FILE_PATH, BACKUP_FILE_PATH, new TypeToken<ConcurrentHashMap<String, PriorityQueue<WeatherData>>>(){}.getType());
-
-            Map<String, Long> loadedTimestampStore =
-                    loadObjectFromFile(TIMESTAMP_FILE_PATH, TIMESTAMP_BACKUP_FILE_PATH, new TypeToken<ConcurrentHashMap<String, Long>>(){}.getType());
+            storageEngine.load();
 
-            setDataMap(loadedDataStore);
+            Map<String, Long> loadedTimestampStore = SnapshotFiles.load(timestampFilePath, timestampBackupFilePath, TIMESTAMP_ADAPTER);
             setTimestampMap(loadedTimestampStore);
         } finally {
             lock.unlock();
         }
     }
 
-    /**
-     * Deserializes and returns an object of the provided type from a file.
-     * If the primary file fails to load, it attempts to load from a backup file.
-     * @param filePath Primary file path for loading the data.
-     * @param backupFilePath Backup file path for loading the data.
-     * @param type Type of object to be returned.
-     * @param <T> Type of the object.
-     * @return Deserialized object.
-     */
-    private <T> T loadObjectFromFile(String filePath, String backupFilePath, Type type) {
-        try {
-            // First, check if the file exists. If it doesn't, create an empty one.
-            File file = new File(filePath);
-            if (!file.exists()) {
-                file.getParentFile().mkdirs(); // Creates the directory structure if not present.
-                file.createNewFile();
-                // Assuming you want an empty JSON representation (i.e., an empty map) as the content.
-                Files.write(Paths.get(filePath), "{}".getBytes());
-            }
-
-            String jsonData = new String(Files.readAllBytes(Paths.get(filePath)));
-            return JsonHandler.deserializeObject(jsonData, type);
-        } catch (IOException e) {
-            try {
-                String backupData = new String(Files.readAllBytes(Paths.get(backupFilePath)));
-                return JsonHandler.deserializeObject(backupData, type);
-            } catch (IOException ex) {
-                ex.printStackTrace();
-                return null;
-            }
-        }
-    }
-
     /**
      * Periodically cleans up stale data from the dataStore and timestampStore.
      */
@@ -174,14 +121,7 @@ public class DataStoreService {
                 return;
             }
 
-            for (String stationID : getAllDataKeys()) {
-                PriorityQueue<WeatherData> queue = getData(stationID);
-                queue.removeIf(weatherData -> staleSenderIds.contains(weatherData.getSenderID()));
-
-                if (queue.isEmpty()) {
-                    removeDataKey(stationID);
-                }
-            }
+            storageEngine.expireSenders(staleSenderIds, currentTime);
         } finally {
             lock.unlock();
         }
@@ -195,21 +135,107 @@ public class DataStoreService {
     public PriorityQueue<WeatherData> getData(String key) {
         lock.lock();
         try {
-            return dataStore.get(key);
+            List<WeatherData> history = storageEngine.getHistory(key);
+            return history.isEmpty() ? null : new PriorityQueue<>(history);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the WeatherData with the largest Lamport time that is less than or equal
+     * to the provided time for the given key.
+     * @param key Key to look up in the dataStore.
+     * @param lamportTime The Lamport time bound.
+     * @return An optional containing the matching WeatherData, or empty if not found.
+     */
+    public Optional<WeatherData> getDataAt(String key, int lamportTime) {
+        lock.lock();
+        try {
+            return storageEngine.getAt(key, lamportTime);
         } finally {
             lock.unlock();
         }
     }
 
     /**
-     * Inserts or updates the dataStore with the provided key-value pair.
+     * Inserts or updates the dataStore with the provided key-value pair. The storage engine applies
+     * the retention policy to the station and the memory budget to the whole store.
      * @param key Key for the data entry.
      * @param value WeatherData to be stored.
      */
     public void putData(String key, WeatherData value) {
         lock.lock();
         try {
-            dataStore.computeIfAbsent(key, k -> new PriorityQueue<>()).add(value);
+            storageEngine.put(key, value, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the approximate memory footprint of all stored weather data, on and off the heap.
+     * @return The estimated size in bytes.
+     */
+    public long getEstimatedBytes() {
+        lock.lock();
+        try {
+            return storageEngine.getEstimatedBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many stations the storage engine evicted to stay within the memory budget.
+     * @return The number of evicted stations.
+     */
+    public long getEvictedStationCount() {
+        return storageEngine.getEvictedStationCount();
+    }
+
+    /**
+     * Returns how many weather data entries the storage engine evicted to stay within the memory budget.
+     * @return The number of evicted entries.
+     */
+    public long getEvictedEntryCount() {
+        return storageEngine.getEvictedEntryCount();
+    }
+
+    /**
+     * Returns the estimated number of bytes the storage engine released by eviction.
+     * @return The number of evicted bytes.
+     */
+    public long getEvictedBytes() {
+        return storageEngine.getEvictedBytes();
+    }
+
+    /**
+     * Returns the engine that stores the station histories.
+     * @return The active storage engine.
+     */
+    public StorageEngine getStorageEngine() {
+        return storageEngine;
+    }
+
+    /**
+     * Returns the storage settings the engine was created with.
+     * @return The storage settings.
+     */
+    public StorageConfig getStorageConfig() {
+        return storageConfig;
+    }
+
+    /**
+     * Computes statistics over a numeric field of a station's history. The heap engine reads its primitive column directly.
+     * @param key Key to look up in the dataStore.
+     * @param field The name of a numeric field, such as air_temp or press.
+     * @return The statistics of the stored values; empty if the station or field is unknown.
+     */
+    public DoubleSummaryStatistics getFieldStatistics(String key, String field) {
+        lock.lock();
+        try {
+            return storageEngine.summarize(key, field);
         } finally {
             lock.unlock();
         }
@@ -250,7 +276,7 @@ public class DataStoreService {
     public Set<String> getAllDataKeys() {
         lock.lock();
         try {
-            return dataStore.keySet();
+            return storageEngine.stationIds();
         } finally {
             lock.unlock();
         }
@@ -276,7 +302,7 @@ public class DataStoreService {
     public void removeDataKey(String key) {
         lock.lock();
         try {
-            dataStore.remove(key);
+            storageEngine.remove(key);
         } finally {
             lock.unlock();
         }
@@ -302,7 +328,9 @@ public class DataStoreService {
     public Map<String, PriorityQueue<WeatherData>> getDataMap() {
         lock.lock();
         try {
-            return new ConcurrentHashMap<>(dataStore);
+            Map<String, PriorityQueue<WeatherData>> copy = new ConcurrentHashMap<>();
+            storageEngine.snapshot().forEach((key, history) -> copy.put(key, new PriorityQueue<>(history)));
+            return copy;
         } finally {
             lock.unlock();
         }
@@ -322,13 +350,14 @@ public class DataStoreService {
     }
 
     /**
-     * Sets the dataStore to the provided map.
+     * Sets the dataStore to the provided map, applying the retention policy to every station
+     * and the memory budget to the whole store.
      * @param map Map to set as the new dataStore.
      */
     public void setDataMap(Map<String, PriorityQueue<WeatherData>> map) {
         lock.lock();
         try {
-            this.dataStore = new ConcurrentHashMap<>(map);
+            storageEngine.restore(map, System.currentTimeMillis());
         } finally {
             lock.unlock();
         }
@@ -378,14 +407,12 @@ public class DataStoreService {
         lock.lock();
         try {
             // Clear the data stores
-            dataStore.clear();
+            storageEngine.clear();
             timestampStore.clear();
 
             // Remove the associated files
-            Files.deleteIfExists(Paths.get(DATA_FILE_PATH));
-            Files.deleteIfExists(Paths.get(BACKUP_FILE_PATH));
-            Files.deleteIfExists(Paths.get(TIMESTAMP_FILE_PATH));
-            Files.deleteIfExists(Paths.get(TIMESTAMP_BACKUP_FILE_PATH));
+            storageEngine.deleteSavedData();
+            SnapshotFiles.delete(timestampFilePath, timestampBackupFilePath);
 
         } catch (IOException e) {
             System.out.println("Error while removing the files.");
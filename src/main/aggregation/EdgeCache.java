@@ -0,0 +1,192 @@
+package main.aggregation;
+
+import main.aggregation.EncodedBodyCache.EncodedBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EdgeCache {
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_TTL_MILLIS = 1000;
+
+    private final Map<String, Entry> entries;
+    private final long ttlNanos;
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();   // Per station, bumped by every PUT
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong invalidationCount = new AtomicLong(0);
+
+    /**
+     * Constructs a cache of GET response bodies keyed by station, which the load balancer shares with
+     * its servers. A hit is answered as soon as the request is read, without a lane, a worker or the
+     * data store. Entries are dropped when a PUT for their station is stored, and expire after the TTL
+     * in case the station changes some other way, such as its data expiring.
+     * @param capacity The maximum number of entries; the least recently used entry is dropped first.
+     * @param ttlMillis How long an entry may be served.
+     */
+    public EdgeCache(int capacity, long ttlMillis) {
+        if (capacity < 1 || ttlMillis < 1) {
+            throw new IllegalArgumentException("Edge cache capacity and TTL must be at least 1.");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Builds the edge cache from system properties, falling back to the defaults:
+     * loadbalancer.edgeCache.capacity and loadbalancer.edgeCache.ttlMillis.
+     * @return The configured edge cache.
+     */
+    public static EdgeCache fromSystemProperties() {
+        return new EdgeCache(
+                Integer.getInteger("loadbalancer.edgeCache.capacity", DEFAULT_CAPACITY),
+                Long.getLong("loadbalancer.edgeCache.ttlMillis", DEFAULT_TTL_MILLIS));
+    }
+
+    /**
+     * Returns the cached body of a station, if it is the one a GET with the given Lamport bound
+     * would read: the entry has not expired and its record is not newer than the bound.
+     * @param stationId The station asked for.
+     * @param pretty True for the pretty-printed body, false for compact JSON.
+     * @param lamportTime The Lamport time bound of the request.
+     * @return The cached body, or null on a miss.
+     */
+    public EncodedBody get(String stationId, boolean pretty, int lamportTime) {
+        String key = key(stationId, pretty);
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.cachedAtNanos >= ttlNanos) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry != null && entry.recordLamportTime <= lamportTime) {
+                hitCount.incrementAndGet();
+                return entry.body;
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Returns the current version of a station, to be read before a lookup whose result may be cached.
+     * @param stationId The station about to be read, may be null.
+     * @return The version; 0 for a station that was never written.
+     */
+    public long getVersion(String stationId) {
+        return stationId == null ? 0 : versions.getOrDefault(stationId, 0L);
+    }
+
+    /**
+     * Caches the body read by a GET, unless a PUT for the station was stored since the lookup began,
+     * as the body may then be stale. PUTs for other stations do not affect the fill. The body must encode the station's newest record, so that it is what any GET
+     * whose bound is at least the record's Lamport time would read.
+     * @param stationId The station that was read.
+     * @param pretty True if the body is pretty-printed, false for compact JSON.
+     * @param recordLamportTime The Lamport time of the record the body encodes.
+     * @param body The encoded body.
+     * @param lookupVersion The version of the station read before the lookup began.
+     */
+    public void put(String stationId, boolean pretty, int recordLamportTime, EncodedBody body, long lookupVersion) {
+        synchronized (entries) {
+            if (getVersion(stationId) == lookupVersion) {
+                entries.put(key(stationId, pretty), new Entry(body, recordLamportTime, System.nanoTime()));
+            }
+        }
+    }
+
+    /**
+     * Drops the entries of a station after a PUT for it was stored, and turns away lookups of the
+     * station already in flight.
+     * @param stationId The station that was written.
+     */
+    public void invalidate(String stationId) {
+        synchronized (entries) {
+            versions.merge(stationId, 1L, Long::sum);
+            entries.remove(key(stationId, false));
+            entries.remove(key(stationId, true));
+        }
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * Builds the key of a station and encoding.
+     * @param stationId The station.
+     * @param pretty True for the pretty-printed body.
+     * @return The key.
+     */
+    private static String key(String stationId, boolean pretty) {
+        return pretty ? stationId + "/pretty" : stationId;
+    }
+
+    /**
+     * Returns how many GETs were answered from the cache.
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns how many cacheable GETs were passed on to a server.
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the share of cacheable GETs answered from the cache.
+     * @return The hit ratio, or 0 if there was no cacheable GET.
+     */
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns how many PUTs invalidated a station.
+     * @return The number of invalidations.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Returns the number of cached entries, including expired ones not yet dropped.
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        private final EncodedBody body;
+        private final int recordLamportTime;
+        private final long cachedAtNanos;
+
+        /**
+         * Constructs a cache entry.
+         * @param body The encoded body.
+         * @param recordLamportTime The Lamport time of the record the body encodes.
+         * @param cachedAtNanos The System.nanoTime at which the entry was cached.
+         */
+        Entry(EncodedBody body, int recordLamportTime, long cachedAtNanos) {
+            this.body = body;
+            this.recordLamportTime = recordLamportTime;
+            this.cachedAtNanos = cachedAtNanos;
+        }
+    }
+}
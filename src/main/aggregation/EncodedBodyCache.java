@@ -0,0 +1,163 @@
+package main.aggregation;
+
+import main.network.HttpCompression;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class EncodedBodyCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<String, EncodedBody> entries;
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * Constructs a cache that keeps the encoded bodies of the most recently read records.
+     * @param capacity The maximum number of bodies kept; the least recently used body is dropped first.
+     */
+    public EncodedBodyCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedBody> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached body for a stored record, encoding it on the first request.
+     * The key must identify the stored record and the encoding, so that a cached body never goes stale.
+     * @param key The key of the record and its encoding.
+     * @param encoder Produces the JSON text of the record when it is not cached.
+     * @return The encoded body.
+     */
+    public EncodedBody get(String key, Supplier<String> encoder) {
+        synchronized (entries) {
+            EncodedBody body = entries.get(key);
+            if (body != null) {
+                hitCount.incrementAndGet();
+                return body;
+            }
+        }
+
+        missCount.incrementAndGet();
+        EncodedBody body = new EncodedBody(encoder.get());
+        synchronized (entries) {
+            EncodedBody existing = entries.putIfAbsent(key, body);
+            return existing != null ? existing : body;
+        }
+    }
+
+    /**
+     * Returns how many requests were served from the cache.
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns how many requests had to encode the record.
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of cached bodies.
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static class EncodedBody {
+        private final String text;
+        private final byte[] bytes;
+        private volatile byte[] gzipBytes;
+        private volatile ByteBuffer buffer;
+        private volatile ByteBuffer gzipBuffer;
+
+        /**
+         * Constructs a body from its JSON text.
+         * @param text The JSON text of the record.
+         */
+        EncodedBody(String text) {
+            this.text = text;
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the JSON text of the body.
+         * @return The JSON text.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the body as UTF-8 bytes.
+         * @return The uncompressed body.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the gzip-compressed body, compressing it on the first call only.
+         * @return The compressed body.
+         */
+        public byte[] getGzipBytes() {
+            byte[] compressed = gzipBytes;
+            if (compressed == null) {
+                compressed = HttpCompression.gzip(bytes); // A concurrent first call may compress twice, with the same result
+                gzipBytes = compressed;
+            }
+            return compressed;
+        }
+
+        /**
+         * Returns the body in a read-only direct buffer, copying it off-heap on the first call only.
+         * Socket channels write direct buffers without first copying them into a temporary one.
+         * @return A new view of the uncompressed body, positioned at its start.
+         */
+        public ByteBuffer getBuffer() {
+            ByteBuffer direct = buffer;
+            if (direct == null) {
+                direct = toDirectBuffer(bytes);
+                buffer = direct;
+            }
+            return direct.duplicate();
+        }
+
+        /**
+         * Returns the gzip-compressed body in a read-only direct buffer, compressing it on the first call only.
+         * @return A new view of the compressed body, positioned at its start.
+         */
+        public ByteBuffer getGzipBuffer() {
+            ByteBuffer direct = gzipBuffer;
+            if (direct == null) {
+                direct = toDirectBuffer(getGzipBytes());
+                gzipBuffer = direct;
+            }
+            return direct.duplicate();
+        }
+
+        /**
+         * Copies bytes into a new read-only direct buffer.
+         * @param source The bytes to copy.
+         * @return The direct buffer.
+         */
+        private static ByteBuffer toDirectBuffer(byte[] source) {
+            return ByteBuffer.allocateDirect(source.length).put(source).flip().asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package main.aggregation;
+
+import java.util.List;
+import java.util.Map;
+
+public interface EvictionPolicy {
+    /**
+     * Selects the stations to evict so that at least the requested number of bytes is freed.
+     * @param stations The stored station histories, keyed by station ID.
+     * @param bytesToFree The number of bytes that must be released.
+     * @param protectedKey A station that must not be evicted, such as the one just written. May be null.
+     * @return The station IDs to evict, in eviction order.
+     */
+    List<String> selectVictims(Map<String, StationHistory> stations, long bytesToFree, String protectedKey);
+
+    /**
+     * Returns the name under which this policy is configured.
+     * @return The policy name.
+     */
+    String getName();
+
+    /**
+     * Creates the eviction policy registered under the given name.
+     * @param name Either "lru" (least recently read) or "lamport" (oldest Lamport time).
+     * @return The matching eviction policy.
+     */
+    static EvictionPolicy fromName(String name) {
+        if (LruEvictionPolicy.NAME.equalsIgnoreCase(name)) {
+            return new LruEvictionPolicy();
+        } else if (OldestLamportEvictionPolicy.NAME.equalsIgnoreCase(name)) {
+            return new OldestLamportEvictionPolicy();
+        }
+        throw new IllegalArgumentException("Unknown eviction policy: " + name);
+    }
+}
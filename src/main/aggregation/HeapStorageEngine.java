@@ -0,0 +1,23 @@
+package main.aggregation;
+
+public class HeapStorageEngine extends InMemoryStorageEngine {
+    public static final String NAME = "heap";
+
+    /**
+     * Constructs the default engine, which keeps every station history in typed columns on the Java heap.
+     * @param config The storage settings.
+     */
+    public HeapStorageEngine(StorageConfig config) {
+        super(config);
+    }
+
+    @Override
+    protected StationHistory createHistory(int maxEntries) {
+        return new ColumnarStationHistory(maxEntries, getConfig().getSchema());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
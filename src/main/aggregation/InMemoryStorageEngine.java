@@ -0,0 +1,247 @@
+package main.aggregation;
+
+import main.common.WeatherData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public abstract class InMemoryStorageEngine implements StorageEngine {
+    private static final double EVICTION_TARGET_RATIO = 0.9; // Evict down to 90% of the budget to amortize evictions
+    private static final String DATA_FILE_NAME = "dataStore.json";
+    private static final String BACKUP_FILE_NAME = "dataStore_backup.json";
+
+    private final StorageConfig config;
+    private final String dataFilePath;
+    private final String backupFilePath;
+    private final StationSnapshotAdapter snapshotAdapter = new StationSnapshotAdapter();
+    private final AtomicLong evictedStationCount = new AtomicLong(0);
+    private final AtomicLong evictedEntryCount = new AtomicLong(0);
+    private final AtomicLong evictedBytes = new AtomicLong(0);
+    private long estimatedBytes = 0;
+    private Map<String, StationHistory> dataStore = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an engine that keeps a ring-backed history per station in memory and saves
+     * all readings as one JSON file in the configured data directory.
+     * @param config The storage settings.
+     */
+    protected InMemoryStorageEngine(StorageConfig config) {
+        this.config = config;
+        this.dataFilePath = config.getDataDirectory() + File.separator + DATA_FILE_NAME;
+        this.backupFilePath = config.getDataDirectory() + File.separator + BACKUP_FILE_NAME;
+    }
+
+    /**
+     * Creates an empty history for a station.
+     * @param maxEntries The maximum number of entries kept for the station, or RetentionPolicy.UNLIMITED.
+     * @return The new station history.
+     */
+    protected abstract StationHistory createHistory(int maxEntries);
+
+    /**
+     * Returns the storage settings of this engine.
+     * @return The storage settings.
+     */
+    protected StorageConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Stores a reading in the station's history. Once the retention policy's entry limit is reached,
+     * the entry with the lowest Lamport time is dropped, and entries past their Lamport or wall-clock
+     * age are dropped as well. If the engine then exceeds its memory budget, other
+     * stations are evicted.
+     * @param stationId The station the reading belongs to.
+     * @param data The reading to store.
+     * @param storedAtMillis The wall-clock time at which the reading is stored.
+     */
+    @Override
+    public void put(String stationId, WeatherData data, long storedAtMillis) {
+        StationHistory history = dataStore.get(stationId);
+        if (history == null) {
+            history = createHistory(config.getRetentionPolicy().getMaxEntries());
+            dataStore.put(stationId, history);
+            estimatedBytes += history.getEstimatedBytes();
+        }
+
+        long bytesBefore = history.getEstimatedBytes();
+        history.add(data, storedAtMillis);
+        history.applyRetention(config.getRetentionPolicy(), storedAtMillis);
+        estimatedBytes += history.getEstimatedBytes() - bytesBefore;
+
+        enforceMemoryBudget(stationId);
+    }
+
+    @Override
+    public Optional<WeatherData> getAt(String stationId, int lamportTime) {
+        StationHistory history = dataStore.get(stationId);
+        if (history == null) {
+            return Optional.empty();
+        }
+        history.touch(System.currentTimeMillis());
+        return history.latestAtOrBefore(lamportTime);
+    }
+
+    @Override
+    public List<WeatherData> getHistory(String stationId) {
+        StationHistory history = dataStore.get(stationId);
+        if (history == null) {
+            return List.of();
+        }
+        history.touch(System.currentTimeMillis());
+        return history.toList();
+    }
+
+    @Override
+    public int expireSenders(Set<String> senderIds, long currentTimeMillis) {
+        int removed = 0;
+        for (Map.Entry<String, StationHistory> entry : dataStore.entrySet()) {
+            StationHistory history = entry.getValue();
+            long bytesBefore = history.getEstimatedBytes();
+            removed += history.removeBySender(senderIds::contains);
+            removed += history.applyRetention(config.getRetentionPolicy(), currentTimeMillis);
+            estimatedBytes += history.getEstimatedBytes() - bytesBefore;
+
+            if (history.isEmpty()) {
+                remove(entry.getKey());
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Map<String, List<WeatherData>> snapshot() {
+        Map<String, List<WeatherData>> copy = new ConcurrentHashMap<>();
+        dataStore.forEach((stationId, history) -> copy.put(stationId, history.toList()));
+        return copy;
+    }
+
+    @Override
+    public void restore(Map<String, ? extends Collection<WeatherData>> snapshot, long currentTimeMillis) {
+        Map<String, StationHistory> histories = new ConcurrentHashMap<>();
+        snapshot.forEach((stationId, readings) -> {
+            StationHistory history = createHistory(config.getRetentionPolicy().getMaxEntries());
+            readings.stream().sorted().forEach(weatherData -> history.add(weatherData,
+                    weatherData.getStoredAtMillis() == WeatherData.NOT_STORED ? currentTimeMillis : weatherData.getStoredAtMillis()));
+            history.applyRetention(config.getRetentionPolicy(), currentTimeMillis);
+            if (!history.isEmpty()) {
+                histories.put(stationId, history);
+            }
+        });
+        dataStore.values().forEach(StationHistory::release);
+        this.dataStore = histories;
+        this.estimatedBytes = histories.values().stream().mapToLong(StationHistory::getEstimatedBytes).sum();
+        enforceMemoryBudget(null);
+    }
+
+    @Override
+    public Set<String> stationIds() {
+        return new HashSet<>(dataStore.keySet());
+    }
+
+    @Override
+    public boolean remove(String stationId) {
+        StationHistory removed = dataStore.remove(stationId);
+        if (removed == null) {
+            return false;
+        }
+        estimatedBytes -= removed.getEstimatedBytes();
+        removed.release();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        dataStore.values().forEach(StationHistory::release);
+        dataStore.clear();
+        estimatedBytes = 0;
+    }
+
+    @Override
+    public void save() {
+        SnapshotFiles.save(snapshot(), snapshotAdapter, dataFilePath, backupFilePath);
+    }
+
+    @Override
+    public void load() {
+        Map<String, List<WeatherData>> loaded = SnapshotFiles.load(dataFilePath, backupFilePath, snapshotAdapter);
+        restore(loaded == null ? Map.of() : loaded, System.currentTimeMillis());
+    }
+
+    @Override
+    public void deleteSavedData() throws IOException {
+        SnapshotFiles.delete(dataFilePath, backupFilePath);
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public DoubleSummaryStatistics summarize(String stationId, String field) {
+        StationHistory history = dataStore.get(stationId);
+        return history == null ? new DoubleSummaryStatistics() : history.summarize(field);
+    }
+
+    /**
+     * Evicts whole stations chosen by the eviction policy while the engine exceeds its memory budget.
+     * Eviction continues down to a fraction of the budget so that a burst of new stations does not
+     * trigger an eviction on every put.
+     * @param protectedKey The station that was just written and must not be evicted.
+     */
+    private void enforceMemoryBudget(String protectedKey) {
+        long memoryBudgetBytes = config.getMemoryBudgetBytes();
+        if (estimatedBytes <= memoryBudgetBytes) {
+            return;
+        }
+
+        long bytesToFree = estimatedBytes - (long) (memoryBudgetBytes * EVICTION_TARGET_RATIO);
+        List<String> victims = config.getEvictionPolicy().selectVictims(dataStore, bytesToFree, protectedKey);
+        for (String victim : victims) {
+            StationHistory evicted = dataStore.get(victim);
+            if (evicted != null) {
+                evictedStationCount.incrementAndGet();
+                evictedEntryCount.addAndGet(evicted.size());
+                evictedBytes.addAndGet(evicted.getEstimatedBytes());
+                remove(victim);
+            }
+        }
+    }
+
+    /**
+     * Returns how many stations were evicted to stay within the memory budget.
+     * @return The number of evicted stations.
+     */
+    @Override
+    public long getEvictedStationCount() {
+        return evictedStationCount.get();
+    }
+
+    /**
+     * Returns how many weather data entries were evicted to stay within the memory budget.
+     * @return The number of evicted entries.
+     */
+    @Override
+    public long getEvictedEntryCount() {
+        return evictedEntryCount.get();
+    }
+
+    /**
+     * Returns the estimated number of bytes released by eviction.
+     * @return The number of evicted bytes.
+     */
+    @Override
+    public long getEvictedBytes() {
+        return evictedBytes.get();
+    }
+}
@@ -0,0 +1,75 @@
+package main.aggregation;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyAverage {
+    public static final double DEFAULT_SMOOTHING = 0.2;
+    public static final long DEFAULT_HALF_LIFE_MILLIS = 5000;
+
+    private final double smoothing;
+    private final long halfLifeNanos;
+    private double averageMillis;
+    private long updatedAtNanos;
+
+    /**
+     * Constructs an exponentially weighted moving average of request latency that also decays with time.
+     * Without the decay, a server that went idle after a burst of slow requests would keep reporting
+     * the burst's latency until its next request, and the autoscaler would keep treating it as overloaded.
+     * @param smoothing The weight of each new sample, between 0 (exclusive) and 1.
+     * @param halfLifeMillis The time without samples after which the average has halved.
+     * @param nowNanos The current System.nanoTime.
+     */
+    public LatencyAverage(double smoothing, long halfLifeMillis, long nowNanos) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1].");
+        }
+        if (halfLifeMillis < 1) {
+            throw new IllegalArgumentException("halfLifeMillis must be at least 1.");
+        }
+        this.smoothing = smoothing;
+        this.halfLifeNanos = TimeUnit.MILLISECONDS.toNanos(halfLifeMillis);
+        this.updatedAtNanos = nowNanos;
+    }
+
+    /**
+     * Builds the average with the default smoothing and the half-life from aggregation.latency.halfLifeMillis.
+     * @return The latency average.
+     */
+    public static LatencyAverage fromSystemProperties() {
+        return new LatencyAverage(DEFAULT_SMOOTHING,
+                Long.getLong("aggregation.latency.halfLifeMillis", DEFAULT_HALF_LIFE_MILLIS), System.nanoTime());
+    }
+
+    /**
+     * Decays the average to the current time and folds in the latency of a served request.
+     * @param latencyNanos The latency of the request.
+     * @param nowNanos The current System.nanoTime.
+     */
+    public synchronized void record(long latencyNanos, long nowNanos) {
+        averageMillis = decayedAt(nowNanos);
+        averageMillis += smoothing * (latencyNanos / 1_000_000.0 - averageMillis);
+        updatedAtNanos = nowNanos;
+    }
+
+    /**
+     * Returns the average, decayed by the time since the last sample.
+     * @param nowNanos The current System.nanoTime.
+     * @return The average latency in milliseconds, or 0 if no request was recorded.
+     */
+    public synchronized double getMillis(long nowNanos) {
+        return decayedAt(nowNanos);
+    }
+
+    /**
+     * Computes the stored average halved once for every half-life since the last sample.
+     * @param nowNanos The current System.nanoTime.
+     * @return The decayed average in milliseconds.
+     */
+    private double decayedAt(long nowNanos) {
+        long elapsedNanos = nowNanos - updatedAtNanos;
+        if (elapsedNanos <= 0) {
+            return averageMillis;
+        }
+        return averageMillis * Math.pow(0.5, (double) elapsedNanos / halfLifeNanos);
+    }
+}
@@ -1,7 +1,11 @@
 package main.aggregation;
 
+import main.aggregation.RateLimiter.Kind;
+import main.network.AcceptorPool;
+import main.network.Connection;
 import main.network.NetworkHandler;
 import main.network.SocketNetworkHandler;
+import main.network.UnixDomainSocket;
 
 import java.net.*;
 import java.io.*;
@@ -12,20 +16,59 @@ public class LoadBalancer {
     private static final int DEFAULT_PORT = 4567;
     private volatile boolean shutdown = false;
     private int serverIndex = 0;
-    private Thread acceptThread;
+    private AcceptorPool acceptorPool;
     private NetworkHandler networkHandler;
     private ScheduledExecutorService healthCheckScheduler;
     private List<AggregationServer> aggregationServers;
+    private RateLimiter rateLimiter;
+    private OutlierDetector outlierDetector;
+    private EdgeCache edgeCache;
+    private Autoscaler autoscaler;
 
     /**
      * Constructs a LoadBalancer with the given network handler and a list of
-     * pre-configured AggregationServer instances.
+     * pre-configured AggregationServer instances. Rate limiting is off unless
+     * loadbalancer.rateLimit.enabled is set.
      * @param networkHandler The network handler for socket communication.
      * @param aggregationServers The list of available AggregationServers.
      */
     public LoadBalancer(NetworkHandler networkHandler, List<AggregationServer> aggregationServers) {
+        this(networkHandler, aggregationServers,
+                Boolean.getBoolean("loadbalancer.rateLimit.enabled") ? RateLimiter.fromSystemProperties() : null);
+    }
+
+    /**
+     * Constructs a LoadBalancer that limits request rates with the given rate limiter. Remote addresses
+     * are limited here before handoff; the servers limit each SenderID once they have read the request.
+     * @param networkHandler The network handler for socket communication.
+     * @param aggregationServers The list of available AggregationServers.
+     * @param rateLimiter The rate limiter shared with the AggregationServers, or null to disable rate limiting.
+     */
+    public LoadBalancer(NetworkHandler networkHandler, List<AggregationServer> aggregationServers, RateLimiter rateLimiter) {
+        this(networkHandler, aggregationServers, rateLimiter, OutlierDetector.fromSystemProperties());
+    }
+
+    /**
+     * Constructs a LoadBalancer that also ejects servers whose error rate or latency makes them
+     * outliers. Each server reports the outcome of its requests to the outlier detector.
+     * @param networkHandler The network handler for socket communication.
+     * @param aggregationServers The list of available AggregationServers.
+     * @param rateLimiter The rate limiter shared with the AggregationServers, or null to disable rate limiting.
+     * @param outlierDetector The outlier detector that decides which servers get traffic.
+     */
+    public LoadBalancer(NetworkHandler networkHandler, List<AggregationServer> aggregationServers, RateLimiter rateLimiter,
+                        OutlierDetector outlierDetector) {
         this.networkHandler = networkHandler;
         this.aggregationServers = new ArrayList<>(aggregationServers);
+        this.rateLimiter = rateLimiter;
+        this.outlierDetector = outlierDetector;
+        this.edgeCache = Boolean.getBoolean("loadbalancer.edgeCache.enabled") ? EdgeCache.fromSystemProperties() : null;
+        for (AggregationServer server : this.aggregationServers) {
+            server.setRateLimiter(rateLimiter);
+            server.setOutcomeListener(outlierDetector);
+            server.setEdgeCache(edgeCache);
+        }
+        outlierDetector.setServerCount(this.aggregationServers.size());
     }
 
     /**
@@ -40,9 +83,13 @@ public class LoadBalancer {
      * Adds a new server to the LoadBalancer's rotation.
      * @param server The server to be added.
      */
-    public void addServer(AggregationServer server) {
+    public synchronized void addServer(AggregationServer server) {
         if (server != null && !aggregationServers.contains(server)) {
+            server.setRateLimiter(rateLimiter);
+            server.setOutcomeListener(outlierDetector);
+            server.setEdgeCache(edgeCache);
             aggregationServers.add(server);
+            outlierDetector.setServerCount(aggregationServers.size());
         }
     }
 
@@ -50,54 +97,98 @@ public class LoadBalancer {
      * Removes a server from the LoadBalancer's rotation.
      * @param server The server to be removed.
      */
-    public void removeServer(AggregationServer server) {
+    public synchronized void removeServer(AggregationServer server) {
         aggregationServers.remove(server);
+        outlierDetector.forget(server);
+        outlierDetector.setServerCount(aggregationServers.size());
+    }
+
+    /**
+     * Takes a server out of service without dropping requests: removes it from the rotation,
+     * drains the requests already handed to it, then shuts it down without draining again, so that
+     * retiring takes no longer than the drain.
+     * @param server The server to retire.
+     * @param drainTimeoutMillis How long the server may keep serving pending requests before redirecting them.
+     * @return True if the server drained before shutting down, otherwise false.
+     */
+    public boolean retireServer(AggregationServer server, long drainTimeoutMillis) {
+        removeServer(server);
+        boolean drained = server.drain(drainTimeoutMillis);
+        server.shutdown(0);
+        System.out.println("Retired Aggregation Server on port " + server.getPort() + (drained ? ", drained" : ", not fully drained"));
+        return drained;
     }
 
     /**
      * Starts the LoadBalancer on the specified port. Initializes health
      * check scheduler to periodically verify the status of AggregationServers.
+     * Connections are accepted on the acceptor threads and forwarded to an AggregationServer on the
+     * handoff threads, so that greeting a client never holds up accepting.
      * @param port The port number on which LoadBalancer listens for requests.
      */
     public void start(int port) {
         System.out.println("Started LoadBalancer on port: " + port);
-        networkHandler.startServer(port);
+        initializeHealthChecks();
 
+        acceptorPool = AcceptorPool.fromSystemProperties();
+        try {
+            acceptorPool.start(networkHandler, port, this::handleClientSocket);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts the LoadBalancer on a UNIX domain socket, for content servers and clients on the same host.
+     * @param address The path of the socket on which LoadBalancer listens for requests.
+     */
+    public void start(UnixDomainSocketAddress address) {
+        System.out.println("Started LoadBalancer on " + UnixDomainSocket.SCHEME + address.getPath());
+        initializeHealthChecks();
+
+        acceptorPool = AcceptorPool.fromSystemProperties();
+        acceptorPool.start(networkHandler, address, this::handleClientSocket);
+    }
+
+    /**
+     * Starts the health check scheduler and the shutdown monitor.
+     */
+    private void initializeHealthChecks() {
         healthCheckScheduler = Executors.newScheduledThreadPool(1);
         healthCheckScheduler.scheduleAtFixedRate(this::checkServerHealth, 0, 30, TimeUnit.SECONDS);
 
         initializeShutdownMonitor();
-
-        initializeAcceptThread();
     }
 
     /**
-     * Accepts incoming client connections and forwards them to an available
-     * AggregationServer instance.
+     * Retrieves the acceptor pool, which is only set once the LoadBalancer has started.
+     * @return The acceptor pool, or null if the LoadBalancer has not started.
      */
-    private void initializeAcceptThread() {
-        acceptThread = new Thread(() -> {
-            while (!shutdown) {
-                try {
-                    Socket clientSocket = networkHandler.acceptConnection();
-                    if (clientSocket != null) {
-                        handleClientSocket(clientSocket);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
-        acceptThread.start();
+    public AcceptorPool getAcceptorPool() {
+        return acceptorPool;
     }
 
     /**
      * Handles the client socket connection, forwards it to the next available
-     * AggregationServer, or sends an error if no server is available.
+     * AggregationServer, or sends an error if no server is available. A remote address
+     * over its rate limit gets a 429 response with Retry-After instead.
      * @param clientSocket The client socket to handle.
      */
-    private void handleClientSocket(Socket clientSocket) {
+    public void handleClientSocket(Connection clientSocket) {
         try {
+            InetAddress remoteAddress = clientSocket.getInetAddress();
+            int retryAfter = rateLimiter == null ? 0
+                    : rateLimiter.tryAcquire(Kind.ADDRESS, remoteAddress == null ? null : remoteAddress.getHostAddress());
+            if (retryAfter > 0) {
+                System.out.println("Rate limit exceeded by " + remoteAddress + ", retry after " + retryAfter + "s");
+                String limitedResponse = "HTTP/1.1 429 Too Many Requests\r\n" +
+                                    "LamportClock: -1\r\n" +
+                                    "Retry-After: " + retryAfter + "\r\n" +
+                                    "\r\n";
+                networkHandler.sendResponseToClient(limitedResponse, clientSocket);
+                return;
+            }
+
             AggregationServer nextServer = getNextAggregationServer();
             if (nextServer != null) {
                 // Pass the client socket to the chosen AS.
@@ -119,8 +210,54 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Sets the autoscaler that resizes the server pool. It is stopped when the LoadBalancer shuts down.
+     * @param autoscaler The autoscaler, already started.
+     */
+    public void setAutoscaler(Autoscaler autoscaler) {
+        this.autoscaler = autoscaler;
+    }
+
+    /**
+     * Returns the rate limiter applied to remote addresses and senders.
+     * @return The rate limiter, or null if rate limiting is disabled.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the edge cache of GET responses and shares it with the servers in rotation, replacing the
+     * one from loadbalancer.edgeCache.enabled.
+     * @param edgeCache The edge cache, or null to disable it.
+     */
+    public synchronized void setEdgeCache(EdgeCache edgeCache) {
+        this.edgeCache = edgeCache;
+        for (AggregationServer server : aggregationServers) {
+            server.setEdgeCache(edgeCache);
+        }
+    }
+
+    /**
+     * Returns the edge cache of GET responses, with its hit ratio.
+     * @return The edge cache, or null if it is disabled.
+     */
+    public EdgeCache getEdgeCache() {
+        return edgeCache;
+    }
+
+    /**
+     * Returns the outlier detector that ejects servers with high error rates or latency.
+     * @return The outlier detector.
+     */
+    public OutlierDetector getOutlierDetector() {
+        return outlierDetector;
+    }
+
     /**
      * Retrieves the next available AggregationServer using a round-robin approach.
+     * Draining servers get no new work, and neither do servers ejected by the outlier detector,
+     * unless every live server is ejected; then the first live one is used rather than none.
      * @return The next AggregationServer, or null if no server is available.
      */
     public synchronized AggregationServer getNextAggregationServer() {
@@ -129,17 +266,23 @@ public class LoadBalancer {
         }
 
         AggregationServer nextServer;
+        AggregationServer fallback = null;
         int startIndex = serverIndex; // To prevent infinite loops if none of the servers are alive.
 
         do {
             nextServer = aggregationServers.get(serverIndex);
             serverIndex = (serverIndex + 1) % aggregationServers.size(); // This ensures round-robin behavior
-            if (nextServer.isAlive()) {
-                return nextServer;
+            if (!nextServer.isDraining() && nextServer.isAlive()) {
+                if (outlierDetector.allowRequest(nextServer)) {
+                    return nextServer;
+                }
+                if (fallback == null) {
+                    fallback = nextServer;
+                }
             }
         } while (serverIndex != startIndex); // Ensures we only loop through the servers once.
 
-        return null; // None of the servers are alive.
+        return fallback; // Null if none of the servers are alive.
     }
 
     /**
@@ -153,8 +296,10 @@ public class LoadBalancer {
             if (!server.isAlive()) {
                 System.out.println("Remove Aggregation Server on port: " + server.getPort());
                 iterator.remove(); // Removes unreachable servers from the list.
+                outlierDetector.forget(server);
             }
         }
+        outlierDetector.setServerCount(aggregationServers.size());
     }
 
     /**
@@ -185,18 +330,21 @@ public class LoadBalancer {
 
         checkServerHealth();
 
-        // 0. Set the shutdown flag to true to stop the while loop in acceptThread
+        // 0. Set the shutdown flag to true
         shutdown = true;
 
-        // 2. Stop the acceptThread
-        if (acceptThread != null) {
-            acceptThread.interrupt();  // Interrupt the thread if it's blocked on I/O operations
+        // 2. Stop the acceptor threads
+        if (acceptorPool != null) {
+            acceptorPool.stop();
         }
 
-        // 3. Stop the health check scheduler
+        // 3. Stop the health check scheduler and the autoscaler
         if (healthCheckScheduler != null) {
             healthCheckScheduler.shutdownNow();
         }
+        if (autoscaler != null) {
+            autoscaler.stop();
+        }
 
         // 1. Signal each AggregationServer to shut down gracefully.
         for (AggregationServer server : aggregationServers) {
@@ -213,14 +361,19 @@ public class LoadBalancer {
      * The main method for starting up the LoadBalancer. It also initializes and
      * starts a specified number of AggregationServer instances.
      * @param args Command line arguments, specifying port number and the number of AggregationServers.
+     *             The port may instead be a UNIX domain socket path of the form unix:/path, for content servers
+     *             and clients on the same host; the AggregationServers then listen on the path with a suffix.
      */
     public static void main(String[] args) {
         // Default values
         int port = DEFAULT_PORT;
         int numberOfAS = 3;  // Default to 3 AS instances
+        String unixPath = null;
 
         // Parse the command line arguments
-        if (args.length > 0) {
+        if (args.length > 0 && UnixDomainSocket.isUnixAddress(args[0])) {
+            unixPath = UnixDomainSocket.addressOf(args[0]).getPath().toString();
+        } else if (args.length > 0) {
             port = Integer.parseInt(args[0]);
         }
         if (args.length > 1) {
@@ -241,6 +394,7 @@ public class LoadBalancer {
         int defaultASPort = port;
         for (int i = 1; i <= numberOfAS; i++) {
             int serverPort = defaultASPort + i;
+            String serverPath = unixPath == null ? null : unixPath + ".as" + i;
 
             NetworkHandler asNetworkHandler = new SocketNetworkHandler();
             AggregationServer server = new AggregationServer(asNetworkHandler);
@@ -248,7 +402,11 @@ public class LoadBalancer {
 
             // Start each AggregationServer instance in a new thread
             new Thread(() -> {
-                server.start(serverPort);
+                if (serverPath != null) {
+                    server.start(UnixDomainSocket.addressOf(serverPath));
+                } else {
+                    server.start(serverPort);
+                }
             }).start();
         }
 
@@ -256,6 +414,17 @@ public class LoadBalancer {
         LoadBalancer loadBalancer = new LoadBalancer(lbNetworkHandler, serverInstances);
 
         // Start the LoadBalancer
-        loadBalancer.start(port);
+        if (unixPath != null) {
+            loadBalancer.start(UnixDomainSocket.addressOf(unixPath));
+        } else {
+            loadBalancer.start(port);
+        }
+
+        // Resize the pool with the load, starting new servers on the ports after the initial ones
+        if (Boolean.getBoolean("aggregation.autoscale.enabled")) {
+            Autoscaler autoscaler = Autoscaler.fromSystemProperties(loadBalancer, port + numberOfAS + 1, numberOfAS);
+            autoscaler.start(Long.getLong("aggregation.autoscale.intervalMillis", Autoscaler.DEFAULT_INTERVAL_MILLIS));
+            loadBalancer.setAutoscaler(autoscaler);
+        }
     }
 }
@@ -0,0 +1,19 @@
+package main.aggregation;
+
+import java.util.Comparator;
+
+public class LruEvictionPolicy extends RankedEvictionPolicy {
+    public static final String NAME = "lru";
+
+    /**
+     * Constructs a policy that evicts the stations whose data was read least recently by a GET.
+     */
+    public LruEvictionPolicy() {
+        super(Comparator.comparingLong(StationHistory::getLastAccessMillis));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
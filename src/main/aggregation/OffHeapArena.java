@@ -0,0 +1,195 @@
+package main.aggregation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OffHeapArena {
+    public static final int DEFAULT_SLAB_BYTES = 4 * 1024 * 1024;
+    private static final int MIN_BLOCK_SHIFT = 6; // 64-byte blocks at least
+
+    private final int slabBytes;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final List<ArrayDeque<Long>> freeLists = new ArrayList<>(); // Indexed by block size class
+    private int bumpSlab = -1;      // Slab that new blocks are carved from
+    private int bumpOffset = 0;
+    private long reservedBytes = 0;
+    private long allocatedBytes = 0;
+
+    /**
+     * Constructs an arena that reserves direct memory in slabs of the given size.
+     * Memory is reserved lazily, on the first allocation that does not fit.
+     * @param slabBytes The size of each slab; must be a power of two of at least 64 bytes.
+     */
+    public OffHeapArena(int slabBytes) {
+        if (slabBytes < (1 << MIN_BLOCK_SHIFT) || Integer.bitCount(slabBytes) != 1) {
+            throw new IllegalArgumentException("slabBytes must be a power of two of at least 64.");
+        }
+        this.slabBytes = slabBytes;
+        for (int sizeClass = 0; sizeClass < 32; sizeClass++) {
+            freeLists.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Returns the size of the block used for a record of the given length. Blocks are powers of two,
+     * so a freed block can be reused by any record of the same size class.
+     * @param length The record length in bytes.
+     * @return The block size in bytes.
+     */
+    public static int blockSize(int length) {
+        return 1 << sizeClass(length);
+    }
+
+    /**
+     * Reserves a block for a record of the given length. Freed blocks of the same size class are
+     * reused first; otherwise the block is carved from the current slab, and a new slab is reserved
+     * when that one is full. Records larger than a slab get a dedicated slab.
+     * @param length The record length in bytes.
+     * @return The address of the block, to be passed to write, read and free.
+     */
+    public synchronized long allocate(int length) {
+        int sizeClass = sizeClass(length);
+        int size = 1 << sizeClass;
+        allocatedBytes += size;
+
+        Long reused = freeLists.get(sizeClass).poll();
+        if (reused != null) {
+            return reused;
+        }
+        if (size > slabBytes) {
+            return address(reserveSlab(size), 0);
+        }
+        if (bumpSlab < 0 || bumpOffset + size > slabBytes) {
+            retireBumpSlab();
+            bumpSlab = reserveSlab(slabBytes);
+            bumpOffset = 0;
+        }
+        long address = address(bumpSlab, bumpOffset);
+        bumpOffset += size;
+        return address;
+    }
+
+    /**
+     * Returns a block to its size class free list so that a later record can reuse it.
+     * @param address The address returned by allocate.
+     * @param length The record length the block was allocated for.
+     */
+    public synchronized void free(long address, int length) {
+        int sizeClass = sizeClass(length);
+        allocatedBytes -= 1 << sizeClass;
+        freeLists.get(sizeClass).push(address);
+    }
+
+    /**
+     * Copies a record into its block.
+     * @param address The address returned by allocate.
+     * @param bytes The record bytes; must fit the block allocated for them.
+     */
+    public synchronized void write(long address, byte[] bytes) {
+        slabs.get(slabIndex(address)).put(offset(address), bytes);
+    }
+
+    /**
+     * Copies a record out of its block onto the heap.
+     * @param address The address returned by allocate.
+     * @param length The record length in bytes.
+     * @return A new array holding the record.
+     */
+    public synchronized byte[] read(long address, int length) {
+        byte[] bytes = new byte[length];
+        slabs.get(slabIndex(address)).get(offset(address), bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the total direct memory reserved by the slabs.
+     * @return The reserved bytes.
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Returns the bytes of all blocks currently holding records.
+     * @return The allocated bytes.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of slabs reserved so far.
+     * @return The slab count.
+     */
+    public synchronized int getSlabCount() {
+        return slabs.size();
+    }
+
+    /**
+     * Reserves a new direct slab.
+     * @param size The slab size in bytes.
+     * @return The index of the new slab.
+     */
+    private int reserveSlab(int size) {
+        slabs.add(ByteBuffer.allocateDirect(size));
+        reservedBytes += size;
+        return slabs.size() - 1;
+    }
+
+    /**
+     * Splits the unused tail of the current slab into free blocks before a new slab is reserved,
+     * so the tail is not wasted.
+     */
+    private void retireBumpSlab() {
+        if (bumpSlab < 0) {
+            return;
+        }
+        while (slabBytes - bumpOffset >= (1 << MIN_BLOCK_SHIFT)) {
+            int size = Integer.highestOneBit(slabBytes - bumpOffset);
+            freeLists.get(Integer.numberOfTrailingZeros(size)).push(address(bumpSlab, bumpOffset));
+            bumpOffset += size;
+        }
+    }
+
+    /**
+     * Returns the size class of a record, i.e. the base-two logarithm of its block size.
+     * @param length The record length in bytes.
+     * @return The size class.
+     */
+    private static int sizeClass(int length) {
+        if (length <= 1 << MIN_BLOCK_SHIFT) {
+            return MIN_BLOCK_SHIFT;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    /**
+     * Packs a slab index and an offset within the slab into a block address.
+     * @param slab The slab index.
+     * @param offset The offset within the slab.
+     * @return The block address.
+     */
+    private static long address(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    /**
+     * Extracts the slab index from a block address.
+     * @param address The block address.
+     * @return The slab index.
+     */
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    /**
+     * Extracts the offset within the slab from a block address.
+     * @param address The block address.
+     * @return The offset in bytes.
+     */
+    private static int offset(long address) {
+        return (int) address;
+    }
+}
@@ -0,0 +1,98 @@
+package main.aggregation;
+
+import main.common.CompactRecord;
+
+import java.util.Arrays;
+
+public class OffHeapStationHistory extends StationHistory {
+    private static final int NO_DATA = -1;
+
+    private final OffHeapArena arena;
+    private long[] addresses;
+    private int[] lengths;      // Encoded record length, or NO_DATA for an empty slot or an entry without data
+
+    /**
+     * Constructs an empty history whose readings are stored in off-heap memory. Only the ring index
+     * and the block address of every reading stay on the Java heap, so stored readings add nothing
+     * for the garbage collector to trace.
+     * @param maxEntries The maximum number of entries kept for the station, or RetentionPolicy.UNLIMITED.
+     * @param arena The arena holding the encoded readings; usually shared by all stations.
+     */
+    public OffHeapStationHistory(int maxEntries, OffHeapArena arena) {
+        super(maxEntries);
+        this.arena = arena;
+        this.addresses = new long[capacity()];
+        this.lengths = new int[capacity()];
+        Arrays.fill(lengths, NO_DATA);
+        addFixedBytes(2 * ARRAY_OVERHEAD + (8 + 4) * (long) capacity());
+    }
+
+    /**
+     * Encodes the reading and copies it into a block of the arena.
+     * @param slot The ring slot to write.
+     * @param record The reading to store, may be null.
+     * @return The size of the block holding the reading.
+     */
+    @Override
+    protected long writePayload(int slot, CompactRecord record) {
+        if (record == null) {
+            return 0;
+        }
+        byte[] bytes = record.toBytes();
+        long address = arena.allocate(bytes.length);
+        arena.write(address, bytes);
+        addresses[slot] = address;
+        lengths[slot] = bytes.length;
+        return OffHeapArena.blockSize(bytes.length);
+    }
+
+    /**
+     * Copies the reading of the given slot back onto the heap and decodes it.
+     * @param slot The ring slot to read.
+     * @return The decoded reading, or null if the entry has no data.
+     */
+    @Override
+    protected CompactRecord readPayload(int slot) {
+        if (lengths[slot] == NO_DATA) {
+            return null;
+        }
+        return CompactRecord.fromBytes(arena.read(addresses[slot], lengths[slot]));
+    }
+
+    /**
+     * Moves the block address of one slot to another; the reading itself stays in place.
+     * @param from The source slot.
+     * @param to The destination slot.
+     */
+    @Override
+    protected void movePayload(int from, int to) {
+        addresses[to] = addresses[from];
+        lengths[to] = lengths[from];
+        lengths[from] = NO_DATA;
+    }
+
+    /**
+     * Returns the block of the given slot to the arena.
+     * @param slot The slot to clear.
+     */
+    @Override
+    protected void clearPayload(int slot) {
+        if (lengths[slot] != NO_DATA) {
+            arena.free(addresses[slot], lengths[slot]);
+            lengths[slot] = NO_DATA;
+        }
+    }
+
+    /**
+     * Grows the block index to the new capacity; the readings themselves stay in the arena.
+     * @param newCapacity The new number of slots.
+     */
+    @Override
+    protected void growPayload(int newCapacity) {
+        int oldCapacity = lengths.length;
+        addresses = Arrays.copyOf(addresses, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+        Arrays.fill(lengths, oldCapacity, newCapacity, NO_DATA);
+        addFixedBytes((8 + 4) * (long) (newCapacity - oldCapacity));
+    }
+}
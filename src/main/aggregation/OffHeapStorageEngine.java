@@ -0,0 +1,35 @@
+package main.aggregation;
+
+public class OffHeapStorageEngine extends InMemoryStorageEngine {
+    public static final String NAME = "offheap";
+
+    private final OffHeapArena arena;
+
+    /**
+     * Constructs an engine whose stations keep their encoded readings in one shared off-heap arena.
+     * @param config The storage settings.
+     * @param slabBytes The size of each direct memory slab reserved by the arena.
+     */
+    public OffHeapStorageEngine(StorageConfig config, int slabBytes) {
+        super(config);
+        this.arena = new OffHeapArena(slabBytes);
+    }
+
+    @Override
+    protected StationHistory createHistory(int maxEntries) {
+        return new OffHeapStationHistory(maxEntries, arena);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Returns the arena holding the encoded readings, for monitoring its reserved and allocated bytes.
+     * @return The shared arena.
+     */
+    public OffHeapArena getArena() {
+        return arena;
+    }
+}
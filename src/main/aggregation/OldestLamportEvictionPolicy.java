@@ -0,0 +1,19 @@
+package main.aggregation;
+
+import java.util.Comparator;
+
+public class OldestLamportEvictionPolicy extends RankedEvictionPolicy {
+    public static final String NAME = "lamport";
+
+    /**
+     * Constructs a policy that evicts the stations whose newest entry has the oldest Lamport time.
+     */
+    public OldestLamportEvictionPolicy() {
+        super(Comparator.comparingInt(StationHistory::getNewestLamportTime));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,288 @@
+package main.aggregation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OutlierDetector implements AggregationServer.RequestOutcomeListener {
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MIN_REQUESTS = 10;
+    public static final double DEFAULT_ERROR_RATE = 0.5;
+    public static final long DEFAULT_SLOW_CALL_MILLIS = 1000;
+    public static final double DEFAULT_SLOW_RATE = 0.5;
+    public static final long DEFAULT_BASE_EJECTION_MILLIS = 30000;
+    public static final long DEFAULT_MAX_EJECTION_MILLIS = 300000;
+    public static final int DEFAULT_MAX_EJECTION_PERCENT = 50;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minRequests;
+    private final double errorRateThreshold;
+    private final long slowCallNanos;
+    private final double slowRateThreshold;
+    private final long baseEjectionMillis;
+    private final long maxEjectionMillis;
+    private final int maxEjectionPercent;
+    private final Map<AggregationServer, Circuit> circuits = new ConcurrentHashMap<>();
+    private final AtomicLong ejectionCount = new AtomicLong(0);
+    private volatile int serverCount;
+
+    /**
+     * Constructs an outlier detector that keeps a circuit breaker per server. Each circuit looks at the
+     * server's last requests. Once enough of them are errors (status 500 and above) or slower than the
+     * slow-call time, the circuit opens and the server is ejected from the rotation. After the ejection
+     * time the circuit goes half-open and lets one probe request through: success closes it, failure
+     * ejects the server again for longer. Ejections never take out more than the maximum share of servers.
+     * @param windowSize The number of recent requests each circuit looks at.
+     * @param minRequests The number of requests in the window before a server can be ejected.
+     * @param errorRateThreshold The share of errors in the window that ejects a server.
+     * @param slowCallMillis The latency above which a request counts as slow.
+     * @param slowRateThreshold The share of slow requests in the window that ejects a server.
+     * @param baseEjectionMillis How long the first ejection lasts; each repeated ejection doubles it.
+     * @param maxEjectionMillis The longest an ejection lasts.
+     * @param maxEjectionPercent The largest share of servers that may be ejected at once.
+     */
+    public OutlierDetector(int windowSize, int minRequests, double errorRateThreshold, long slowCallMillis, double slowRateThreshold,
+                           long baseEjectionMillis, long maxEjectionMillis, int maxEjectionPercent) {
+        if (windowSize < 1 || minRequests < 1 || minRequests > windowSize) {
+            throw new IllegalArgumentException("The minimum requests must be between 1 and the window size.");
+        }
+        this.windowSize = windowSize;
+        this.minRequests = minRequests;
+        this.errorRateThreshold = errorRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowRateThreshold = slowRateThreshold;
+        this.baseEjectionMillis = baseEjectionMillis;
+        this.maxEjectionMillis = maxEjectionMillis;
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    /**
+     * Builds the outlier detector from system properties, falling back to the defaults:
+     * loadbalancer.outlier.windowSize, loadbalancer.outlier.minRequests, loadbalancer.outlier.errorRate,
+     * loadbalancer.outlier.slowCallMillis, loadbalancer.outlier.slowRate, loadbalancer.outlier.baseEjectionMillis,
+     * loadbalancer.outlier.maxEjectionMillis and loadbalancer.outlier.maxEjectionPercent.
+     * @return The configured outlier detector.
+     */
+    public static OutlierDetector fromSystemProperties() {
+        return new OutlierDetector(
+                Integer.getInteger("loadbalancer.outlier.windowSize", DEFAULT_WINDOW_SIZE),
+                Integer.getInteger("loadbalancer.outlier.minRequests", DEFAULT_MIN_REQUESTS),
+                Double.parseDouble(System.getProperty("loadbalancer.outlier.errorRate", String.valueOf(DEFAULT_ERROR_RATE))),
+                Long.getLong("loadbalancer.outlier.slowCallMillis", DEFAULT_SLOW_CALL_MILLIS),
+                Double.parseDouble(System.getProperty("loadbalancer.outlier.slowRate", String.valueOf(DEFAULT_SLOW_RATE))),
+                Long.getLong("loadbalancer.outlier.baseEjectionMillis", DEFAULT_BASE_EJECTION_MILLIS),
+                Long.getLong("loadbalancer.outlier.maxEjectionMillis", DEFAULT_MAX_EJECTION_MILLIS),
+                Integer.getInteger("loadbalancer.outlier.maxEjectionPercent", DEFAULT_MAX_EJECTION_PERCENT));
+    }
+
+    /**
+     * Sets the number of servers in the rotation, which bounds how many may be ejected at once.
+     * @param serverCount The number of servers.
+     */
+    public void setServerCount(int serverCount) {
+        this.serverCount = serverCount;
+    }
+
+    /**
+     * Forgets a server that left the rotation.
+     * @param server The server.
+     */
+    public void forget(AggregationServer server) {
+        circuits.remove(server);
+    }
+
+    /**
+     * Decides whether a request may be routed to a server: always while its circuit is closed, never
+     * while it is open, and for a single probe once the ejection time has passed.
+     * @param server The server.
+     * @return True if the request may be routed to the server, otherwise false.
+     */
+    public boolean allowRequest(AggregationServer server) {
+        Circuit circuit = circuits.get(server);
+        return circuit == null || circuit.allowRequest(System.currentTimeMillis());
+    }
+
+    /**
+     * Records the outcome of a request served by a server, and opens or closes its circuit as needed.
+     * @param server The server that served the request.
+     * @param status The HTTP status of the response.
+     * @param latencyNanos The time from handoff to response.
+     */
+    @Override
+    public void onRequestCompleted(AggregationServer server, int status, long latencyNanos) {
+        circuits.computeIfAbsent(server, s -> new Circuit())
+                .record(status >= 500, latencyNanos > slowCallNanos, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the state of a server's circuit.
+     * @param server The server.
+     * @return The circuit state.
+     */
+    public State getState(AggregationServer server) {
+        Circuit circuit = circuits.get(server);
+        return circuit == null ? State.CLOSED : circuit.getState();
+    }
+
+    /**
+     * Returns how many times a server was ejected.
+     * @return The number of ejections.
+     */
+    public long getEjectionCount() {
+        return ejectionCount.get();
+    }
+
+    /**
+     * Counts the servers whose circuit is not closed.
+     * @return The number of ejected servers.
+     */
+    private int countEjected() {
+        int ejected = 0;
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.getState() != State.CLOSED) {
+                ejected++;
+            }
+        }
+        return ejected;
+    }
+
+    /**
+     * Ejects a server if that neither exceeds the maximum share nor ejects the last server. The count
+     * and the ejection happen under the detector's lock, so circuits that cross their threshold at the
+     * same time cannot all pass the check before any of them has opened.
+     * @param circuit The circuit of the server to eject.
+     * @param now The current time in milliseconds.
+     */
+    private synchronized void ejectIfAllowed(Circuit circuit, long now) {
+        int ejected = countEjected();
+        int limit = Math.max(1, serverCount * maxEjectionPercent / 100);
+        if (ejected < limit && ejected + 1 < serverCount) {
+            circuit.ejectIfClosed(now);
+        }
+    }
+
+    private class Circuit {
+        private final boolean[] failed = new boolean[windowSize];
+        private final boolean[] slow = new boolean[windowSize];
+        private int next;
+        private int count;
+        private int failures;
+        private int slowCalls;
+        private State state = State.CLOSED;
+        private long openUntilMillis;
+        private int consecutiveEjections;
+        private long probeSentMillis = -1;
+
+        /**
+         * Decides whether a request may go to the server, moving an open circuit whose ejection
+         * time has passed to half-open. A probe that never reports back, for instance because its
+         * client went away, is replaced by another after the base ejection time.
+         * @param now The current time in milliseconds.
+         * @return True if the request may be routed, otherwise false.
+         */
+        synchronized boolean allowRequest(long now) {
+            if (state == State.OPEN && now >= openUntilMillis) {
+                state = State.HALF_OPEN;
+                probeSentMillis = -1;
+            }
+            if (state == State.HALF_OPEN && (probeSentMillis < 0 || now - probeSentMillis >= baseEjectionMillis)) {
+                probeSentMillis = now;
+                return true;
+            }
+            return state == State.CLOSED;
+        }
+
+        /**
+         * Records the outcome of a request. While half-open, the outcome decides the circuit; while
+         * closed, the window does.
+         * @param isFailure True if the response was an error.
+         * @param isSlow True if the response was slower than the slow-call time.
+         * @param now The current time in milliseconds.
+         */
+        void record(boolean isFailure, boolean isSlow, long now) {
+            boolean open = false;
+            synchronized (this) {
+                if (state == State.HALF_OPEN) {
+                    if (isFailure || isSlow) {
+                        eject(now);
+                    } else {
+                        System.out.println("Circuit closed after successful probe");
+                        state = State.CLOSED;
+                        consecutiveEjections = 0;
+                        reset();
+                    }
+                    return;
+                }
+                if (state == State.OPEN) {
+                    return; // A request routed before the ejection finished
+                }
+
+                if (count == windowSize) {
+                    failures -= failed[next] ? 1 : 0;
+                    slowCalls -= slow[next] ? 1 : 0;
+                } else {
+                    count++;
+                }
+                failed[next] = isFailure;
+                slow[next] = isSlow;
+                failures += isFailure ? 1 : 0;
+                slowCalls += isSlow ? 1 : 0;
+                next = (next + 1) % windowSize;
+
+                open = count >= minRequests
+                        && (failures >= errorRateThreshold * count || slowCalls >= slowRateThreshold * count);
+            }
+            // The circuit's lock is released first: the detector's lock is always taken before a circuit's
+            if (open) {
+                ejectIfAllowed(this, now);
+            }
+        }
+
+        /**
+         * Opens the circuit unless another request already changed its state.
+         * @param now The current time in milliseconds.
+         */
+        synchronized void ejectIfClosed(long now) {
+            if (state == State.CLOSED) {
+                eject(now);
+            }
+        }
+
+        /**
+         * Opens the circuit for the ejection time, doubled for each consecutive ejection.
+         * @param now The current time in milliseconds.
+         */
+        private void eject(long now) {
+            long ejectionMillis = Math.min(maxEjectionMillis, baseEjectionMillis << Math.min(consecutiveEjections, 20));
+            consecutiveEjections++;
+            state = State.OPEN;
+            openUntilMillis = now + ejectionMillis;
+            reset();
+            ejectionCount.incrementAndGet();
+            System.out.println("Circuit opened, ejecting server for " + ejectionMillis + " ms");
+        }
+
+        /**
+         * Empties the window.
+         */
+        private void reset() {
+            next = 0;
+            count = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+
+        /**
+         * Returns the state of the circuit.
+         * @return The circuit state.
+         */
+        synchronized State getState() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package main.aggregation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public abstract class RankedEvictionPolicy implements EvictionPolicy {
+    private final Comparator<StationHistory> order;
+
+    /**
+     * Constructs a policy that evicts stations in the given order until enough bytes are freed.
+     * @param order Orders station histories from the first to the last eviction candidate.
+     */
+    protected RankedEvictionPolicy(Comparator<StationHistory> order) {
+        this.order = order;
+    }
+
+    @Override
+    public List<String> selectVictims(Map<String, StationHistory> stations, long bytesToFree, String protectedKey) {
+        List<Map.Entry<String, StationHistory>> candidates = new ArrayList<>(stations.entrySet());
+        candidates.removeIf(entry -> entry.getKey().equals(protectedKey));
+        candidates.sort(Map.Entry.comparingByValue(order));
+
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        for (Map.Entry<String, StationHistory> candidate : candidates) {
+            if (freed >= bytesToFree) {
+                break;
+            }
+            victims.add(candidate.getKey());
+            freed += candidate.getValue().getEstimatedBytes();
+        }
+        return victims;
+    }
+}
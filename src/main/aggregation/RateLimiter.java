@@ -0,0 +1,171 @@
+package main.aggregation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimiter {
+    public static final double DEFAULT_ADDRESS_RATE = 200;
+    public static final int DEFAULT_ADDRESS_BURST = 400;
+    public static final double DEFAULT_CONTENT_SERVER_RATE = 5;
+    public static final int DEFAULT_CONTENT_SERVER_BURST = 10;
+    public static final double DEFAULT_GET_CLIENT_RATE = 20;
+    public static final int DEFAULT_GET_CLIENT_BURST = 40;
+    public static final long DEFAULT_IDLE_MILLIS = 60000;
+
+    public enum Kind {
+        ADDRESS, CONTENT_SERVER, GET_CLIENT
+    }
+
+    private final double[] ratePerNano = new double[Kind.values().length];
+    private final int[] burst = new int[Kind.values().length];
+    private final long idleNanos;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepNanos;
+    private final AtomicLong limitedCount = new AtomicLong(0);
+
+    /**
+     * Constructs a rate limiter with one token bucket per remote address and per sender.
+     * A rate of zero disables limiting for that kind of key.
+     * @param addressRate Requests per second allowed per remote address.
+     * @param addressBurst Requests a remote address may send at once.
+     * @param contentServerRate PUTs per second allowed per content server SenderID.
+     * @param contentServerBurst PUTs a content server may send at once.
+     * @param getClientRate GETs per second allowed per client SenderID.
+     * @param getClientBurst GETs a client may send at once.
+     * @param idleMillis How long a bucket may go unused before it is dropped from the table.
+     */
+    public RateLimiter(double addressRate, int addressBurst, double contentServerRate, int contentServerBurst,
+                       double getClientRate, int getClientBurst, long idleMillis) {
+        setLimit(Kind.ADDRESS, addressRate, addressBurst);
+        setLimit(Kind.CONTENT_SERVER, contentServerRate, contentServerBurst);
+        setLimit(Kind.GET_CLIENT, getClientRate, getClientBurst);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.nextSweepNanos = new AtomicLong(System.nanoTime() + idleNanos);
+    }
+
+    /**
+     * Builds the rate limiter from system properties, falling back to the defaults:
+     * loadbalancer.rateLimit.address.rate, loadbalancer.rateLimit.address.burst,
+     * loadbalancer.rateLimit.contentServer.rate, loadbalancer.rateLimit.contentServer.burst,
+     * loadbalancer.rateLimit.getClient.rate, loadbalancer.rateLimit.getClient.burst
+     * and loadbalancer.rateLimit.idleMillis.
+     * @return The configured rate limiter.
+     */
+    public static RateLimiter fromSystemProperties() {
+        return new RateLimiter(
+                Double.parseDouble(System.getProperty("loadbalancer.rateLimit.address.rate", String.valueOf(DEFAULT_ADDRESS_RATE))),
+                Integer.getInteger("loadbalancer.rateLimit.address.burst", DEFAULT_ADDRESS_BURST),
+                Double.parseDouble(System.getProperty("loadbalancer.rateLimit.contentServer.rate", String.valueOf(DEFAULT_CONTENT_SERVER_RATE))),
+                Integer.getInteger("loadbalancer.rateLimit.contentServer.burst", DEFAULT_CONTENT_SERVER_BURST),
+                Double.parseDouble(System.getProperty("loadbalancer.rateLimit.getClient.rate", String.valueOf(DEFAULT_GET_CLIENT_RATE))),
+                Integer.getInteger("loadbalancer.rateLimit.getClient.burst", DEFAULT_GET_CLIENT_BURST),
+                Long.getLong("loadbalancer.rateLimit.idleMillis", DEFAULT_IDLE_MILLIS));
+    }
+
+    /**
+     * Validates and stores the limit of one kind of key.
+     * @param kind The kind of key.
+     * @param ratePerSecond Requests per second, or zero to disable limiting.
+     * @param burstSize The bucket size.
+     */
+    private void setLimit(Kind kind, double ratePerSecond, int burstSize) {
+        if (ratePerSecond < 0 || (ratePerSecond > 0 && burstSize < 1)) {
+            throw new IllegalArgumentException("Invalid " + kind + " rate limit: " + ratePerSecond + "/s, burst " + burstSize);
+        }
+        ratePerNano[kind.ordinal()] = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        burst[kind.ordinal()] = burstSize;
+    }
+
+    /**
+     * Takes a token from the bucket of a key, creating a full bucket for a key not seen recently.
+     * @param kind The kind of key, which selects the limit.
+     * @param key The remote address or SenderID; null keys are not limited.
+     * @return Zero if the request is allowed, otherwise the number of seconds until a token is available.
+     */
+    public int tryAcquire(Kind kind, String key) {
+        if (key == null || ratePerNano[kind.ordinal()] == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        sweepIdleBuckets(now);
+
+        Bucket bucket = buckets.computeIfAbsent(kind.ordinal() + ":" + key, k -> new Bucket(burst[kind.ordinal()], now));
+        long waitNanos = bucket.tryTake(ratePerNano[kind.ordinal()], burst[kind.ordinal()], now);
+        if (waitNanos == 0) {
+            return 0;
+        }
+        limitedCount.incrementAndGet();
+        return (int) Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Drops buckets that have not been used for the idle time. A bucket idle that long has refilled,
+     * so dropping it loses nothing. Only one caller sweeps per idle interval.
+     * @param now The current System.nanoTime.
+     */
+    private void sweepIdleBuckets(long now) {
+        long next = nextSweepNanos.get();
+        if (now - next < 0 || !nextSweepNanos.compareAndSet(next, now + idleNanos)) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.isIdleSince(now - idleNanos));
+    }
+
+    /**
+     * Returns the number of buckets currently in the table.
+     * @return The number of tracked addresses and senders.
+     */
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    /**
+     * Returns how many requests were refused for being over their limit.
+     * @return The number of limited requests.
+     */
+    public long getLimitedCount() {
+        return limitedCount.get();
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        /**
+         * Constructs a full bucket.
+         * @param burst The bucket size.
+         * @param now The current System.nanoTime.
+         */
+        Bucket(int burst, long now) {
+            this.tokens = burst;
+            this.lastRefillNanos = now;
+        }
+
+        /**
+         * Refills the bucket for the time since the last call and takes one token if there is one.
+         * @param ratePerNano Tokens added per nanosecond.
+         * @param burst The bucket size.
+         * @param now The current System.nanoTime.
+         * @return Zero if a token was taken, otherwise the nanoseconds until one is available.
+         */
+        synchronized long tryTake(double ratePerNano, int burst, long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / ratePerNano);
+        }
+
+        /**
+         * Checks whether the bucket was last used before the given time.
+         * @param cutoffNanos The System.nanoTime before which the bucket counts as idle.
+         * @return True if the bucket is idle, otherwise false.
+         */
+        synchronized boolean isIdleSince(long cutoffNanos) {
+            return lastRefillNanos - cutoffNanos < 0;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package main.aggregation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class RequestCoalescer<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+
+    /**
+     * Runs the loader for the given key, unless an identical request is already in flight.
+     * In that case the caller waits for the running lookup and shares its result instead
+     * of repeating the work (single-flight).
+     * @param key The key identifying identical requests.
+     * @param loader The lookup to run when no request for the key is in flight.
+     * @return The value produced by the loader, possibly computed on behalf of another caller.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return await(existing);
+        }
+
+        executedCount.incrementAndGet();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // Errors must complete the future too, or every coalesced waiter would block forever.
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Waits for an in-flight lookup and unwraps any failure it produced.
+     * @param future The future of the in-flight lookup.
+     * @return The value produced by the lookup.
+     */
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns how many lookups were actually executed.
+     * @return The number of executed lookups.
+     */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /**
+     * Returns how many requests were merged into a lookup already in flight.
+     * @return The number of coalesced requests.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Returns the number of lookups currently in flight.
+     * @return The number of distinct keys being loaded.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
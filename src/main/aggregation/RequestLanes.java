@@ -0,0 +1,274 @@
+package main.aggregation;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class RequestLanes<T> {
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DEFAULT_LANE_CAPACITY = 256;
+    public static final int DEFAULT_PUT_WEIGHT = 3;
+    public static final int DEFAULT_GET_WEIGHT = 1;
+
+    public enum Lane {
+        PUT, GET
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final int workers;
+    private final EnumMap<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+    /**
+     * Constructs the ingest (PUT) and query (GET) lanes. Each lane has its own bounded queue, a weight
+     * for weighted-fair scheduling and a budget capping how many workers may serve it at once.
+     * @param workers The number of workers serving both lanes.
+     * @param capacity The maximum number of requests waiting in each lane.
+     * @param putWeight The scheduling weight of the PUT lane.
+     * @param getWeight The scheduling weight of the GET lane.
+     * @param putWorkerBudget The maximum number of workers serving PUTs at once.
+     * @param getWorkerBudget The maximum number of workers serving GETs at once.
+     */
+    public RequestLanes(int workers, int capacity, int putWeight, int getWeight, int putWorkerBudget, int getWorkerBudget) {
+        if (workers < 1 || capacity < 1 || putWeight < 1 || getWeight < 1 || putWorkerBudget < 1 || getWorkerBudget < 1) {
+            throw new IllegalArgumentException("Lane workers, capacity, weights and budgets must be at least 1.");
+        }
+        this.workers = workers;
+        lanes.put(Lane.PUT, new LaneState(capacity, putWeight, Math.min(putWorkerBudget, workers)));
+        lanes.put(Lane.GET, new LaneState(capacity, getWeight, Math.min(getWorkerBudget, workers)));
+    }
+
+    /**
+     * Builds the lanes from system properties, falling back to the defaults: aggregation.lanes.workers,
+     * aggregation.lanes.capacity, aggregation.lanes.putWeight, aggregation.lanes.getWeight,
+     * aggregation.lanes.putWorkers (all workers by default) and aggregation.lanes.getWorkers
+     * (all workers but one by default, so a GET flood always leaves a worker for PUTs).
+     * @param <T> Type of the queued requests.
+     * @return The configured lanes.
+     */
+    public static <T> RequestLanes<T> fromSystemProperties() {
+        int workers = Integer.getInteger("aggregation.lanes.workers", DEFAULT_WORKERS);
+        return new RequestLanes<>(
+                workers,
+                Integer.getInteger("aggregation.lanes.capacity", DEFAULT_LANE_CAPACITY),
+                Integer.getInteger("aggregation.lanes.putWeight", DEFAULT_PUT_WEIGHT),
+                Integer.getInteger("aggregation.lanes.getWeight", DEFAULT_GET_WEIGHT),
+                Integer.getInteger("aggregation.lanes.putWorkers", workers),
+                Integer.getInteger("aggregation.lanes.getWorkers", Math.max(1, workers - 1)));
+    }
+
+    /**
+     * Adds a request to a lane unless the lane is full.
+     * @param lane The lane chosen by the request type.
+     * @param request The request.
+     * @return True if the request was queued, false if the lane is full.
+     */
+    public boolean offer(Lane lane, T request) {
+        LaneState state = lanes.get(lane);
+        lock.lock();
+        try {
+            if (state.queue.size() >= state.capacity) {
+                state.rejectedCount++;
+                return false;
+            }
+            state.queue.add(request);
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next request for a worker, waiting up to the given time for one to become eligible.
+     * Lanes are picked by smooth weighted round robin among those that have waiting requests and have
+     * not used up their worker budget, so each lane gets its share of the workers while both are busy
+     * and all of them while the other lane is idle. The worker must call complete once it is done.
+     * @param timeout How long to wait.
+     * @param unit The unit of the timeout.
+     * @return The assigned request, or null if none became eligible in time.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public Assignment<T> take(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (true) {
+                Lane lane = pickLane();
+                if (lane != null) {
+                    LaneState state = lanes.get(lane);
+                    state.active++;
+                    state.servedCount++;
+                    return new Assignment<>(lane, state.queue.poll());
+                }
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                remainingNanos = changed.awaitNanos(remainingNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the worker budget held by an assignment.
+     * @param assignment The assignment returned by take.
+     */
+    public void complete(Assignment<T> assignment) {
+        lock.lock();
+        try {
+            lanes.get(assignment.getLane()).active--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the eligible lane with the highest current weight and charges it the total weight
+     * of the eligible lanes. Must be called with the lock held.
+     * @return The picked lane, or null if no lane is eligible.
+     */
+    private Lane pickLane() {
+        int totalWeight = 0;
+        LaneState best = null;
+        Lane bestLane = null;
+        for (Lane lane : Lane.values()) {
+            LaneState state = lanes.get(lane);
+            if (state.queue.isEmpty() || state.active >= state.workerBudget) {
+                continue;
+            }
+            state.currentWeight += state.weight;
+            totalWeight += state.weight;
+            if (best == null || state.currentWeight > best.currentWeight) {
+                best = state;
+                bestLane = lane;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= totalWeight;
+        }
+        return bestLane;
+    }
+
+    /**
+     * Returns the number of workers serving the lanes.
+     * @return The number of workers.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns the number of requests waiting in a lane.
+     * @param lane The lane.
+     * @return The lane depth.
+     */
+    public int getDepth(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of workers currently serving a lane.
+     * @param lane The lane.
+     * @return The number of busy workers.
+     */
+    public int getActiveWorkers(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many requests of a lane were handed to workers.
+     * @param lane The lane.
+     * @return The number of served requests.
+     */
+    public long getServedCount(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).servedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many requests were turned away because their lane was full.
+     * @param lane The lane.
+     * @return The number of rejected requests.
+     */
+    public long getRejectedCount(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static class Assignment<T> {
+        private final Lane lane;
+        private final T request;
+
+        /**
+         * Constructs an assignment of a request to a worker.
+         * @param lane The lane the request was taken from.
+         * @param request The request.
+         */
+        Assignment(Lane lane, T request) {
+            this.lane = lane;
+            this.request = request;
+        }
+
+        /**
+         * Returns the lane the request was taken from.
+         * @return The lane.
+         */
+        public Lane getLane() {
+            return lane;
+        }
+
+        /**
+         * Returns the assigned request.
+         * @return The request.
+         */
+        public T getRequest() {
+            return request;
+        }
+    }
+
+    private class LaneState {
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private final int capacity;
+        private final int weight;
+        private final int workerBudget;
+        private int currentWeight;
+        private int active;
+        private long servedCount;
+        private long rejectedCount;
+
+        /**
+         * Constructs the state of one lane. All fields are guarded by the lanes' lock.
+         * @param capacity The maximum number of waiting requests.
+         * @param weight The scheduling weight.
+         * @param workerBudget The maximum number of workers serving the lane at once.
+         */
+        LaneState(int capacity, int weight, int workerBudget) {
+            this.capacity = capacity;
+            this.weight = weight;
+            this.workerBudget = workerBudget;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package main.aggregation;
+
+public class RetentionPolicy {
+    public static final int UNLIMITED = -1;
+    public static final int DEFAULT_MAX_ENTRIES = UNLIMITED;
+
+    private final int maxEntries;
+    private final int maxLamportAge;
+    private final long maxAgeMillis;
+
+    /**
+     * Constructs a retention policy for per-station weather data histories.
+     * @param maxEntries Maximum number of entries kept per station, or UNLIMITED to keep the full history.
+     * @param maxLamportAge Maximum distance in Lamport time from the newest entry, or UNLIMITED.
+     * @param maxAgeMillis Maximum wall-clock age of an entry in milliseconds, or UNLIMITED.
+     */
+    public RetentionPolicy(int maxEntries, int maxLamportAge, long maxAgeMillis) {
+        if (maxEntries <= 0 && maxEntries != UNLIMITED) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0 or UNLIMITED.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxLamportAge = maxLamportAge;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Builds the retention policy from system properties, falling back to the defaults:
+     * datastore.retention.maxEntries, datastore.retention.maxLamportAge and datastore.retention.maxAgeMillis.
+     * @return The configured retention policy.
+     */
+    public static RetentionPolicy fromSystemProperties() {
+        return new RetentionPolicy(
+                Integer.getInteger("datastore.retention.maxEntries", DEFAULT_MAX_ENTRIES),
+                Integer.getInteger("datastore.retention.maxLamportAge", UNLIMITED),
+                Long.getLong("datastore.retention.maxAgeMillis", UNLIMITED));
+    }
+
+    /**
+     * Returns the maximum number of entries kept per station.
+     * @return The per-station entry limit, or a negative value when unlimited.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum Lamport age of an entry relative to the newest entry of its station.
+     * @return The maximum Lamport age, or a negative value when unlimited.
+     */
+    public int getMaxLamportAge() {
+        return maxLamportAge;
+    }
+
+    /**
+     * Returns the maximum wall-clock age of an entry.
+     * @return The maximum age in milliseconds, or a negative value when unlimited.
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Determines whether an entry has outlived this policy.
+     * @param lamportTime The Lamport time of the entry.
+     * @param newestLamportTime The newest Lamport time stored for the same station.
+     * @param storedAtMillis The wall-clock time at which the entry was stored.
+     * @param currentTimeMillis The current wall-clock time.
+     * @return True if the entry should be dropped, otherwise false.
+     */
+    public boolean isExpired(int lamportTime, int newestLamportTime, long storedAtMillis, long currentTimeMillis) {
+        if (maxLamportAge >= 0 && newestLamportTime - lamportTime > maxLamportAge) {
+            return true;
+        }
+        return maxAgeMillis >= 0 && currentTimeMillis - storedAtMillis > maxAgeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy [maxEntries=" + maxEntries + ", maxLamportAge=" + maxLamportAge
+                + ", maxAgeMillis=" + maxAgeMillis + "]";
+    }
+}
@@ -0,0 +1,114 @@
+package main.aggregation;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import main.common.JsonHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class SnapshotFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Prevents instantiation; this class only holds the file helpers shared by the store and its engines.
+     */
+    private SnapshotFiles() {
+    }
+
+    /**
+     * Streams the provided object as JSON through a buffered file channel, without building the whole
+     * JSON string in memory first. The data is written to the backup file first and then atomically
+     * moved over the primary file, so a crash never leaves a half-written primary file behind.
+     * @param object Object to be serialized.
+     * @param adapter Adapter writing the object.
+     * @param filePath Primary file path for saving the data.
+     * @param backupFilePath Backup file path for saving the data.
+     * @param <T> Type of the object.
+     */
+    public static <T> void save(T object, TypeAdapter<T> adapter, String filePath, String backupFilePath) {
+        try {
+            Path backupPath = Paths.get(backupFilePath);
+            try (FileChannel channel = FileChannel.open(backupPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+                 JsonWriter jsonWriter = JsonHandler.newJsonWriter(writer)) {
+                adapter.write(jsonWriter, object);
+            }
+            Files.move(backupPath, Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Streams an object from a JSON file through a buffered file channel.
+     * If the primary file fails to load, it attempts to load from a backup file.
+     * @param filePath Primary file path for loading the data.
+     * @param backupFilePath Backup file path for loading the data.
+     * @param adapter Adapter reading the object.
+     * @param <T> Type of the object.
+     * @return Deserialized object, or null if neither file can be read.
+     */
+    public static <T> T load(String filePath, String backupFilePath, TypeAdapter<T> adapter) {
+        try {
+            // First, check if the file exists. If it doesn't, create an empty one.
+            File file = new File(filePath);
+            if (!file.exists()) {
+                file.getParentFile().mkdirs(); // Creates the directory structure if not present.
+                file.createNewFile();
+                // Assuming you want an empty JSON representation (i.e., an empty map) as the content.
+                Files.write(Paths.get(filePath), "{}".getBytes());
+            }
+
+            return read(filePath, adapter);
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            try {
+                return read(backupFilePath, adapter);
+            } catch (IOException | JsonParseException | IllegalStateException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads one JSON file with the given adapter.
+     * @param filePath The file to read.
+     * @param adapter Adapter reading the object.
+     * @param <T> Type of the object.
+     * @return Deserialized object.
+     * @throws IOException If the file cannot be read or is not valid JSON.
+     */
+    private static <T> T read(String filePath, TypeAdapter<T> adapter) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+             Reader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+             JsonReader jsonReader = JsonHandler.newJsonReader(reader)) {
+            return adapter.read(jsonReader);
+        }
+    }
+
+    /**
+     * Deletes the given files if they exist.
+     * @param filePaths The files to delete.
+     * @throws IOException If a file exists but cannot be deleted.
+     */
+    public static void delete(String... filePaths) throws IOException {
+        for (String filePath : filePaths) {
+            Files.deleteIfExists(Paths.get(filePath));
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package main.aggregation;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import main.common.CompactRecord;
+import main.common.WeatherData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+public abstract class StationHistory {
+    protected static final int STRING_OVERHEAD = 40;  // String header and backing array header
+    protected static final int ARRAY_OVERHEAD = 16;
+    protected static final int REFERENCE_SIZE = 4;
+    private static final int INDEX_SLOT_BYTES = 4 + 8 + REFERENCE_SIZE + 8;
+
+    protected static final int INITIAL_UNBOUNDED_CAPACITY = 8;
+
+    private final int maxEntries;   // Entry limit, or RetentionPolicy.UNLIMITED for a ring that grows
+    private int capacity;
+
+    // On-heap index, one slot per stored reading; the reading itself is kept by the subclass
+    private int[] lamportTimes;
+    private long[] storedAt;
+    private String[] senderIDs;
+    private long[] slotBytes;
+
+    private int head = 0;   // Index of the oldest entry
+    private int size = 0;
+    private long estimatedBytes;
+    private volatile long lastAccessMillis;
+
+    /**
+     * Constructs an empty history backed by a ring. The ring index (Lamport time, storage time and
+     * sender of every entry) is kept here; subclasses decide where the readings live.
+     * A bounded ring holds at most maxEntries entries and, once full, drops the entry with the lowest
+     * Lamport time. An unbounded ring keeps every entry and grows as needed.
+     * @param maxEntries The maximum number of entries kept for the station, or RetentionPolicy.UNLIMITED.
+     */
+    protected StationHistory(int maxEntries) {
+        if (maxEntries <= 0 && maxEntries != RetentionPolicy.UNLIMITED) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0 or RetentionPolicy.UNLIMITED.");
+        }
+        this.maxEntries = maxEntries;
+        this.capacity = maxEntries == RetentionPolicy.UNLIMITED ? INITIAL_UNBOUNDED_CAPACITY : maxEntries;
+        this.lamportTimes = new int[capacity];
+        this.storedAt = new long[capacity];
+        this.senderIDs = new String[capacity];
+        this.slotBytes = new long[capacity];
+        this.estimatedBytes = 4 * ARRAY_OVERHEAD + INDEX_SLOT_BYTES * (long) capacity;
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Stores the reading of an entry in the given slot.
+     * @param slot The ring slot to write; it is empty.
+     * @param record The reading to store, may be null for an entry without data.
+     * @return The number of bytes the stored reading adds to the history.
+     */
+    protected abstract long writePayload(int slot, CompactRecord record);
+
+    /**
+     * Reads back the reading stored in the given slot.
+     * @param slot The ring slot to read.
+     * @return The stored reading, or null if the entry has no data.
+     */
+    protected abstract CompactRecord readPayload(int slot);
+
+    /**
+     * Moves the reading of one slot to another, leaving the source slot empty.
+     * @param from The source slot.
+     * @param to The destination slot; it is empty.
+     */
+    protected abstract void movePayload(int from, int to);
+
+    /**
+     * Releases the reading stored in the given slot. Clearing an empty slot has no effect.
+     * @param slot The slot to clear.
+     */
+    protected abstract void clearPayload(int slot);
+
+    /**
+     * Grows the payload storage to the given number of slots. Existing slots keep their index and the
+     * new slots are empty. Any memory the new slots preallocate must be reported through addFixedBytes.
+     * @param newCapacity The new number of slots; larger than the current capacity.
+     */
+    protected abstract void growPayload(int newCapacity);
+
+    /**
+     * Adds memory that is allocated once for the whole ring, such as preallocated columns, to the estimate.
+     * @param bytes The number of bytes to add.
+     */
+    protected void addFixedBytes(long bytes) {
+        estimatedBytes += bytes;
+    }
+
+    /**
+     * Appends an entry. When a bounded ring is full, the entry with the lowest Lamport time is dropped
+     * to make room, so a late reading never pushes out a newer one; a reading older than every stored
+     * entry is not stored at all. An unbounded ring grows instead.
+     * @param data The weather data to store.
+     * @param storedAtMillis The wall-clock time at which the entry was stored.
+     */
+    public void add(WeatherData data, long storedAtMillis) {
+        if (size == capacity) {
+            if (maxEntries == RetentionPolicy.UNLIMITED) {
+                grow();
+            } else {
+                int oldest = oldestLamportSlot();
+                if (data.getLamportTime() < lamportTimes[oldest]) {
+                    return;
+                }
+                compact(slot -> slot == oldest);
+            }
+        }
+        int index = (head + size) % capacity;
+        size++;
+        lamportTimes[index] = data.getLamportTime();
+        storedAt[index] = storedAtMillis;
+        senderIDs[index] = data.getSenderID();
+        slotBytes[index] = sharedOrSized(data.getSenderID()) + writePayload(index, data.getRecord());
+        estimatedBytes += slotBytes[index];
+    }
+
+    /**
+     * Drops all entries that have outlived the given retention policy.
+     * @param policy The retention policy to apply.
+     * @param currentTimeMillis The current wall-clock time.
+     * @return The number of entries removed.
+     */
+    public int applyRetention(RetentionPolicy policy, long currentTimeMillis) {
+        int newestLamportTime = getNewestLamportTime();
+        return compact(slot -> policy.isExpired(lamportTimes[slot], newestLamportTime, storedAt[slot], currentTimeMillis));
+    }
+
+    /**
+     * Removes all entries sent by a matching sender. Only the on-heap index is read.
+     * @param senderFilter The predicate selecting the senders whose entries are removed.
+     * @return The number of entries removed.
+     */
+    public int removeBySender(Predicate<String> senderFilter) {
+        return compact(slot -> senderFilter.test(senderIDs[slot]));
+    }
+
+    /**
+     * Removes every entry and releases the memory held for the readings.
+     * Must be called when the station is dropped from the store.
+     */
+    public void release() {
+        compact(slot -> true);
+    }
+
+    /**
+     * Retrieves the entry with the largest Lamport time that is less than or equal to the provided time.
+     * When several entries share that Lamport time, the most recently stored one wins.
+     * Only the Lamport index is scanned; the matching entry alone is decoded.
+     * @param lamportTime The Lamport time bound.
+     * @return An optional containing the matching entry, or empty if there is none.
+     */
+    public Optional<WeatherData> latestAtOrBefore(int lamportTime) {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % capacity;
+            if (lamportTimes[slot] <= lamportTime && (best == -1 || lamportTimes[slot] >= lamportTimes[best])) {
+                best = slot;
+            }
+        }
+        return best == -1 ? Optional.empty() : Optional.of(readSlot(best));
+    }
+
+    /**
+     * Computes statistics over a numeric field. This implementation decodes every entry;
+     * histories that keep primitive columns read them directly instead.
+     * @param field The name of a numeric field, such as air_temp or press.
+     * @return The statistics of the stored values; empty if the field is absent or not numeric.
+     */
+    public DoubleSummaryStatistics summarize(String field) {
+        DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+        for (int i = 0; i < size; i++) {
+            CompactRecord record = readPayload((head + i) % capacity);
+            if (record == null) {
+                continue;
+            }
+            for (int j = 0; j < record.size(); j++) {
+                if (record.getKey(j).equals(field)) {
+                    acceptNumber(statistics, record.getValue(j));
+                    break;
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the newest Lamport time stored in this history.
+     * @return The largest Lamport time, or Integer.MIN_VALUE if the history is empty.
+     */
+    public int getNewestLamportTime() {
+        int newest = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            newest = Math.max(newest, lamportTimes[(head + i) % capacity]);
+        }
+        return newest;
+    }
+
+    /**
+     * Records a read of this history, used for least-recently-used eviction.
+     * @param accessMillis The wall-clock time of the read.
+     */
+    public void touch(long accessMillis) {
+        this.lastAccessMillis = accessMillis;
+    }
+
+    /**
+     * Returns the wall-clock time of the last read, or of the creation if it was never read.
+     * @return The last access time in milliseconds.
+     */
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    /**
+     * Returns the approximate memory footprint of this history, including memory preallocated for the ring.
+     * @return The estimated size in bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Returns the entries of this history in insertion order, each with the time at which it was stored.
+     * @return A list with the stored entries, oldest first.
+     */
+    public List<WeatherData> toList() {
+        List<WeatherData> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readSlot((head + i) % capacity));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of stored entries.
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the current capacity of the ring. An unbounded ring grows beyond it when it fills up.
+     * @return The number of slots currently allocated.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Checks whether the history holds no entries.
+     * @return True if the history is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Rebuilds the entry stored in the given slot.
+     * @param slot The ring slot to read.
+     * @return The decoded entry.
+     */
+    private WeatherData readSlot(int slot) {
+        return WeatherData.fromRecord(readPayload(slot), lamportTimes[slot], senderIDs[slot], storedAt[slot]);
+    }
+
+    /**
+     * Finds the entry with the lowest Lamport time; of several such entries, the one stored first.
+     * @return The slot of that entry; the history must not be empty.
+     */
+    private int oldestLamportSlot() {
+        int oldest = head;
+        for (int i = 1; i < size; i++) {
+            int slot = (head + i) % capacity;
+            if (lamportTimes[slot] < lamportTimes[oldest]) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Doubles the capacity of a full, unbounded ring. Entries that wrapped around to the start of the
+     * old ring are moved behind its end, so the entries stay contiguous from head in the larger ring.
+     */
+    private void grow() {
+        int oldCapacity = capacity;
+        int newCapacity = oldCapacity * 2;
+        lamportTimes = Arrays.copyOf(lamportTimes, newCapacity);
+        storedAt = Arrays.copyOf(storedAt, newCapacity);
+        senderIDs = Arrays.copyOf(senderIDs, newCapacity);
+        slotBytes = Arrays.copyOf(slotBytes, newCapacity);
+        growPayload(newCapacity);
+        estimatedBytes += INDEX_SLOT_BYTES * (long) (newCapacity - oldCapacity);
+        capacity = newCapacity;
+
+        for (int from = 0; from < head; from++) {
+            int to = oldCapacity + from;
+            lamportTimes[to] = lamportTimes[from];
+            storedAt[to] = storedAt[from];
+            senderIDs[to] = senderIDs[from];
+            slotBytes[to] = slotBytes[from];
+            movePayload(from, to);
+            senderIDs[from] = null;
+            slotBytes[from] = 0;
+        }
+    }
+
+    /**
+     * Resets a slot and releases everything it holds.
+     * @param slot The slot to clear.
+     */
+    private void clearSlot(int slot) {
+        clearPayload(slot);
+        senderIDs[slot] = null;
+        estimatedBytes -= slotBytes[slot];
+        slotBytes[slot] = 0;
+    }
+
+    /**
+     * Removes the matching entries and shifts the remaining ones so they stay contiguous and in order.
+     * @param filter The filter receiving the slot index of each entry.
+     * @return The number of entries removed.
+     */
+    private int compact(SlotFilter filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) % capacity;
+            if (filter.test(from)) {
+                clearSlot(from);
+            } else {
+                int to = (head + kept) % capacity;
+                if (to != from) {
+                    lamportTimes[to] = lamportTimes[from];
+                    storedAt[to] = storedAt[from];
+                    senderIDs[to] = senderIDs[from];
+                    slotBytes[to] = slotBytes[from];
+                    movePayload(from, to);
+                    senderIDs[from] = null;
+                    slotBytes[from] = 0;
+                }
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Adds a field value to the statistics if it is a number or a numeric string.
+     * @param statistics The statistics to update.
+     * @param value The encoded value from a compact record.
+     */
+    protected static void acceptNumber(DoubleSummaryStatistics statistics, Object value) {
+        String text;
+        if (value instanceof String) {
+            text = (String) value;
+        } else if (value instanceof JsonPrimitive && ((JsonPrimitive) value).isNumber()) {
+            text = ((JsonElement) value).getAsString();
+        } else {
+            return;
+        }
+        try {
+            statistics.accept(Double.parseDouble(text));
+        } catch (NumberFormatException e) {
+            // Not a numeric reading, skip it
+        }
+    }
+
+    /**
+     * Estimates the bytes a string adds to this history; dictionary-shared strings are free.
+     * @param value The string, may be null.
+     * @return The estimated size in bytes.
+     */
+    protected static int sharedOrSized(String value) {
+        if (value == null || CompactRecord.isSharedValue(value)) {
+            return 0;
+        }
+        return STRING_OVERHEAD + value.length();
+    }
+
+    private interface SlotFilter {
+        boolean test(int slot);
+    }
+}
@@ -0,0 +1,80 @@
+package main.aggregation;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import main.common.WeatherData;
+import main.common.WeatherDataTypeAdapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StationSnapshotAdapter extends TypeAdapter<Map<String, List<WeatherData>>> {
+    private final WeatherDataTypeAdapter weatherDataAdapter = new WeatherDataTypeAdapter();
+
+    /**
+     * Writes a store snapshot as a JSON object mapping each station ID to the array of its readings.
+     * @param out The writer to write to.
+     * @param snapshot The readings grouped by station, may be null.
+     * @throws IOException If the writer fails.
+     */
+    @Override
+    public void write(JsonWriter out, Map<String, List<WeatherData>> snapshot) throws IOException {
+        if (snapshot == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        for (Map.Entry<String, List<WeatherData>> entry : snapshot.entrySet()) {
+            out.name(entry.getKey());
+            out.beginArray();
+            for (WeatherData weatherData : entry.getValue()) {
+                weatherDataAdapter.write(out, weatherData);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    /**
+     * Reads a store snapshot written by write. Null readings and stations without an array are skipped.
+     * @param in The reader, positioned at the object.
+     * @return The readings grouped by station, or null for a JSON null.
+     * @throws IOException If the snapshot is malformed.
+     */
+    @Override
+    public Map<String, List<WeatherData>> read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Map<String, List<WeatherData>> snapshot = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String stationId = in.nextName();
+            if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                in.skipValue();
+                continue;
+            }
+
+            List<WeatherData> readings = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                WeatherData weatherData = weatherDataAdapter.read(in);
+                if (weatherData != null) {
+                    readings.add(weatherData);
+                }
+            }
+            in.endArray();
+            snapshot.put(stationId, readings);
+        }
+        in.endObject();
+        return snapshot;
+    }
+}
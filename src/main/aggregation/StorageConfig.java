@@ -0,0 +1,106 @@
+package main.aggregation;
+
+import main.common.JsonHandler;
+import main.common.WeatherSchema;
+
+import java.io.File;
+
+public class StorageConfig {
+    public static final String DEFAULT_DATA_DIRECTORY = "src" + File.separator + "data";
+
+    private final RetentionPolicy retentionPolicy;
+    private final WeatherSchema schema;
+    private final long memoryBudgetBytes;
+    private final EvictionPolicy evictionPolicy;
+    private final String dataDirectory;
+
+    /**
+     * Constructs the settings handed to a storage engine when it is created.
+     * @param retentionPolicy The retention policy applied to every station.
+     * @param schema The schema of the stored readings.
+     * @param memoryBudgetBytes The approximate memory the stored readings may use before stations are evicted.
+     * @param evictionPolicy The policy choosing which stations to evict.
+     * @param dataDirectory The directory in which the engine keeps its files.
+     */
+    public StorageConfig(RetentionPolicy retentionPolicy, WeatherSchema schema, long memoryBudgetBytes,
+                         EvictionPolicy evictionPolicy, String dataDirectory) {
+        this.retentionPolicy = retentionPolicy;
+        this.schema = schema;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.evictionPolicy = evictionPolicy;
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Builds the storage settings from system properties, falling back to the defaults:
+     * the datastore.retention.* properties, datastore.schema, datastore.memoryBudgetBytes,
+     * datastore.eviction and datastore.dataDir.
+     * @return The configured storage settings.
+     */
+    public static StorageConfig fromSystemProperties() {
+        return new StorageConfig(
+                RetentionPolicy.fromSystemProperties(),
+                loadSchema(System.getProperty("datastore.schema")),
+                Long.getLong("datastore.memoryBudgetBytes", Runtime.getRuntime().maxMemory() / 2),
+                EvictionPolicy.fromName(System.getProperty("datastore.eviction", LruEvictionPolicy.NAME)),
+                System.getProperty("datastore.dataDir", DEFAULT_DATA_DIRECTORY));
+    }
+
+    /**
+     * Derives the column schema for station histories from a sample input file in the content server
+     * format, or uses the default schema of the bundled input files.
+     * @param sampleFilePath Path of a sample input file, or null for the default schema.
+     * @return The schema used to lay out station histories.
+     */
+    private static WeatherSchema loadSchema(String sampleFilePath) {
+        if (sampleFilePath == null) {
+            return WeatherSchema.DEFAULT;
+        }
+        try {
+            return WeatherSchema.infer(JsonHandler.convertTextToJSON(JsonHandler.readFile(sampleFilePath)));
+        } catch (Exception e) {
+            System.out.println("Error deriving schema from " + sampleFilePath + ", using the default schema: " + e.getMessage());
+            return WeatherSchema.DEFAULT;
+        }
+    }
+
+    /**
+     * Returns the retention policy applied to every station.
+     * @return The retention policy.
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Returns the schema of the stored readings.
+     * @return The schema.
+     */
+    public WeatherSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the memory budget above which stations are evicted.
+     * @return The memory budget in bytes.
+     */
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Returns the policy choosing which stations to evict.
+     * @return The eviction policy.
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * Returns the directory in which files are kept.
+     * @return The data directory.
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+}
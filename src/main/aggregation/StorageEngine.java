@@ -0,0 +1,174 @@
+package main.aggregation;
+
+import com.google.gson.JsonObject;
+import main.common.WeatherData;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public interface StorageEngine {
+    /**
+     * Stores a reading for a station, applying the retention policy and the memory budget.
+     * @param stationId The station the reading belongs to.
+     * @param data The reading to store.
+     * @param storedAtMillis The wall-clock time at which the reading is stored.
+     */
+    void put(String stationId, WeatherData data, long storedAtMillis);
+
+    /**
+     * Retrieves the reading with the largest Lamport time that is less than or equal to the provided time.
+     * @param stationId The station to look up.
+     * @param lamportTime The Lamport time bound.
+     * @return An optional containing the matching reading, or empty if there is none.
+     */
+    Optional<WeatherData> getAt(String stationId, int lamportTime);
+
+    /**
+     * Retrieves every stored reading of a station.
+     * @param stationId The station to look up.
+     * @return The readings, oldest first; empty if the station is unknown.
+     */
+    List<WeatherData> getHistory(String stationId);
+
+    /**
+     * Removes every reading sent by one of the given senders and drops readings past their retention.
+     * Stations left without readings are removed.
+     * @param senderIds The senders whose readings are removed.
+     * @param currentTimeMillis The current wall-clock time.
+     * @return The number of readings removed.
+     */
+    int expireSenders(Set<String> senderIds, long currentTimeMillis);
+
+    /**
+     * Returns a copy of all stored readings, grouped by station.
+     * @return A new map from station ID to its readings, oldest first.
+     */
+    Map<String, List<WeatherData>> snapshot();
+
+    /**
+     * Replaces all stored readings with the given ones, applying the retention policy and the memory budget.
+     * @param snapshot The readings to store, grouped by station; their order does not matter.
+     * @param currentTimeMillis The current wall-clock time, used as the storage time of readings that carry none.
+     */
+    void restore(Map<String, ? extends Collection<WeatherData>> snapshot, long currentTimeMillis);
+
+    /**
+     * Returns the IDs of all stations that have readings.
+     * @return A new set with the station IDs.
+     */
+    Set<String> stationIds();
+
+    /**
+     * Removes a station and all its readings.
+     * @param stationId The station to remove.
+     * @return True if the station was stored, otherwise false.
+     */
+    boolean remove(String stationId);
+
+    /**
+     * Removes every station from memory. Saved data is kept; see deleteSavedData.
+     */
+    void clear();
+
+    /**
+     * Writes all stored readings to durable storage.
+     */
+    void save();
+
+    /**
+     * Replaces the stored readings with those last written by save, if any.
+     */
+    void load();
+
+    /**
+     * Deletes the data written by save.
+     * @throws IOException If the saved data cannot be deleted.
+     */
+    void deleteSavedData() throws IOException;
+
+    /**
+     * Returns the approximate memory used by the stored readings.
+     * @return The estimated size in bytes.
+     */
+    long getEstimatedBytes();
+
+    /**
+     * Returns the name under which this engine is configured.
+     * @return The engine name.
+     */
+    String getName();
+
+    /**
+     * Returns how many stations were evicted to stay within the memory budget.
+     * Engines without a memory budget never evict and report 0.
+     * @return The number of evicted stations.
+     */
+    default long getEvictedStationCount() {
+        return 0;
+    }
+
+    /**
+     * Returns how many weather data entries were evicted to stay within the memory budget.
+     * @return The number of evicted entries, 0 for engines that never evict.
+     */
+    default long getEvictedEntryCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the estimated number of bytes released by eviction.
+     * @return The number of evicted bytes, 0 for engines that never evict.
+     */
+    default long getEvictedBytes() {
+        return 0;
+    }
+
+    /**
+     * Computes statistics over a numeric field of a station's readings.
+     * This default implementation decodes every reading; engines may read a column directly instead.
+     * @param stationId The station to look up.
+     * @param field The name of a numeric field, such as air_temp or press.
+     * @return The statistics of the stored values; empty if the station or field is unknown.
+     */
+    default DoubleSummaryStatistics summarize(String stationId, String field) {
+        DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+        for (WeatherData data : getHistory(stationId)) {
+            JsonObject reading = data.getData();
+            if (reading == null || !reading.has(field) || !reading.get(field).isJsonPrimitive()) {
+                continue;
+            }
+            try {
+                statistics.accept(Double.parseDouble(reading.get(field).getAsString()));
+            } catch (NumberFormatException e) {
+                // Not a numeric reading, skip it
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Creates the storage engine registered under the given name. A custom engine is named by its
+     * class, which needs a public constructor taking a StorageConfig.
+     * @param name "heap", "offheap", or the fully qualified name of a StorageEngine class.
+     * @param config The settings handed to the engine.
+     * @return The matching storage engine.
+     */
+    static StorageEngine fromName(String name, StorageConfig config) {
+        if (HeapStorageEngine.NAME.equalsIgnoreCase(name)) {
+            return new HeapStorageEngine(config);
+        } else if (OffHeapStorageEngine.NAME.equalsIgnoreCase(name)) {
+            return new OffHeapStorageEngine(config, Integer.getInteger("datastore.offheap.slabBytes", OffHeapArena.DEFAULT_SLAB_BYTES));
+        }
+        try {
+            Class<?> engineClass = Class.forName(name);
+            return (StorageEngine) engineClass.getConstructor(StorageConfig.class).newInstance(config);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown storage engine: " + name, e);
+        }
+    }
+}
@@ -4,16 +4,40 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonObject;
 
 import main.common.JsonHandler;
+import main.network.Frame;
+import main.network.HttpCompression;
 import main.network.NetworkHandler;
+import main.network.RetryLaterException;
 import main.network.SocketNetworkHandler;
+import main.network.UnixDomainSocket;
 import main.common.LamportClock;
 
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class GETClient {
+    private static final String PRETTY_FLAG = "--pretty";
+    private static final String GZIP_FLAG = "--gzip";
+    private static final String BINARY_FLAG = "--binary";
+
     private final NetworkHandler networkHandler;
     private final String senderID;
     private LamportClock lamportClock;
+    private boolean prettyPrint;
+    private boolean acceptGzip;
+    private boolean binary;
+    private HedgingPolicy hedgingPolicy;
+    private Supplier<NetworkHandler> hedgeHandlers;
+    private ExecutorService hedgeExecutor;
 
     /**
      * Constructor for GETClient.
@@ -26,10 +50,59 @@ public class GETClient {
         this.lamportClock = new LamportClock();
     }
 
+    /**
+     * Sets whether the client asks the server for pretty-printed JSON and prints responses as JSON.
+     * By default responses are compact and printed as "key: value" lines.
+     * @param prettyPrint True to request and print indented JSON.
+     */
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    /**
+     * Sets whether the client sends Accept-Encoding: gzip. The network handler decompresses gzip responses,
+     * so the response is handled the same either way.
+     * @param acceptGzip True to accept gzip-compressed responses.
+     */
+    public void setAcceptGzip(boolean acceptGzip) {
+        this.acceptGzip = acceptGzip;
+    }
+
+    /**
+     * Sets whether the client sends its requests as binary frames instead of HTTP text.
+     * Frame responses are never compressed, so Accept-Encoding does not apply to them.
+     * @param binary True to use binary frames.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Enables hedging: a GET that has not been answered within the policy's delay is sent again on a
+     * new connection, and the first answer is used. Through the load balancer, the duplicate goes to
+     * the next server in rotation, so one stalled server does not hold up the request.
+     * @param hedgingPolicy The policy that sets the hedge delay and budget.
+     * @param hedgeHandlers Creates the network handler of each attempt, as an abandoned attempt may
+     *                      still be using its connection when the next request starts.
+     */
+    public void setHedging(HedgingPolicy hedgingPolicy, Supplier<NetworkHandler> hedgeHandlers) {
+        this.hedgingPolicy = hedgingPolicy;
+        this.hedgeHandlers = hedgeHandlers;
+        if (hedgeExecutor == null) {
+            hedgeExecutor = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "GETClient-hedge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
     /**
      * Sends a GET request to retrieve weather data from the server.
      * Constructs a GET request, sends it to the specified server, and processes the response.
-     * Updates the Lamport clock based on the server's response.
+     * Updates the Lamport clock based on the server's response. With hedging enabled, a slow request
+     * is duplicated on a second connection and the first answer is returned. A request the server sheds
+     * with 503 or 429, such as one redirected by a draining server, is retried after its Retry-After delay.
      * @param serverName The name or address of the server.
      * @param portNumber The port number on which the server is listening.
      * @param stationID Optional parameter specifying a specific stationID for data retrieval. Can be null.
@@ -41,47 +114,21 @@ public class GETClient {
 
         while (retries < MAX_RETRIES) {
             try {
-                // Step 1: Initialize the socket and get the Lamport clock value from the server
-                int serverLamportClock = networkHandler.initializeSocket(serverName, portNumber);
-
-                // Step 2: Set your Lamport clock using the value from the server
-                lamportClock.setClock(serverLamportClock);
-
-                String getRequest = "GET /weather.json HTTP/1.1\r\n" +
-                        "User-Agent: ATOMClient/1/0\r\n" +
-                        "SenderID: " + senderID + "\r\n" +
-                        "LamportClock: " + lamportClock.send() + "\r\n" +
-                        (stationID != null ? "StationID: " + stationID + "\r\n" : "") +
-                        "\r\n";
-
-                String response = networkHandler.sendAndReceiveData(serverName, portNumber, getRequest, false); // using the stubbed method
-                System.out.println(response);
-                System.out.println();
-
-                if (response == null) {
-                    System.out.println("Error: No response received from the server.");
-                    System.out.println();
-                    return null;
-                } else if (response.startsWith("HTTP/1.1 204")) {
-                    System.out.println("Server response: No Content.");
-                    System.out.println();
-                    return null;
-                } else if (response.startsWith("HTTP/1.1 503")) {
-                    System.out.println("Server response: Service Unavailable.");
-                    System.out.println();
-                    return null;
+                if (hedgingPolicy != null) {
+                    return getDataHedged(serverName, portNumber, stationID);
                 }
-
-                return JsonHandler.parseJSONObject(JsonHandler.extractJSONContent(response));
+                return getDataOnce(networkHandler, lamportClock, serverName, portNumber, stationID);
             } catch (JsonParseException e) {
                 System.out.println("Error parsing the server's JSON response: " + e.getMessage());
                 return null;
             } catch (Exception e) {
                 System.out.println("Error: " + e.getMessage());
+                RetryLaterException retryLater = findRetryLater(e);
                 if (++retries < MAX_RETRIES) {
-                    System.out.println("Retry in 15 seconds...");
+                    int delaySeconds = retryLater != null ? retryLater.getRetryAfterSeconds() : 15;
+                    System.out.println("Retry in " + delaySeconds + " seconds...");
                     try {
-                        Thread.sleep(15000);
+                        Thread.sleep(delaySeconds * 1000L);
                     } catch (InterruptedException ie) {
                         System.out.println("Retry interrupted: " + ie.getMessage());
                     }
@@ -94,9 +141,249 @@ public class GETClient {
         return null;
     }
 
+    /**
+     * Finds the 503 or 429 response behind a failed request, which may be wrapped by the network handler.
+     * @param failure The failure of the request.
+     * @return The retry the server asked for, or null if the request failed for another reason.
+     */
+    private static RetryLaterException findRetryLater(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetryLaterException) {
+                return (RetryLaterException) cause;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends one GET request on a new connection of the given network handler and processes the response.
+     * @param handler The network handler to send the request with.
+     * @param clock The Lamport clock to set from the server and stamp the request with.
+     * @param serverName The name or address of the server.
+     * @param portNumber The port number on which the server is listening.
+     * @param stationID The station to read, or null for the server's default station.
+     * @return A JSONObject containing the server's response or null if there is no data.
+     * @throws RetryLaterException If the server sheds the request with a 503 or 429 response.
+     */
+    private JsonObject getDataOnce(NetworkHandler handler, LamportClock clock, String serverName, int portNumber, String stationID) {
+        // Step 1: Initialize the socket and get the Lamport clock value from the server
+        int serverLamportClock = handler.initializeSocket(serverName, portNumber);
+
+        // Step 2: Set your Lamport clock using the value from the server
+        clock.setClock(serverLamportClock);
+
+        return sendGetRequest(handler, clock, serverName, portNumber, stationID);
+    }
+
+    /**
+     * Sends a GET request on the already initialized socket of the given network handler and processes the response.
+     * @param handler The network handler whose socket was initialized.
+     * @param clock The Lamport clock to stamp the request with.
+     * @param serverName The name or address of the server.
+     * @param portNumber The port number on which the server is listening.
+     * @param stationID The station to read, or null for the server's default station.
+     * @return A JSONObject containing the server's response or null if there is no data.
+     * @throws RetryLaterException If the server sheds the request with a 503 or 429 response.
+     */
+    private JsonObject sendGetRequest(NetworkHandler handler, LamportClock clock, String serverName, int portNumber, String stationID) {
+        if (binary) {
+            return getDataAsFrame(handler, clock, serverName, portNumber, stationID);
+        }
+
+        String getRequest = "GET /weather.json" + (prettyPrint ? "?pretty=true" : "") + " HTTP/1.1\r\n" +
+                "User-Agent: ATOMClient/1/0\r\n" +
+                "SenderID: " + senderID + "\r\n" +
+                "LamportClock: " + clock.send() + "\r\n" +
+                (stationID != null ? "StationID: " + stationID + "\r\n" : "") +
+                (acceptGzip ? "Accept-Encoding: " + HttpCompression.GZIP + "\r\n" : "") +
+                "\r\n";
+
+        String response = handler.sendAndReceiveData(serverName, portNumber, getRequest, false); // using the stubbed method
+        System.out.println(response);
+        System.out.println();
+
+        if (response == null) {
+            System.out.println("Error: No response received from the server.");
+            System.out.println();
+            return null;
+        } else if (response.startsWith("HTTP/1.1 204")) {
+            System.out.println("Server response: No Content.");
+            System.out.println();
+            return null;
+        }
+        RetryLaterException retryLater = RetryLaterException.fromHttpResponse(response);
+        if (retryLater != null) {
+            System.out.println(retryLater.getStatus() == 503 ? "Server response: Service Unavailable." : "Server response: Too Many Requests.");
+            System.out.println();
+            throw retryLater;
+        }
+
+        return JsonHandler.parseJSONObject(JsonHandler.extractJSONContent(response));
+    }
+
+    /**
+     * Sends a GET request and, if it has not been answered within the hedge delay and the budget
+     * allows, the same request on a second connection. Each attempt has its own network handler and
+     * Lamport clock; the first answer wins, its clock becomes the client's, and the other attempt
+     * is abandoned, which closes its connection and makes its blocked read fail.
+     * @param serverName The name or address of the server.
+     * @param portNumber The port number on which the server is listening.
+     * @param stationID The station to read, or null for the server's default station.
+     * @return A JSONObject containing the first response or null if there is no data.
+     * @throws Exception The failure of the last attempt, if every attempt failed.
+     */
+    private JsonObject getDataHedged(String serverName, int portNumber, String stationID) throws Exception {
+        hedgingPolicy.onRequest();
+        ExecutorCompletionService<JsonObject> attempts = new ExecutorCompletionService<>(hedgeExecutor);
+        HedgedAttempt primaryAttempt = new HedgedAttempt(hedgeHandlers.get(), serverName, portNumber, stationID);
+        HedgedAttempt hedgeAttempt = null;
+        Future<JsonObject> primary = attempts.submit(primaryAttempt);
+        int running = 1;
+
+        long delayMillis = hedgingPolicy.getHedgeDelayMillis();
+        Future<JsonObject> done = attempts.poll(delayMillis, TimeUnit.MILLISECONDS);
+        if (done == null && hedgingPolicy.tryAcquireHedge()) {
+            System.out.println("No response after " + delayMillis + " ms, hedging GET request");
+            hedgeAttempt = new HedgedAttempt(hedgeHandlers.get(), serverName, portNumber, stationID);
+            attempts.submit(hedgeAttempt);
+            running++;
+        }
+
+        Exception failure = null;
+        try {
+            while (running > 0) {
+                if (done == null) {
+                    done = attempts.take();
+                }
+                running--;
+                try {
+                    JsonObject result = done.get();
+                    HedgedAttempt winner = done == primary ? primaryAttempt : hedgeAttempt;
+                    lamportClock.setClock(winner.clock.getTime());
+                    if (done != primary) {
+                        hedgingPolicy.recordHedgeWin();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                done = null;
+            }
+        } finally {
+            if (running > 0) {
+                // Abandon the slower attempt
+                (done == primary ? hedgeAttempt : primaryAttempt).abandon();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * One attempt of a hedged request, with its own network handler and Lamport clock so that
+     * attempts on different threads share no state. An attempt abandoned while it is still connecting
+     * closes its connection itself once connected, so a socket is never closed while it is being opened.
+     */
+    private class HedgedAttempt implements Callable<JsonObject> {
+        private final NetworkHandler handler;
+        private final LamportClock clock = new LamportClock();
+        private final String serverName;
+        private final int portNumber;
+        private final String stationID;
+        private boolean connected;
+        private boolean abandoned;
+
+        /**
+         * Creates an attempt of a hedged request.
+         * @param handler The network handler of the attempt.
+         * @param serverName The name or address of the server.
+         * @param portNumber The port number on which the server is listening.
+         * @param stationID The station to read, or null for the server's default station.
+         */
+        HedgedAttempt(NetworkHandler handler, String serverName, int portNumber, String stationID) {
+            this.handler = handler;
+            this.serverName = serverName;
+            this.portNumber = portNumber;
+            this.stationID = stationID;
+        }
+
+        /**
+         * Connects, sends the request and records its latency if it is answered.
+         * @return A JSONObject containing the server's response or null if there is no data.
+         * @throws CancellationException If the attempt was abandoned before it was connected.
+         */
+        @Override
+        public JsonObject call() {
+            long start = System.nanoTime();
+            synchronized (this) {
+                if (abandoned) {
+                    throw new CancellationException("Hedged attempt abandoned before it connected");
+                }
+            }
+            int serverLamportClock = handler.initializeSocket(serverName, portNumber);
+            synchronized (this) {
+                if (abandoned) {
+                    handler.closeClient();
+                    throw new CancellationException("Hedged attempt abandoned while it connected");
+                }
+                connected = true;
+            }
+            clock.setClock(serverLamportClock);
+            JsonObject result = sendGetRequest(handler, clock, serverName, portNumber, stationID);
+            hedgingPolicy.recordLatency(System.nanoTime() - start);
+            return result;
+        }
+
+        /**
+         * Abandons the attempt. A connected attempt has its connection closed at once; an attempt
+         * that is still connecting closes its connection when the connect returns.
+         */
+        synchronized void abandon() {
+            abandoned = true;
+            if (connected) {
+                handler.closeClient();
+            }
+        }
+    }
+
+    /**
+     * Sends a GET request as a binary frame on the already initialized socket and decodes the response frame.
+     * @param handler The network handler whose socket was initialized.
+     * @param clock The Lamport clock to stamp the request with.
+     * @param serverName The name or address of the server.
+     * @param portNumber The port number on which the server is listening.
+     * @param stationID The station to read, or null for the server's default station.
+     * @return A JSONObject containing the server's response or null if there is no data.
+     * @throws RetryLaterException If the server sheds the request with a 503 or 429 response frame.
+     */
+    private JsonObject getDataAsFrame(NetworkHandler handler, LamportClock clock, String serverName, int portNumber, String stationID) {
+        Frame request = Frame.get(clock.send(), senderID, stationID);
+        Frame response = handler.sendAndReceiveFrame(serverName, portNumber, request);
+
+        if (response == null) {
+            System.out.println("Error: No response received from the server.");
+            System.out.println();
+            return null;
+        }
+        System.out.println("Response frame: status " + response.getStatus() + ", LamportClock " + response.getLamportTime());
+        System.out.println();
+        RetryLaterException retryLater = RetryLaterException.fromFrame(response);
+        if (retryLater != null) {
+            throw retryLater;
+        } else if (response.getStatus() == 204) {
+            System.out.println("Server response: No Content.");
+            System.out.println();
+            return null;
+        } else if (response.getStatus() != 200) {
+            System.out.println("Server response: status " + response.getStatus() + ".");
+            System.out.println();
+            return null;
+        }
+        return JsonHandler.parseJSONObject(response.getPayloadText());
+    }
+
     /**
      * Interprets and prints the response received from the server.
-     * Converts the response JSON to text and prints it to the console.
+     * Converts the response JSON to text, or to indented JSON if pretty printing is enabled, and prints it to the console.
      * @param response The JSONObject representing the server's response.
      */
     public void interpretResponse(JsonObject response) {
@@ -105,7 +392,7 @@ public class GETClient {
         }
 
         try {
-            String weatherDataText = JsonHandler.convertJSONToText(response);
+            String weatherDataText = prettyPrint ? JsonHandler.prettyPrint(response) : JsonHandler.convertJSONToText(response);
             String[] lines = weatherDataText.split("\n");
             System.out.println();
             for (String line : lines) {
@@ -119,10 +406,15 @@ public class GETClient {
 
     /**
      * Parses the provided server information to separate server name and port.
-     * @param input The server information in the format "serverName:portNumber".
-     * @return A string array where the first element is the server name and the second is the port number.
+     * @param input The server information in the format "serverName:portNumber", or "unix:/path" for a UNIX domain socket.
+     * @return A string array where the first element is the server name and the second is the port number;
+     *         a UNIX domain socket keeps its whole address as the server name, with port 0.
      */
     public static String[] parseServerInfo(String input) {
+        if (UnixDomainSocket.isUnixAddress(input)) {
+            return new String[] {input, "0"};
+        }
+
         // Remove the "http://" if present
         String strippedInput = input.replaceFirst("http://", "");
 
@@ -150,6 +442,9 @@ public class GETClient {
         System.out.println("Shutting down GETClient...");
 
         networkHandler.closeClient();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
 
         System.out.println("GETClient shutdown complete.");
     }
@@ -159,11 +454,21 @@ public class GETClient {
      * Accepts command-line arguments specifying the server and optionally the stationID.
      * Fetches weather data from the specified server and prints the response.
      * @param args Command line arguments. The first argument specifies the server in the format "serverName:portNumber",
-     *             and the optional second argument specifies the stationID.
+     *             or "unix:/path" for a UNIX domain socket, and the optional second argument specifies the stationID. Trailing flags: --pretty requests
+     *             indented JSON, --gzip accepts gzip-compressed responses and --binary sends binary frames.
      */
     public static void main(String[] args) {
+        boolean prettyPrint = false;
+        boolean acceptGzip = false;
+        boolean binary = false;
+        while (args.length > 0 && Arrays.asList(PRETTY_FLAG, GZIP_FLAG, BINARY_FLAG).contains(args[args.length - 1])) {
+            prettyPrint |= PRETTY_FLAG.equals(args[args.length - 1]);
+            acceptGzip |= GZIP_FLAG.equals(args[args.length - 1]);
+            binary |= BINARY_FLAG.equals(args[args.length - 1]);
+            args = Arrays.copyOf(args, args.length - 1);
+        }
         if (args.length < 1) {
-            System.out.println("Usage: GETClient <serverName>:<portNumber> [stationID]");
+            System.out.println("Usage: GETClient <serverName>:<portNumber>|unix:<path> [stationID] [" + PRETTY_FLAG + "] [" + GZIP_FLAG + "] [" + BINARY_FLAG + "]");
             return;
         }
 
@@ -178,6 +483,12 @@ public class GETClient {
 
         NetworkHandler networkHandler = new SocketNetworkHandler();
         GETClient client = new GETClient(networkHandler);
+        client.setPrettyPrint(prettyPrint);
+        client.setAcceptGzip(acceptGzip);
+        client.setBinary(binary);
+        if (Boolean.getBoolean("client.hedge.enabled")) {
+            client.setHedging(HedgingPolicy.fromSystemProperties(), SocketNetworkHandler::new);
+        }
         JsonObject response = client.getData(serverName, portNumber, stationID);
 
         // Interpret and print the response
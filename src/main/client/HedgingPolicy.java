@@ -0,0 +1,136 @@
+package main.client;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HedgingPolicy {
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final long DEFAULT_MIN_DELAY_MILLIS = 10;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 500;
+    public static final double DEFAULT_BUDGET_PERCENT = 10;
+    private static final int MIN_SAMPLES = 10;
+    private static final double MAX_BUDGET_TOKENS = 10;
+
+    private final long[] latencies;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final double budgetRatio;
+    private int next;
+    private int count;
+    private double budgetTokens;
+    private final AtomicLong hedgeCount = new AtomicLong(0);
+    private final AtomicLong hedgeWinCount = new AtomicLong(0);
+
+    /**
+     * Constructs a hedging policy for GET requests. A request that has not been answered after the
+     * given percentile of recent latencies gets a duplicate, which the load balancer routes to the
+     * next server. Each request adds a fraction of a token to the hedging budget and each hedge takes
+     * a whole one, so hedges never add more than the budget percentage of extra requests.
+     * @param windowSize The number of recent latencies the delay is derived from.
+     * @param percentile The percentile of recent latencies after which a request is hedged, such as 0.95.
+     * @param minDelayMillis The shortest hedge delay.
+     * @param maxDelayMillis The longest hedge delay, also used until enough latencies are known.
+     * @param budgetPercent Hedges allowed per hundred requests.
+     */
+    public HedgingPolicy(int windowSize, double percentile, long minDelayMillis, long maxDelayMillis, double budgetPercent) {
+        if (windowSize < 1 || percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("Invalid hedging window " + windowSize + " or percentile " + percentile);
+        }
+        if (minDelayMillis < 0 || maxDelayMillis < minDelayMillis || budgetPercent < 0) {
+            throw new IllegalArgumentException("Invalid hedging delays or budget.");
+        }
+        this.latencies = new long[windowSize];
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budgetRatio = budgetPercent / 100;
+        this.budgetTokens = budgetPercent > 0 ? 1 : 0; // So that even a one-off request can be hedged
+    }
+
+    /**
+     * Builds the hedging policy from system properties, falling back to the defaults:
+     * client.hedge.windowSize, client.hedge.percentile, client.hedge.minDelayMillis,
+     * client.hedge.maxDelayMillis and client.hedge.budgetPercent.
+     * @return The configured hedging policy.
+     */
+    public static HedgingPolicy fromSystemProperties() {
+        return new HedgingPolicy(
+                Integer.getInteger("client.hedge.windowSize", DEFAULT_WINDOW_SIZE),
+                Double.parseDouble(System.getProperty("client.hedge.percentile", String.valueOf(DEFAULT_PERCENTILE))),
+                Long.getLong("client.hedge.minDelayMillis", DEFAULT_MIN_DELAY_MILLIS),
+                Long.getLong("client.hedge.maxDelayMillis", DEFAULT_MAX_DELAY_MILLIS),
+                Double.parseDouble(System.getProperty("client.hedge.budgetPercent", String.valueOf(DEFAULT_BUDGET_PERCENT))));
+    }
+
+    /**
+     * Records the latency of an answered attempt, from sending to response.
+     * @param latencyNanos The latency of the attempt.
+     */
+    public synchronized void recordLatency(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        count = Math.min(count + 1, latencies.length);
+    }
+
+    /**
+     * Returns how long to wait for an answer before hedging: the configured percentile of recent
+     * latencies, within the minimum and maximum delay. The maximum is used until enough latencies are known.
+     * @return The hedge delay in milliseconds.
+     */
+    public synchronized long getHedgeDelayMillis() {
+        if (count < Math.min(MIN_SAMPLES, latencies.length)) {
+            return maxDelayMillis;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * count) - 1;
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delayMillis));
+    }
+
+    /**
+     * Adds this request's share to the hedging budget. Called once per request, hedged or not.
+     */
+    public synchronized void onRequest() {
+        budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + budgetRatio);
+    }
+
+    /**
+     * Takes a hedge from the budget, if one is left.
+     * @return True if the request may be hedged, otherwise false.
+     */
+    public synchronized boolean tryAcquireHedge() {
+        if (budgetTokens < 1 - 1e-9) { // Ten deposits of 0.1 add up to just under 1
+            return false;
+        }
+        budgetTokens = Math.max(0, budgetTokens - 1);
+        hedgeCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records that a hedge answered before the attempt it duplicated.
+     */
+    public void recordHedgeWin() {
+        hedgeWinCount.incrementAndGet();
+    }
+
+    /**
+     * Returns how many requests were hedged.
+     * @return The number of hedges sent.
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * Returns how many hedges answered first.
+     * @return The number of hedges that won.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+}
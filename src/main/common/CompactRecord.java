@@ -0,0 +1,475 @@
+package main.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+public class CompactRecord {
+    private static final int DICTIONARY_LIMIT = 65536;
+    private static final Set<String> LOW_CARDINALITY_FIELDS = Set.of("id", "name", "state", "time_zone", "cloud", "wind_dir");
+    private static final StringDictionary keyDictionary = new StringDictionary(DICTIONARY_LIMIT);
+    private static final StringDictionary valueDictionary = new StringDictionary(DICTIONARY_LIMIT);
+    private static final TypeAdapter<JsonElement> elementAdapter = JsonHandler.getAdapter(TypeToken.get(JsonElement.class));
+
+    private static final int OBJECT_OVERHEAD = 24;  // Header and the two array references
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int STRING_OVERHEAD = 40;  // String header and backing array header
+    private static final int ELEMENT_OVERHEAD = 56; // Non-string JSON values keep their Gson element
+    private static final byte STRING_VALUE = 0;
+    private static final byte ELEMENT_VALUE = 1;
+    private static final int INITIAL_FIELDS = 20; // The input format has 17 fields
+
+    private final String[] keys;    // Shared key instances from the key dictionary
+    private final Object[] values;  // String for JSON strings, JsonElement for every other value
+
+    /**
+     * Constructs a record from already encoded keys and values.
+     * @param keys The field names, in order.
+     * @param values The field values: a String for JSON strings, a JsonElement otherwise.
+     */
+    private CompactRecord(String[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Encodes a JSON object into a compact record. Keys, and the values of low-cardinality fields
+     * such as state, time zone or cloud, are replaced by shared dictionary instances.
+     * @param jsonObject The JSON object to encode, may be null.
+     * @return The compact record, or null if jsonObject is null.
+     */
+    public static CompactRecord fromJson(JsonObject jsonObject) {
+        if (jsonObject == null) {
+            return null;
+        }
+
+        String[] keys = new String[jsonObject.size()];
+        Object[] values = new Object[keys.length];
+        int i = 0;
+        for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
+            keys[i] = keyDictionary.intern(entry.getKey());
+            values[i] = encodeValue(keys[i], entry.getValue());
+            i++;
+        }
+        return new CompactRecord(keys, values);
+    }
+
+    /**
+     * Creates a record from field names and already encoded values.
+     * @param keys The field names, in order.
+     * @param values The field values: a String for JSON strings, a JsonElement otherwise.
+     * @return The compact record.
+     */
+    public static CompactRecord of(String[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Every key needs exactly one value.");
+        }
+        String[] sharedKeys = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sharedKeys[i] = keyDictionary.intern(keys[i]);
+        }
+        return new CompactRecord(sharedKeys, values.clone());
+    }
+
+    /**
+     * Encodes the value of a string field, sharing it if the field has few distinct values.
+     * @param key The shared field name.
+     * @param text The string value.
+     * @return The shared or original string.
+     */
+    static String encodeString(String key, String text) {
+        return LOW_CARDINALITY_FIELDS.contains(key) ? valueDictionary.intern(text) : text;
+    }
+
+    /**
+     * Returns the shared instance of a value that repeats across many records, such as a sender ID.
+     * @param value The value to intern.
+     * @return The shared instance, or the value itself if the dictionary is full.
+     */
+    public static String internValue(String value) {
+        return valueDictionary.intern(value);
+    }
+
+    /**
+     * Checks whether the given instance is held by the shared value dictionary.
+     * @param value The value to check.
+     * @return True if the instance is shared, otherwise false.
+     */
+    public static boolean isSharedValue(String value) {
+        return valueDictionary.isShared(value);
+    }
+
+    /**
+     * Encodes a single field value.
+     * @param key The field name.
+     * @param value The JSON value of the field.
+     * @return A String for JSON strings, interned for low-cardinality fields, or the element itself.
+     */
+    private static Object encodeValue(String key, JsonElement value) {
+        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+            String text = value.getAsString();
+            return LOW_CARDINALITY_FIELDS.contains(key) ? valueDictionary.intern(text) : text;
+        }
+        return value.deepCopy();
+    }
+
+    /**
+     * Decodes this record back into a JSON object. This is meant for the edges of the system,
+     * such as building a response or persisting the store.
+     * @return A new JSON object with the fields of this record, in their original order.
+     */
+    public JsonObject toJson() {
+        JsonObject jsonObject = new JsonObject();
+        for (int i = 0; i < keys.length; i++) {
+            Object value = values[i];
+            jsonObject.add(keys[i], value instanceof String ? new JsonPrimitive((String) value) : ((JsonElement) value).deepCopy());
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Serializes this record into a self-contained byte array, for storage outside the Java heap.
+     * Each field is written as its UTF-8 key, a type tag and either the UTF-8 string or the JSON text
+     * of a non-string value. Counts and lengths are variable-length integers, so short strings cost one extra byte.
+     * @return The encoded record.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 * keys.length);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeLength(out, keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                writeString(out, keys[i]);
+                if (values[i] instanceof String) {
+                    out.writeByte(STRING_VALUE);
+                    writeString(out, (String) values[i]);
+                } else {
+                    out.writeByte(ELEMENT_VALUE);
+                    writeString(out, values[i].toString());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decodes a record written by toBytes. Keys and low-cardinality values are interned again,
+     * exactly as when the record was first encoded from JSON.
+     * @param bytes The encoded record.
+     * @return The decoded record.
+     */
+    public static CompactRecord fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int count = readLength(in);
+            String[] keys = new String[count];
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = keyDictionary.intern(readString(in));
+                byte tag = in.readByte();
+                String text = readString(in);
+                if (tag == STRING_VALUE) {
+                    values[i] = LOW_CARDINALITY_FIELDS.contains(keys[i]) ? valueDictionary.intern(text) : text;
+                } else {
+                    values[i] = JsonParser.parseString(text);
+                }
+            }
+            return new CompactRecord(keys, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes this record as a JSON object, field by field, without building a JsonObject first.
+     * @param out The writer to write to.
+     * @throws IOException If the writer fails.
+     */
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        for (int i = 0; i < keys.length; i++) {
+            out.name(keys[i]);
+            if (values[i] instanceof String) {
+                out.value((String) values[i]);
+            } else {
+                elementAdapter.write(out, (JsonElement) values[i]);
+            }
+        }
+        out.endObject();
+    }
+
+    /**
+     * Reads a JSON object straight into a record, without building a JsonObject first.
+     * Keys and low-cardinality values are interned, exactly as in fromJson.
+     * @param in The reader, positioned at the object.
+     * @return The decoded record.
+     * @throws IOException If the object is malformed.
+     */
+    public static CompactRecord read(JsonReader in) throws IOException {
+        return read(in, CompactRecord::readValue);
+    }
+
+    /**
+     * Reads a JSON object into a record, leaving each value to the given reader.
+     * Duplicate fields keep their first position and their last value, as with a JsonObject.
+     * @param in The reader, positioned at the object.
+     * @param valueReader Reads and encodes the value of one field.
+     * @return The decoded record.
+     * @throws IOException If the object is malformed.
+     */
+    static CompactRecord read(JsonReader in, ValueReader valueReader) throws IOException {
+        String[] keys = new String[INITIAL_FIELDS];
+        Object[] values = new Object[INITIAL_FIELDS];
+        int size = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = keyDictionary.intern(in.nextName());
+            Object value = valueReader.read(in, key);
+            int index = indexOf(keys, size, key);
+            if (index >= 0) {
+                values[index] = value;
+                continue;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = key;
+            values[size] = value;
+            size++;
+        }
+        in.endObject();
+        return new CompactRecord(Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Reads and encodes the value of one field without checking its type.
+     * @param in The reader, positioned at the value.
+     * @param key The shared field name.
+     * @return A String for JSON strings, a JsonElement for every other value.
+     * @throws IOException If the value is malformed.
+     */
+    private static Object readValue(JsonReader in, String key) throws IOException {
+        switch (in.peek()) {
+            case STRING:
+                return encodeString(key, in.nextString());
+            case BOOLEAN:
+                return new JsonPrimitive(in.nextBoolean());
+            case NULL:
+                in.nextNull();
+                return JsonNull.INSTANCE;
+            default:
+                // Numbers keep the text they were sent with, as a lazily parsed number
+                return JsonParser.parseReader(in);
+        }
+    }
+
+    /**
+     * Finds a field name among the first fields of the array. Keys are shared instances, so identity suffices
+     * for keys that went through the dictionary; equals covers a full dictionary.
+     * @param keys The field names read so far.
+     * @param size The number of fields read so far.
+     * @param key The field name to find.
+     * @return The index of the field, or -1 if it was not read yet.
+     */
+    private static int indexOf(String[] keys, int size, String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key || keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the value of one field for read, so that decoders can add their own validation.
+     */
+    interface ValueReader {
+        /**
+         * Reads and encodes the value of one field.
+         * @param in The reader, positioned at the value.
+         * @param key The shared field name.
+         * @return A String for JSON strings, a JsonElement for every other value.
+         * @throws IOException If the value is malformed or fails validation.
+         */
+        Object read(JsonReader in, String key) throws IOException;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     * @param out The stream to write to.
+     * @param value The string to write.
+     * @throws IOException If the stream fails.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeLength(out, utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Writes a non-negative integer in seven-bit groups, least significant group first.
+     * @param out The stream to write to.
+     * @param length The value to write.
+     * @throws IOException If the stream fails.
+     */
+    private static void writeLength(DataOutputStream out, int length) throws IOException {
+        while ((length & ~0x7F) != 0) {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+    /**
+     * Reads a non-negative integer written by writeLength.
+     * @param in The stream to read from.
+     * @return The decoded value.
+     * @throws IOException If the stream is truncated or the value is malformed.
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IOException("Malformed length in encoded record.");
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     * @param in The stream to read from.
+     * @return The decoded string.
+     * @throws IOException If the stream is truncated.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[readLength(in)];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retrieves the value of a string field.
+     * @param key The field name.
+     * @return The string value, or null if the field is missing or not a string.
+     */
+    public String getString(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return values[i] instanceof String ? (String) values[i] : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the value of a primitive field as text, such as a station id sent as a number.
+     * @param key The field name.
+     * @return The text of the value, or null if the field is missing, null or not a primitive.
+     */
+    public String getText(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                Object value = values[i];
+                if (value instanceof String) {
+                    return (String) value;
+                }
+                return value instanceof JsonPrimitive ? ((JsonPrimitive) value).getAsString() : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the name of the field at the given position.
+     * @param index The field position.
+     * @return The field name.
+     */
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Retrieves the encoded value of the field at the given position.
+     * @param index The field position.
+     * @return A String for JSON strings, a JsonElement for every other value.
+     */
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the number of fields in this record.
+     * @return The field count.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Estimates the heap footprint of this record. Strings held by the shared dictionaries
+     * are not counted, since their cost is paid once for all records.
+     * @return The estimated size in bytes.
+     */
+    public long estimateSizeBytes() {
+        long size = OBJECT_OVERHEAD + 2L * (ARRAY_OVERHEAD + (long) REFERENCE_SIZE * keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            if (!keyDictionary.isShared(keys[i])) {
+                size += STRING_OVERHEAD + keys[i].length();
+            }
+            Object value = values[i];
+            if (value instanceof String) {
+                if (!valueDictionary.isShared((String) value)) {
+                    size += STRING_OVERHEAD + ((String) value).length();
+                }
+            } else {
+                size += ELEMENT_OVERHEAD;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Compares two records by their decoded JSON content. Field order is not significant,
+     * matching how JSON objects compare.
+     * @param other The object to compare with.
+     * @return True if both records hold the same fields and values, otherwise false.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CompactRecord)) {
+            return false;
+        }
+        return toJson().equals(((CompactRecord) other).toJson());
+    }
+
+    @Override
+    public int hashCode() {
+        return toJson().hashCode();
+    }
+}
@@ -1,17 +1,25 @@
 package main.common;
 
 import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.lang.reflect.Type;
 
 public class JsonHandler {
-    private static final Gson gson = new Gson();
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(WeatherData.class, new WeatherDataTypeAdapter())
+            .create();
+    private static final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
 
     /**
      * Constructs a new JsonHandler. This constructor is private to prevent instantiation.
@@ -158,6 +166,37 @@ public class JsonHandler {
         return gson.fromJson(jsonString, type);
     }
 
+    /**
+     * Returns the adapter used to serialize and deserialize objects of the given type,
+     * including the registered WeatherData adapter.
+     * @param type The type to convert.
+     * @return The adapter for the type.
+     */
+    public static <T> TypeAdapter<T> getAdapter(TypeToken<T> type) {
+        return gson.getAdapter(type);
+    }
+
+    /**
+     * Creates a JSON writer with the same settings as serializeObject, for streaming large objects.
+     * @param writer The character stream to write to.
+     * @return A new JSON writer.
+     * @throws IOException If the writer cannot be created.
+     */
+    public static JsonWriter newJsonWriter(Writer writer) throws IOException {
+        return gson.newJsonWriter(writer);
+    }
+
+    /**
+     * Creates a JSON reader with the same settings as deserializeObject, for streaming large objects.
+     * @param reader The character stream to read from.
+     * @return A new JSON reader.
+     */
+    public static JsonReader newJsonReader(Reader reader) {
+        JsonReader jsonReader = gson.newJsonReader(reader);
+        jsonReader.setLenient(true); // Gson.fromJson reads leniently as well
+        return jsonReader;
+    }
+
     /**
      * Converts a JsonObject into a prettified string representation.
      *
@@ -165,7 +204,16 @@ public class JsonHandler {
      * @return A prettified string representation of the JsonObject.
      */
     public static String prettyPrint(JsonObject jsonObject) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(jsonObject);
+        return prettyGson.toJson(jsonObject);
+    }
+
+    /**
+     * Encodes a JsonObject for the wire: compact by default, indented only when asked for.
+     * @param jsonObject The JsonObject to encode.
+     * @param pretty True to indent the output for humans, false for the compact form.
+     * @return The encoded JSON text.
+     */
+    public static String toWireJson(JsonObject jsonObject, boolean pretty) {
+        return pretty ? prettyPrint(jsonObject) : gson.toJson(jsonObject);
     }
 }
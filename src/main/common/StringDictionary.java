@@ -0,0 +1,57 @@
+package main.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class StringDictionary {
+    private final ConcurrentHashMap<String, String> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    /**
+     * Constructs a dictionary that holds at most the given number of distinct strings.
+     * The bound keeps unexpected high-cardinality input from growing the dictionary without limit.
+     * @param maxEntries The maximum number of distinct strings kept in the dictionary.
+     */
+    public StringDictionary(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the shared instance of the given string, adding it to the dictionary if there is room.
+     * Records that store the returned instance share one copy of every repeated string.
+     * @param value The string to intern, may be null.
+     * @return The shared instance, or the string itself if the dictionary is full.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String shared = entries.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (entries.size() >= maxEntries) {
+            return value;
+        }
+
+        shared = entries.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * Checks whether the given instance is the one held by this dictionary.
+     * @param value The string to check.
+     * @return True if the dictionary holds exactly this instance, otherwise false.
+     */
+    public boolean isShared(String value) {
+        return value != null && entries.get(value) == value;
+    }
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     * @return The dictionary size.
+     */
+    public int size() {
+        return entries.size();
+    }
+}
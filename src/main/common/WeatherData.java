@@ -2,10 +2,17 @@ package main.common;
 
 import com.google.gson.JsonObject;
 
+import java.util.Objects;
+
 public class WeatherData implements Comparable<WeatherData> {
-    private int lamportTime;   // Lamport clock time
-    private String senderID;   // ID of the server from which the data is received
-    private JsonObject data;   // Weather data
+    public static final long NOT_STORED = -1;
+    private static final int OBJECT_OVERHEAD = 32;  // Header and fields of this object
+    private static final int STRING_OVERHEAD = 40;  // String header and backing array header
+
+    private int lamportTime;        // Lamport clock time
+    private String senderID;        // ID of the server from which the data is received
+    private CompactRecord record;   // Weather data, dictionary encoded
+    private long storedAtMillis = NOT_STORED;   // Wall-clock time at which the store first kept this reading
 
     /**
      * Constructs a new WeatherData object.
@@ -14,17 +21,53 @@ public class WeatherData implements Comparable<WeatherData> {
      * @param senderID The unique identifier of the sender/server.
      */
     public WeatherData(JsonObject data, int lamportTime, String senderID) {
-        this.data = data;
+        this.record = CompactRecord.fromJson(data);
         this.lamportTime = lamportTime;
-        this.senderID = senderID;
+        this.senderID = CompactRecord.internValue(senderID);
     }
 
     /**
-     * Retrieves the weather data.
+     * Creates a new WeatherData object from an already encoded record.
+     * @param record The weather data as a compact record.
+     * @param lamportTime The Lamport timestamp associated with the data.
+     * @param senderID The unique identifier of the sender/server.
+     * @return The new WeatherData object.
+     */
+    public static WeatherData fromRecord(CompactRecord record, int lamportTime, String senderID) {
+        WeatherData weatherData = new WeatherData(null, lamportTime, senderID);
+        weatherData.record = record;
+        return weatherData;
+    }
+
+    /**
+     * Creates a new WeatherData object from an already encoded record that the store has kept since the given time.
+     * @param record The weather data as a compact record.
+     * @param lamportTime The Lamport timestamp associated with the data.
+     * @param senderID The unique identifier of the sender/server.
+     * @param storedAtMillis The wall-clock time at which the reading was first stored, or NOT_STORED.
+     * @return The new WeatherData object.
+     */
+    public static WeatherData fromRecord(CompactRecord record, int lamportTime, String senderID, long storedAtMillis) {
+        WeatherData weatherData = fromRecord(record, lamportTime, senderID);
+        weatherData.storedAtMillis = storedAtMillis;
+        return weatherData;
+    }
+
+    /**
+     * Retrieves the weather data. The JSON object is decoded from the compact record on every call,
+     * so callers should only use it at the edges, such as when building a response.
      * @return The weather data as a JSON object.
      */
     public JsonObject getData() {
-        return data;
+        return record == null ? null : record.toJson();
+    }
+
+    /**
+     * Retrieves the weather data in its compact stored form.
+     * @return The weather data as a compact record.
+     */
+    public CompactRecord getRecord() {
+        return record;
     }
 
     /**
@@ -43,6 +86,33 @@ public class WeatherData implements Comparable<WeatherData> {
         return senderID;
     }
 
+    /**
+     * Retrieves the wall-clock time at which the store first kept this reading. It is carried through
+     * snapshots so that age-based retention keeps counting from the original time after a reload.
+     * It is not part of the reading's value and is ignored by equals.
+     * @return The storage time in milliseconds, or NOT_STORED for a reading that was never stored.
+     */
+    public long getStoredAtMillis() {
+        return storedAtMillis;
+    }
+
+    /**
+     * Estimates the heap footprint of this object, including its record.
+     * The estimate is approximate and meant for memory accounting rather than exact measurement.
+     * Strings shared through the record dictionaries are not counted.
+     * @return The estimated size in bytes.
+     */
+    public long estimateSizeBytes() {
+        long size = OBJECT_OVERHEAD;
+        if (senderID != null && !CompactRecord.isSharedValue(senderID)) {
+            size += STRING_OVERHEAD + senderID.length();
+        }
+        if (record != null) {
+            size += record.estimateSizeBytes();
+        }
+        return size;
+    }
+
     /**
      * Compares this WeatherData object to another based on Lamport timestamps.
      * This method helps in determining the order of events in a distributed system.
@@ -55,12 +125,38 @@ public class WeatherData implements Comparable<WeatherData> {
         return Integer.compare(this.lamportTime, other.lamportTime);
     }
 
+    /**
+     * Compares this WeatherData object to another by value: Lamport time, sender and data.
+     * Stores that keep records in a different layout hand out new instances on every read,
+     * so identity cannot be relied on.
+     * @param other The object to compare with.
+     * @return True if both objects describe the same reading, otherwise false.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof WeatherData)) {
+            return false;
+        }
+        WeatherData that = (WeatherData) other;
+        return lamportTime == that.lamportTime
+                && Objects.equals(senderID, that.senderID)
+                && Objects.equals(record, that.record);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lamportTime, senderID, record);
+    }
+
     /**
      * Provides a string representation of the WeatherData object.
      * @return A string representation containing the Lamport timestamp, sender ID, and data.
      */
     @Override
     public String toString() {
-        return "LamportTime: " + lamportTime + ", ServerID: " + senderID + ", Data: " + data.toString();
+        return "LamportTime: " + lamportTime + ", ServerID: " + senderID + ", Data: " + getData();
     }
 }
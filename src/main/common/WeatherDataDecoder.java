@@ -0,0 +1,125 @@
+package main.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import main.common.WeatherSchema.FieldType;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class WeatherDataDecoder {
+    private final WeatherSchema schema;
+
+    /**
+     * Constructs a decoder that checks readings against the given schema.
+     * @param schema The schema giving the expected type of known fields.
+     */
+    public WeatherDataDecoder(WeatherSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Parses a PUT body straight into a compact record with a streaming reader, without building
+     * a JsonObject tree first. Fields are validated as they are read: numeric schema fields must hold
+     * a number or a string in JSON number form, string schema fields must hold a primitive, and the
+     * reading must have a non-empty id. Fields outside the schema may hold any JSON value.
+     * Duplicate fields keep their first position and their last value, as with a JsonObject.
+     * @param content The request body.
+     * @return The decoded reading.
+     * @throws JsonParseException If the body is not a JSON object or a field fails validation.
+     */
+    public CompactRecord decode(String content) throws JsonParseException {
+        if (content == null || content.trim().isEmpty()) {
+            throw new JsonParseException("Empty weather data.");
+        }
+
+        CompactRecord record;
+        try (JsonReader reader = new JsonReader(new StringReader(content))) {
+            reader.setLenient(true); // Same leniency as Gson.fromJson
+            record = CompactRecord.read(reader, this::readValue);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("Unexpected content after the weather data.");
+            }
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            throw new JsonParseException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new JsonParseException("Could not read the weather data.", e);
+        }
+
+        String stationId = record.getText("id");
+        if (stationId == null || stationId.isEmpty()) {
+            throw new JsonParseException("Weather data has no station id.");
+        }
+        return record;
+    }
+
+    /**
+     * Reads and validates the value of one field.
+     * @param reader The reader, positioned at the value.
+     * @param key The shared field name.
+     * @return A String for JSON strings, a JsonElement for every other value.
+     * @throws IOException If the value is malformed.
+     */
+    private Object readValue(JsonReader reader, String key) throws IOException {
+        int field = schema.indexOf(key);
+        FieldType type = field < 0 ? null : schema.getType(field);
+        JsonToken token = reader.peek();
+
+        switch (token) {
+            case STRING: {
+                String text = reader.nextString();
+                if (type != null && type != FieldType.STRING && !isNumeric(text)) {
+                    throw new JsonParseException("Field " + key + " must be " + describe(type) + ", got \"" + text + "\".");
+                }
+                return CompactRecord.encodeString(key, text);
+            }
+            case NUMBER: {
+                // Parsed as a lazily parsed number, which keeps the text as sent
+                JsonElement number = JsonParser.parseReader(reader);
+                if (type != null && type != FieldType.STRING && !isNumeric(number.getAsString())) {
+                    throw new JsonParseException("Field " + key + " must be " + describe(type) + ", got " + number + ".");
+                }
+                return number;
+            }
+            case BOOLEAN:
+                if (type != null && type != FieldType.STRING) {
+                    throw new JsonParseException("Field " + key + " must be " + describe(type) + ".");
+                }
+                return new JsonPrimitive(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return JsonNull.INSTANCE;
+            default:
+                if (type != null) {
+                    throw new JsonParseException("Field " + key + " must be " + describe(type) + ", got " + token + ".");
+                }
+                return JsonParser.parseReader(reader);
+        }
+    }
+
+    /**
+     * Checks whether a value is a valid number for a numeric field. Only the JSON number grammar is
+     * accepted, so "NaN", "Infinity", "12d", "0x1p3" or padded text are rejected. Whole-number fields
+     * also accept decimals; the store keeps values that do not fit the column type in its side table.
+     * @param text The value as text.
+     * @return True if the value is a JSON number, otherwise false.
+     */
+    private static boolean isNumeric(String text) {
+        return WeatherSchema.isJsonNumber(text);
+    }
+
+    /**
+     * Describes a field type for validation messages.
+     * @param type The field type.
+     * @return A short description.
+     */
+    private static String describe(FieldType type) {
+        return type == FieldType.STRING ? "a string" : "a number";
+    }
+}
@@ -0,0 +1,81 @@
+package main.common;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+public class WeatherDataTypeAdapter extends TypeAdapter<WeatherData> {
+
+    /**
+     * Writes a WeatherData object with its record streamed as plain JSON, so the persisted format
+     * does not depend on the in-memory dictionaries and no JsonObject is built for it.
+     * The storage time is only written for readings that have been stored.
+     * @param out The writer to write to.
+     * @param weatherData The object to write, may be null.
+     * @throws IOException If the writer fails.
+     */
+    @Override
+    public void write(JsonWriter out, WeatherData weatherData) throws IOException {
+        if (weatherData == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("lamportTime").value(weatherData.getLamportTime());
+        if (weatherData.getSenderID() != null) {
+            out.name("senderID").value(weatherData.getSenderID());
+        }
+        if (weatherData.getRecord() != null) {
+            out.name("data");
+            weatherData.getRecord().write(out);
+        }
+        if (weatherData.getStoredAtMillis() != WeatherData.NOT_STORED) {
+            out.name("storedAt").value(weatherData.getStoredAtMillis());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Reads a WeatherData object, decoding its data straight into a compact record.
+     * Unknown fields are skipped.
+     * @param in The reader, positioned at the object.
+     * @return The decoded WeatherData, or null for a JSON null.
+     * @throws IOException If the object is malformed.
+     */
+    @Override
+    public WeatherData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        int lamportTime = 0;
+        String senderID = null;
+        CompactRecord record = null;
+        long storedAtMillis = WeatherData.NOT_STORED;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals("lamportTime")) {
+                lamportTime = in.nextInt();
+            } else if (name.equals("senderID")) {
+                senderID = in.nextString();
+            } else if (name.equals("data") && in.peek() == JsonToken.BEGIN_OBJECT) {
+                record = CompactRecord.read(in);
+            } else if (name.equals("storedAt")) {
+                storedAtMillis = in.nextLong();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return WeatherData.fromRecord(record, lamportTime, senderID, storedAtMillis);
+    }
+}
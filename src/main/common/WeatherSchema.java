@@ -0,0 +1,154 @@
+package main.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class WeatherSchema {
+    public static final int MAX_FIELDS = 64;
+
+    private static final Pattern JSON_NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    /**
+     * Mirrors the fields of the content server input format (see src/main/content/input_v1.txt).
+     */
+    public static final WeatherSchema DEFAULT = new WeatherSchema(
+            new String[] {"id", "name", "state", "time_zone", "lat", "lon", "local_date_time", "local_date_time_full",
+                    "air_temp", "apparent_t", "cloud", "dewpt", "press", "rel_hum", "wind_dir", "wind_spd_kmh", "wind_spd_kt"},
+            new FieldType[] {FieldType.STRING, FieldType.STRING, FieldType.STRING, FieldType.STRING, FieldType.DOUBLE,
+                    FieldType.DOUBLE, FieldType.STRING, FieldType.LONG, FieldType.DOUBLE, FieldType.DOUBLE, FieldType.STRING,
+                    FieldType.DOUBLE, FieldType.DOUBLE, FieldType.LONG, FieldType.STRING, FieldType.LONG, FieldType.LONG});
+
+    public enum FieldType { STRING, DOUBLE, LONG }
+
+    private final String[] names;
+    private final FieldType[] types;
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Constructs a schema from parallel arrays of field names and types.
+     * @param names The field names, in output order.
+     * @param types The storage type of each field.
+     */
+    public WeatherSchema(String[] names, FieldType[] types) {
+        if (names.length != types.length) {
+            throw new IllegalArgumentException("Every field needs exactly one type.");
+        }
+        if (names.length > MAX_FIELDS) {
+            throw new IllegalArgumentException("A schema supports at most " + MAX_FIELDS + " fields.");
+        }
+        this.names = names.clone();
+        this.types = types.clone();
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Derives a schema from a sample reading, such as a converted content server input file.
+     * String values that round-trip exactly as a long or a double become numeric fields;
+     * everything else is stored as a string.
+     * @param sample A sample reading in the input format.
+     * @return The derived schema.
+     */
+    public static WeatherSchema infer(JsonObject sample) {
+        List<String> names = new ArrayList<>();
+        List<FieldType> types = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : sample.entrySet()) {
+            if (names.size() == MAX_FIELDS) {
+                break;
+            }
+            JsonElement value = entry.getValue();
+            if (!value.isJsonPrimitive()) {
+                continue;
+            }
+            String text = value.getAsString();
+            names.add(entry.getKey());
+            if (isCanonicalLong(text)) {
+                types.add(FieldType.LONG);
+            } else if (isCanonicalDouble(text)) {
+                types.add(FieldType.DOUBLE);
+            } else {
+                types.add(FieldType.STRING);
+            }
+        }
+        return new WeatherSchema(names.toArray(new String[0]), types.toArray(new FieldType[0]));
+    }
+
+    /**
+     * Checks whether the text is exactly the string form of a long, so it can be stored as one without loss.
+     * @param text The text to check.
+     * @return True if Long.toString would reproduce the text, otherwise false.
+     */
+    public static boolean isCanonicalLong(String text) {
+        try {
+            return Long.toString(Long.parseLong(text)).equals(text);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the text is exactly the string form of a double, so it can be stored as one without loss.
+     * @param text The text to check.
+     * @return True if Double.toString would reproduce the text, otherwise false.
+     */
+    public static boolean isCanonicalDouble(String text) {
+        try {
+            return Double.toString(Double.parseDouble(text)).equals(text);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the text follows the JSON number grammar. Unlike Double.parseDouble this rejects
+     * forms such as "NaN", "Infinity", "12d", "0x1p3", "+1" and padded text.
+     * @param text The text to check.
+     * @return True if the text is a JSON number, otherwise false.
+     */
+    public static boolean isJsonNumber(String text) {
+        return JSON_NUMBER.matcher(text).matches();
+    }
+
+    /**
+     * Returns the index of the field with the given name.
+     * @param name The field name.
+     * @return The field index, or -1 if the field is not part of the schema.
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the name of the field at the given index.
+     * @param index The field index.
+     * @return The field name.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the storage type of the field at the given index.
+     * @param index The field index.
+     * @return The field type.
+     */
+    public FieldType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the number of fields in the schema.
+     * @return The field count.
+     */
+    public int size() {
+        return names.length;
+    }
+}
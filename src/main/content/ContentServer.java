@@ -4,9 +4,18 @@ import com.google.gson.JsonObject;
 
 import main.common.JsonHandler;
 import main.common.LamportClock;
+import main.network.Frame;
+import main.network.HttpCompression;
 import main.network.NetworkHandler;
+import main.network.RetryLaterException;
 import main.network.SocketNetworkHandler;
+import main.network.UnixDomainSocket;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 import java.util.UUID;
 import java.util.concurrent.Executors;
@@ -14,10 +23,16 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class ContentServer {
+    private static final String GZIP_FLAG = "--gzip";
+    private static final String BINARY_FLAG = "--binary";
+    private static final int UPLOAD_INTERVAL_SECONDS = 30;
+
     private final String senderID;
     private JsonObject weatherData;
     private LamportClock lamportClock;
     private NetworkHandler networkHandler;
+    private boolean gzip;
+    private boolean binary;
     private ScheduledExecutorService dataUploadScheduler = Executors.newScheduledThreadPool(1);
 
     /**
@@ -31,6 +46,24 @@ public class ContentServer {
         this.lamportClock = new LamportClock();
     }
 
+    /**
+     * Sets whether PUT bodies are sent with Content-Encoding: gzip. Bodies shorter than
+     * HttpCompression.MIN_GZIP_BYTES are always sent uncompressed.
+     * @param gzip True to compress PUT bodies.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Sets whether PUT requests are sent as binary frames instead of HTTP text.
+     * Frame bodies are never compressed, so the gzip setting does not apply to them.
+     * @param binary True to use binary frames.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
     /**
      * Retrieves the weather data stored in the server.
      * @return A JSONObject containing the weather data.
@@ -63,54 +96,111 @@ public class ContentServer {
      * @param portNumber The port number on which the receiving server is listening.
      */
     public void uploadWeatherData(String serverName, int portNumber) {
-        dataUploadScheduler.scheduleAtFixedRate(() -> {
-            try {
-                // Step 1: Initialize the socket and get the Lamport clock value from the server
-                int serverLamportClock = networkHandler.initializeSocket(serverName, portNumber);
-
-                // Step 2: Set your Lamport clock using the value from the server
-                lamportClock.receive(serverLamportClock);
-
-                String weatherDataString = JsonHandler.prettyPrint(weatherData);
-                String putRequest = "PUT /weather.json HTTP/1.1\r\n" +
-                        "User-Agent: ATOMClient/1/0\r\n" +
-                        "Host: " + serverName + "\r\n" +
-                        "SenderID: " + senderID + "\r\n" +
-                        "LamportClock: " + lamportClock.getTime() + "\r\n" +
-                        "Content-Type: application/json\r\n" +
-                        "Content-Length: " + weatherDataString.length() + "\r\n" +
-                        "\r\n" +
-                        weatherDataString;
-
-                String response = networkHandler.sendAndReceiveData(serverName, portNumber, putRequest, true);
-                System.out.println(response);
-
-                if (response != null) {
-                    // Parse for the LamportClock from the response and update local clock
-                    String[] lines = response.split("\r\n");
-                    for (String line : lines) {
-                        if (line.startsWith("LamportClock: ")) {
-                            int responseClock = Integer.parseInt(line.split(": ")[1]);
-                            lamportClock.receive(responseClock);
-                            break;
-                        }
-                    }
+        dataUploadScheduler.scheduleAtFixedRate(() -> uploadOnce(serverName, portNumber), 0, UPLOAD_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Uploads the weather data once. An upload the server sheds with 503 or 429, such as one redirected
+     * by a draining server, is sent again after its Retry-After delay, unless the next scheduled upload
+     * comes sooner.
+     * @param serverName The name or address of the receiving server.
+     * @param portNumber The port number on which the receiving server is listening.
+     */
+    private void uploadOnce(String serverName, int portNumber) {
+        try {
+            // Step 1: Initialize the socket and get the Lamport clock value from the server
+            int serverLamportClock = networkHandler.initializeSocket(serverName, portNumber);
+
+            // Step 2: Set your Lamport clock using the value from the server
+            lamportClock.receive(serverLamportClock);
+
+            if (binary) {
+                uploadAsFrame(serverName, portNumber);
+                return;
+            }
 
-                    if (response.startsWith("HTTP/1.1 200") || response.startsWith("HTTP/1.1 201")) {
-                        System.out.println("Data uploaded successfully.");
-                    } else if (response.startsWith("HTTP/1.1 503")) {
-                        System.out.println("Server response: Service Unavailable.");
-                    } else if (response.startsWith("HTTP/1.1 500")) {
-                        System.out.println("Server response: Invalid JSON weather data.");
+            byte[] body = JsonHandler.toWireJson(weatherData, false).getBytes(StandardCharsets.UTF_8);
+            boolean compress = gzip && body.length >= HttpCompression.MIN_GZIP_BYTES;
+            if (compress) {
+                body = HttpCompression.gzip(body);
+            }
+            String putHeaders = "PUT /weather.json HTTP/1.1\r\n" +
+                    "User-Agent: ATOMClient/1/0\r\n" +
+                    "Host: " + serverName + "\r\n" +
+                    "SenderID: " + senderID + "\r\n" +
+                    "LamportClock: " + lamportClock.getTime() + "\r\n" +
+                    "Content-Type: application/json\r\n" +
+                    (compress ? "Content-Encoding: " + HttpCompression.GZIP + "\r\n" : "") +
+                    "Content-Length: " + body.length + "\r\n" +
+                    "\r\n";
+            ByteArrayOutputStream putRequest = new ByteArrayOutputStream(putHeaders.length() + body.length);
+            putRequest.writeBytes(putHeaders.getBytes(StandardCharsets.UTF_8));
+            putRequest.writeBytes(body);
+
+            String response = networkHandler.sendAndReceiveData(serverName, portNumber, putRequest.toByteArray(), true);
+            System.out.println(response);
+
+            if (response != null) {
+                // Parse for the LamportClock from the response and update local clock
+                String[] lines = response.split("\r\n");
+                for (String line : lines) {
+                    if (line.startsWith("LamportClock: ")) {
+                        int responseClock = Integer.parseInt(line.split(": ")[1]);
+                        lamportClock.receive(responseClock);
+                        break;
                     }
                 }
-                System.out.println();
-            } catch (Exception e) {
-                System.out.println("Error while connecting to the server: " + e.getMessage());
-                System.out.println("Retry in 15 second.");
-                retryUpload(serverName, portNumber);
+
+                RetryLaterException retryLater = RetryLaterException.fromHttpResponse(response);
+                if (response.startsWith("HTTP/1.1 200") || response.startsWith("HTTP/1.1 201")) {
+                    System.out.println("Data uploaded successfully.");
+                } else if (retryLater != null) {
+                    throw retryLater;
+                } else if (response.startsWith("HTTP/1.1 500")) {
+                    System.out.println("Server response: Invalid JSON weather data.");
+                }
             }
-        }, 0, 30, TimeUnit.SECONDS);
+            System.out.println();
+        } catch (RetryLaterException e) {
+            System.out.println(e.getStatus() == 503 ? "Server response: Service Unavailable." : "Server response: Too Many Requests.");
+            if (e.getRetryAfterSeconds() < UPLOAD_INTERVAL_SECONDS) {
+                System.out.println("Retry in " + e.getRetryAfterSeconds() + " seconds.");
+                dataUploadScheduler.schedule(() -> uploadOnce(serverName, portNumber), e.getRetryAfterSeconds(), TimeUnit.SECONDS);
+            }
+            System.out.println();
+        } catch (Exception e) {
+            System.out.println("Error while connecting to the server: " + e.getMessage());
+            System.out.println("Retry in 15 second.");
+            retryUpload(serverName, portNumber);
+        }
+    }
+
+    /**
+     * Sends the weather data as a PUT frame on the already initialized socket and handles the response frame.
+     * @param serverName The name or address of the receiving server.
+     * @param portNumber The port number on which the receiving server is listening.
+     * @throws RetryLaterException If the server sheds the upload with a 503 or 429 response frame.
+     */
+    private void uploadAsFrame(String serverName, int portNumber) {
+        byte[] body = JsonHandler.toWireJson(weatherData, false).getBytes(StandardCharsets.UTF_8);
+        String stationId = weatherData.has("id") ? weatherData.get("id").getAsString() : null;
+        Frame response = networkHandler.sendAndReceiveFrame(serverName, portNumber,
+                Frame.put(lamportClock.getTime(), senderID, stationId, body));
+
+        if (response != null) {
+            System.out.println("Response frame: status " + response.getStatus() + ", LamportClock " + response.getLamportTime());
+            lamportClock.receive(response.getLamportTime());
+
+            RetryLaterException retryLater = RetryLaterException.fromFrame(response);
+            if (response.getStatus() == 200 || response.getStatus() == 201) {
+                System.out.println("Data uploaded successfully.");
+            } else if (retryLater != null) {
+                throw retryLater;
+            } else if (response.getStatus() == 500) {
+                System.out.println("Server response: Invalid JSON weather data.");
+            }
+        }
+        System.out.println();
     }
 
     /**
@@ -181,12 +271,21 @@ public class ContentServer {
      * Main entry point for the ContentServer.
      * @param args Command line arguments, where:
      *             - The first argument specifies the server name.
-     *             - The second argument is the port number.
+     *             - The second argument is the port number. It is left out for a server name of the form
+     *               unix:/path, which connects to a UNIX domain socket.
      *             - The third argument is the file path to load weather data from.
+     *             - Optional trailing flags: --gzip compresses the PUT bodies and --binary sends binary frames.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && UnixDomainSocket.isUnixAddress(args[0])) {
+            // A UNIX domain socket has no port; give it port 0 so the remaining arguments line up
+            List<String> withPort = new ArrayList<>(Arrays.asList(args));
+            withPort.add(1, "0");
+            args = withPort.toArray(new String[0]);
+        }
         if (args.length < 3) {
-            System.out.println("Usage: ContentServer <serverName> <portNumber> <filePath>");
+            System.out.println("Usage: ContentServer <serverName> <portNumber> <filePath> [" + GZIP_FLAG + "] [" + BINARY_FLAG + "]");
+            System.out.println("       ContentServer unix:<path> <filePath> [" + GZIP_FLAG + "] [" + BINARY_FLAG + "]");
             return;
         }
 
@@ -203,6 +302,9 @@ public class ContentServer {
         // Create an instance of SocketNetworkHandler for actual use.
         NetworkHandler networkHandler = new SocketNetworkHandler();
         ContentServer server = new ContentServer(networkHandler);
+        List<String> flags = Arrays.asList(args).subList(3, args.length);
+        server.setGzip(flags.contains(GZIP_FLAG));
+        server.setBinary(flags.contains(BINARY_FLAG));
 
         if (!server.loadWeatherData(filePath)) {
             System.out.println("Error: Failed to load weather data from " + filePath);
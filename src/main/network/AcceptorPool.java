@@ -0,0 +1,287 @@
+package main.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class AcceptorPool {
+    public static final int DEFAULT_ACCEPTORS = 1;
+    public static final int DEFAULT_HANDOFF_QUEUE = 1024;
+
+    /**
+     * The response written to a connection shed because the handoff queue is full. No server has seen
+     * the connection yet, so there is no Lamport clock to report.
+     */
+    private static final byte[] SHED_RESPONSE = ("HTTP/1.1 503 Service Unavailable\r\n" +
+            "LamportClock: -1\r\n" +
+            "Retry-After: " + RetryLaterException.DEFAULT_RETRY_AFTER_SECONDS + "\r\n" +
+            "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final int acceptors;
+    private final boolean reusePort;
+    private final int handoffThreads;
+    private final int handoffQueue;
+    private final List<Thread> acceptThreads = new ArrayList<>();
+    private final List<ServerSocketChannel> shardChannels = new ArrayList<>();
+    private final AtomicLong acceptedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private volatile boolean running;
+    private ThreadPoolExecutor handoffExecutor;
+
+    /**
+     * Constructs a pool of acceptor threads. Acceptors only accept connections and queue them for the
+     * handoff threads, which run the handoff, so a slow greeting or a busy server never holds up accepting.
+     * With SO_REUSEPORT, each acceptor has a listener of its own on the same port and the kernel spreads
+     * connections across them; otherwise the acceptors share one listener.
+     * @param acceptors The number of acceptor threads.
+     * @param reusePort True to give each acceptor its own SO_REUSEPORT listener, where the platform supports it.
+     * @param handoffThreads The number of threads running the handoff.
+     * @param handoffQueue The number of accepted connections that may wait for a handoff thread; more get a 503
+     *                     response and are closed.
+     */
+    public AcceptorPool(int acceptors, boolean reusePort, int handoffThreads, int handoffQueue) {
+        if (acceptors < 1 || handoffThreads < 1 || handoffQueue < 1) {
+            throw new IllegalArgumentException("Acceptors, handoff threads and handoff queue must be at least 1.");
+        }
+        this.acceptors = acceptors;
+        this.reusePort = reusePort;
+        this.handoffThreads = handoffThreads;
+        this.handoffQueue = handoffQueue;
+    }
+
+    /**
+     * Builds the acceptor pool from system properties, falling back to the defaults:
+     * loadbalancer.acceptors, loadbalancer.reusePort (on when there is more than one acceptor),
+     * loadbalancer.handoff.threads (the number of processors, at least 2) and loadbalancer.handoff.queue.
+     * @return The configured acceptor pool.
+     */
+    public static AcceptorPool fromSystemProperties() {
+        int acceptors = Integer.getInteger("loadbalancer.acceptors", DEFAULT_ACCEPTORS);
+        return new AcceptorPool(
+                acceptors,
+                Boolean.parseBoolean(System.getProperty("loadbalancer.reusePort", String.valueOf(acceptors > 1))),
+                Integer.getInteger("loadbalancer.handoff.threads", Math.max(2, Runtime.getRuntime().availableProcessors())),
+                Integer.getInteger("loadbalancer.handoff.queue", DEFAULT_HANDOFF_QUEUE));
+    }
+
+    /**
+     * Checks whether server socket channels support SO_REUSEPORT on this platform, as on Linux.
+     * @return True if listeners can be sharded, otherwise false.
+     */
+    public static boolean isReusePortSupported() {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts listening on the port and accepting connections. Sharded listeners are opened here;
+     * a shared listener is started through the network handler, which accepts for every acceptor.
+     * @param networkHandler The network handler of the shared listener.
+     * @param port The port to listen on.
+     * @param handoff Takes over each accepted connection, on a handoff thread.
+     * @throws IOException If a sharded listener cannot be bound. The listeners and threads already
+     *                     started are stopped first.
+     */
+    public synchronized void start(NetworkHandler networkHandler, int port, Consumer<Connection> handoff) throws IOException {
+        startHandoff();
+        if (isSharded()) {
+            System.out.println("Accepting on " + acceptors + " SO_REUSEPORT listeners on port " + port);
+            try {
+                for (int i = 0; i < acceptors; i++) {
+                    ServerSocketChannel channel = ServerSocketChannel.open();
+                    shardChannels.add(channel);
+                    channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                    channel.bind(new InetSocketAddress(port));
+                    startAcceptThread(i, () -> acceptShard(channel), handoff);
+                }
+            } catch (IOException | RuntimeException e) {
+                stop();
+                throw e;
+            }
+        } else {
+            networkHandler.startServer(port);
+            startSharedAcceptThreads(networkHandler, handoff);
+        }
+    }
+
+    /**
+     * Starts listening on a UNIX domain socket and accepting connections. SO_REUSEPORT does not apply
+     * to UNIX domain sockets, so the acceptors always share the network handler's listener.
+     * @param networkHandler The network handler of the listener.
+     * @param address The path of the socket.
+     * @param handoff Takes over each accepted connection, on a handoff thread.
+     */
+    public synchronized void start(NetworkHandler networkHandler, UnixDomainSocketAddress address, Consumer<Connection> handoff) {
+        startHandoff();
+        networkHandler.startServer(address);
+        startSharedAcceptThreads(networkHandler, handoff);
+    }
+
+    /**
+     * Starts the handoff threads.
+     */
+    private void startHandoff() {
+        running = true;
+        AtomicInteger threadCount = new AtomicInteger(0);
+        handoffExecutor = new ThreadPoolExecutor(handoffThreads, handoffThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(handoffQueue), task -> {
+                    Thread thread = new Thread(task, "Handoff-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts the acceptor threads on the network handler's listener.
+     * @param networkHandler The network handler, already listening.
+     * @param handoff Takes over each accepted connection.
+     */
+    private void startSharedAcceptThreads(NetworkHandler networkHandler, Consumer<Connection> handoff) {
+        for (int i = 0; i < acceptors; i++) {
+            startAcceptThread(i, networkHandler::acceptConnection, handoff);
+        }
+    }
+
+    /**
+     * Checks whether each acceptor gets its own listener.
+     * @return True if listeners are sharded with SO_REUSEPORT, otherwise false.
+     */
+    public boolean isSharded() {
+        return reusePort && acceptors > 1 && isReusePortSupported();
+    }
+
+    /**
+     * Starts one acceptor thread.
+     * @param index The number of the acceptor.
+     * @param listener Accepts the next connection, or returns null if none arrived in time.
+     * @param handoff Takes over each accepted connection.
+     */
+    private void startAcceptThread(int index, Listener listener, Consumer<Connection> handoff) {
+        Thread acceptThread = new Thread(() -> {
+            while (running) {
+                try {
+                    Connection clientSocket = listener.accept();
+                    if (clientSocket != null) {
+                        acceptedCount.incrementAndGet();
+                        handOff(clientSocket, handoff);
+                    }
+                } catch (IOException e) {
+                    if (running) {
+                        e.printStackTrace();
+                    }
+                } catch (IllegalStateException e) {
+                    break; // The listener was closed
+                }
+            }
+        }, "Acceptor-" + index);
+        acceptThreads.add(acceptThread);
+        acceptThread.start();
+    }
+
+    /**
+     * Accepts the next connection on a sharded listener.
+     * @param channel The listener of this acceptor.
+     * @return The connection, or null if the listener was closed.
+     * @throws IOException If accepting fails.
+     */
+    private Connection acceptShard(ServerSocketChannel channel) throws IOException {
+        try {
+            return new SocketConnection(channel.accept().socket());
+        } catch (ClosedChannelException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Queues a connection for a handoff thread without waiting. If the handoff queue is full, the
+     * connection gets a 503 response with Retry-After and is closed at once, as the servers are already
+     * far behind. The response fits in a fresh socket's send buffer, so writing it does not block.
+     * @param clientSocket The accepted connection.
+     * @param handoff Takes over the connection.
+     */
+    private void handOff(Connection clientSocket, Consumer<Connection> handoff) {
+        try {
+            handoffExecutor.execute(() -> handoff.accept(clientSocket));
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            System.out.println("Handoff queue is full, shedding " + clientSocket);
+            try (Connection shed = clientSocket) {
+                shed.getOutputStream().write(SHED_RESPONSE);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting and closes the sharded listeners. A shared listener is closed by its network handler.
+     * Connections already queued are still handed off.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (ServerSocketChannel channel : shardChannels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        shardChannels.clear();
+        for (Thread acceptThread : acceptThreads) {
+            acceptThread.interrupt();
+        }
+        acceptThreads.clear();
+        if (handoffExecutor != null) {
+            handoffExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Returns how many connections were accepted.
+     * @return The number of accepted connections.
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * Returns how many accepted connections were closed because the handoff queue was full.
+     * @return The number of rejected connections.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of connections waiting for a handoff thread.
+     * @return The handoff queue depth.
+     */
+    public int getHandoffDepth() {
+        return handoffExecutor == null ? 0 : handoffExecutor.getQueue().size();
+    }
+
+    private interface Listener {
+        /**
+         * Accepts the next connection.
+         * @return The connection, or null if none arrived in time.
+         * @throws IOException If accepting fails.
+         */
+        Connection accept() throws IOException;
+    }
+}
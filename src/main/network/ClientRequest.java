@@ -0,0 +1,58 @@
+package main.network;
+
+public class ClientRequest {
+    private final String httpText;
+    private final Frame frame;
+
+    /**
+     * Constructs a request holding either an HTTP message or a frame.
+     * @param httpText The HTTP request text, or null for a frame.
+     * @param frame The request frame, or null for an HTTP request.
+     */
+    private ClientRequest(String httpText, Frame frame) {
+        this.httpText = httpText;
+        this.frame = frame;
+    }
+
+    /**
+     * Wraps a request received as HTTP text.
+     * @param httpText The HTTP request text.
+     * @return The request.
+     */
+    public static ClientRequest http(String httpText) {
+        return new ClientRequest(httpText, null);
+    }
+
+    /**
+     * Wraps a request received as a binary frame.
+     * @param frame The request frame.
+     * @return The request.
+     */
+    public static ClientRequest frame(Frame frame) {
+        return new ClientRequest(null, frame);
+    }
+
+    /**
+     * Checks whether the request was received as a binary frame.
+     * @return True for a frame, false for an HTTP request.
+     */
+    public boolean isFrame() {
+        return frame != null;
+    }
+
+    /**
+     * Returns the HTTP request text.
+     * @return The request text, or null for a frame.
+     */
+    public String getHttpText() {
+        return httpText;
+    }
+
+    /**
+     * Returns the request frame.
+     * @return The frame, or null for an HTTP request.
+     */
+    public Frame getFrame() {
+        return frame;
+    }
+}
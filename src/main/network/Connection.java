@@ -0,0 +1,21 @@
+package main.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
+
+public interface Connection extends Closeable {
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    SocketChannel getChannel(); // Null if the connection has no channel, as for a plain TCP socket; responses are then written to the stream
+
+    InetAddress getInetAddress(); // Null if the peer has no IP address, as on a UNIX domain socket
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,148 @@
+package main.network;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+public class DeadlineTimer {
+    private final long tickNanos;
+    private final int mask;
+    private final List<List<Timeout>> wheel;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startNanos;
+    private long tick;
+
+    /**
+     * Constructs a hashed-wheel timer and starts its thread. Each timeout lands in the wheel slot of
+     * its deadline tick, with the number of full turns still to wait, so scheduling and cancelling
+     * cost the same however many timeouts are pending. Timeouts fire up to one tick late.
+     * @param tickMillis The length of one tick.
+     * @param wheelSize The number of slots, rounded up to a power of two.
+     * @param name The name of the timer thread.
+     */
+    public DeadlineTimer(long tickMillis, int wheelSize, String name) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick and wheel size must be at least 1.");
+        }
+        int slots = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = slots - 1;
+        this.wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.startNanos = System.nanoTime();
+        Thread worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules a task to run on the timer thread once the delay has passed. The task must be short,
+     * as it holds up every other timeout due in the same tick.
+     * @param task The task to run.
+     * @param delay The delay.
+     * @param unit The unit of the delay.
+     * @return The timeout, which can be cancelled.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel one tick at a time: waits for the tick to end, moves newly scheduled
+     * timeouts into their slots, then expires the due timeouts of the current slot.
+     */
+    private void run() {
+        while (true) {
+            long tickEnd = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while ((sleepNanos = tickEnd - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleepNanos);
+            }
+
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                long deadlineTick = Math.max(tick, (timeout.deadlineNanos - startNanos) / tickNanos);
+                timeout.remainingRounds = (deadlineTick - tick) / wheel.size();
+                wheel.get((int) (deadlineTick & mask)).add(timeout);
+            }
+
+            Iterator<Timeout> slot = wheel.get((int) (tick & mask)).iterator();
+            while (slot.hasNext()) {
+                Timeout candidate = slot.next();
+                if (candidate.isCancelled()) {
+                    slot.remove();
+                } else if (candidate.remainingRounds <= 0) {
+                    slot.remove();
+                    candidate.expire();
+                } else {
+                    candidate.remainingRounds--;
+                }
+            }
+            tick++;
+        }
+    }
+
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile boolean cancelled;
+        private long remainingRounds;
+
+        /**
+         * Constructs a pending timeout.
+         * @param task The task to run when the timeout expires.
+         * @param deadlineNanos The System.nanoTime at which it expires.
+         */
+        Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the timeout, unless it has already expired. The wheel drops it when it reaches its slot.
+         * @return True if the timeout was cancelled, false if its task already ran.
+         */
+        public boolean cancel() {
+            if (done.compareAndSet(false, true)) {
+                cancelled = true;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether the timeout was cancelled.
+         * @return True if cancelled, otherwise false.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Runs the task unless the timeout was cancelled first. Exceptions are logged so that
+         * one failing task cannot stop the timer.
+         */
+        private void expire() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package main.network;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class Frame {
+    // Never the first byte of an HTTP request, whose method is ASCII, so both protocols can share a port
+    public static final int MAGIC = 0xB7;
+    public static final byte OP_GET = 1;
+    public static final byte OP_PUT = 2;
+    public static final byte OP_RESPONSE = 3;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    // op (1) + status (2) + Lamport time (4) + sender ID length (2) + station ID length (2)
+    private static final int FIXED_HEADER_BYTES = 11;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte opCode;
+    private final int status;
+    private final int lamportTime;
+    private final String senderId;
+    private final String stationId;
+    private final byte[] payload;
+
+    /**
+     * Constructs a frame.
+     * @param opCode One of OP_GET, OP_PUT or OP_RESPONSE.
+     * @param status The HTTP status code of a response, or 0 for a request.
+     * @param lamportTime The sender's Lamport time.
+     * @param senderId The ID of the sender, or null if there is none.
+     * @param stationId The station the frame is about, or null if there is none.
+     * @param payload The JSON body as UTF-8 bytes, or null if there is none.
+     */
+    public Frame(byte opCode, int status, int lamportTime, String senderId, String stationId, byte[] payload) {
+        this.opCode = opCode;
+        this.status = status;
+        this.lamportTime = lamportTime;
+        this.senderId = senderId;
+        this.stationId = stationId;
+        this.payload = payload == null ? EMPTY : payload;
+    }
+
+    /**
+     * Creates a GET request frame.
+     * @param lamportTime The client's Lamport time.
+     * @param senderId The ID of the client.
+     * @param stationId The station to read, or null for the server's default station.
+     * @return The request frame.
+     */
+    public static Frame get(int lamportTime, String senderId, String stationId) {
+        return new Frame(OP_GET, 0, lamportTime, senderId, stationId, null);
+    }
+
+    /**
+     * Creates a PUT request frame.
+     * @param lamportTime The content server's Lamport time.
+     * @param senderId The ID of the content server.
+     * @param stationId The station the reading belongs to.
+     * @param body The reading as UTF-8 JSON.
+     * @return The request frame.
+     */
+    public static Frame put(int lamportTime, String senderId, String stationId, byte[] body) {
+        return new Frame(OP_PUT, 0, lamportTime, senderId, stationId, body);
+    }
+
+    /**
+     * Creates a response frame.
+     * @param status The HTTP status code, such as 200 or 204.
+     * @param lamportTime The server's Lamport time.
+     * @param body The response body as UTF-8 JSON, the Retry-After seconds as ASCII for a 503 or 429 response,
+     *             or null if there is none.
+     * @return The response frame.
+     */
+    public static Frame response(int status, int lamportTime, byte[] body) {
+        return new Frame(OP_RESPONSE, status, lamportTime, null, null, body);
+    }
+
+    /**
+     * Checks whether a message starting with the given byte is a frame rather than an HTTP message.
+     * @param firstByte The first byte of the message, as returned by InputStream.read.
+     * @return True if the message is a frame, otherwise false.
+     */
+    public static boolean isFrameStart(int firstByte) {
+        return firstByte == MAGIC;
+    }
+
+    /**
+     * Encodes the frame as: the magic byte, a 4-byte length of the rest of the frame, the op code,
+     * a 2-byte status, a 4-byte Lamport time, the sender ID and station ID as 2-byte lengths followed
+     * by UTF-8 bytes, and the payload up to the end of the frame. Numbers are big-endian.
+     * @return The encoded frame.
+     */
+    public byte[] encode() {
+        byte[] sender = encodeText(senderId);
+        byte[] station = encodeText(stationId);
+        int length = FIXED_HEADER_BYTES + sender.length + station.length + payload.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(5 + length);
+        buffer.put((byte) MAGIC);
+        buffer.putInt(length);
+        buffer.put(opCode);
+        buffer.putShort((short) status);
+        buffer.putInt(lamportTime);
+        buffer.putShort((short) sender.length).put(sender);
+        buffer.putShort((short) station.length).put(station);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    /**
+     * Reads the status of an encoded frame without decoding the rest of it.
+     * @param encoded The frame, as returned by encode.
+     * @return The status, or -1 if the bytes do not hold a frame header.
+     */
+    public static int statusOf(byte[] encoded) {
+        if (encoded.length < 8 || (encoded[0] & 0xFF) != MAGIC) {
+            return -1;
+        }
+        return ((encoded[6] & 0xFF) << 8) | (encoded[7] & 0xFF);
+    }
+
+    /**
+     * Reads one frame, including its magic byte, from the stream.
+     * @param input The stream to read from.
+     * @return The frame.
+     * @throws IOException If the stream fails, ends early or does not hold a valid frame.
+     */
+    public static Frame read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        int magic = data.read();
+        if (magic == -1) {
+            throw new EOFException("Stream ended before a frame.");
+        } else if (!isFrameStart(magic)) {
+            throw new IOException("Not a frame: first byte is " + magic);
+        }
+
+        int length = data.readInt();
+        if (length < FIXED_HEADER_BYTES || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+
+        byte opCode = data.readByte();
+        int status = data.readUnsignedShort();
+        int lamportTime = data.readInt();
+        int remaining = length - FIXED_HEADER_BYTES;
+
+        int senderLength = data.readUnsignedShort();
+        if (senderLength > remaining) {
+            throw new IOException("Sender ID runs past the end of the frame.");
+        }
+        String senderId = decodeText(data, senderLength);
+        remaining -= senderLength;
+
+        int stationLength = data.readUnsignedShort();
+        if (stationLength > remaining) {
+            throw new IOException("Station ID runs past the end of the frame.");
+        }
+        String stationId = decodeText(data, stationLength);
+        remaining -= stationLength;
+
+        byte[] payload = new byte[remaining];
+        data.readFully(payload);
+        return new Frame(opCode, status, lamportTime, senderId, stationId, payload);
+    }
+
+    /**
+     * Encodes an ID as UTF-8, treating null as empty.
+     * @param text The ID.
+     * @return The UTF-8 bytes.
+     */
+    private static byte[] encodeText(String text) {
+        if (text == null) {
+            return EMPTY;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("ID longer than 65535 bytes.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads an ID of the given length, treating an empty ID as null.
+     * @param data The stream to read from.
+     * @param length The length of the ID in bytes.
+     * @return The ID, or null if it is empty.
+     * @throws IOException If the stream fails or ends early.
+     */
+    private static String decodeText(DataInputStream data, int length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the op code of the frame.
+     * @return OP_GET, OP_PUT or OP_RESPONSE.
+     */
+    public byte getOpCode() {
+        return opCode;
+    }
+
+    /**
+     * Returns the HTTP status code of a response frame.
+     * @return The status code, or 0 for a request.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the sender's Lamport time.
+     * @return The Lamport time.
+     */
+    public int getLamportTime() {
+        return lamportTime;
+    }
+
+    /**
+     * Returns the ID of the sender.
+     * @return The sender ID, or null if there is none.
+     */
+    public String getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * Returns the station the frame is about.
+     * @return The station ID, or null if there is none.
+     */
+    public String getStationId() {
+        return stationId;
+    }
+
+    /**
+     * Returns the payload of the frame.
+     * @return The payload bytes; empty if there is none.
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns the payload decoded as UTF-8.
+     * @return The payload text; empty if there is none.
+     */
+    public String getPayloadText() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package main.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpCompression {
+    public static final String GZIP = "gzip";
+    public static final int MIN_GZIP_BYTES = 128; // Below this the gzip header and trailer outweigh the savings
+    public static final int DEFAULT_MAX_INFLATED_BYTES = 16 * 1024 * 1024;
+    private static final int INFLATE_CHUNK_BYTES = 8 * 1024;
+
+    /**
+     * Prevents instantiation; this class only holds the Content-Encoding helpers shared by servers and clients.
+     */
+    private HttpCompression() {
+    }
+
+    /**
+     * Compresses a message body with gzip.
+     * @param data The uncompressed body.
+     * @return The gzip-compressed body.
+     */
+    public static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen with an in-memory stream
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decompresses a gzip-compressed message body of at most DEFAULT_MAX_INFLATED_BYTES.
+     * @param data The compressed body.
+     * @return The uncompressed body.
+     * @throws IOException If the body is not valid gzip data or inflates past the limit.
+     */
+    public static byte[] gunzip(byte[] data) throws IOException {
+        return gunzip(data, DEFAULT_MAX_INFLATED_BYTES);
+    }
+
+    /**
+     * Decompresses a gzip-compressed message body in chunks, stopping as soon as the output passes
+     * the limit. The compressed size says little about the inflated size, so a small body could
+     * otherwise inflate until the heap runs out.
+     * @param data The compressed body.
+     * @param maxInflatedBytes The largest uncompressed body accepted.
+     * @return The uncompressed body.
+     * @throws PayloadTooLargeException If the body inflates to more than maxInflatedBytes.
+     * @throws IOException If the body is not valid gzip data.
+     */
+    public static byte[] gunzip(byte[] data, int maxInflatedBytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxInflatedBytes, Math.max(data.length * 4, 32)));
+            byte[] chunk = new byte[INFLATE_CHUNK_BYTES];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                if (out.size() + (long) n > maxInflatedBytes) {
+                    throw new PayloadTooLargeException("gzip body inflates past " + maxInflatedBytes + " bytes");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Checks whether an Accept-Encoding header value allows gzip, such as "gzip", "gzip, deflate" or "*".
+     * A coding with q=0 is refused.
+     * @param acceptEncoding The header value, may be null.
+     * @return True if a gzip-encoded response is acceptable, otherwise false.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (GZIP.equalsIgnoreCase(name) || "*".equals(name)) {
+                return !hasZeroQuality(parameters);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the parameters of one coding for q=0.
+     * @param parameters The coding name followed by its parameters.
+     * @return True if the coding is explicitly refused, otherwise false.
+     */
+    private static boolean hasZeroQuality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String[] nameValue = parameters[i].trim().split("=", 2);
+            if (nameValue.length == 2 && "q".equalsIgnoreCase(nameValue[0].trim())) {
+                try {
+                    return Double.parseDouble(nameValue[1].trim()) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
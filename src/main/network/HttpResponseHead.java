@@ -0,0 +1,108 @@
+package main.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class HttpResponseHead {
+    private static final byte[] STATUS_PREFIX = ascii("HTTP/1.1 ");
+    private static final byte[] LAMPORT_CLOCK = ascii("\r\nLamportClock: ");
+    private static final byte[] CONTENT_TYPE = ascii("\r\nContent-Type: application/json");
+    private static final byte[] CONTENT_ENCODING = ascii("\r\nContent-Encoding: ");
+    private static final byte[] CONTENT_LENGTH = ascii("\r\nContent-Length: ");
+    private static final byte[] END_OF_HEAD = ascii("\r\n\r\n");
+    private static final int MAX_NUMBER_BYTES = 11; // "-2147483648"
+    private static final Map<String, byte[]> encodedText = new ConcurrentHashMap<>();
+
+    /**
+     * Prevents instantiation; this class only holds the response head encoder.
+     */
+    private HttpResponseHead() {
+    }
+
+    /**
+     * Encodes the status line and headers of a response straight into bytes, without building a String.
+     * Statuses and content encodings are encoded once and reused.
+     * @param status The HTTP status code and message, such as "200 OK".
+     * @param lamportTime The Lamport time sent in the LamportClock header.
+     * @param contentEncoding The Content-Encoding of the body, or null if it is not compressed.
+     * @param contentLength The length of the body in bytes, or -1 for a response without a body.
+     * @return A buffer holding the head, ready to be written.
+     */
+    public static ByteBuffer encode(String status, int lamportTime, String contentEncoding, int contentLength) {
+        byte[] statusBytes = encodedText.computeIfAbsent(status, HttpResponseHead::ascii);
+        byte[] encodingBytes = contentEncoding == null ? null : encodedText.computeIfAbsent(contentEncoding, HttpResponseHead::ascii);
+
+        int capacity = STATUS_PREFIX.length + statusBytes.length + LAMPORT_CLOCK.length + MAX_NUMBER_BYTES + END_OF_HEAD.length;
+        if (contentLength >= 0) {
+            capacity += CONTENT_TYPE.length + CONTENT_LENGTH.length + MAX_NUMBER_BYTES;
+            if (encodingBytes != null) {
+                capacity += CONTENT_ENCODING.length + encodingBytes.length;
+            }
+        }
+
+        ByteBuffer head = ByteBuffer.allocate(capacity);
+        head.put(STATUS_PREFIX).put(statusBytes);
+        putNumber(head.put(LAMPORT_CLOCK), lamportTime);
+        if (contentLength >= 0) {
+            head.put(CONTENT_TYPE);
+            if (encodingBytes != null) {
+                head.put(CONTENT_ENCODING).put(encodingBytes);
+            }
+            putNumber(head.put(CONTENT_LENGTH), contentLength);
+        }
+        head.put(END_OF_HEAD);
+        return head.flip();
+    }
+
+    /**
+     * Reads the status code back from an encoded response head, without moving the buffer's position.
+     * @param head A buffer holding a response head, as returned by encode.
+     * @return The status code, or -1 if the buffer does not start with a status line.
+     */
+    public static int statusOf(ByteBuffer head) {
+        int start = head.position() + STATUS_PREFIX.length;
+        if (head.limit() < start + 3) {
+            return -1;
+        }
+        int status = 0;
+        for (int i = start; i < start + 3; i++) {
+            int digit = head.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            status = status * 10 + digit;
+        }
+        return status;
+    }
+
+    /**
+     * Writes a number as ASCII decimal digits.
+     * @param buffer The buffer to write to.
+     * @param value The number.
+     */
+    private static void putNumber(ByteBuffer buffer, int value) {
+        long remaining = value;
+        if (remaining < 0) {
+            buffer.put((byte) '-');
+            remaining = -remaining;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= remaining) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + remaining / divisor % 10));
+        }
+    }
+
+    /**
+     * Encodes header text as ASCII.
+     * @param text The text.
+     * @return The encoded bytes.
+     */
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,24 +1,37 @@
 package main.network;
 
 import java.io.IOException;
-import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
 
 public interface NetworkHandler {
     // For Aggregation Server
     void startServer(int portNumber);
 
-    Socket acceptConnection() throws IOException; // We let it throw IOException now
+    void startServer(UnixDomainSocketAddress address); // For components on the same host
 
-    String waitForClientData(Socket clientSocket);
+    Connection acceptConnection() throws IOException; // We let it throw IOException now
 
-    void sendResponseToClient(String response, Socket clientSocket);
+    String waitForClientData(Connection clientSocket);
+
+    ClientRequest waitForClientRequest(Connection clientSocket); // An HTTP request or a binary frame, told apart by the first byte
+
+    void sendResponseToClient(String response, Connection clientSocket);
+
+    void sendResponseToClient(byte[] response, Connection clientSocket);
+
+    void sendResponseToClient(ByteBuffer[] response, Connection clientSocket); // Written in order with one gathering write where possible
 
     void closeServer();
 
     // For Content Server and GETClient
-    int initializeSocket(String serverName, int portNumber);
+    int initializeSocket(String serverName, int portNumber); // A server name of the form unix:/path connects to a UNIX domain socket
 
     String sendAndReceiveData(String serverName, int portNumber, String data, boolean isContentServer);
 
+    String sendAndReceiveData(String serverName, int portNumber, byte[] data, boolean isContentServer);
+
+    Frame sendAndReceiveFrame(String serverName, int portNumber, Frame request);
+
     void closeClient();
 }
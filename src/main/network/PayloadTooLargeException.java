@@ -0,0 +1,16 @@
+package main.network;
+
+import java.io.IOException;
+
+public class PayloadTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception thrown when a message body, before or after decompression, is larger
+     * than the limit of the reader. The server answers it with 413 Payload Too Large.
+     * @param message The detail message, naming the limit that was exceeded.
+     */
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
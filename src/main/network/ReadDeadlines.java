@@ -0,0 +1,221 @@
+package main.network;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReadDeadlines {
+    public static final long DEFAULT_HEADER_TIMEOUT_MILLIS = 5000;
+    public static final long DEFAULT_BODY_TIMEOUT_MILLIS = 30000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10000;
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+    private static DeadlineTimer sharedTimer;
+
+    private final DeadlineTimer timer;
+    private final long headerTimeoutNanos;
+    private final long bodyTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final AtomicLong headerTimeoutCount = new AtomicLong(0);
+    private final AtomicLong bodyTimeoutCount = new AtomicLong(0);
+    private final AtomicLong idleTimeoutCount = new AtomicLong(0);
+
+    private enum Phase {
+        HEADER, BODY, DONE
+    }
+
+    /**
+     * Constructs the read deadlines for incoming requests. Every connection being read holds one
+     * timeout on the given timer, instead of a socket read timeout of its own.
+     * @param timer The timer that enforces the deadlines, or null for the timer shared by the process.
+     * @param headerTimeoutMillis How long a client may take to send the request head.
+     * @param bodyTimeoutMillis How long a client may take to send the body once the head is read.
+     * @param idleTimeoutMillis How long a client may go without sending a byte.
+     */
+    public ReadDeadlines(DeadlineTimer timer, long headerTimeoutMillis, long bodyTimeoutMillis, long idleTimeoutMillis) {
+        if (headerTimeoutMillis < 1 || bodyTimeoutMillis < 1 || idleTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Read timeouts must be at least 1 ms.");
+        }
+        this.timer = timer;
+        this.headerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(headerTimeoutMillis);
+        this.bodyTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(bodyTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /**
+     * Builds the read deadlines from system properties, falling back to the defaults:
+     * network.read.headerTimeoutMillis, network.read.bodyTimeoutMillis and network.read.idleTimeoutMillis.
+     * They use the timer shared by the whole process, which is only started once a request is read,
+     * so clients never run it.
+     * @return The configured read deadlines.
+     */
+    public static ReadDeadlines fromSystemProperties() {
+        return new ReadDeadlines(
+                null,
+                Long.getLong("network.read.headerTimeoutMillis", DEFAULT_HEADER_TIMEOUT_MILLIS),
+                Long.getLong("network.read.bodyTimeoutMillis", DEFAULT_BODY_TIMEOUT_MILLIS),
+                Long.getLong("network.read.idleTimeoutMillis", DEFAULT_IDLE_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Returns the timer shared by all connections in the process, starting it on first use with
+     * the tick from network.timer.tickMillis.
+     * @return The shared timer.
+     */
+    public static synchronized DeadlineTimer getSharedTimer() {
+        if (sharedTimer == null) {
+            sharedTimer = new DeadlineTimer(Long.getLong("network.timer.tickMillis", DEFAULT_TICK_MILLIS), WHEEL_SIZE, "ReadDeadlineTimer");
+        }
+        return sharedTimer;
+    }
+
+    /**
+     * Starts watching a connection whose request is about to be read. The connection is closed if the
+     * head or body deadline passes, or if it sends nothing for the idle time; the blocked read then fails.
+     * @param socket The client socket.
+     * @return The deadline of the connection, to be told about progress and finished when the request is read.
+     */
+    public Deadline watch(Connection socket) {
+        Deadline deadline = new Deadline(socket);
+        deadline.scheduleCheck();
+        return deadline;
+    }
+
+    /**
+     * Returns how many connections were closed for not sending the request head in time.
+     * @return The number of head timeouts.
+     */
+    public long getHeaderTimeoutCount() {
+        return headerTimeoutCount.get();
+    }
+
+    /**
+     * Returns how many connections were closed for not sending the body in time.
+     * @return The number of body timeouts.
+     */
+    public long getBodyTimeoutCount() {
+        return bodyTimeoutCount.get();
+    }
+
+    /**
+     * Returns how many connections were closed for sending nothing for the idle time.
+     * @return The number of idle timeouts.
+     */
+    public long getIdleTimeoutCount() {
+        return idleTimeoutCount.get();
+    }
+
+    /**
+     * Returns how many connections were closed by any read deadline.
+     * @return The number of timed-out connections.
+     */
+    public long getTimedOutCount() {
+        return headerTimeoutCount.get() + bodyTimeoutCount.get() + idleTimeoutCount.get();
+    }
+
+    public class Deadline {
+        private final Connection socket;
+        private volatile Phase phase = Phase.HEADER;
+        private volatile long phaseDeadlineNanos;
+        private volatile long lastReadNanos;
+        private volatile boolean timedOut;
+        private DeadlineTimer.Timeout timeout;
+
+        /**
+         * Constructs the deadline of a connection, starting in the head phase.
+         * @param socket The client socket.
+         */
+        Deadline(Connection socket) {
+            long now = System.nanoTime();
+            this.socket = socket;
+            this.phaseDeadlineNanos = now + headerTimeoutNanos;
+            this.lastReadNanos = now;
+        }
+
+        /**
+         * Records that bytes arrived. This only stores the time; the timer compares it when the
+         * scheduled check runs, so reads never touch the wheel.
+         */
+        public void onRead() {
+            lastReadNanos = System.nanoTime();
+        }
+
+        /**
+         * Moves from the head deadline to the body deadline, once the head has been read.
+         */
+        public synchronized void startBody() {
+            if (phase != Phase.HEADER) {
+                return;
+            }
+            phaseDeadlineNanos = System.nanoTime() + bodyTimeoutNanos;
+            phase = Phase.BODY;
+            timeout.cancel();
+            scheduleCheck();
+        }
+
+        /**
+         * Stops watching the connection, once the request has been read or the read has failed.
+         */
+        public synchronized void finish() {
+            phase = Phase.DONE;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        /**
+         * Checks whether the connection was closed by a deadline.
+         * @return True if the connection timed out, otherwise false.
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Schedules the next check for the earlier of the phase deadline and the idle deadline.
+         */
+        private synchronized void scheduleCheck() {
+            if (phase == Phase.DONE) {
+                return;
+            }
+            long next = Math.min(phaseDeadlineNanos, lastReadNanos + idleTimeoutNanos);
+            timeout = (timer != null ? timer : getSharedTimer()).schedule(this::check, Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Runs on the timer thread: closes the connection if a deadline has passed, otherwise
+         * schedules the next check, as the client has read or changed phase since this one was set.
+         */
+        private synchronized void check() {
+            Phase current = phase;
+            if (current == Phase.DONE) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - phaseDeadlineNanos >= 0) {
+                (current == Phase.HEADER ? headerTimeoutCount : bodyTimeoutCount).incrementAndGet();
+                expire(current == Phase.HEADER ? "request head" : "request body");
+            } else if (now - lastReadNanos >= idleTimeoutNanos) {
+                idleTimeoutCount.incrementAndGet();
+                expire("idle");
+            } else {
+                scheduleCheck();
+            }
+        }
+
+        /**
+         * Closes the connection, which makes the blocked read fail.
+         * @param reason The deadline that passed.
+         */
+        private void expire(String reason) {
+            timedOut = true;
+            phase = Phase.DONE;
+            System.out.println("Closing " + socket + " after " + reason + " timeout");
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package main.network;
+
+public class RetryLaterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The delay used when a 503 or 429 response does not say when to retry; matches the clients' fixed retry delay.
+     */
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 15;
+
+    private static final String RETRY_AFTER = "Retry-After:";
+
+    private final int status;
+    private final int retryAfterSeconds;
+
+    /**
+     * Constructs the exception thrown when a server sheds a request with 503 Service Unavailable or
+     * 429 Too Many Requests. The request was not processed and may be sent again after the delay.
+     * @param status The status code, 503 or 429.
+     * @param retryAfterSeconds The number of seconds to wait before sending the request again.
+     */
+    public RetryLaterException(int status, int retryAfterSeconds) {
+        super("Received " + status + " from the server, retry after " + retryAfterSeconds + "s");
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Checks whether an HTTP response sheds the request, and if so reads its Retry-After header.
+     * @param response The response, starting with the status line; may be null.
+     * @return The exception describing the retry, or null if the response is not a 503 or 429.
+     */
+    public static RetryLaterException fromHttpResponse(String response) {
+        int status = retryableStatus(response);
+        if (status < 0) {
+            return null;
+        }
+        int retryAfter = DEFAULT_RETRY_AFTER_SECONDS;
+        for (String line : response.split("\r\n")) {
+            if (line.isEmpty()) {
+                break;  // End of the headers
+            }
+            if (line.regionMatches(true, 0, RETRY_AFTER, 0, RETRY_AFTER.length())) {
+                retryAfter = parseSeconds(line.substring(RETRY_AFTER.length()));
+                break;
+            }
+        }
+        return new RetryLaterException(status, retryAfter);
+    }
+
+    /**
+     * Checks whether a response frame sheds the request. A 503 or 429 frame carries its Retry-After
+     * seconds as the ASCII payload.
+     * @param response The response frame; may be null.
+     * @return The exception describing the retry, or null if the frame is not a 503 or 429.
+     */
+    public static RetryLaterException fromFrame(Frame response) {
+        if (response == null || (response.getStatus() != 503 && response.getStatus() != 429)) {
+            return null;
+        }
+        int retryAfter = response.getPayload() == null ? DEFAULT_RETRY_AFTER_SECONDS : parseSeconds(response.getPayloadText());
+        return new RetryLaterException(response.getStatus(), retryAfter);
+    }
+
+    /**
+     * Reads the status of a 503 or 429 status line.
+     * @param response The response; may be null.
+     * @return 503 or 429, or -1 for any other response.
+     */
+    private static int retryableStatus(String response) {
+        if (response == null) {
+            return -1;
+        } else if (response.startsWith("HTTP/1.1 503")) {
+            return 503;
+        } else if (response.startsWith("HTTP/1.1 429")) {
+            return 429;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a Retry-After value given in seconds.
+     * @param value The header value.
+     * @return The number of seconds, or DEFAULT_RETRY_AFTER_SECONDS if the value is not a non-negative number.
+     */
+    private static int parseSeconds(String value) {
+        try {
+            int seconds = Integer.parseInt(value.trim());
+            return seconds >= 0 ? seconds : DEFAULT_RETRY_AFTER_SECONDS;
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+    }
+
+    /**
+     * Returns the status code the server shed the request with.
+     * @return 503 or 429.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of seconds to wait before sending the request again.
+     * @return The Retry-After delay in seconds.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
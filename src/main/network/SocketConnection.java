@@ -0,0 +1,76 @@
+package main.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+public class SocketConnection implements Connection {
+    private final Socket socket;
+
+    /**
+     * Wraps a connected TCP socket as a connection.
+     * @param socket The connected socket.
+     */
+    public SocketConnection(Socket socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Returns the stream that reads from the socket.
+     * @return The input stream.
+     * @throws IOException If the socket is closed or not connected.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    /**
+     * Returns the stream that writes to the socket.
+     * @return The output stream.
+     * @throws IOException If the socket is closed or not connected.
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    /**
+     * Returns the channel of the socket, which sockets accepted from a server socket channel have.
+     * @return The channel, or null if the socket has none.
+     */
+    @Override
+    public SocketChannel getChannel() {
+        return socket.getChannel();
+    }
+
+    /**
+     * Returns the address of the peer.
+     * @return The remote address, or null if the socket is not connected.
+     */
+    @Override
+    public InetAddress getInetAddress() {
+        return socket.getInetAddress();
+    }
+
+    /**
+     * Closes the socket.
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Describes the socket, for log lines.
+     * @return The socket's description.
+     */
+    @Override
+    public String toString() {
+        return socket.toString();
+    }
+}
@@ -1,27 +1,123 @@
 package main.network;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SocketNetworkHandler implements NetworkHandler {
+    public static final int DEFAULT_MAX_HEAD_BYTES = 16 * 1024;
+
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final byte[] PAYLOAD_TOO_LARGE_RESPONSE =
+            "HTTP/1.1 413 Payload Too Large\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadDeadlines readDeadlines;
+    private final int maxHeadBytes;
+    private final int maxBodyBytes;
+    private final int maxInflatedBytes;
     private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private volatile ServerSocketChannel unixServerChannel;
+    private UnixDomainSocketAddress unixAddress;
+    private Connection clientSocket;
+    private OutputStream out;
+    private InputStream in;
+
+    /**
+     * Constructs a network handler whose request reads are bounded by the read deadlines and size limits
+     * configured in system properties: network.read.maxHeadBytes, network.read.maxBodyBytes and
+     * network.read.maxInflatedBytes.
+     */
+    public SocketNetworkHandler() {
+        this(ReadDeadlines.fromSystemProperties());
+    }
+
+    /**
+     * Constructs a network handler whose request reads are bounded by the given read deadlines and
+     * by the size limits configured in system properties.
+     * @param readDeadlines The head, body and idle deadlines for reading client requests.
+     */
+    public SocketNetworkHandler(ReadDeadlines readDeadlines) {
+        this(readDeadlines,
+                Integer.getInteger("network.read.maxBodyBytes", Frame.MAX_FRAME_BYTES),
+                Integer.getInteger("network.read.maxInflatedBytes", HttpCompression.DEFAULT_MAX_INFLATED_BYTES));
+    }
+
+    /**
+     * Constructs a network handler whose request reads are bounded by the given read deadlines and body
+     * limits, and by the head limit configured in system properties.
+     * @param readDeadlines The head, body and idle deadlines for reading client requests.
+     * @param maxBodyBytes The largest Content-Length accepted, counted in bytes as sent.
+     * @param maxInflatedBytes The largest body accepted once a gzip-encoded body is decompressed.
+     */
+    public SocketNetworkHandler(ReadDeadlines readDeadlines, int maxBodyBytes, int maxInflatedBytes) {
+        this(readDeadlines, Integer.getInteger("network.read.maxHeadBytes", DEFAULT_MAX_HEAD_BYTES), maxBodyBytes, maxInflatedBytes);
+    }
+
+    /**
+     * Constructs a network handler whose request reads are bounded by the given read deadlines and size limits.
+     * @param readDeadlines The head, body and idle deadlines for reading client requests.
+     * @param maxHeadBytes The largest head accepted: the start line and header lines with their line endings.
+     * @param maxBodyBytes The largest Content-Length accepted, counted in bytes as sent.
+     * @param maxInflatedBytes The largest body accepted once a gzip-encoded body is decompressed.
+     */
+    public SocketNetworkHandler(ReadDeadlines readDeadlines, int maxHeadBytes, int maxBodyBytes, int maxInflatedBytes) {
+        if (maxHeadBytes < 1 || maxBodyBytes < 0 || maxInflatedBytes < 0) {
+            throw new IllegalArgumentException("The head limit must be positive and body limits must not be negative.");
+        }
+        this.readDeadlines = readDeadlines;
+        this.maxHeadBytes = maxHeadBytes;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
 
     // For Aggregation Server and Load Balancer
     /**
-     * Starts the server using a server socket on the specified port.
+     * Starts the server using a server socket channel on the specified port. Sockets accepted from a
+     * channel have a SocketChannel of their own, which lets responses use gathering writes.
      * @param portNumber The port number where the server should listen for incoming connections.
      */
     @Override
     public void startServer(int portNumber) {
         closeServer();
         try {
-            serverSocket = new ServerSocket(portNumber);
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(portNumber));
+            serverSocket = serverChannel.socket();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts the server on a UNIX domain socket, for clients on the same host. A socket file left
+     * behind by a server that did not shut down is replaced.
+     * @param address The path of the socket.
+     */
+    @Override
+    public void startServer(UnixDomainSocketAddress address) {
+        closeServer();
+        try {
+            Files.deleteIfExists(address.getPath());
+            ServerSocketChannel serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            serverChannel.bind(address);
+            unixServerChannel = serverChannel;
+            unixAddress = address;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -29,26 +125,34 @@ public class SocketNetworkHandler implements NetworkHandler {
 
     /**
      * Listens for and accepts an incoming connection from a client.
-     * Once a connection is established, it returns the socket associated with that client.
+     * Once a connection is established, it returns the connection associated with that client.
      * If the operation times out or is interrupted, it returns null.
-     * @return The socket for the connected client or null if no connection was established.
+     * @return The connection for the connected client or null if no connection was established.
      * @throws IOException If there's an issue with the network or server socket.
      */
     @Override
-    public Socket acceptConnection() throws IOException {
+    public Connection acceptConnection() throws IOException {
+        ServerSocketChannel unixChannel = unixServerChannel;
+        if (unixChannel != null) {
+            return acceptUnixConnection(unixChannel);
+        }
         if (serverSocket == null || serverSocket.isClosed()) {
             throw new IllegalStateException("Server not started or already closed");
         }
 
         serverSocket.setSoTimeout(1000);
         try {
-            return serverSocket.accept();
+            return new SocketConnection(serverSocket.accept());
         } catch (SocketTimeoutException e) {
             // If timeout occurs, just return null
             if(Thread.currentThread().isInterrupted()){
                 throw new IOException("Socket accept interrupted", e);
             }
             return null;
+        } catch (ClosedChannelException e) {
+            // The channel is closed by closeServer, or by an interrupt of the accepting thread
+            System.out.println("Server socket was closed, no longer accepting connections.");
+            return null;
         } catch (SocketException e) {
             // Handle socket closed exception
             if ("Socket closed".equals(e.getMessage())) {
@@ -60,74 +164,183 @@ public class SocketNetworkHandler implements NetworkHandler {
         }
     }
 
+    /**
+     * Accepts a connection on the UNIX domain socket. Such an accept cannot time out, so it waits
+     * until a client connects or the socket is closed.
+     * @param serverChannel The channel listening on the UNIX domain socket.
+     * @return The connection for the connected client, or null if the server socket was closed meanwhile.
+     * @throws IOException If there's an issue with the server socket.
+     */
+    private Connection acceptUnixConnection(ServerSocketChannel serverChannel) throws IOException {
+        if (!serverChannel.isOpen()) {
+            throw new IllegalStateException("Server not started or already closed");
+        }
+        try {
+            return new UnixDomainSocket(serverChannel.accept());
+        } catch (ClosedChannelException e) {
+            System.out.println("Server socket was closed, no longer accepting connections.");
+            return null;
+        }
+    }
+
     /**
      * Listens for incoming data from a connected client.
-     * This method reads both the headers and the body of the HTTP request.
+     * This method reads both the headers and the body of the HTTP request. The body is read by its
+     * Content-Length in bytes; a gzip-encoded body is decompressed, so callers always see plain text.
+     * A client that misses a read deadline is disconnected. A body over the size limits, before or after
+     * decompression, gets a 413 response.
      * @param clientSocket The client's socket.
-     * @return The data received from the client.
+     * @return The data received from the client, or null if it could not be read in time or was too large.
      */
     @Override
-    public String waitForClientData(Socket clientSocket) {
-        StringBuilder requestBuilder = new StringBuilder();
-
+    public String waitForClientData(Connection clientSocket) {
+        ReadDeadlines.Deadline deadline = readDeadlines.watch(clientSocket);
         try {
-            InputStream input = clientSocket.getInputStream();
-            BufferedReader in = new BufferedReader(new InputStreamReader(input));
-
-            String line;
-            int contentLength = 0;
-            boolean isHeader = true;
-
-            // Read headers
-            while (isHeader && (line = in.readLine()) != null) {
-                if (line.startsWith("Content-Length: ")) {
-                    contentLength = Integer.parseInt(line.split(":")[1].trim());
-                }
-
-                requestBuilder.append(line).append("\r\n");
-
-                // Blank line indicates end of headers and start of body
-                if (line.isEmpty()) {
-                    isHeader = false;
-                }
-            }
+            return readMessage(new BufferedInputStream(new WatchedInputStream(clientSocket.getInputStream(), deadline)), true, deadline);
+        } catch (PayloadTooLargeException e) {
+            rejectTooLarge(e, clientSocket);
+            return null;
+        } catch (Exception e) {
+            reportReadFailure(e, deadline);
+            return null;
+        } finally {
+            deadline.finish();
+        }
+    }
 
-            // Read body
-            if (contentLength > 0) {
-                char[] bodyChars = new char[contentLength];
-                int bytesRead = 0;
-                while (bytesRead < contentLength) {
-                    int result = in.read(bodyChars, bytesRead, contentLength - bytesRead);
-                    if (result == -1) {
-                        break; // end of stream reached
-                    }
-                    bytesRead += result;
-                }
-                requestBuilder.append(bodyChars);
+    /**
+     * Listens for an incoming request in either protocol. A request whose first byte is the frame
+     * magic byte is read as a binary frame; anything else is read as an HTTP request, as by waitForClientData.
+     * A frame has no separate head, so the whole frame is read under the body deadline.
+     * An HTTP body over the size limits gets a 413 response.
+     * @param clientSocket The client's socket.
+     * @return The request received from the client, or null if it could not be read in time or was too large.
+     */
+    @Override
+    public ClientRequest waitForClientRequest(Connection clientSocket) {
+        ReadDeadlines.Deadline deadline = readDeadlines.watch(clientSocket);
+        try {
+            InputStream input = new BufferedInputStream(new WatchedInputStream(clientSocket.getInputStream(), deadline));
+            input.mark(1);
+            int firstByte = input.read();
+            input.reset();
+            if (Frame.isFrameStart(firstByte)) {
+                deadline.startBody();
+                return ClientRequest.frame(Frame.read(input));
             }
-
-            return requestBuilder.toString();
-
+            return ClientRequest.http(readMessage(input, true, deadline));
+        } catch (PayloadTooLargeException e) {
+            rejectTooLarge(e, clientSocket);
+            return null;
         } catch (Exception e) {
-            e.printStackTrace();
+            reportReadFailure(e, deadline);
             return null;
+        } finally {
+            deadline.finish();
+        }
+    }
+
+    /**
+     * Logs a request that could not be read: one line for a client disconnected by a read deadline,
+     * the stack trace for anything else.
+     * @param e The exception thrown by the read.
+     * @param deadline The deadline of the connection.
+     */
+    private static void reportReadFailure(Exception e, ReadDeadlines.Deadline deadline) {
+        if (deadline.isTimedOut()) {
+            System.out.println("Request read timed out: " + e.getMessage());
+        } else {
+            e.printStackTrace();
         }
     }
 
+    /**
+     * Answers a request whose body is over the size limits with 413 Payload Too Large and closes the connection.
+     * @param e The exception naming the limit that was exceeded.
+     * @param clientSocket The client's socket.
+     */
+    private void rejectTooLarge(PayloadTooLargeException e, Connection clientSocket) {
+        System.out.println("Rejecting request from " + clientSocket + ": " + e.getMessage());
+        sendResponseToClient(PAYLOAD_TOO_LARGE_RESPONSE, clientSocket);
+    }
+
+    /**
+     * Returns the read deadlines applied to client requests, with their timeout counters.
+     * @return The read deadlines.
+     */
+    public ReadDeadlines getReadDeadlines() {
+        return readDeadlines;
+    }
+
     /**
      * Sends the specified response data to the connected client and then closes the associated resources.
      * @param response The data to be sent to the client.
      * @param clientSocket The client's socket.
      */
     @Override
-    public void sendResponseToClient(String response, Socket clientSocket) { // Modified
+    public void sendResponseToClient(String response, Connection clientSocket) {
+        sendResponseToClient(response.getBytes(StandardCharsets.UTF_8), clientSocket);
+    }
+
+    /**
+     * Sends the specified response bytes, such as a response with a gzip-encoded body, to the connected
+     * client and then closes the associated resources.
+     * @param response The bytes to be sent to the client.
+     * @param clientSocket The client's socket.
+     */
+    @Override
+    public void sendResponseToClient(byte[] response, Connection clientSocket) {
+        sendResponseToClient(new ByteBuffer[] {ByteBuffer.wrap(response)}, clientSocket);
+    }
+
+    /**
+     * Sends the specified response buffers, such as an encoded head followed by a cached body, to the
+     * connected client and then closes the associated resources. Connections accepted by this handler have
+     * a channel, which writes all buffers with gathering writes and no intermediate copy; other connections
+     * fall back to writing each buffer to the connection's output stream.
+     * @param response The buffers to be sent to the client, in order; their positions are advanced.
+     * @param clientSocket The client's socket.
+     */
+    @Override
+    public void sendResponseToClient(ByteBuffer[] response, Connection clientSocket) {
         try {
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            out.println(response);
+            SocketChannel channel = clientSocket.getChannel();
+            if (channel != null) {
+                writeFully(channel, response);
+            } else {
+                OutputStream responseStream = clientSocket.getOutputStream();
+                WritableByteChannel streamChannel = Channels.newChannel(responseStream);
+                for (ByteBuffer buffer : response) {
+                    while (buffer.hasRemaining()) {
+                        streamChannel.write(buffer);
+                    }
+                }
+                responseStream.flush();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            out.close();
+            try {
+                clientSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes every buffer to a blocking channel, repeating the gathering write until nothing remains.
+     * @param channel The channel to write to.
+     * @param buffers The buffers to write, in order.
+     * @throws IOException If the write fails.
+     */
+    private static void writeFully(SocketChannel channel, ByteBuffer[] buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
         }
     }
 
@@ -138,6 +351,12 @@ public class SocketNetworkHandler implements NetworkHandler {
     public void closeServer() {
         try {
             if (serverSocket != null) serverSocket.close();
+            ServerSocketChannel unixChannel = unixServerChannel;
+            if (unixChannel != null) {
+                unixServerChannel = null;
+                unixChannel.close();
+                Files.deleteIfExists(unixAddress.getPath());
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -147,27 +366,37 @@ public class SocketNetworkHandler implements NetworkHandler {
     /**
      * Establishes a client connection with a specified server and initializes the associated socket.
      * Once connected, it expects to receive the Lamport clock value from the server.
-     * @param serverName The name or address of the server to connect to.
-     * @param portNumber The port number of the server.
+     * @param serverName The name or address of the server to connect to, or unix:/path for a UNIX domain socket.
+     * @param portNumber The port number of the server, unused for a UNIX domain socket.
      * @return The Lamport clock value sent by the server.
+     * @throws RetryLaterException If the server sheds the connection with a 503 or 429 response.
      */
     @Override
     public int initializeSocket(String serverName, int portNumber) {
         closeClient();
 
         try {
-            clientSocket = new Socket(serverName, portNumber);
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+            clientSocket = UnixDomainSocket.isUnixAddress(serverName)
+                    ? UnixDomainSocket.connect(serverName)
+                    : new SocketConnection(new Socket(serverName, portNumber));
+            out = new BufferedOutputStream(clientSocket.getOutputStream());
+            in = new BufferedInputStream(clientSocket.getInputStream());
 
             // Parse the Lamport clock value sent by the server immediately after the connection
             // Read HTTP status line
-            String clockLine = in.readLine();
+            String clockLine = readLine(in, maxHeadBytes);
 
             if (clockLine == null) {
                 throw new IOException("Server closed the connection unexpectedly.");
-            } else if (clockLine.startsWith("HTTP/1.1 503")) {
-                throw new IOException("Received 503 Service Unavailable from the server.");
+            } else if (clockLine.startsWith("HTTP/1.1 503") || clockLine.startsWith("HTTP/1.1 429")) {
+                // The request is shed before it is read; the headers say when to retry
+                StringBuilder response = new StringBuilder(clockLine).append("\r\n");
+                String header;
+                while ((header = readLine(in, maxHeadBytes)) != null && !header.isEmpty()) {
+                    response.append(header).append("\r\n");
+                }
+                closeClient();
+                throw RetryLaterException.fromHttpResponse(response.toString());
             } else if (clockLine.startsWith("LamportClock: ")) {
                 return Integer.parseInt(clockLine.split(":")[1].trim());
             } else {
@@ -191,43 +420,190 @@ public class SocketNetworkHandler implements NetworkHandler {
      */
     @Override
     public String sendAndReceiveData(String serverName, int portNumber, String data, boolean isContentServer) {
+        return sendAndReceiveData(serverName, portNumber, data.getBytes(StandardCharsets.UTF_8), isContentServer);
+    }
+
+    /**
+     * Sends the provided bytes, such as a request with a gzip-encoded body, to a server and then waits for its response.
+     * A gzip-encoded response body is decompressed. After receiving the response, it shuts down the client
+     * and its associated resources.
+     * @param serverName The name or address of the server.
+     * @param portNumber The port number of the server.
+     * @param data The bytes to be sent to the server.
+     * @param isContentServer Flag to indicate if the caller is a content server, which only reads the response headers.
+     * @return The server's response.
+     */
+    @Override
+    public String sendAndReceiveData(String serverName, int portNumber, byte[] data, boolean isContentServer) {
         try {
-            out.println(data);  // Sending the request data
+            out.write(data);  // Sending the request data
+            out.flush();
 
-            StringBuilder responseBuilder = new StringBuilder();
-            String line;
-            int contentLength = 0;
-            boolean isHeader = true;
+            return readMessage(in, !isContentServer);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeClient();
+        }
+    }
 
-            // Read headers
-            while (isHeader && (line = in.readLine()) != null) {
-                if (line.startsWith("Content-Length: ")) {
-                    contentLength = Integer.parseInt(line.split(":")[1].trim());
-                }
+    /**
+     * Sends a request frame to a server and then waits for its response frame.
+     * After receiving the response, it shuts down the client and its associated resources.
+     * @param serverName The name or address of the server.
+     * @param portNumber The port number of the server.
+     * @param request The request frame.
+     * @return The response frame, or null if the server closed the connection or sent something else.
+     */
+    @Override
+    public Frame sendAndReceiveFrame(String serverName, int portNumber, Frame request) {
+        try {
+            out.write(request.encode());
+            out.flush();
 
-                responseBuilder.append(line).append("\r\n");
+            in.mark(1);
+            int firstByte = in.read();
+            in.reset();
+            if (!Frame.isFrameStart(firstByte)) {
+                // A server that does not speak frames, or an error sent as HTTP text
+                System.out.println("Expected a response frame but received: " + readMessage(in, true));
+                return null;
+            }
+            return Frame.read(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeClient();
+        }
+    }
 
-                // Blank line indicates end of headers and start of body
-                if (line.isEmpty()) {
-                    isHeader = false;
-                }
+    /**
+     * Reads an HTTP message: the header lines up to the blank line and, if requested, a body of
+     * Content-Length bytes. A gzip-encoded body is decompressed; the Content-Encoding header is then
+     * dropped and Content-Length gives the decompressed size, so the message reads as if sent uncompressed.
+     * @param input The stream to read from.
+     * @param readBody True to read the body, false to stop after the headers.
+     * @return The message with CRLF line endings and a UTF-8 decoded body, or an empty string if the stream ended at once.
+     * @throws PayloadTooLargeException If the head is longer than maxHeadBytes, or the body is longer than
+     *                                  maxBodyBytes or inflates past maxInflatedBytes.
+     * @throws IOException If the stream fails or a gzip body is malformed.
+     */
+    private String readMessage(InputStream input, boolean readBody) throws IOException {
+        return readMessage(input, readBody, null);
+    }
+
+    /**
+     * Reads an HTTP message as above, moving the connection from its head deadline to its body
+     * deadline once the headers have been read.
+     * @param input The stream to read from.
+     * @param readBody True to read the body, false to stop after the headers.
+     * @param deadline The deadline of the connection, or null if the read is not watched.
+     * @return The message with CRLF line endings and a UTF-8 decoded body, or an empty string if the stream ended at once.
+     * @throws PayloadTooLargeException If the head is longer than maxHeadBytes, or the body is longer than
+     *                                  maxBodyBytes or inflates past maxInflatedBytes.
+     * @throws IOException If the stream fails or a gzip body is malformed.
+     */
+    private String readMessage(InputStream input, boolean readBody, ReadDeadlines.Deadline deadline) throws IOException {
+        List<String> headerLines = new ArrayList<>();
+        int contentLength = 0;
+        boolean gzipped = false;
+
+        // Read headers; a blank line indicates end of headers and start of body
+        int headBytesLeft = maxHeadBytes;
+        byte[] rawLine;
+        while ((rawLine = readLineBytes(input, headBytesLeft)) != null) {
+            headBytesLeft -= rawLine.length + 1;
+            String line = decodeLine(rawLine);
+            if (line.isEmpty()) {
+                break;
             }
+            int separator = line.indexOf(':');
+            String name = separator > 0 ? line.substring(0, separator).trim() : "";
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = Integer.parseInt(line.substring(separator + 1).trim());
+            } else if (CONTENT_ENCODING.equalsIgnoreCase(name) && HttpCompression.GZIP.equalsIgnoreCase(line.substring(separator + 1).trim())) {
+                gzipped = true;
+                continue;
+            }
+            headerLines.add(line);
+        }
 
-            // Read body
-            if (!isContentServer && contentLength > 0) {
-                char[] bodyChars = new char[contentLength];
-                in.read(bodyChars, 0, contentLength);
-                responseBuilder.append(bodyChars);
+        if (deadline != null) {
+            deadline.startBody();
+        }
+
+        byte[] body = new byte[0];
+        if (readBody && contentLength > 0) {
+            if (contentLength > maxBodyBytes) {
+                throw new PayloadTooLargeException("Content-Length " + contentLength + " is over " + maxBodyBytes + " bytes");
+            }
+            body = input.readNBytes(contentLength);
+            if (gzipped) {
+                body = HttpCompression.gunzip(body, maxInflatedBytes);
             }
+        }
 
-            return responseBuilder.toString();
+        StringBuilder messageBuilder = new StringBuilder();
+        for (String headerLine : headerLines) {
+            if (gzipped && headerLine.regionMatches(true, 0, CONTENT_LENGTH, 0, CONTENT_LENGTH.length())) {
+                headerLine = CONTENT_LENGTH + ": " + body.length;
+            }
+            messageBuilder.append(headerLine).append("\r\n");
+        }
+        if (rawLine != null) {
+            messageBuilder.append("\r\n");
+        }
+        messageBuilder.append(new String(body, StandardCharsets.UTF_8));
+        return messageBuilder.toString();
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Reads one line terminated by LF or CRLF, without the terminator.
+     * @param input The stream to read from.
+     * @param maxBytes The most bytes the line may take, terminator included.
+     * @return The line decoded as UTF-8, or null if the stream ended before any byte was read.
+     * @throws PayloadTooLargeException If the line is longer than maxBytes.
+     * @throws IOException If the stream fails.
+     */
+    private static String readLine(InputStream input, int maxBytes) throws IOException {
+        byte[] bytes = readLineBytes(input, maxBytes);
+        return bytes == null ? null : decodeLine(bytes);
+    }
+
+    /**
+     * Reads the bytes of one line up to LF, keeping a CR before it.
+     * @param input The stream to read from.
+     * @param maxBytes The most bytes the line may take, LF included.
+     * @return The bytes before the LF, or null if the stream ended before any byte was read.
+     * @throws PayloadTooLargeException If the line is longer than maxBytes, so a client cannot grow the
+     *                                  head without bound before its deadline passes.
+     * @throws IOException If the stream fails.
+     */
+    private static byte[] readLineBytes(InputStream input, int maxBytes) throws IOException {
+        ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = input.read()) != -1 && b != '\n') {
+            if (lineBuffer.size() + 1 >= maxBytes) {
+                throw new PayloadTooLargeException("Head line is over the " + maxBytes + " bytes left for the head");
+            }
+            lineBuffer.write(b);
+        }
+        if (b == -1 && lineBuffer.size() == 0) {
             return null;
-        } finally {
-            closeClient();
         }
+        return lineBuffer.toByteArray();
+    }
+
+    /**
+     * Decodes the bytes of a line as UTF-8, without a trailing CR.
+     * @param bytes The bytes before the LF.
+     * @return The line.
+     */
+    private static String decodeLine(byte[] bytes) {
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
     }
 
     /**
@@ -243,4 +619,49 @@ public class SocketNetworkHandler implements NetworkHandler {
             e.printStackTrace();
         }
     }
+
+    private static class WatchedInputStream extends FilterInputStream {
+        private final ReadDeadlines.Deadline deadline;
+
+        /**
+         * Wraps a socket stream so that every read that returns data counts as progress for the idle deadline.
+         * @param in The socket stream.
+         * @param deadline The deadline of the connection.
+         */
+        WatchedInputStream(InputStream in, ReadDeadlines.Deadline deadline) {
+            super(in);
+            this.deadline = deadline;
+        }
+
+        /**
+         * Reads one byte, recording progress.
+         * @return The byte, or -1 at the end of the stream.
+         * @throws IOException If the stream fails.
+         */
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                deadline.onRead();
+            }
+            return b;
+        }
+
+        /**
+         * Reads into a buffer, recording progress.
+         * @param b The buffer.
+         * @param off The offset to read into.
+         * @param len The maximum number of bytes.
+         * @return The number of bytes read, or -1 at the end of the stream.
+         * @throws IOException If the stream fails.
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                deadline.onRead();
+            }
+            return n;
+        }
+    }
 }
@@ -0,0 +1,148 @@
+package main.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+public class UnixDomainSocket implements Connection {
+    public static final String SCHEME = "unix:";
+
+    private final SocketChannel channel;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * Wraps a connected UNIX domain socket channel as a connection, so that co-located components can be
+     * served by the same code as TCP clients. UNIX domain channels have no java.net.Socket view, so the
+     * streams are the channel's; a gathering write goes to the channel directly.
+     * @param channel The connected channel, in blocking mode.
+     */
+    public UnixDomainSocket(SocketChannel channel) {
+        this.channel = channel;
+        this.in = Channels.newInputStream(channel);
+        this.out = Channels.newOutputStream(channel);
+    }
+
+    /**
+     * Connects to a UNIX domain socket.
+     * @param address The path of the socket, with or without the unix: prefix.
+     * @return The connected socket.
+     * @throws IOException If nothing is listening on the path.
+     */
+    public static UnixDomainSocket connect(String address) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(addressOf(address));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new UnixDomainSocket(channel);
+    }
+
+    /**
+     * Checks whether a server accepts connections on a UNIX domain socket, then closes the connection.
+     * A blocking UNIX connect waits for as long as the server's backlog is full, so this one is
+     * non-blocking and gives up after the timeout.
+     * @param address The path of the socket.
+     * @param timeoutMillis The longest time to wait for the connection.
+     * @return True if the connection was made in time, otherwise false.
+     */
+    public static boolean isListening(UnixDomainSocketAddress address, long timeoutMillis) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+             Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            if (channel.connect(address)) {
+                return true;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT);
+            return selector.select(timeoutMillis) > 0 && channel.finishConnect();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether an address given on the command line names a UNIX domain socket, as in unix:/tmp/lb.sock.
+     * @param address The address.
+     * @return True if the address has the unix: prefix, otherwise false.
+     */
+    public static boolean isUnixAddress(String address) {
+        return address != null && address.startsWith(SCHEME);
+    }
+
+    /**
+     * Converts an address to a UNIX domain socket address.
+     * @param address The path of the socket, with or without the unix: prefix.
+     * @return The socket address.
+     */
+    public static UnixDomainSocketAddress addressOf(String address) {
+        return UnixDomainSocketAddress.of(Path.of(isUnixAddress(address) ? address.substring(SCHEME.length()) : address));
+    }
+
+    /**
+     * Returns the stream that reads from the connection.
+     * @return The input stream.
+     */
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * Returns the stream that writes to the connection.
+     * @return The output stream.
+     */
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Returns the channel of the connection.
+     * @return The channel.
+     */
+    @Override
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns no address, as a UNIX domain peer has none; address rate limits do not apply to it.
+     * @return Null.
+     */
+    @Override
+    public InetAddress getInetAddress() {
+        return null;
+    }
+
+    /**
+     * Closes the channel, which makes a blocked read or write on it fail.
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Describes the connection by its local path, for log lines.
+     * @return The connection's description.
+     */
+    @Override
+    public String toString() {
+        try {
+            return "UnixDomainSocket[" + channel.getLocalAddress() + "]";
+        } catch (IOException e) {
+            return "UnixDomainSocket[closed]";
+        }
+    }
+}
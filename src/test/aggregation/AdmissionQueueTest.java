@@ -0,0 +1,90 @@
+package test.aggregation;
+
+import main.aggregation.AdmissionQueue;
+import main.aggregation.AdmissionQueue.QueuedRequest;
+import main.network.SocketConnection;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionQueueTest {
+    @Test
+    public void testRejectsWhenFull() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue(2, 10000, true, 1.0, 1);
+
+        assertTrue(queue.offer(new SocketConnection(new Socket())));
+        assertTrue(queue.offer(new SocketConnection(new Socket())));
+        assertTrue(queue.isFull());
+        assertFalse(queue.offer(new SocketConnection(new Socket())));
+
+        assertEquals(2, queue.getDepth());
+        assertEquals(2, queue.getAdmittedCount());
+        assertEquals(1, queue.getRejectedCount());
+
+        assertNotNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertFalse(queue.isFull());
+        assertTrue(queue.offer(new SocketConnection(new Socket())));
+    }
+
+    @Test
+    public void testShedsRequestsPastTheDeadline() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue(4, 20, true, 1.0, 1);
+        queue.offer(new SocketConnection(new Socket()));
+        QueuedRequest request = queue.poll(10, TimeUnit.MILLISECONDS);
+
+        assertFalse(queue.shouldShed(request, false));
+        Thread.sleep(50);
+        assertTrue(queue.shouldShed(request, false));
+        assertEquals(1, queue.getExpiredCount());
+    }
+
+    @Test
+    public void testShedsGetsFirstUnderBacklog() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue(4, 10000, true, 0.5, 1);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(new SocketConnection(new Socket()));
+        }
+
+        // Three requests remain behind this one, above the GET shed depth of two
+        QueuedRequest request = queue.poll(10, TimeUnit.MILLISECONDS);
+        assertTrue(queue.shouldShed(request, true));
+        assertFalse(queue.shouldShed(request, false));
+
+        queue.poll(10, TimeUnit.MILLISECONDS);
+        queue.poll(10, TimeUnit.MILLISECONDS);
+        assertFalse(queue.shouldShed(request, true));
+        assertEquals(1, queue.getShedGetCount());
+        assertEquals(1, queue.getShedCount());
+    }
+
+    @Test
+    public void testNoPriorityOnlyShedsByDeadline() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue(4, 10000, false, 0.25, 1);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(new SocketConnection(new Socket()));
+        }
+
+        assertFalse(queue.shouldShed(queue.poll(10, TimeUnit.MILLISECONDS), true));
+    }
+
+    @Test
+    public void testFromSystemProperties() {
+        System.setProperty("aggregation.queue.capacity", "3");
+        System.setProperty("aggregation.queue.retryAfterSeconds", "7");
+        try {
+            AdmissionQueue queue = AdmissionQueue.fromSystemProperties();
+            assertEquals(3, queue.getCapacity());
+            assertEquals(7, queue.getRetryAfterSeconds());
+
+            System.setProperty("aggregation.queue.shedPriority", "bogus");
+            assertThrows(IllegalArgumentException.class, AdmissionQueue::fromSystemProperties);
+        } finally {
+            System.clearProperty("aggregation.queue.capacity");
+            System.clearProperty("aggregation.queue.retryAfterSeconds");
+            System.clearProperty("aggregation.queue.shedPriority");
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package test.aggregation;
 
 import main.aggregation.AggregationServer;
+import main.aggregation.EdgeCache;
+import main.network.Frame;
+import main.network.HttpCompression;
+import main.network.SocketConnection;
+import main.network.SocketNetworkHandler;
 import test.network.StubNetworkHandler;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -87,6 +98,251 @@ class AggregationServerTest {
         assertTrue(responseData.contains("IDS60901"));
     }
 
+    @Test
+    void testGetResponseIsCompactUnlessPrettyRequested() {
+        assertTrue(server.processWeatherData("{ \"id\" : \"IDS60977\", \"air_temp\" : 13.3 }", 1, "Server1"));
+
+        String compact = server.handleRequest("GET /weather.json HTTP/1.1\r\n" +
+                "LamportClock: 2\r\n" +
+                "StationID: IDS60977\r\n" +
+                "\r\n");
+        assertTrue(compact.endsWith("\r\n\r\n{\"id\":\"IDS60977\",\"air_temp\":13.3}"));
+
+        String prettyByQuery = server.handleRequest("GET /weather.json?pretty=true HTTP/1.1\r\n" +
+                "LamportClock: 2\r\n" +
+                "StationID: IDS60977\r\n" +
+                "\r\n");
+        assertTrue(prettyByQuery.endsWith("\r\n\r\n{\n  \"id\": \"IDS60977\",\n  \"air_temp\": 13.3\n}"));
+
+        String prettyByAccept = server.handleRequest("GET /weather.json HTTP/1.1\r\n" +
+                "LamportClock: 2\r\n" +
+                "StationID: IDS60977\r\n" +
+                "Accept: application/json; pretty=true\r\n" +
+                "\r\n");
+        assertTrue(prettyByAccept.endsWith("\r\n\r\n{\n  \"id\": \"IDS60977\",\n  \"air_temp\": 13.3\n}"));
+    }
+
+    @Test
+    void testFrameRequestsMatchHttpRequests() throws Exception {
+        byte[] reading = "{ \"id\" : \"IDS60979\", \"air_temp\" : 13.3 }".getBytes(StandardCharsets.UTF_8);
+
+        Frame put = Frame.read(new ByteArrayInputStream(server.handleFrameRequest(Frame.put(1, "Server1", "IDS60979", reading))));
+        assertEquals(Frame.OP_RESPONSE, put.getOpCode());
+        assertEquals(201, put.getStatus());
+
+        Frame get = Frame.read(new ByteArrayInputStream(server.handleFrameRequest(Frame.get(2, "Client1", "IDS60979"))));
+        assertEquals(200, get.getStatus());
+        assertEquals("{\"id\":\"IDS60979\",\"air_temp\":13.3}", get.getPayloadText());
+        String http = server.handleRequest("GET /weather.json HTTP/1.1\r\nLamportClock: 2\r\nStationID: IDS60979\r\n\r\n");
+        assertTrue(http.endsWith("\r\n\r\n" + get.getPayloadText()));
+
+        Frame missing = Frame.read(new ByteArrayInputStream(server.handleFrameRequest(Frame.get(2, "Client1", "IDS00000"))));
+        assertEquals(204, missing.getStatus());
+        assertEquals(0, missing.getPayload().length);
+
+        Frame noSender = Frame.read(new ByteArrayInputStream(server.handleFrameRequest(Frame.put(3, null, "IDS60979", reading))));
+        assertEquals(400, noSender.getStatus());
+    }
+
+    @Test
+    void testWireGetResponseIsGzippedWhenAccepted() throws Exception {
+        String reading = "{ \"id\" : \"IDS60978\", \"name\" : \"Adelaide (West Terrace /  ngayirdapira)\", "
+                + "\"state\" : \"SA\", \"time_zone\" : \"CST\", \"lat\" : -34.9, \"lon\" : 138.6, "
+                + "\"local_date_time_full\" : \"20230715160000\", \"air_temp\" : 13.3, \"cloud\" : \"Partly cloudy\" }";
+        assertTrue(server.processWeatherData(reading, 1, "Server1"));
+        String getRequest = "GET /weather.json HTTP/1.1\r\n" +
+                "LamportClock: 2\r\n" +
+                "StationID: IDS60978\r\n" +
+                "Accept-Encoding: gzip, deflate\r\n" +
+                "\r\n";
+        String plain = server.handleRequest(getRequest);
+        String plainBody = plain.substring(plain.indexOf("\r\n\r\n") + 4);
+        long hitsBefore = AggregationServer.getBodyCache().getHitCount();
+
+        byte[] response = server.handleWireRequest(getRequest);
+
+        String head = new String(response, StandardCharsets.ISO_8859_1).split("\r\n\r\n", 2)[0];
+        byte[] body = Arrays.copyOfRange(response, head.length() + 4, response.length);
+        assertTrue(head.contains("Content-Encoding: gzip\r\n"));
+        assertTrue(head.contains("Content-Length: " + body.length));
+        assertEquals(plainBody, new String(HttpCompression.gunzip(body), StandardCharsets.UTF_8));
+        assertTrue(AggregationServer.getBodyCache().getHitCount() > hitsBefore);
+    }
+
+    @Test
+    void testEdgeCacheHoldsNewestRecordUntilPut() {
+        EdgeCache edgeCache = new EdgeCache(16, 60000);
+        server.setEdgeCache(edgeCache);
+        assertTrue(server.processWeatherData("{ \"id\" : \"IDS60977\", \"air_temp\" : 13.3 }", 10, "Server1"));
+
+        // A GET bounded before the record reads nothing and caches nothing
+        server.handleRequest("GET /weather.json HTTP/1.1\r\nLamportClock: 5\r\nStationID: IDS60977\r\n\r\n");
+        assertEquals(0, edgeCache.size());
+
+        server.handleRequest("GET /weather.json HTTP/1.1\r\nLamportClock: 11\r\nStationID: IDS60977\r\n\r\n");
+        assertEquals("{\"id\":\"IDS60977\",\"air_temp\":13.3}", edgeCache.get("IDS60977", false, 20).getText());
+        assertNull(edgeCache.get("IDS60977", false, 9));
+        assertNull(edgeCache.get("IDS60977", true, 20));
+
+        assertTrue(server.processWeatherData("{ \"id\" : \"IDS60977\", \"air_temp\" : 14.1 }", 12, "Server1"));
+        assertNull(edgeCache.get("IDS60977", false, 20));
+    }
+
+    @Test
+    void testBadLamportClockGetsBadRequest() {
+        String response = server.handleRequest("GET /weather.json HTTP/1.1\r\nLamportClock: soon\r\nStationID: IDS60977\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 400 Bad Request\r\n"), response);
+    }
+
+    @Test
+    void testBadLamportClockGetsBadRequestOnTheEdgeCachePath() throws Exception {
+        AggregationServer socketServer = new AggregationServer(new SocketNetworkHandler());
+        socketServer.setEdgeCache(new EdgeCache(16, 60000));
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Thread serverThread = new Thread(() -> socketServer.start(port));
+        serverThread.start();
+        try (ServerSocket listener = new ServerSocket(0)) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!socketServer.isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            try (Socket client = new Socket("localhost", listener.getLocalPort());
+                 Socket accepted = listener.accept()) {
+                assertEquals(client.getLocalPort(), accepted.getPort());
+                socketServer.acceptExternalSocket(new SocketConnection(accepted));
+                client.getOutputStream().write("GET /weather.json HTTP/1.1\r\nLamportClock: soon\r\nStationID: IDS60977\r\n\r\n"
+                        .getBytes(StandardCharsets.UTF_8));
+                client.getOutputStream().flush();
+
+                client.setSoTimeout(5000);
+                String response = new String(client.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(response.contains("HTTP/1.1 400 Bad Request\r\n"), response);
+            }
+        } finally {
+            socketServer.shutdown();
+            serverThread.join(5000);
+        }
+    }
+
+    @Test
+    void testExternalSocketIsShedWhenQueueIsFull() throws Exception {
+        System.setProperty("aggregation.queue.capacity", "1");
+        AggregationServer smallServer;
+        try {
+            smallServer = new AggregationServer(stubNetworkHandler);
+        } finally {
+            System.clearProperty("aggregation.queue.capacity");
+        }
+
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client1 = new Socket("localhost", listener.getLocalPort());
+             Socket accepted1 = listener.accept();
+             Socket client2 = new Socket("localhost", listener.getLocalPort());
+             Socket accepted2 = listener.accept()) {
+            assertEquals(client1.getLocalPort(), accepted1.getPort());
+            assertEquals(client2.getLocalPort(), accepted2.getPort());
+            smallServer.acceptExternalSocket(new SocketConnection(accepted1));
+            assertNull(stubNetworkHandler.getLastSentData());
+
+            smallServer.acceptExternalSocket(new SocketConnection(accepted2));
+            String response = stubNetworkHandler.getLastSentData();
+            assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+            assertTrue(response.contains("Retry-After: 1\r\n"));
+            assertEquals(1, smallServer.getRequestQueue().getDepth());
+            assertEquals(1, smallServer.getRequestQueue().getRejectedCount());
+        } finally {
+            smallServer.shutdown();
+        }
+    }
+
+    @Test
+    void testDrainWithNothingPendingIsImmediate() {
+        assertFalse(server.isDraining());
+
+        assertTrue(server.drain(5000));
+        assertTrue(server.isDraining());
+        assertTrue(server.isDrained());
+        assertEquals(0, server.getPendingRequests());
+    }
+
+    @Test
+    void testDrainRedirectsQueuedRequestsNobodyWillServe() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client = new Socket("localhost", listener.getLocalPort());
+             Socket accepted = listener.accept()) {
+            assertEquals(client.getLocalPort(), accepted.getPort());
+            server.acceptExternalSocket(new SocketConnection(accepted));
+            assertEquals(1, server.getPendingRequests());
+
+            // The server was never started, so nothing reads the queue and the request is redirected at once
+            assertTrue(server.drain(5000));
+            assertTrue(stubNetworkHandler.getLastSentData().startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+            assertEquals(0, server.getPendingRequests());
+            assertEquals(0, server.getRequestQueue().getDepth());
+
+            // Once the drain deadline has passed, new sockets are redirected without a greeting
+            try (Socket client2 = new Socket("localhost", listener.getLocalPort());
+                 Socket accepted2 = listener.accept()) {
+                assertEquals(client2.getLocalPort(), accepted2.getPort());
+                server.acceptExternalSocket(new SocketConnection(accepted2));
+                assertEquals(0, server.getRequestQueue().getDepth());
+            }
+        }
+    }
+
+    @Test
+    void testStalledClientDoesNotDelayAnotherClientsPut() throws Exception {
+        AggregationServer socketServer = new AggregationServer(new SocketNetworkHandler());
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Thread serverThread = new Thread(() -> socketServer.start(port));
+        serverThread.start();
+        try (ServerSocket listener = new ServerSocket(0)) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!socketServer.isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            try (Socket stalled = new Socket("localhost", listener.getLocalPort());
+                 Socket acceptedStalled = listener.accept();
+                 Socket client = new Socket("localhost", listener.getLocalPort());
+                 Socket accepted = listener.accept()) {
+                assertEquals(stalled.getLocalPort(), acceptedStalled.getPort());
+                assertEquals(client.getLocalPort(), accepted.getPort());
+
+                // The first client is greeted but never sends its request
+                socketServer.acceptExternalSocket(new SocketConnection(acceptedStalled));
+                Thread.sleep(100);
+
+                long start = System.nanoTime();
+                socketServer.acceptExternalSocket(new SocketConnection(accepted));
+                String body = "{\"id\":\"IDS60950\",\"wind_spd_kt\":8}";
+                client.getOutputStream().write(("PUT /weather.json HTTP/1.1\r\nSenderID: stalled-test\r\nLamportClock: 1\r\n"
+                        + "Content-Type: application/json\r\nContent-Length: " + body.length() + "\r\n\r\n" + body)
+                        .getBytes(StandardCharsets.UTF_8));
+                client.getOutputStream().flush();
+
+                client.setSoTimeout(5000);
+                InputStream in = client.getInputStream();
+                String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+                assertTrue(response.contains("HTTP/1.1 20"), response);
+                // Well under the 5 s head deadline still running for the stalled client
+                assertTrue(elapsedMillis < 2000, "PUT took " + elapsedMillis + " ms");
+            }
+        } finally {
+            socketServer.shutdown();
+            serverThread.join(5000);
+        }
+    }
+
     @Test
     void testGetWithoutStationId() {
         // First, put weather data into the DataStore
@@ -135,6 +391,7 @@ class AggregationServerTest {
 
     @Test
     void testShutdown() throws InterruptedException {
+        server.shutdown(); // The server from setUp is replaced below, so shut it down for the shared clock to reset
         server = mock(AggregationServer.class);
         when(server.isAlive()).thenReturn(true);
 
@@ -0,0 +1,157 @@
+package test.aggregation;
+
+import main.aggregation.AggregationServer;
+import main.aggregation.Autoscaler;
+import main.aggregation.Autoscaler.Decision;
+import main.aggregation.LatencyAverage;
+import main.aggregation.LoadBalancer;
+import main.network.NetworkHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AutoscalerTest {
+    private AggregationServer server1, server2;
+    private LoadBalancer loadBalancer;
+    private final List<Integer> launchedPorts = new ArrayList<>();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    public void setUp() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // Discard all data
+            }
+        }));
+        server1 = mock(AggregationServer.class);
+        server2 = mock(AggregationServer.class);
+        loadBalancer = new LoadBalancer(mock(NetworkHandler.class), Arrays.asList(server1, server2));
+    }
+
+    @AfterEach
+    public void restoreOutput() {
+        System.setOut(originalOut);
+    }
+
+    private Autoscaler autoscaler(int min, int max, int sustainChecks, long upCooldownMillis, long downCooldownMillis) {
+        return new Autoscaler(loadBalancer, port -> {
+            launchedPorts.add(port);
+            return mock(AggregationServer.class);
+        }, 5000, min, max, 8, 500, 1, sustainChecks, upCooldownMillis, downCooldownMillis, 1000);
+    }
+
+    @Test
+    public void testScalesUpOnlyAfterSustainedOverload() {
+        Autoscaler autoscaler = autoscaler(2, 4, 3, 0, 0);
+        when(server1.getPendingRequests()).thenReturn(12);
+        when(server2.getPendingRequests()).thenReturn(6);
+
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.SCALE_UP, autoscaler.check());
+
+        assertEquals(List.of(5000), launchedPorts);
+        assertEquals(3, loadBalancer.getAggregationServers().size());
+        assertEquals(1, autoscaler.getScaleUpCount());
+    }
+
+    @Test
+    public void testScalesUpOnLatency() {
+        Autoscaler autoscaler = autoscaler(2, 4, 1, 0, 0);
+        when(server1.getAverageLatencyMillis()).thenReturn(900.0);
+        when(server2.getAverageLatencyMillis()).thenReturn(300.0);
+
+        assertEquals(Decision.SCALE_UP, autoscaler.check());
+    }
+
+    @Test
+    public void testOverloadBetweenChecksResetsTheCount() {
+        Autoscaler autoscaler = autoscaler(2, 4, 2, 0, 0);
+        when(server1.getPendingRequests()).thenReturn(20, 0, 20, 20);
+
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.SCALE_UP, autoscaler.check());
+    }
+
+    @Test
+    public void testCooldownAndMaximumLimitScaleUp() {
+        Autoscaler autoscaler = autoscaler(2, 4, 1, 60000, 0);
+        when(server1.getPendingRequests()).thenReturn(40);
+
+        assertEquals(Decision.SCALE_UP, autoscaler.check());
+        // Still overloaded, but within the cooldown
+        assertEquals(Decision.HOLD, autoscaler.check());
+
+        Autoscaler uncooled = autoscaler(2, 3, 1, 0, 0);
+        // The pool is already at its maximum of three
+        assertEquals(Decision.HOLD, uncooled.check());
+        assertEquals(1, launchedPorts.size());
+    }
+
+    @Test
+    public void testScalesDownByDrainingTheLeastLoadedServer() {
+        Autoscaler autoscaler = autoscaler(1, 4, 2, 0, 0);
+        when(server1.getPendingRequests()).thenReturn(1);
+        when(server2.getPendingRequests()).thenReturn(0);
+
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.SCALE_DOWN, autoscaler.check());
+
+        verify(server2).drain(1000);
+        verify(server2).shutdown(0);
+        verify(server1, never()).drain(anyLong());
+        assertEquals(List.of(server1), loadBalancer.getAggregationServers());
+
+        // The pool is at its minimum of one
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(Decision.HOLD, autoscaler.check());
+        assertEquals(1, autoscaler.getScaleDownCount());
+    }
+
+    @Test
+    public void testSlowBurstThenIdleStopsOverloadAndShrinks() {
+        Autoscaler autoscaler = autoscaler(1, 4, 1, 0, 0);
+        long[] now = {0};
+        LatencyAverage latency = new LatencyAverage(LatencyAverage.DEFAULT_SMOOTHING, 1000, now[0]);
+        when(server1.getAverageLatencyMillis()).thenAnswer(invocation -> latency.getMillis(now[0]));
+
+        // A burst of slow requests pushes the average over the scale-up threshold
+        for (int i = 0; i < 20; i++) {
+            latency.record(TimeUnit.SECONDS.toNanos(2), now[0]);
+        }
+        assertEquals(Decision.SCALE_UP, autoscaler.check());
+
+        // Nothing is served afterwards, so the average decays and the pool shrinks back
+        now[0] += TimeUnit.SECONDS.toNanos(10);
+        assertTrue(latency.getMillis(now[0]) < 250);
+        assertEquals(Decision.SCALE_DOWN, autoscaler.check());
+        assertEquals(2, loadBalancer.getAggregationServers().size());
+    }
+
+    @Test
+    public void testGrowsAtOnceBelowMinimum() {
+        Autoscaler autoscaler = autoscaler(3, 4, 5, 60000, 60000);
+
+        assertEquals(Decision.SCALE_UP, autoscaler.check());
+        assertEquals(3, loadBalancer.getAggregationServers().size());
+    }
+
+    @Test
+    public void testRejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> autoscaler(0, 4, 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> autoscaler(3, 2, 1, 0, 0));
+    }
+}
@@ -0,0 +1,96 @@
+package test.aggregation;
+
+import main.aggregation.EdgeCache;
+import main.aggregation.EncodedBodyCache;
+import main.aggregation.EncodedBodyCache.EncodedBody;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EdgeCacheTest {
+    /**
+     * Encodes a body the way the servers do.
+     * @param text The JSON text.
+     * @return The encoded body.
+     */
+    private static EncodedBody body(String text) {
+        return new EncodedBodyCache(1).get(text, () -> text);
+    }
+
+    @Test
+    public void testServesBodyToGetsBoundedAfterRecord() {
+        EdgeCache cache = new EdgeCache(16, 60000);
+        EncodedBody body = body("{\"id\":\"IDS60901\"}");
+        cache.put("IDS60901", false, 10, body, cache.getVersion("IDS60901"));
+
+        assertSame(body, cache.get("IDS60901", false, 10));
+        assertSame(body, cache.get("IDS60901", false, 50));
+        assertNull(cache.get("IDS60901", false, 9)); // Would read an older record
+        assertNull(cache.get("IDS60901", true, 50)); // Pretty bodies are cached apart
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio());
+    }
+
+    @Test
+    public void testPutInvalidatesStation() {
+        EdgeCache cache = new EdgeCache(16, 60000);
+        cache.put("IDS60901", false, 10, body("a"), cache.getVersion("IDS60901"));
+        cache.put("IDS60901", true, 10, body("b"), cache.getVersion("IDS60901"));
+        cache.put("IDS90210", false, 10, body("c"), cache.getVersion("IDS90210"));
+
+        cache.invalidate("IDS60901");
+
+        assertNull(cache.get("IDS60901", false, 50));
+        assertNull(cache.get("IDS60901", true, 50));
+        assertNotNull(cache.get("IDS90210", false, 50));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testLookupRacingPutIsNotCached() {
+        EdgeCache cache = new EdgeCache(16, 60000);
+        long version = cache.getVersion("IDS60901");
+        cache.invalidate("IDS60901"); // A PUT stored while the lookup was reading
+
+        cache.put("IDS60901", false, 10, body("stale"), version);
+
+        assertNull(cache.get("IDS60901", false, 50));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutForOtherStationDoesNotRejectFill() {
+        EdgeCache cache = new EdgeCache(16, 60000);
+        long version = cache.getVersion("IDS60901");
+        cache.invalidate("IDS90210"); // A PUT for another station while the lookup was reading
+
+        cache.put("IDS60901", false, 10, body("a"), version);
+
+        assertNotNull(cache.get("IDS60901", false, 50));
+    }
+
+    @Test
+    public void testEntriesExpireAfterTtl() throws Exception {
+        EdgeCache cache = new EdgeCache(16, 50);
+        cache.put("IDS60901", false, 10, body("a"), cache.getVersion("IDS60901"));
+        assertNotNull(cache.get("IDS60901", false, 50));
+
+        Thread.sleep(80);
+        assertNull(cache.get("IDS60901", false, 50));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        EdgeCache cache = new EdgeCache(2, 60000);
+        cache.put("A", false, 1, body("a"), cache.getVersion("A"));
+        cache.put("B", false, 1, body("b"), cache.getVersion("B"));
+        cache.get("A", false, 1);
+        cache.put("C", false, 1, body("c"), cache.getVersion("C"));
+
+        assertNotNull(cache.get("A", false, 1));
+        assertNull(cache.get("B", false, 1));
+        assertNotNull(cache.get("C", false, 1));
+    }
+}
@@ -0,0 +1,82 @@
+package test.aggregation;
+
+import main.aggregation.ColumnarStationHistory;
+import main.aggregation.EvictionPolicy;
+import main.aggregation.LruEvictionPolicy;
+import main.aggregation.OldestLamportEvictionPolicy;
+import main.aggregation.StationHistory;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvictionPolicyTest {
+
+    private static StationHistory history(int lamportTime, long lastAccessMillis) {
+        StationHistory history = new ColumnarStationHistory(4);
+        history.add(new WeatherData(null, lamportTime, "Sender"), 0);
+        history.touch(lastAccessMillis);
+        return history;
+    }
+
+    private static Map<String, StationHistory> stations() {
+        Map<String, StationHistory> stations = new LinkedHashMap<>();
+        stations.put("A", history(30, 100));
+        stations.put("B", history(10, 300));
+        stations.put("C", history(20, 200));
+        return stations;
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyRead() {
+        Map<String, StationHistory> stations = stations();
+        EvictionPolicy policy = new LruEvictionPolicy();
+
+        assertEquals(List.of("A"), policy.selectVictims(stations, 1, null));
+        assertEquals(List.of("C"), policy.selectVictims(stations, 1, "A"));
+    }
+
+    @Test
+    public void testOldestLamportEvictsStaleStations() {
+        Map<String, StationHistory> stations = stations();
+        EvictionPolicy policy = new OldestLamportEvictionPolicy();
+
+        assertEquals(List.of("B"), policy.selectVictims(stations, 1, null));
+        long twoStations = stations.get("B").getEstimatedBytes() + stations.get("C").getEstimatedBytes();
+        assertEquals(List.of("B", "C"), policy.selectVictims(stations, twoStations, null));
+    }
+
+    @Test
+    public void testFromName() {
+        assertTrue(EvictionPolicy.fromName("LRU") instanceof LruEvictionPolicy);
+        assertTrue(EvictionPolicy.fromName("lamport") instanceof OldestLamportEvictionPolicy);
+        assertThrows(IllegalArgumentException.class, () -> EvictionPolicy.fromName("random"));
+    }
+
+    @Test
+    public void testEstimatedBytesFollowHistoryContents() {
+        StationHistory history = new ColumnarStationHistory(2);
+        long empty = history.getEstimatedBytes();
+
+        // Columns are preallocated, so only per-entry strings such as local_date_time add to the estimate.
+        history.add(reading(1), 0);
+        long one = history.getEstimatedBytes();
+        assertTrue(one > empty);
+
+        history.add(reading(2), 0);
+        history.add(reading(3), 0);
+        assertEquals(empty + 2 * (one - empty), history.getEstimatedBytes());
+
+        history.release();
+        assertEquals(empty, history.getEstimatedBytes());
+    }
+
+    private static WeatherData reading(int lamportTime) {
+        return new WeatherData(JsonHandler.parseJSONObject("{\"local_date_time\":\"15/04:00pm\",\"air_temp\":\"13.3\"}"), lamportTime, "Sender");
+    }
+}
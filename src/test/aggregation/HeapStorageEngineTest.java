@@ -0,0 +1,12 @@
+package test.aggregation;
+
+import main.aggregation.HeapStorageEngine;
+import main.aggregation.StorageConfig;
+import main.aggregation.StorageEngine;
+
+public class HeapStorageEngineTest extends StorageEngineConformanceTest {
+    @Override
+    protected StorageEngine createEngine(StorageConfig config) {
+        return new HeapStorageEngine(config);
+    }
+}
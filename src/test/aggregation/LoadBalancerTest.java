@@ -2,15 +2,22 @@ package test.aggregation;
 
 import main.aggregation.AggregationServer;
 import main.aggregation.LoadBalancer;
+import main.aggregation.OutlierDetector;
+import main.aggregation.RateLimiter;
 import main.network.NetworkHandler;
+import main.network.SocketConnection;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import org.mockito.InOrder;
+
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -120,4 +127,100 @@ public class LoadBalancerTest {
 
         assertNull(result, "Should return null or handle gracefully when no servers are present");
     }
+
+    @Test
+    public void testEjectedServerGetsNoTraffic() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+        LoadBalancer lb = new LoadBalancer(mockNetworkHandler, mockServerList, new RateLimiter(0, 0, 0, 0, 0, 0, 60000), detector);
+        verify(mockServer2).setOutcomeListener(detector);
+
+        for (int i = 0; i < 5; i++) {
+            detector.onRequestCompleted(mockServer2, 500, 1000);
+        }
+
+        assertSame(mockServer1, lb.getNextAggregationServer());
+        assertSame(mockServer3, lb.getNextAggregationServer());
+        assertSame(mockServer1, lb.getNextAggregationServer());
+    }
+
+    @Test
+    public void testAllServersEjectedFallsBackToLiveServer() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 100);
+        LoadBalancer lb = new LoadBalancer(mockNetworkHandler, mockServerList, new RateLimiter(0, 0, 0, 0, 0, 0, 60000), detector);
+        for (AggregationServer server : mockServerList) {
+            for (int i = 0; i < 5; i++) {
+                detector.onRequestCompleted(server, 500, 1000);
+            }
+        }
+        assertEquals(2, detector.getEjectionCount()); // The last server is never ejected
+
+        // Once the healthy server leaves, the ejected ones still serve rather than none
+        lb.removeServer(mockServer3);
+        assertNotNull(lb.getNextAggregationServer());
+    }
+
+    @Test
+    public void testRemoteAddressOverLimitGetsTooManyRequests() throws Exception {
+        LoadBalancer lb = new LoadBalancer(mockNetworkHandler, mockServerList, new RateLimiter(0.5, 1, 0, 0, 0, 0, 60000));
+
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client1 = new Socket("localhost", listener.getLocalPort());
+             Socket accepted1 = listener.accept();
+             Socket client2 = new Socket("localhost", listener.getLocalPort());
+             Socket accepted2 = listener.accept()) {
+            assertEquals(client1.getLocalPort(), accepted1.getPort());
+            assertEquals(client2.getLocalPort(), accepted2.getPort());
+            SocketConnection connection1 = new SocketConnection(accepted1);
+            SocketConnection connection2 = new SocketConnection(accepted2);
+            lb.handleClientSocket(connection1);
+            verify(mockServer1).acceptExternalSocket(connection1);
+
+            lb.handleClientSocket(connection2);
+            verify(mockNetworkHandler).sendResponseToClient(
+                    argThat((String response) -> response.startsWith("HTTP/1.1 429 Too Many Requests\r\n") && response.contains("Retry-After: 2\r\n")),
+                    eq(connection2));
+            verify(mockServer2, never()).acceptExternalSocket(any());
+            assertEquals(1, lb.getRateLimiter().getLimitedCount());
+        }
+    }
+
+    @Test
+    public void testRateLimitingIsOffByDefault() throws Exception {
+        LoadBalancer lb = new LoadBalancer(mockNetworkHandler, mockServerList);
+        assertNull(lb.getRateLimiter());
+
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client = new Socket("localhost", listener.getLocalPort());
+             Socket accepted = listener.accept()) {
+            assertEquals(client.getLocalPort(), accepted.getPort());
+            SocketConnection connection = new SocketConnection(accepted);
+            lb.handleClientSocket(connection);
+            verify(mockServer1).acceptExternalSocket(connection);
+            verify(mockServer1).setRateLimiter(null);
+        }
+    }
+
+    @Test
+    public void testDrainingServerGetsNoNewWork() {
+        LoadBalancer lb = new LoadBalancer(mockNetworkHandler, mockServerList);
+        when(mockServer2.isDraining()).thenReturn(true);
+
+        assertSame(mockServer1, lb.getNextAggregationServer());
+        assertSame(mockServer3, lb.getNextAggregationServer());
+        assertSame(mockServer1, lb.getNextAggregationServer());
+    }
+
+    @Test
+    public void testRetireServerDrainsBeforeShutdown() {
+        LoadBalancer lb = new LoadBalancer(mockNetworkHandler, mockServerList);
+        when(mockServer2.drain(1000)).thenReturn(true);
+
+        assertTrue(lb.retireServer(mockServer2, 1000));
+
+        assertFalse(lb.getAggregationServers().contains(mockServer2));
+        InOrder order = inOrder(mockServer2);
+        order.verify(mockServer2).drain(1000);
+        order.verify(mockServer2).shutdown(0);
+        verify(mockServer2, never()).shutdown();
+    }
 }
@@ -0,0 +1,82 @@
+package test.aggregation;
+
+import main.aggregation.OffHeapArena;
+import main.aggregation.OffHeapStationHistory;
+import main.aggregation.RetentionPolicy;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapStationHistoryTest {
+
+    private static WeatherData reading(int lamportTime, String sender) {
+        return new WeatherData(JsonHandler.parseJSONObject(
+                "{\"id\":\"IDS60901\",\"air_temp\":\"" + lamportTime + ".5\",\"wind_spd_kt\":8}"), lamportTime, sender);
+    }
+
+    @Test
+    public void testArenaReusesFreedBlocks() {
+        OffHeapArena arena = new OffHeapArena(1024);
+        long first = arena.allocate(100);
+        long second = arena.allocate(100);
+        assertNotEquals(first, second);
+        assertEquals(2 * OffHeapArena.blockSize(100), arena.getAllocatedBytes());
+
+        arena.free(first, 100);
+        assertEquals(first, arena.allocate(120));  // Same 128-byte size class
+        assertEquals(1, arena.getSlabCount());
+
+        long large = arena.allocate(4000);         // Larger than a slab
+        arena.write(large, new byte[4000]);
+        assertEquals(2, arena.getSlabCount());
+        assertEquals(1024 + 4096, arena.getReservedBytes());
+    }
+
+    @Test
+    public void testRoundTripAndOrdering() {
+        OffHeapStationHistory history = new OffHeapStationHistory(3, new OffHeapArena(4096));
+        WeatherData original = reading(4, "A");
+        history.add(reading(2, "A"), 0);
+        history.add(original, 0);
+        history.add(new WeatherData(null, 3, "B"), 0);
+
+        assertEquals(original, history.latestAtOrBefore(10).get());
+        assertNull(history.latestAtOrBefore(3).get().getData());
+        assertTrue(history.latestAtOrBefore(4).get().getData().get("wind_spd_kt").getAsJsonPrimitive().isNumber());
+        assertEquals(3.5, history.summarize("air_temp").getAverage(), 1e-9);
+        assertEquals(List.of(2, 4, 3), history.toList().stream().map(WeatherData::getLamportTime).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRemovedEntriesReturnTheirBlocks() {
+        OffHeapArena arena = new OffHeapArena(4096);
+        OffHeapStationHistory history = new OffHeapStationHistory(2, arena);
+        long empty = history.getEstimatedBytes();
+
+        history.add(reading(1, "A"), 0);
+        history.add(reading(2, "B"), 0);
+        history.add(reading(3, "A"), 0);   // Overwrites the entry with Lamport time 1
+        long block = arena.getAllocatedBytes() / 2;
+        assertEquals(2 * block, arena.getAllocatedBytes());
+        assertEquals(empty + 2 * block, history.getEstimatedBytes());
+
+        assertEquals(1, history.removeBySender("B"::equals));
+        assertEquals(block, arena.getAllocatedBytes());
+        assertEquals(3, history.latestAtOrBefore(10).get().getLamportTime());
+
+        assertEquals(1, history.applyRetention(new RetentionPolicy(2, RetentionPolicy.UNLIMITED, 1000), 5000));
+        assertEquals(0, arena.getAllocatedBytes());
+        assertEquals(empty, history.getEstimatedBytes());
+
+        history.add(reading(4, "A"), 0);
+        history.release();
+        assertTrue(history.isEmpty());
+        assertEquals(0, arena.getAllocatedBytes());
+        assertEquals(1, arena.getSlabCount());
+    }
+}
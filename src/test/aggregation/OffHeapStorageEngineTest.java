@@ -0,0 +1,23 @@
+package test.aggregation;
+
+import main.aggregation.OffHeapStorageEngine;
+import main.aggregation.StorageConfig;
+import main.aggregation.StorageEngine;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapStorageEngineTest extends StorageEngineConformanceTest {
+    @Override
+    protected StorageEngine createEngine(StorageConfig config) {
+        return new OffHeapStorageEngine(config, 64 * 1024);
+    }
+
+    @Test
+    public void testEngineIsSelectedByName() {
+        StorageConfig config = StorageConfig.fromSystemProperties();
+        assertEquals("offheap", StorageEngine.fromName("offheap", config).getName());
+        assertEquals("heap", StorageEngine.fromName("main.aggregation.HeapStorageEngine", config).getName());
+        assertThrows(IllegalArgumentException.class, () -> StorageEngine.fromName("unknown", config));
+    }
+}
@@ -0,0 +1,198 @@
+package test.aggregation;
+
+import main.aggregation.AggregationServer;
+import main.aggregation.OutlierDetector;
+import main.aggregation.OutlierDetector.State;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class OutlierDetectorTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * Records the same outcome several times.
+     * @param detector The outlier detector.
+     * @param server The server that answered.
+     * @param status The status of each response.
+     * @param latencyNanos The latency of each response.
+     * @param times The number of responses.
+     */
+    private static void record(OutlierDetector detector, AggregationServer server, int status, long latencyNanos, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.onRequestCompleted(server, status, latencyNanos);
+        }
+    }
+
+    @Test
+    public void testEjectsServerWithHighErrorRate() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+        detector.setServerCount(2);
+        AggregationServer server = mock(AggregationServer.class);
+
+        record(detector, server, 500, FAST, 4);
+        assertEquals(State.CLOSED, detector.getState(server)); // Below the minimum requests
+        assertTrue(detector.allowRequest(server));
+
+        record(detector, server, 500, FAST, 1);
+        assertEquals(State.OPEN, detector.getState(server));
+        assertFalse(detector.allowRequest(server));
+        assertEquals(1, detector.getEjectionCount());
+    }
+
+    @Test
+    public void testKeepsHealthyServer() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+        detector.setServerCount(2);
+        AggregationServer server = mock(AggregationServer.class);
+
+        // 4xx responses and a minority of errors do not make a server an outlier
+        for (int i = 0; i < 10; i++) {
+            record(detector, server, 200, FAST, 2);
+            record(detector, server, 400, FAST, 1);
+            record(detector, server, 503, FAST, 1);
+        }
+        assertEquals(State.CLOSED, detector.getState(server));
+        assertTrue(detector.allowRequest(server));
+    }
+
+    @Test
+    public void testEjectsSlowServer() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+        detector.setServerCount(2);
+        AggregationServer server = mock(AggregationServer.class);
+
+        record(detector, server, 200, SLOW, 5);
+        assertEquals(State.OPEN, detector.getState(server));
+    }
+
+    @Test
+    public void testHalfOpenProbeClosesCircuit() throws Exception {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 50, 1000, 50);
+        detector.setServerCount(2);
+        AggregationServer server = mock(AggregationServer.class);
+
+        record(detector, server, 500, FAST, 5);
+        assertFalse(detector.allowRequest(server));
+        Thread.sleep(80);
+
+        // One probe goes through, the others wait for its outcome
+        assertTrue(detector.allowRequest(server));
+        assertEquals(State.HALF_OPEN, detector.getState(server));
+        assertFalse(detector.allowRequest(server));
+
+        record(detector, server, 200, FAST, 1);
+        assertEquals(State.CLOSED, detector.getState(server));
+        assertTrue(detector.allowRequest(server));
+    }
+
+    @Test
+    public void testFailedProbeEjectsForLonger() throws Exception {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 50, 1000, 50);
+        detector.setServerCount(2);
+        AggregationServer server = mock(AggregationServer.class);
+
+        record(detector, server, 500, FAST, 5);
+        Thread.sleep(80);
+        assertTrue(detector.allowRequest(server));
+        record(detector, server, 500, FAST, 1);
+        assertEquals(State.OPEN, detector.getState(server));
+        assertEquals(2, detector.getEjectionCount());
+
+        // The second ejection lasts 100 ms, so the server is still out after the first ejection time
+        Thread.sleep(80);
+        assertFalse(detector.allowRequest(server));
+        Thread.sleep(60);
+        assertTrue(detector.allowRequest(server));
+    }
+
+    @Test
+    public void testMaxEjectionPercentLimitsEjections() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+        detector.setServerCount(4);
+        AggregationServer[] servers = new AggregationServer[4];
+        for (int i = 0; i < servers.length; i++) {
+            servers[i] = mock(AggregationServer.class);
+            record(detector, servers[i], 500, FAST, 10);
+        }
+
+        int ejected = 0;
+        for (AggregationServer server : servers) {
+            ejected += detector.getState(server) == State.OPEN ? 1 : 0;
+        }
+        assertEquals(2, ejected);
+    }
+
+    @Test
+    public void testConcurrentOutliersRespectMaxEjectionPercent() throws Exception {
+        int serverCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(serverCount);
+        try {
+            for (int round = 0; round < 50; round++) {
+                OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+                detector.setServerCount(serverCount);
+                AggregationServer[] servers = new AggregationServer[serverCount];
+                for (int i = 0; i < serverCount; i++) {
+                    servers[i] = mock(AggregationServer.class);
+                    record(detector, servers[i], 500, FAST, 4); // One error short of the threshold
+                }
+
+                // Every circuit crosses its threshold at the same time
+                CyclicBarrier barrier = new CyclicBarrier(serverCount);
+                List<Future<?>> futures = new ArrayList<>();
+                for (AggregationServer server : servers) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await(5, TimeUnit.SECONDS);
+                        detector.onRequestCompleted(server, 500, FAST);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+
+                int ejected = 0;
+                for (AggregationServer server : servers) {
+                    ejected += detector.getState(server) == State.OPEN ? 1 : 0;
+                }
+                assertEquals(serverCount / 2, ejected);
+                assertEquals(serverCount / 2, detector.getEjectionCount());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNeverEjectsLastServer() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 100);
+        detector.setServerCount(1);
+        AggregationServer server = mock(AggregationServer.class);
+
+        record(detector, server, 500, FAST, 10);
+        assertEquals(State.CLOSED, detector.getState(server));
+        assertEquals(0, detector.getEjectionCount());
+    }
+
+    @Test
+    public void testForgetClosesCircuit() {
+        OutlierDetector detector = new OutlierDetector(10, 5, 0.5, 100, 0.5, 60000, 60000, 50);
+        detector.setServerCount(2);
+        AggregationServer server = mock(AggregationServer.class);
+
+        record(detector, server, 500, FAST, 5);
+        detector.forget(server);
+        assertEquals(State.CLOSED, detector.getState(server));
+        assertTrue(detector.allowRequest(server));
+    }
+}
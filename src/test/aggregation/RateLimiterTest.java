@@ -0,0 +1,77 @@
+package test.aggregation;
+
+import main.aggregation.RateLimiter;
+import main.aggregation.RateLimiter.Kind;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+    @Test
+    public void testAllowsBurstThenLimits() {
+        RateLimiter limiter = new RateLimiter(0, 0, 1, 3, 0, 0, 60000);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(Kind.CONTENT_SERVER, "cs1"));
+        }
+        assertEquals(1, limiter.tryAcquire(Kind.CONTENT_SERVER, "cs1"));
+        assertEquals(1, limiter.getLimitedCount());
+
+        // Other senders have their own bucket
+        assertEquals(0, limiter.tryAcquire(Kind.CONTENT_SERVER, "cs2"));
+    }
+
+    @Test
+    public void testRetryAfterReflectsRefillRate() {
+        RateLimiter limiter = new RateLimiter(0, 0, 0, 0, 0.1, 1, 60000);
+
+        assertEquals(0, limiter.tryAcquire(Kind.GET_CLIENT, "client1"));
+        int retryAfter = limiter.tryAcquire(Kind.GET_CLIENT, "client1");
+        assertTrue(retryAfter >= 9 && retryAfter <= 10, "Retry-After was " + retryAfter);
+    }
+
+    @Test
+    public void testRefillsOverTime() throws Exception {
+        RateLimiter limiter = new RateLimiter(20, 1, 0, 0, 0, 0, 60000);
+
+        assertEquals(0, limiter.tryAcquire(Kind.ADDRESS, "127.0.0.1"));
+        assertTrue(limiter.tryAcquire(Kind.ADDRESS, "127.0.0.1") > 0);
+        Thread.sleep(100);
+        assertEquals(0, limiter.tryAcquire(Kind.ADDRESS, "127.0.0.1"));
+    }
+
+    @Test
+    public void testKindsHaveSeparateLimits() {
+        RateLimiter limiter = new RateLimiter(0, 0, 1, 1, 0, 0, 60000);
+
+        assertEquals(0, limiter.tryAcquire(Kind.CONTENT_SERVER, "sender"));
+        assertTrue(limiter.tryAcquire(Kind.CONTENT_SERVER, "sender") > 0);
+
+        // GET clients and addresses are unlimited, and do not share the content server's bucket
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire(Kind.GET_CLIENT, "sender"));
+            assertEquals(0, limiter.tryAcquire(Kind.ADDRESS, "sender"));
+        }
+        assertEquals(0, limiter.tryAcquire(Kind.CONTENT_SERVER, null));
+        assertEquals(1, limiter.getTrackedKeys());
+    }
+
+    @Test
+    public void testDropsIdleBuckets() throws Exception {
+        RateLimiter limiter = new RateLimiter(0, 0, 0, 0, 1, 1, 20);
+
+        limiter.tryAcquire(Kind.GET_CLIENT, "client1");
+        limiter.tryAcquire(Kind.GET_CLIENT, "client2");
+        assertEquals(2, limiter.getTrackedKeys());
+
+        Thread.sleep(50);
+        limiter.tryAcquire(Kind.GET_CLIENT, "client3");
+        assertEquals(1, limiter.getTrackedKeys());
+    }
+
+    @Test
+    public void testRejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(-1, 1, 0, 0, 0, 0, 60000));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 0, 1, 0, 0, 0, 60000));
+    }
+}
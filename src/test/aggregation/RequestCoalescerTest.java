@@ -0,0 +1,120 @@
+package test.aggregation;
+
+import main.aggregation.RequestCoalescer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+
+    @Test
+    public void testConcurrentRequestsShareOneLookup() throws Exception {
+        RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+        AtomicInteger lookups = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> coalescer.execute("IDS60901@5", () -> {
+                    lookups.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "body";
+                })));
+            }
+
+            // Wait until every caller either runs the lookup or joins it before releasing the leader.
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getExecutedCount() + coalescer.getCoalescedCount() < 8 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("body", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, lookups.get());
+        assertEquals(1, coalescer.getExecutedCount());
+        assertEquals(7, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testSequentialRequestsAreNotCoalesced() {
+        RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+
+        assertEquals("a", coalescer.execute("key", () -> "a"));
+        assertEquals("b", coalescer.execute("key", () -> "b"));
+
+        assertEquals(2, coalescer.getExecutedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testLookupFailureIsPropagated() {
+        RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+
+        assertThrows(IllegalStateException.class, () -> coalescer.execute("key", () -> {
+            throw new IllegalStateException("lookup failed");
+        }));
+        assertEquals(0, coalescer.getInFlightCount());
+        assertEquals("ok", coalescer.execute("key", () -> "ok"));
+    }
+
+    @Test
+    public void testLookupErrorReleasesCoalescedWaiters() throws Exception {
+        RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> leader = executor.submit(() -> coalescer.execute("key", () -> {
+                leaderStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new StackOverflowError("lookup blew the stack");
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            Future<String> waiter = executor.submit(() -> coalescer.execute("key", () -> "unused"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getCoalescedCount() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertTrue(leaderFailure.getCause() instanceof StackOverflowError);
+            ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertTrue(waiterFailure.getCause() instanceof StackOverflowError);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, coalescer.getInFlightCount());
+        assertEquals("ok", coalescer.execute("key", () -> "ok"));
+    }
+}
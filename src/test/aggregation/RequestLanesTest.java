@@ -0,0 +1,102 @@
+package test.aggregation;
+
+import main.aggregation.RequestLanes;
+import main.aggregation.RequestLanes.Assignment;
+import main.aggregation.RequestLanes.Lane;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestLanesTest {
+    @Test
+    public void testSharesWorkersByWeightWhileBothLanesAreBusy() throws Exception {
+        RequestLanes<String> lanes = new RequestLanes<>(1, 100, 3, 1, 1, 1);
+        for (int i = 0; i < 40; i++) {
+            lanes.offer(Lane.PUT, "put" + i);
+            lanes.offer(Lane.GET, "get" + i);
+        }
+
+        int puts = 0;
+        for (int i = 0; i < 40; i++) {
+            Assignment<String> assignment = lanes.take(10, TimeUnit.MILLISECONDS);
+            if (assignment.getLane() == Lane.PUT) {
+                puts++;
+            }
+            lanes.complete(assignment);
+        }
+
+        assertEquals(30, puts);
+        assertEquals(30, lanes.getServedCount(Lane.PUT));
+        assertEquals(10, lanes.getServedCount(Lane.GET));
+    }
+
+    @Test
+    public void testIdleLaneLeavesAllWorkToTheOther() throws Exception {
+        RequestLanes<String> lanes = new RequestLanes<>(4, 100, 3, 1, 4, 4);
+        for (int i = 0; i < 4; i++) {
+            lanes.offer(Lane.GET, "get" + i);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            Assignment<String> assignment = lanes.take(10, TimeUnit.MILLISECONDS);
+            assertEquals(Lane.GET, assignment.getLane());
+            assertEquals("get" + i, assignment.getRequest());
+        }
+        assertEquals(4, lanes.getActiveWorkers(Lane.GET));
+    }
+
+    @Test
+    public void testWorkerBudgetKeepsAWorkerForPuts() throws Exception {
+        RequestLanes<String> lanes = new RequestLanes<>(2, 100, 1, 1, 2, 1);
+        lanes.offer(Lane.GET, "get0");
+        lanes.offer(Lane.GET, "get1");
+
+        Assignment<String> get = lanes.take(10, TimeUnit.MILLISECONDS);
+        assertEquals(Lane.GET, get.getLane());
+
+        // The GET lane has used its budget of one worker, so the second GET waits
+        assertNull(lanes.take(10, TimeUnit.MILLISECONDS));
+
+        lanes.offer(Lane.PUT, "put0");
+        Assignment<String> put = lanes.take(10, TimeUnit.MILLISECONDS);
+        assertEquals(Lane.PUT, put.getLane());
+
+        lanes.complete(get);
+        assertEquals("get1", lanes.take(10, TimeUnit.MILLISECONDS).getRequest());
+    }
+
+    @Test
+    public void testRejectsWhenLaneIsFull() {
+        RequestLanes<String> lanes = new RequestLanes<>(1, 2, 1, 1, 1, 1);
+
+        assertTrue(lanes.offer(Lane.GET, "get0"));
+        assertTrue(lanes.offer(Lane.GET, "get1"));
+        assertFalse(lanes.offer(Lane.GET, "get2"));
+        assertTrue(lanes.offer(Lane.PUT, "put0"));
+
+        assertEquals(2, lanes.getDepth(Lane.GET));
+        assertEquals(1, lanes.getRejectedCount(Lane.GET));
+        assertEquals(0, lanes.getRejectedCount(Lane.PUT));
+    }
+
+    @Test
+    public void testTakeWaitsForARequest() throws Exception {
+        RequestLanes<String> lanes = new RequestLanes<>(1, 10, 1, 1, 1, 1);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lanes.offer(Lane.PUT, "put0");
+        });
+        producer.start();
+
+        Assignment<String> assignment = lanes.take(5, TimeUnit.SECONDS);
+        producer.join();
+        assertNotNull(assignment);
+        assertEquals("put0", assignment.getRequest());
+    }
+}
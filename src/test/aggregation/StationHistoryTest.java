@@ -0,0 +1,173 @@
+package test.aggregation;
+
+import com.google.gson.JsonObject;
+import main.aggregation.RetentionPolicy;
+import main.aggregation.ColumnarStationHistory;
+import main.aggregation.StationHistory;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import main.common.WeatherSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StationHistoryTest {
+
+    private static List<Integer> lamportTimes(StationHistory history) {
+        return history.toList().stream().map(WeatherData::getLamportTime).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testRingOverwritesOldestEntry() {
+        StationHistory history = new ColumnarStationHistory(3);
+        for (int i = 1; i <= 5; i++) {
+            history.add(new WeatherData(null, i, "Sender"), 0);
+        }
+
+        assertEquals(3, history.size());
+        assertEquals(List.of(3, 4, 5), lamportTimes(history));
+        assertEquals(3, history.toList().stream().mapToInt(WeatherData::getLamportTime).min().getAsInt());
+    }
+
+    @Test
+    public void testFullRingDropsLowestLamportEntry() {
+        StationHistory history = new ColumnarStationHistory(3);
+        history.add(new WeatherData(null, 5, "A"), 0);
+        history.add(new WeatherData(null, 2, "B"), 0);  // Late PUT, arrives after a newer reading
+        history.add(new WeatherData(null, 7, "A"), 0);
+        history.add(new WeatherData(null, 8, "A"), 0);
+
+        assertEquals(List.of(5, 7, 8), lamportTimes(history));
+
+        history.add(new WeatherData(null, 1, "B"), 0);  // Older than every stored entry
+        assertEquals(List.of(5, 7, 8), lamportTimes(history));
+    }
+
+    @Test
+    public void testUnboundedRingGrows() {
+        StationHistory history = new ColumnarStationHistory(RetentionPolicy.UNLIMITED);
+        long emptyBytes = history.getEstimatedBytes();
+        for (int i = 1; i <= 20; i++) {
+            history.add(new WeatherData(JsonHandler.parseJSONObject("{\"air_temp\":\"" + i + ".5\"}"), i, "A"), i);
+        }
+
+        assertEquals(20, history.size());
+        assertTrue(history.capacity() >= 20);
+        assertTrue(history.getEstimatedBytes() > emptyBytes);
+        assertEquals(1, history.toList().get(0).getLamportTime());
+        assertEquals(20, history.summarize("air_temp").getCount());
+        assertEquals("12.5", history.latestAtOrBefore(12).get().getData().get("air_temp").getAsString());
+        assertEquals(12, history.latestAtOrBefore(12).get().getStoredAtMillis());
+    }
+
+    @Test
+    public void testLatestAtOrBefore() {
+        StationHistory history = new ColumnarStationHistory(4);
+        history.add(new WeatherData(null, 2, "A"), 0);
+        history.add(new WeatherData(null, 7, "A"), 0);
+        history.add(new WeatherData(null, 5, "B"), 0);
+
+        assertEquals(5, history.latestAtOrBefore(6).get().getLamportTime());
+        assertEquals(7, history.latestAtOrBefore(100).get().getLamportTime());
+        assertFalse(history.latestAtOrBefore(1).isPresent());
+    }
+
+    @Test
+    public void testRemoveBySenderKeepsOrder() {
+        StationHistory history = new ColumnarStationHistory(4);
+        history.add(new WeatherData(null, 1, "A"), 0);
+        history.add(new WeatherData(null, 2, "B"), 0);
+        history.add(new WeatherData(null, 3, "A"), 0);
+        history.add(new WeatherData(null, 4, "B"), 0);
+        history.add(new WeatherData(null, 5, "A"), 0);
+
+        assertEquals(2, history.removeBySender("B"::equals));
+        assertEquals(List.of(3, 5), lamportTimes(history));
+
+        history.add(new WeatherData(null, 6, "B"), 0);
+        assertEquals(List.of(3, 5, 6), lamportTimes(history));
+    }
+
+    @Test
+    public void testRetentionByLamportAndWallClockAge() {
+        StationHistory history = new ColumnarStationHistory(10);
+        history.add(new WeatherData(null, 1, "A"), 1000);
+        history.add(new WeatherData(null, 8, "A"), 5000);
+        history.add(new WeatherData(null, 10, "A"), 9000);
+
+        assertEquals(1, history.applyRetention(new RetentionPolicy(10, 5, RetentionPolicy.UNLIMITED), 9000));
+        assertEquals(List.of(8, 10), lamportTimes(history));
+
+        assertEquals(1, history.applyRetention(new RetentionPolicy(10, RetentionPolicy.UNLIMITED, 3000), 9000));
+        assertEquals(List.of(10), lamportTimes(history));
+    }
+
+    @Test
+    public void testColumnarRoundTripPreservesValuesAndTypes() throws Exception {
+        JsonObject reading = JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt"));
+        reading.addProperty("wind_spd_kt", 8);              // JSON number in a LONG column
+        reading.addProperty("lat", "-34.90");               // Not canonical, keeps its original text
+        reading.addProperty("extra_field", "not in schema");
+
+        StationHistory history = new ColumnarStationHistory(2);
+        WeatherData original = new WeatherData(reading, 3, "Sender");
+        history.add(original, 0);
+
+        WeatherData restored = history.latestAtOrBefore(3).get();
+        assertEquals(original, restored);
+        assertEquals("-34.90", restored.getData().get("lat").getAsString());
+        assertTrue(restored.getData().get("wind_spd_kt").getAsJsonPrimitive().isNumber());
+        assertTrue(restored.getData().get("air_temp").getAsJsonPrimitive().isString());
+        assertEquals("13.3", restored.getData().get("air_temp").getAsString());
+    }
+
+    @Test
+    public void testSummarizeReadsNumericColumn() {
+        StationHistory history = new ColumnarStationHistory(3);
+        history.add(new WeatherData(JsonHandler.parseJSONObject("{\"air_temp\":\"10.5\",\"rel_hum\":\"60\"}"), 1, "A"), 0);
+        history.add(new WeatherData(JsonHandler.parseJSONObject("{\"air_temp\":\"12.5\"}"), 2, "A"), 0);
+
+        DoubleSummaryStatistics airTemp = history.summarize("air_temp");
+        assertEquals(2, airTemp.getCount());
+        assertEquals(11.5, airTemp.getAverage(), 1e-9);
+        assertEquals(1, history.summarize("rel_hum").getCount());
+        assertEquals(0, history.summarize("state").getCount());
+    }
+
+    @Test
+    public void testSummarizeIncludesNonCanonicalNumbers() {
+        StationHistory history = new ColumnarStationHistory(4);
+        history.add(new WeatherData(JsonHandler.parseJSONObject("{\"air_temp\":\"13\",\"rel_hum\":\"60.5\"}"), 1, "A"), 0);
+        history.add(new WeatherData(JsonHandler.parseJSONObject("{\"air_temp\":\"14.5\",\"rel_hum\":60}"), 2, "A"), 0);
+
+        assertEquals(2, history.summarize("air_temp").getCount());
+        assertEquals(13.75, history.summarize("air_temp").getAverage(), 1e-9);
+        assertEquals(2, history.summarize("rel_hum").getCount());     // 60.5 does not fit the LONG column
+        assertEquals("13", history.latestAtOrBefore(1).get().getData().get("air_temp").getAsString());
+        assertEquals("60.5", history.latestAtOrBefore(1).get().getData().get("rel_hum").getAsString());
+    }
+
+    @Test
+    public void testColumnarKeepsKeyOrder() {
+        StationHistory history = new ColumnarStationHistory(2);
+        String body = "{\"id\":\"IDS1\",\"air_temp\":\"13\",\"extra_field\":\"x\",\"cloud\":\"Fine\"}";
+        history.add(new WeatherData(JsonHandler.parseJSONObject(body), 1, "A"), 0);
+
+        List<String> keys = List.copyOf(history.latestAtOrBefore(1).get().getData().keySet());
+        assertEquals(List.of("id", "air_temp", "extra_field", "cloud"), keys);
+    }
+
+    @Test
+    public void testSchemaInference() {
+        WeatherSchema schema = WeatherSchema.infer(JsonHandler.parseJSONObject("{\"id\":\"IDS1\",\"lat\":\"-34.9\",\"rel_hum\":\"60\"}"));
+
+        assertEquals(WeatherSchema.FieldType.STRING, schema.getType(schema.indexOf("id")));
+        assertEquals(WeatherSchema.FieldType.DOUBLE, schema.getType(schema.indexOf("lat")));
+        assertEquals(WeatherSchema.FieldType.LONG, schema.getType(schema.indexOf("rel_hum")));
+        assertEquals(-1, schema.indexOf("missing"));
+    }
+}
@@ -0,0 +1,59 @@
+package test.aggregation;
+
+import com.google.gson.JsonObject;
+import main.aggregation.StationSnapshotAdapter;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StationSnapshotAdapterTest {
+    private final StationSnapshotAdapter adapter = new StationSnapshotAdapter();
+
+    @Test
+    public void testWritesTheSavedFileFormat() {
+        Map<String, List<WeatherData>> snapshot = new LinkedHashMap<>();
+        snapshot.put("IDS1", List.of(reading("IDS1", 1, "s1"), reading("IDS1", 2, null)));
+        snapshot.put("IDS2", List.of());
+
+        assertEquals("{\"IDS1\":[{\"lamportTime\":1,\"senderID\":\"s1\",\"data\":{\"id\":\"IDS1\",\"air_temp\":13.3}},"
+                        + "{\"lamportTime\":2,\"data\":{\"id\":\"IDS1\",\"air_temp\":13.3}}],\"IDS2\":[]}",
+                adapter.toJson(snapshot));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, List<WeatherData>> snapshot = new LinkedHashMap<>();
+        snapshot.put("IDS1", List.of(reading("IDS1", 1, "s1"), reading("IDS1", 2, "s2")));
+        snapshot.put("IDS2", List.of(reading("IDS2", 3, "s1")));
+
+        Map<String, List<WeatherData>> restored = adapter.fromJson(adapter.toJson(snapshot));
+
+        assertEquals(snapshot, restored);
+        assertEquals(1, restored.get("IDS1").get(0).getLamportTime());
+        assertEquals("s2", restored.get("IDS1").get(1).getSenderID());
+    }
+
+    @Test
+    public void testSkipsNullReadingsAndUnknownFields() throws Exception {
+        String saved = "{\"IDS1\":[{\"lamportTime\":4,\"senderID\":\"s1\",\"data\":{\"id\":\"IDS1\",\"name\":\"Adelaide\"},\"extra\":[1]},null],"
+                + "\"IDS2\":null}";
+
+        Map<String, List<WeatherData>> restored = adapter.fromJson(saved);
+
+        assertEquals(1, restored.size());
+        assertEquals(1, restored.get("IDS1").size());
+        assertEquals(4, restored.get("IDS1").get(0).getLamportTime());
+        assertEquals("Adelaide", restored.get("IDS1").get(0).getData().get("name").getAsString());
+    }
+
+    private static WeatherData reading(String stationId, int lamportTime, String senderId) {
+        JsonObject data = JsonHandler.parseJSONObject("{\"id\":\"" + stationId + "\",\"air_temp\":13.3}");
+        return new WeatherData(data, lamportTime, senderId);
+    }
+}
@@ -0,0 +1,230 @@
+package test.aggregation;
+
+import main.aggregation.LruEvictionPolicy;
+import main.aggregation.RetentionPolicy;
+import main.aggregation.StorageConfig;
+import main.aggregation.StorageEngine;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import main.common.WeatherSchema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Behaviour every StorageEngine must share; each engine gets a subclass that only says how to create it.
+public abstract class StorageEngineConformanceTest {
+    private static final int PERF_STATIONS = 1000;
+    private static final int PERF_READINGS = 50000;
+
+    @TempDir
+    Path dataDirectory;
+
+    protected abstract StorageEngine createEngine(StorageConfig config);
+
+    private StorageEngine createEngine(int maxEntries, long memoryBudgetBytes) {
+        return createEngine(new RetentionPolicy(maxEntries, RetentionPolicy.UNLIMITED, RetentionPolicy.UNLIMITED), memoryBudgetBytes);
+    }
+
+    private StorageEngine createEngine(RetentionPolicy retentionPolicy, long memoryBudgetBytes) {
+        return createEngine(new StorageConfig(retentionPolicy, WeatherSchema.DEFAULT, memoryBudgetBytes,
+                new LruEvictionPolicy(), dataDirectory.toString()));
+    }
+
+    private static WeatherData reading(String stationId, int lamportTime, String sender) {
+        return new WeatherData(JsonHandler.parseJSONObject("{\"id\":\"" + stationId + "\",\"air_temp\":\"" + lamportTime + ".5\",\"wind_spd_kt\":" + lamportTime + "}"),
+                lamportTime, sender);
+    }
+
+    private static List<Integer> lamportTimes(List<WeatherData> history) {
+        return history.stream().map(WeatherData::getLamportTime).collect(Collectors.toList());
+    }
+
+    private static List<String> storedReadings(StorageEngine engine) {
+        List<String> readings = new ArrayList<>();
+        for (String stationId : engine.stationIds()) {
+            for (WeatherData data : engine.getHistory(stationId)) {
+                readings.add(stationId + "@" + data.getLamportTime());
+            }
+        }
+        return readings;
+    }
+
+    @Test
+    public void testGetAtReturnsLatestReadingWithinLamportBound() {
+        StorageEngine engine = createEngine(10, Long.MAX_VALUE);
+        engine.put("IDS1", reading("IDS1", 2, "A"), 0);
+        engine.put("IDS1", reading("IDS1", 7, "A"), 0);
+        engine.put("IDS1", reading("IDS1", 5, "B"), 0);
+
+        assertEquals(reading("IDS1", 5, "B"), engine.getAt("IDS1", 6).get());
+        assertEquals(7, engine.getAt("IDS1", 100).get().getLamportTime());
+        assertFalse(engine.getAt("IDS1", 1).isPresent());
+        assertFalse(engine.getAt("UNKNOWN", 100).isPresent());
+    }
+
+    @Test
+    public void testHistoryKeepsInsertionOrderWithinRetention() {
+        StorageEngine engine = createEngine(3, Long.MAX_VALUE);
+        for (int i = 1; i <= 5; i++) {
+            engine.put("IDS1", reading("IDS1", i, "A"), 0);
+        }
+
+        assertEquals(List.of(3, 4, 5), lamportTimes(engine.getHistory("IDS1")));
+        assertTrue(engine.getHistory("UNKNOWN").isEmpty());
+    }
+
+    @Test
+    public void testDefaultRetentionKeepsFullHistory() {
+        StorageEngine engine = createEngine(RetentionPolicy.DEFAULT_MAX_ENTRIES, Long.MAX_VALUE);
+        for (int i = 1; i <= 25; i++) {
+            engine.put("IDS1", reading("IDS1", i, "A"), 0);
+        }
+
+        assertEquals(25, engine.getHistory("IDS1").size());
+        assertEquals(reading("IDS1", 13, "A"), engine.getAt("IDS1", 13).get());
+    }
+
+    @Test
+    public void testLatePutDoesNotEvictNewerReading() {
+        StorageEngine engine = createEngine(2, Long.MAX_VALUE);
+        engine.put("IDS1", reading("IDS1", 5, "A"), 0);
+        engine.put("IDS1", reading("IDS1", 9, "A"), 0);
+        engine.put("IDS1", reading("IDS1", 7, "B"), 0);
+
+        assertEquals(List.of(9, 7), lamportTimes(engine.getHistory("IDS1")));
+    }
+
+    @Test
+    public void testExpireSendersRemovesReadingsAndEmptyStations() {
+        StorageEngine engine = createEngine(10, Long.MAX_VALUE);
+        engine.put("IDS1", reading("IDS1", 1, "A"), 0);
+        engine.put("IDS1", reading("IDS1", 2, "B"), 0);
+        engine.put("IDS2", reading("IDS2", 3, "B"), 0);
+
+        assertEquals(2, engine.expireSenders(Set.of("B"), 0));
+        assertEquals(List.of(1), lamportTimes(engine.getHistory("IDS1")));
+        assertEquals(Set.of("IDS1"), engine.stationIds());
+    }
+
+    @Test
+    public void testSnapshotRestoreAndIterate() {
+        StorageEngine engine = createEngine(2, Long.MAX_VALUE);
+        engine.put("IDS1", reading("IDS1", 1, "A"), 0);
+        engine.put("IDS2", reading("IDS2", 2, "A"), 0);
+        Map<String, List<WeatherData>> snapshot = engine.snapshot();
+
+        engine.remove("IDS2");
+        assertEquals(Set.of("IDS1"), engine.stationIds());
+
+        // Restoring sorts each station by Lamport time and applies the retention limit
+        snapshot.put("IDS3", List.of(reading("IDS3", 9, "A"), reading("IDS3", 4, "A"), reading("IDS3", 6, "A")));
+        engine.restore(snapshot, 0);
+        assertEquals(Set.of("IDS1", "IDS2", "IDS3"), engine.stationIds());
+        assertEquals(List.of(6, 9), lamportTimes(engine.getHistory("IDS3")));
+
+        List<String> visited = storedReadings(engine);
+        assertEquals(4, visited.size());
+        assertTrue(visited.containsAll(List.of("IDS1@1", "IDS2@2", "IDS3@6", "IDS3@9")));
+    }
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws Exception {
+        StorageEngine engine = createEngine(10, Long.MAX_VALUE);
+        engine.put("IDS1", reading("IDS1", 1, "A"), 0);
+        engine.put("IDS1", reading("IDS1", 2, "A"), 0);
+        engine.save();
+
+        StorageEngine reloaded = createEngine(10, Long.MAX_VALUE);
+        reloaded.load();
+        assertEquals(engine.getHistory("IDS1"), reloaded.getHistory("IDS1"));
+
+        reloaded.deleteSavedData();
+        StorageEngine empty = createEngine(10, Long.MAX_VALUE);
+        empty.load();
+        assertTrue(empty.stationIds().isEmpty());
+    }
+
+    @Test
+    public void testReloadKeepsOriginalStoredAt() {
+        RetentionPolicy policy = new RetentionPolicy(RetentionPolicy.UNLIMITED, RetentionPolicy.UNLIMITED, 60_000);
+        StorageEngine engine = createEngine(policy, Long.MAX_VALUE);
+        long now = System.currentTimeMillis();
+        engine.put("IDS1", reading("IDS1", 1, "A"), now - 50_000);
+        engine.put("IDS1", reading("IDS1", 2, "A"), now);
+        engine.save();
+
+        StorageEngine reloaded = createEngine(policy, Long.MAX_VALUE);
+        reloaded.load();
+        assertEquals(now - 50_000, reloaded.getHistory("IDS1").get(0).getStoredAtMillis());
+
+        // The first reading keeps ageing from its original storage time, not from the reload
+        assertEquals(1, reloaded.expireSenders(Set.of(), now + 20_000));
+        assertEquals(List.of(2), lamportTimes(reloaded.getHistory("IDS1")));
+    }
+
+    @Test
+    public void testEstimatedBytesAndClear() {
+        StorageEngine engine = createEngine(10, Long.MAX_VALUE);
+        assertEquals(0, engine.getEstimatedBytes());
+        engine.put("IDS1", reading("IDS1", 1, "A"), 0);
+        assertTrue(engine.getEstimatedBytes() > 0);
+
+        engine.clear();
+        assertTrue(engine.stationIds().isEmpty());
+        assertEquals(0, engine.getEstimatedBytes());
+    }
+
+    @Test
+    public void testMemoryBudgetEvictsOtherStations() {
+        StorageEngine probe = createEngine(10, Long.MAX_VALUE);
+        probe.put("IDS0", reading("IDS0", 1, "A"), 0);
+        long perStation = probe.getEstimatedBytes();
+
+        StorageEngine engine = createEngine(10, 3 * perStation);
+        for (int i = 1; i <= 10; i++) {
+            engine.put("IDS" + i, reading("IDS" + i, i, "A"), 0);
+        }
+
+        assertTrue(engine.getEstimatedBytes() <= 3 * perStation);
+        assertTrue(engine.stationIds().contains("IDS10"));
+        assertTrue(engine.stationIds().size() < 10);
+        assertEquals(10 - engine.stationIds().size(), engine.getEvictedStationCount());
+        assertEquals(engine.getEvictedStationCount(), engine.getEvictedEntryCount());
+        assertTrue(engine.getEvictedBytes() > 0);
+    }
+
+    @Test
+    public void testPutAndGetThroughput() {
+        StorageEngine engine = createEngine(10, Long.MAX_VALUE);
+        List<WeatherData> readings = new ArrayList<>(PERF_READINGS);
+        for (int i = 0; i < PERF_READINGS; i++) {
+            readings.add(reading("IDS" + (i % PERF_STATIONS), i, "A"));
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < PERF_READINGS; i++) {
+                engine.put("IDS" + (i % PERF_STATIONS), readings.get(i), 0);
+            }
+            long putNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < PERF_READINGS; i++) {
+                assertTrue(engine.getAt("IDS" + (i % PERF_STATIONS), PERF_READINGS).isPresent());
+            }
+            long getNanos = System.nanoTime() - start;
+
+            System.out.println(engine.getName() + " engine: " + (PERF_READINGS * 1_000_000_000L / putNanos) + " puts/s, "
+                    + (PERF_READINGS * 1_000_000_000L / getNanos) + " gets/s");
+        });
+    }
+}
@@ -2,6 +2,8 @@ package test.client;
 
 import com.google.gson.JsonObject;
 import main.client.GETClient;
+import main.client.HedgingPolicy;
+import main.network.Frame;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +12,13 @@ import test.network.StubNetworkHandler;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -71,6 +80,33 @@ public class GETClientTest {
         assertEquals("Sample weather data.", response.get("data").getAsString());
     }
 
+    @Test
+    public void testGetData_PrettyPrintRequestsIndentedJson() {
+        stubNetworkHandler.setSimulatedResponse("{ \"status\": \"available\" }");
+
+        client.getData("localhost", 8080, "IDS60901");
+        assertTrue(stubNetworkHandler.getLastSentData().startsWith("GET /weather.json HTTP/1.1\r\n"));
+
+        client.setPrettyPrint(true);
+        client.getData("localhost", 8080, "IDS60901");
+        assertTrue(stubNetworkHandler.getLastSentData().startsWith("GET /weather.json?pretty=true HTTP/1.1\r\n"));
+    }
+
+    @Test
+    public void testGetData_BinarySendsGetFrame() {
+        stubNetworkHandler.setSimulatedFrameResponse(Frame.response(200, 5, "{\"id\":\"IDS60901\"}".getBytes(StandardCharsets.UTF_8)));
+        client.setBinary(true);
+
+        JsonObject response = client.getData("localhost", 8080, "IDS60901");
+
+        assertEquals("IDS60901", response.get("id").getAsString());
+        assertEquals(Frame.OP_GET, stubNetworkHandler.getLastSentFrame().getOpCode());
+        assertEquals("IDS60901", stubNetworkHandler.getLastSentFrame().getStationId());
+
+        stubNetworkHandler.setSimulatedFrameResponse(Frame.response(204, 6, null));
+        assertNull(client.getData("localhost", 8080, "IDS60901"));
+    }
+
     @Test
     public void testGetData_NoDataAvailable() {
         String expectedResponse = "{ \"status\": \"not available\" }";
@@ -102,4 +138,140 @@ public class GETClientTest {
 
         assertNull(response);
     }
+
+    @Test
+    public void testGetData_RetriesAfterServiceUnavailable() {
+        Deque<String> responses = new ArrayDeque<>(Arrays.asList(
+                "HTTP/1.1 503 Service Unavailable\r\nLamportClock: 3\r\nRetry-After: 0\r\n\r\n",
+                "{ \"server\": \"next\" }"));
+        StubNetworkHandler redirecting = new StubNetworkHandler() {
+            @Override
+            public String sendAndReceiveData(String serverName, int portNumber, String data, boolean isContentServer) {
+                super.sendAndReceiveData(serverName, portNumber, data, isContentServer);
+                return responses.poll();
+            }
+        };
+        GETClient retryingClient = new GETClient(redirecting);
+
+        long start = System.nanoTime();
+        JsonObject response = retryingClient.getData("localhost", 8080, "IDS60901");
+
+        assertEquals("next", response.get("server").getAsString());
+        assertEquals(2, redirecting.getSentDataCount());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Retry-After should replace the fixed retry delay");
+    }
+
+    @Test
+    public void testGetData_RetriesAfterTooManyRequestsFrame() {
+        StubNetworkHandler limited = new StubNetworkHandler() {
+            @Override
+            public Frame sendAndReceiveFrame(String serverName, int portNumber, Frame request) {
+                super.sendAndReceiveFrame(serverName, portNumber, request);
+                return getSentDataCount() == 1
+                        ? Frame.response(429, 3, "0".getBytes(StandardCharsets.US_ASCII))
+                        : Frame.response(200, 4, "{\"id\":\"IDS60901\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        GETClient retryingClient = new GETClient(limited);
+        retryingClient.setBinary(true);
+
+        JsonObject response = retryingClient.getData("localhost", 8080, "IDS60901");
+
+        assertEquals("IDS60901", response.get("id").getAsString());
+        assertEquals(2, limited.getSentDataCount());
+    }
+
+    @Test
+    public void testParseServerInfo_UnixDomainSocket() {
+        assertArrayEquals(new String[] {"unix:/tmp/lb.sock", "0"}, GETClient.parseServerInfo("unix:/tmp/lb.sock"));
+        assertArrayEquals(new String[] {"localhost", "4567"}, GETClient.parseServerInfo("http://localhost:4567"));
+    }
+
+    @Test
+    public void testGetData_HedgeAnswersWhenFirstServerStalls() {
+        StubNetworkHandler stalled = new StubNetworkHandler() {
+            @Override
+            public String sendAndReceiveData(String serverName, int portNumber, String data, boolean isContentServer) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "{ \"server\": \"stalled\" }";
+            }
+        };
+        StubNetworkHandler healthy = new StubNetworkHandler();
+        healthy.setSimulatedResponse("{ \"server\": \"healthy\" }");
+        Deque<StubNetworkHandler> handlers = new ArrayDeque<>(Arrays.asList(stalled, healthy));
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 50, 10);
+        client.setHedging(policy, handlers::poll);
+
+        long start = System.nanoTime();
+        JsonObject response = client.getData("localhost", 8080, "IDS60901");
+
+        assertEquals("healthy", response.get("server").getAsString());
+        assertTrue(System.nanoTime() - start < 1_500_000_000L);
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void testGetData_PrimaryAbandonedWhileConnectingClosesItsOwnSocket() throws InterruptedException {
+        CountDownLatch primaryClosed = new CountDownLatch(1);
+        AtomicBoolean primaryConnected = new AtomicBoolean();
+        AtomicBoolean closedBeforeConnected = new AtomicBoolean();
+        StubNetworkHandler slowPrimary = new StubNetworkHandler() {
+            @Override
+            public int initializeSocket(String serverName, int portNumber) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                primaryConnected.set(true);
+                return 100;
+            }
+
+            @Override
+            public void closeClient() {
+                if (!primaryConnected.get()) {
+                    closedBeforeConnected.set(true);
+                }
+                primaryClosed.countDown();
+            }
+        };
+        StubNetworkHandler hedge = new StubNetworkHandler() {
+            @Override
+            public int initializeSocket(String serverName, int portNumber) {
+                return 7;
+            }
+        };
+        hedge.setSimulatedResponse("{ \"server\": \"hedge\" }");
+        Deque<StubNetworkHandler> handlers = new ArrayDeque<>(Arrays.asList(slowPrimary, hedge));
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 50, 10);
+        client.setHedging(policy, handlers::poll);
+
+        JsonObject response = client.getData("localhost", 8080, "IDS60901");
+
+        assertEquals("hedge", response.get("server").getAsString());
+        assertTrue(hedge.getLastSentData().contains("LamportClock: 8\r\n"));
+        assertTrue(primaryClosed.await(2, TimeUnit.SECONDS));
+        assertFalse(closedBeforeConnected.get());
+        assertEquals(0, slowPrimary.getSentDataCount());
+        assertEquals(1, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void testGetData_FastAnswerIsNotHedged() {
+        StubNetworkHandler first = new StubNetworkHandler();
+        first.setSimulatedResponse("{ \"server\": \"first\" }");
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 500, 10);
+        client.setHedging(policy, () -> first);
+
+        JsonObject response = client.getData("localhost", 8080, "IDS60901");
+
+        assertEquals("first", response.get("server").getAsString());
+        assertEquals(0, policy.getHedgeCount());
+        assertEquals(1, first.getSentDataCount());
+    }
 }
@@ -0,0 +1,71 @@
+package test.client;
+
+import main.client.HedgingPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgingPolicyTest {
+    @Test
+    public void testUsesMaxDelayUntilEnoughLatencies() {
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 500, 10);
+        for (int i = 0; i < 9; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        assertEquals(500, policy.getHedgeDelayMillis());
+    }
+
+    @Test
+    public void testDelayIsPercentileOfRecentLatencies() {
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 500, 10);
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(95, policy.getHedgeDelayMillis());
+
+        // Old latencies leave the window
+        for (int i = 0; i < 100; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(40));
+        }
+        assertEquals(40, policy.getHedgeDelayMillis());
+    }
+
+    @Test
+    public void testDelayIsClamped() {
+        HedgingPolicy policy = new HedgingPolicy(10, 0.95, 10, 50, 10);
+        for (int i = 0; i < 10; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(10, policy.getHedgeDelayMillis());
+        for (int i = 0; i < 10; i++) {
+            policy.recordLatency(TimeUnit.SECONDS.toNanos(1));
+        }
+        assertEquals(50, policy.getHedgeDelayMillis());
+    }
+
+    @Test
+    public void testBudgetCapsHedges() {
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 500, 10);
+
+        // The first hedge is allowed, then one per ten requests
+        assertTrue(policy.tryAcquireHedge());
+        assertFalse(policy.tryAcquireHedge());
+        for (int i = 0; i < 10; i++) {
+            policy.onRequest();
+        }
+        assertTrue(policy.tryAcquireHedge());
+        assertFalse(policy.tryAcquireHedge());
+        assertEquals(2, policy.getHedgeCount());
+    }
+
+    @Test
+    public void testZeroBudgetNeverHedges() {
+        HedgingPolicy policy = new HedgingPolicy(100, 0.95, 10, 500, 0);
+        for (int i = 0; i < 100; i++) {
+            policy.onRequest();
+        }
+        assertFalse(policy.tryAcquireHedge());
+    }
+}
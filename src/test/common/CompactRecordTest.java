@@ -0,0 +1,97 @@
+package test.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import main.common.CompactRecord;
+import main.common.JsonHandler;
+import main.common.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactRecordTest {
+
+    @Test
+    public void testRoundTripPreservesFieldsOrderAndTypes() {
+        JsonObject original = JsonHandler.parseJSONObject(
+                "{\"id\":\"IDS60901\",\"state\":\"SA\",\"air_temp\":\"13.3\",\"wind_spd_kt\":8,\"nested\":{\"a\":[1,2]},\"flag\":true}");
+
+        JsonObject decoded = CompactRecord.fromJson(original).toJson();
+
+        assertEquals(original, decoded);
+        assertEquals(original.keySet().toString(), decoded.keySet().toString());
+        assertTrue(decoded.get("wind_spd_kt").getAsJsonPrimitive().isNumber());
+    }
+
+    @Test
+    public void testBinaryRoundTripPreservesFieldsOrderAndTypes() {
+        JsonObject original = JsonHandler.parseJSONObject(
+                "{\"id\":\"IDS60901\",\"state\":\"SA\",\"name\":\"Ad\u00e9la\u00efde\",\"wind_spd_kt\":8,\"nested\":{\"a\":[1,2]},\"flag\":true}");
+        CompactRecord record = CompactRecord.fromJson(original);
+
+        CompactRecord decoded = CompactRecord.fromBytes(record.toBytes());
+
+        assertEquals(original, decoded.toJson());
+        assertEquals(original.keySet().toString(), decoded.toJson().keySet().toString());
+        assertSame(record.getString("state"), decoded.getString("state"));
+    }
+
+    @Test
+    public void testStreamingRoundTripPreservesFieldsOrderAndTypes() throws Exception {
+        JsonObject original = JsonHandler.parseJSONObject(
+                "{\"id\":\"IDS60901\",\"state\":\"SA\",\"wind_spd_kt\":8,\"lat\":-34.90,\"nested\":{\"a\":[1,2]},\"flag\":true}");
+        CompactRecord record = CompactRecord.fromJson(original);
+
+        StringWriter text = new StringWriter();
+        try (JsonWriter out = new JsonWriter(text)) {
+            record.write(out);
+        }
+        assertEquals(JsonHandler.serializeObject(original), text.toString());
+
+        assertTrue(text.toString().contains("\"lat\":-34.90,"));
+
+        CompactRecord decoded = CompactRecord.read(new JsonReader(new StringReader(text.toString())));
+        assertEquals(original, decoded.toJson());
+        assertEquals("-34.90", decoded.getText("lat"));
+        assertEquals(original.keySet().toString(), decoded.toJson().keySet().toString());
+        assertSame(record.getString("state"), decoded.getString("state"));
+    }
+
+    @Test
+    public void testLowCardinalityValuesAndKeysAreShared() {
+        CompactRecord first = CompactRecord.fromJson(JsonHandler.parseJSONObject("{\"state\":\"SA\",\"air_temp\":\"13.3\"}"));
+        CompactRecord second = CompactRecord.fromJson(JsonHandler.parseJSONObject("{\"state\":\"SA\",\"air_temp\":\"13.3\"}"));
+
+        assertSame(first.getString("state"), second.getString("state"));
+        assertNotSame(first.getString("air_temp"), second.getString("air_temp"));
+        assertTrue(CompactRecord.isSharedValue(first.getString("state")));
+    }
+
+    @Test
+    public void testWeatherDataInternsSenderIdAndPersistsAsJson() {
+        WeatherData first = new WeatherData(JsonHandler.parseJSONObject("{\"id\":\"IDS60901\"}"), 3, new String("sender-1"));
+        WeatherData second = new WeatherData(JsonHandler.parseJSONObject("{\"id\":\"IDS60901\"}"), 4, new String("sender-1"));
+        assertSame(first.getSenderID(), second.getSenderID());
+
+        String json = JsonHandler.serializeObject(first);
+        assertEquals("{\"lamportTime\":3,\"senderID\":\"sender-1\",\"data\":{\"id\":\"IDS60901\"}}", json);
+
+        WeatherData restored = JsonHandler.deserializeObject(json, WeatherData.class);
+        assertEquals(3, restored.getLamportTime());
+        assertEquals("sender-1", restored.getSenderID());
+        assertEquals(first.getData(), restored.getData());
+    }
+
+    @Test
+    public void testCompactRecordIsSmallerThanJsonEstimate() {
+        JsonObject original = JsonHandler.parseJSONObject(
+                "{\"id\":\"IDS60901\",\"state\":\"SA\",\"time_zone\":\"CST\",\"cloud\":\"Partly cloudy\",\"air_temp\":\"13.3\"}");
+        CompactRecord.fromJson(original);
+
+        assertTrue(CompactRecord.fromJson(original).estimateSizeBytes() < 5 * (56 + 2 * 48));
+    }
+}
@@ -0,0 +1,75 @@
+package test.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import main.common.CompactRecord;
+import main.common.JsonHandler;
+import main.common.WeatherDataDecoder;
+import main.common.WeatherSchema;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeatherDataDecoderTest {
+    private final WeatherDataDecoder decoder = new WeatherDataDecoder(WeatherSchema.DEFAULT);
+
+    @Test
+    public void testDecodesLikeTheTreeParser() throws Exception {
+        String body = JsonHandler.serializeObject(JsonHandler.convertTextToJSON(JsonHandler.readFile("src/main/content/input_v1.txt")));
+        String[] bodies = {
+                body,
+                "{ \"id\" : \"IDS60901\", \"air_temp\": 13.3, \"rel_hum\": 60, \"extra\": {\"a\": [1, 2.50, null]}, \"flag\": true }"
+        };
+
+        for (String content : bodies) {
+            JsonObject expected = JsonHandler.parseJSONObject(content);
+            CompactRecord decoded = decoder.decode(content);
+            assertEquals(expected, decoded.toJson());
+            assertEquals(expected.keySet().toString(), decoded.toJson().keySet().toString());
+            assertEquals(CompactRecord.fromJson(expected), decoded);
+        }
+    }
+
+    @Test
+    public void testSharesLowCardinalityValues() {
+        CompactRecord first = decoder.decode("{\"id\":\"IDS60901\",\"state\":\"SA\"}");
+        CompactRecord second = decoder.decode("{\"id\":\"IDS60901\",\"state\":\"SA\"}");
+        assertSame(first.getString("state"), second.getString("state"));
+    }
+
+    @Test
+    public void testDuplicateFieldKeepsPositionAndLastValue() {
+        CompactRecord decoded = decoder.decode("{\"id\":\"IDS1\",\"air_temp\":\"1.0\",\"id\":\"IDS2\"}");
+        assertEquals("{\"id\":\"IDS2\",\"air_temp\":\"1.0\"}", JsonHandler.serializeObject(decoded.toJson()));
+    }
+
+    @Test
+    public void testNumericStationIdIsAccepted() {
+        assertEquals("42", decoder.decode("{\"id\":42}").getText("id"));
+    }
+
+    @Test
+    public void testRejectsInvalidBodies() {
+        String[] invalid = {
+                "",
+                "[1, 2]",
+                "{\"name\":\"Adelaide\"}",              // No id
+                "{\"id\":\"\"}",                         // Empty id
+                "{\"id\":null}",
+                "{\"id\":\"IDS1\",\"air_temp\":\"warm\"}", // Numeric field holding text
+                "{\"id\":\"IDS1\",\"air_temp\":\"NaN\"}",  // Numeric strings outside the JSON number grammar
+                "{\"id\":\"IDS1\",\"air_temp\":\"Infinity\"}",
+                "{\"id\":\"IDS1\",\"air_temp\":\"12d\"}",
+                "{\"id\":\"IDS1\",\"air_temp\":\"0x1p3\"}",
+                "{\"id\":\"IDS1\",\"air_temp\":\" 12 \"}",
+                "{\"id\":\"IDS1\",\"air_temp\":NaN}",     // Unquoted literal the lenient reader accepts
+                "{\"id\":\"IDS1\",\"rel_hum\":true}",
+                "{\"id\":{\"nested\":1}}",               // String field holding an object
+                "{\"id\":\"IDS1\"} trailing",
+                "{\"id\":\"IDS1\""
+        };
+        for (String content : invalid) {
+            assertThrows(JsonParseException.class, () -> decoder.decode(content), content);
+        }
+    }
+}
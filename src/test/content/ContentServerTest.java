@@ -1,6 +1,9 @@
 package test.content;
 
+import main.common.JsonHandler;
 import main.content.ContentServer;
+import main.network.Frame;
+import main.network.HttpCompression;
 import org.junit.jupiter.api.AfterEach;
 import test.network.StubNetworkHandler;
 
@@ -11,6 +14,8 @@ import org.junit.jupiter.api.Test;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -85,14 +90,9 @@ public class ContentServerTest {
                 "SenderID: 444c3c63-d0da-4a2f-bfc7-896825043e69\r\n" +
                 "LamportClock: 1\r\n" +
                 "Content-Type: application/json\r\n" +
-                "Content-Length: 116\r\n" +
+                "Content-Length: 99\r\n" +
                 "\r\n" +
-                "{\n"+
-                "  \"id\": \"IDS60901\",\n" +
-                "  \"local_date_time_full\": \"20230715160000\",\n" +
-                "  \"air_temp\": \"13.3\",\n" +
-                "  \"cloud\": \"Partly cloudy\"\n" +
-                "}";
+                "{\"id\":\"IDS60901\",\"local_date_time_full\":\"20230715160000\",\"air_temp\":\"13.3\",\"cloud\":\"Partly cloudy\"}";
 
         // Regular expression pattern to match everything before and after the ServerID field
         String regex = "(.*?)SenderID: .*?\r\n(.*?$)";
@@ -119,4 +119,62 @@ public class ContentServerTest {
             fail("Could not process the expected or actual data properly");
         }
     }
+
+    @Test
+    public void testUploadRetriesAfterRetryAfterDelay() throws Exception {
+        StubNetworkHandler draining = new StubNetworkHandler() {
+            @Override
+            public String sendAndReceiveData(String serverName, int portNumber, byte[] data, boolean isContentServer) {
+                super.sendAndReceiveData(serverName, portNumber, data, isContentServer);
+                return getSentDataCount() == 1
+                        ? "HTTP/1.1 503 Service Unavailable\r\nLamportClock: 2\r\nRetry-After: 1\r\n\r\n"
+                        : "HTTP/1.1 201 Created\r\nLamportClock: 3\r\n\r\n";
+            }
+        };
+        ContentServer server = new ContentServer(draining);
+        server.loadWeatherData("src/test/content/input_test.txt");
+
+        server.uploadWeatherData("testServer", 8080);
+        Thread.sleep(500);
+        assertEquals(1, draining.getSentDataCount());
+
+        Thread.sleep(1500);
+        assertEquals(2, draining.getSentDataCount(), "The shed upload should be sent again after Retry-After");
+        server.shutdown();
+    }
+
+    @Test
+    public void testUploadWithGzipCompressesBody() throws Exception {
+        contentServer.loadWeatherData("src/main/content/input_v1.txt");
+        contentServer.setGzip(true);
+
+        contentServer.uploadWeatherData("testServer", 8080);
+        Thread.sleep(1000);
+
+        byte[] sent = stubNetworkHandler.getLastSentBytes();
+        String headers = new String(sent, StandardCharsets.UTF_8).split("\r\n\r\n", 2)[0];
+        int bodyStart = headers.getBytes(StandardCharsets.UTF_8).length + 4;
+        byte[] body = Arrays.copyOfRange(sent, bodyStart, sent.length);
+
+        assertTrue(headers.contains("Content-Encoding: gzip\r\n"));
+        assertTrue(headers.endsWith("Content-Length: " + body.length));
+        assertEquals(JsonHandler.toWireJson(contentServer.getWeatherData(), false),
+                new String(HttpCompression.gunzip(body), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUploadWithBinarySendsPutFrame() throws Exception {
+        contentServer.loadWeatherData("src/main/content/input_v1.txt");
+        contentServer.setBinary(true);
+        stubNetworkHandler.setSimulatedFrameResponse(Frame.response(201, 9, null));
+
+        contentServer.uploadWeatherData("testServer", 8080);
+        Thread.sleep(1000);
+
+        Frame sent = stubNetworkHandler.getLastSentFrame();
+        assertEquals(Frame.OP_PUT, sent.getOpCode());
+        assertEquals("IDS60901", sent.getStationId());
+        assertEquals(JsonHandler.toWireJson(contentServer.getWeatherData(), false), sent.getPayloadText());
+        assertNull(stubNetworkHandler.getLastSentData());
+    }
 }
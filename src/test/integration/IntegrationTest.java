@@ -2,19 +2,25 @@ package test.integration;
 
 import com.google.gson.JsonObject;
 import main.aggregation.AggregationServer;
+import main.aggregation.EdgeCache;
 import main.aggregation.LoadBalancer;
+import main.aggregation.DataStoreService;
 import main.client.GETClient;
 import main.content.ContentServer;
 import main.network.NetworkHandler;
 import main.network.SocketNetworkHandler;
+import main.network.UnixDomainSocket;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -25,6 +31,7 @@ public class IntegrationTest {
     private ContentServer contentServer1, contentServer2;
     private GETClient getClient1, getClient2;
     private final PrintStream originalOut = System.out;
+    private Properties originalProperties;
 
     public void suppressOutput() {
         System.setOut(new PrintStream(new OutputStream() {
@@ -39,8 +46,19 @@ public class IntegrationTest {
         System.setOut(originalOut);
     }
 
+    // A server that is still starting would be dropped by the first health check or skipped by the round robin
+    private static void awaitAlive(AggregationServer server) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!server.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(server.isAlive(), "Aggregation Server on port " + server.getPort() + " did not start");
+    }
+
     @BeforeEach
-    public void setUp() {
+    public void setUp() throws InterruptedException {
+        // Properties set by a test must not reach the next one
+        originalProperties = (Properties) System.getProperties().clone();
         suppressOutput();
         NetworkHandler lbNetworkHandler = new SocketNetworkHandler();
         serverInstances = new ArrayList<>();
@@ -64,6 +82,9 @@ public class IntegrationTest {
                 }
             }).start();
         }
+        for (AggregationServer server : serverInstances) {
+            awaitAlive(server);
+        }
 
         // Initialize the LoadBalancer
         loadBalancer = new LoadBalancer(lbNetworkHandler, serverInstances);
@@ -88,7 +109,9 @@ public class IntegrationTest {
     public void tearDown() {
         // Shutdown LoadBalancer (assuming there's a shutdown method)
         loadBalancer.shutdown();
-        serverInstances.forEach(AggregationServer::shutdown);
+        // Shut down only the servers the load balancer no longer held, so no server is counted out twice
+        serverInstances.stream().filter(AggregationServer::isAlive).forEach(AggregationServer::shutdown);
+        DataStoreService.getInstance().clearAllData();
 
         // Shutdown content servers
         contentServer1.shutdown();
@@ -107,6 +130,7 @@ public class IntegrationTest {
         getClient2 = null;
 
         restoreOutput();
+        System.setProperties(originalProperties);
 
         try {
             Thread.sleep(1000);  // Sleep for 200 milliseconds after shutdown
@@ -201,7 +225,7 @@ public class IntegrationTest {
     }
 
     @Test
-    public void testLoadBalancerRedistributesOnNewServerAddition() {
+    public void testLoadBalancerRedistributesOnNewServerAddition() throws InterruptedException {
         NetworkHandler newServerNetworkHandler = new SocketNetworkHandler();
         AggregationServer newServer = new AggregationServer(newServerNetworkHandler);
         loadBalancer.addServer(newServer);
@@ -209,6 +233,7 @@ public class IntegrationTest {
         new Thread(() -> {
             newServer.start(4571);
         }).start();
+        awaitAlive(newServer);
 
         assertTrue(contentServer1.loadWeatherData("src/test/integration/input_v1_test.txt"));
         contentServer1.uploadWeatherData("localhost", 4567);
@@ -234,6 +259,56 @@ public class IntegrationTest {
         assertNotEquals(response1.get("wind_spd_kt"), response2.get("wind_spd_kt"));
     }
 
+    @Test
+    public void testEdgeCacheAnswersRepeatedGets() throws InterruptedException {
+        EdgeCache edgeCache = new EdgeCache(16, 60000);
+        loadBalancer.setEdgeCache(edgeCache);
+
+        assertTrue(contentServer1.loadWeatherData("src/test/integration/input_v1_test.txt"));
+        contentServer1.uploadWeatherData("localhost", 4567);
+        Thread.sleep(1000);
+        JsonObject response1 = getClient1.getData("localhost", 4567, "IDS60901");
+        JsonObject response2 = getClient2.getData("localhost", 4567, "IDS60901");
+
+        // The second GET is answered from the cache the first one filled, whichever server gets it
+        assertEquals(response1, response2);
+        assertEquals(1, edgeCache.getHitCount());
+
+        assertTrue(contentServer2.loadWeatherData("src/test/integration/input_v3_test.txt"));
+        contentServer2.uploadWeatherData("localhost", 4567);
+        Thread.sleep(1000);
+        JsonObject response3 = getClient1.getData("localhost", 4567, "IDS60901");
+
+        assertNotEquals(response1.get("wind_spd_kt"), response3.get("wind_spd_kt"));
+        assertEquals(1, edgeCache.getHitCount());
+    }
+
+    @Test
+    public void testUnixDomainSocketTransport() throws Exception {
+        Path directory = Files.createTempDirectory("loadbalancer");
+        String address = "unix:" + directory.resolve("lb.sock");
+        AggregationServer unixServer = new AggregationServer(new SocketNetworkHandler());
+        new Thread(() -> unixServer.start(UnixDomainSocket.addressOf(directory.resolve("as1.sock").toString()))).start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!unixServer.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50); // The first health check would drop a server that has not started yet
+        }
+        LoadBalancer unixBalancer = new LoadBalancer(new SocketNetworkHandler(), List.of(unixServer));
+        unixBalancer.start(UnixDomainSocket.addressOf(address));
+        try {
+            assertTrue(contentServer1.loadWeatherData("src/test/integration/input_v1_test.txt"));
+            contentServer1.uploadWeatherData(address, 0);
+            Thread.sleep(1000);
+            JsonObject response = getClient1.getData(address, 0, "IDS60901");
+
+            assertEquals("IDS60901", response.get("id").getAsString());
+        } finally {
+            unixBalancer.shutdown();
+        }
+        assertFalse(Files.exists(directory.resolve("lb.sock")));
+        assertFalse(Files.exists(directory.resolve("as1.sock")));
+    }
+
     @Test
     public void testServerRecovery() throws InterruptedException {
         // Simulate server 1 going down and then coming back up
@@ -242,6 +317,7 @@ public class IntegrationTest {
         new Thread(() -> {
             serverInstances.get(0).start(4568);
         }).start();
+        awaitAlive(serverInstances.get(0));
 
         assertDoesNotThrow(() -> {
             contentServer1.loadWeatherData("src/test/integration/input_v2_test.txt");
@@ -0,0 +1,166 @@
+package test.network;
+
+import main.network.AcceptorPool;
+import main.network.Connection;
+import main.network.SocketNetworkHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class AcceptorPoolTest {
+    private final SocketNetworkHandler handler = new SocketNetworkHandler();
+    private AcceptorPool pool;
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.stop();
+        }
+        handler.closeServer();
+    }
+
+    /**
+     * Finds a port that is free to listen on.
+     * @return The port number.
+     * @throws IOException If no port can be found.
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Connects to the port and reads the greeting line written by the handoff.
+     * @param port The port to connect to.
+     * @return The greeting, or an empty string if the connection was closed first.
+     * @throws IOException If connecting fails.
+     */
+    private static String connectAndRead(int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            InputStream in = socket.getInputStream();
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                line.append((char) b);
+            }
+            return line.toString().trim();
+        }
+    }
+
+    /**
+     * Greets a handed-off connection with the name of the acceptor's handoff thread and closes it.
+     * @param socket The accepted connection.
+     * @param threads Collects the names of the handoff threads.
+     */
+    private static void greet(Connection socket, Set<String> threads) {
+        try (Connection s = socket) {
+            threads.add(Thread.currentThread().getName());
+            OutputStream out = s.getOutputStream();
+            out.write("hello\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void testSharedListenerHandsOffEveryConnection() throws Exception {
+        int port = freePort();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        pool = new AcceptorPool(3, false, 2, 16);
+        pool.start(handler, port, socket -> greet(socket, threads));
+        assertFalse(pool.isSharded());
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("hello", connectAndRead(port));
+        }
+        assertEquals(20, pool.getAcceptedCount());
+        assertEquals(0, pool.getRejectedCount());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("Handoff-")));
+    }
+
+    @Test
+    public void testReusePortListenersShareOnePort() throws Exception {
+        assumeTrue(AcceptorPool.isReusePortSupported());
+        int port = freePort();
+        pool = new AcceptorPool(4, true, 2, 16);
+        pool.start(handler, port, socket -> greet(socket, ConcurrentHashMap.newKeySet()));
+        assertTrue(pool.isSharded());
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("hello", connectAndRead(port));
+        }
+        assertEquals(20, pool.getAcceptedCount());
+    }
+
+    @Test
+    public void testFullHandoffQueueShedsConnectionWithoutBlockingAccept() throws Exception {
+        int port = freePort();
+        CountDownLatch release = new CountDownLatch(1);
+        pool = new AcceptorPool(1, false, 1, 1);
+        pool.start(handler, port, socket -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+
+        // The first connection holds the only handoff thread and the second fills the queue
+        Socket busy = new Socket("localhost", port);
+        Socket queued = new Socket("localhost", port);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getHandoffDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("HTTP/1.1 503 Service Unavailable", connectAndRead(port));
+        assertEquals(1, pool.getRejectedCount());
+        assertEquals(3, pool.getAcceptedCount());
+
+        release.countDown();
+        busy.close();
+        queued.close();
+    }
+
+    @Test
+    public void testFailedBindStopsThePoolSoItCanStartAgain() throws Exception {
+        assumeTrue(AcceptorPool.isReusePortSupported());
+        int port = freePort();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        pool = new AcceptorPool(2, true, 2, 16);
+        try (ServerSocket blocker = new ServerSocket(port)) {
+            assertTrue(blocker.isBound());
+            assertThrows(IOException.class, () -> pool.start(handler, port, socket -> greet(socket, threads)));
+        }
+
+        pool.start(handler, port, socket -> greet(socket, threads));
+        assertEquals("hello", connectAndRead(port));
+    }
+
+    @Test
+    public void testRejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new AcceptorPool(0, false, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AcceptorPool(1, false, 1, 0));
+    }
+}
@@ -0,0 +1,66 @@
+package test.network;
+
+import main.network.DeadlineTimer;
+import main.network.DeadlineTimer.Timeout;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineTimerTest {
+    @Test
+    public void testRunsTaskAfterDelay() throws Exception {
+        DeadlineTimer timer = new DeadlineTimer(5, 8, "TestTimer");
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        timer.schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testRunsTasksMoreThanOneTurnAhead() throws Exception {
+        // Eight slots of 5 ms make one turn of 40 ms, so these delays need several turns
+        DeadlineTimer timer = new DeadlineTimer(5, 8, "TestTimer");
+        CountDownLatch fired = new CountDownLatch(3);
+        long start = System.nanoTime();
+
+        timer.schedule(fired::countDown, 90, TimeUnit.MILLISECONDS);
+        timer.schedule(fired::countDown, 120, TimeUnit.MILLISECONDS);
+        timer.schedule(fired::countDown, 130, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(130));
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRun() throws Exception {
+        DeadlineTimer timer = new DeadlineTimer(5, 8, "TestTimer");
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch later = new CountDownLatch(1);
+
+        Timeout timeout = timer.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        timer.schedule(later::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void testExpiredTimeoutCannotBeCancelled() throws Exception {
+        DeadlineTimer timer = new DeadlineTimer(5, 8, "TestTimer");
+        CountDownLatch fired = new CountDownLatch(1);
+
+        Timeout timeout = timer.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+}
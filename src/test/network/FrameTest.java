@@ -0,0 +1,69 @@
+package test.network;
+
+import main.network.Frame;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameTest {
+    @Test
+    public void testPutFrameRoundTrips() throws Exception {
+        byte[] body = "{\"id\":\"IDS60901\",\"name\":\"Ad\u00e9la\u00efde\"}".getBytes(StandardCharsets.UTF_8);
+
+        Frame frame = Frame.read(new ByteArrayInputStream(Frame.put(42, "sender-1", "IDS60901", body).encode()));
+
+        assertEquals(Frame.OP_PUT, frame.getOpCode());
+        assertEquals(0, frame.getStatus());
+        assertEquals(42, frame.getLamportTime());
+        assertEquals("sender-1", frame.getSenderId());
+        assertEquals("IDS60901", frame.getStationId());
+        assertArrayEquals(body, frame.getPayload());
+    }
+
+    @Test
+    public void testResponseFrameWithoutBodyRoundTrips() throws Exception {
+        Frame frame = Frame.read(new ByteArrayInputStream(Frame.response(204, 7, null).encode()));
+
+        assertEquals(Frame.OP_RESPONSE, frame.getOpCode());
+        assertEquals(204, frame.getStatus());
+        assertEquals(7, frame.getLamportTime());
+        assertNull(frame.getSenderId());
+        assertNull(frame.getStationId());
+        assertEquals(0, frame.getPayload().length);
+    }
+
+    @Test
+    public void testStatusOfReadsEncodedStatus() {
+        assertEquals(500, Frame.statusOf(Frame.response(500, 7, new byte[] {1, 2}).encode()));
+        assertEquals(0, Frame.statusOf(Frame.get(1, "sender-1", null).encode()));
+        assertEquals(-1, Frame.statusOf("GET /".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testFrameIsToldApartFromHttp() {
+        assertTrue(Frame.isFrameStart(Frame.get(1, "sender-1", null).encode()[0] & 0xFF));
+        for (String method : new String[] {"GET", "PUT", "POST"}) {
+            assertFalse(Frame.isFrameStart(method.charAt(0)));
+        }
+        assertFalse(Frame.isFrameStart(-1));
+    }
+
+    @Test
+    public void testReadRejectsBadFrames() {
+        byte[] encoded = Frame.get(1, "sender-1", "IDS60901").encode();
+
+        assertThrows(EOFException.class, () -> Frame.read(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1))));
+        assertThrows(IOException.class, () -> Frame.read(new ByteArrayInputStream("GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.UTF_8))));
+
+        byte[] oversized = encoded.clone();
+        ByteBuffer.wrap(oversized, 1, 4).putInt(Frame.MAX_FRAME_BYTES + 1);
+        assertThrows(IOException.class, () -> Frame.read(new ByteArrayInputStream(oversized)));
+    }
+}
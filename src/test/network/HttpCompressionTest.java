@@ -0,0 +1,46 @@
+package test.network;
+
+import main.network.HttpCompression;
+import main.network.PayloadTooLargeException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpCompressionTest {
+
+    @Test
+    public void testGzipRoundTrip() throws Exception {
+        byte[] body = "{\"id\":\"IDS60901\",\"name\":\"Ad\u00e9la\u00efde\",\"air_temp\":13.3}".repeat(10).getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = HttpCompression.gzip(body);
+
+        assertTrue(compressed.length < body.length);
+        assertArrayEquals(body, HttpCompression.gunzip(compressed));
+    }
+
+    @Test
+    public void testGunzipRejectsPlainData() {
+        assertThrows(java.io.IOException.class, () -> HttpCompression.gunzip("{}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testGunzipStopsAtInflatedLimit() throws Exception {
+        byte[] bomb = HttpCompression.gzip(new byte[4 * 1024 * 1024]);
+        assertTrue(bomb.length < 16 * 1024);
+
+        assertThrows(PayloadTooLargeException.class, () -> HttpCompression.gunzip(bomb, 1024 * 1024));
+        assertEquals(4 * 1024 * 1024, HttpCompression.gunzip(bomb, 4 * 1024 * 1024).length);
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(HttpCompression.acceptsGzip("gzip"));
+        assertTrue(HttpCompression.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(HttpCompression.acceptsGzip("*"));
+        assertFalse(HttpCompression.acceptsGzip(null));
+        assertFalse(HttpCompression.acceptsGzip("deflate, br"));
+        assertFalse(HttpCompression.acceptsGzip("gzip;q=0"));
+    }
+}
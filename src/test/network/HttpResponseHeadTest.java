@@ -0,0 +1,48 @@
+package test.network;
+
+import main.network.HttpResponseHead;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpResponseHeadTest {
+    @Test
+    public void testHeadWithoutBody() {
+        assertEquals("HTTP/1.1 204 No Content\r\nLamportClock: 5\r\n\r\n",
+                decode(HttpResponseHead.encode("204 No Content", 5, null, -1)));
+    }
+
+    @Test
+    public void testHeadWithBody() {
+        assertEquals("HTTP/1.1 200 OK\r\nLamportClock: 1234567\r\nContent-Type: application/json\r\nContent-Length: 356\r\n\r\n",
+                decode(HttpResponseHead.encode("200 OK", 1234567, null, 356)));
+        assertEquals("HTTP/1.1 200 OK\r\nLamportClock: 0\r\nContent-Type: application/json\r\n"
+                        + "Content-Encoding: gzip\r\nContent-Length: 0\r\n\r\n",
+                decode(HttpResponseHead.encode("200 OK", 0, "gzip", 0)));
+    }
+
+    @Test
+    public void testNumbersMatchIntegerToString() {
+        for (int value : new int[] {-1, 9, 10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            assertEquals("HTTP/1.1 200 OK\r\nLamportClock: " + value + "\r\n\r\n",
+                    decode(HttpResponseHead.encode("200 OK", value, null, -1)));
+        }
+    }
+
+    @Test
+    public void testStatusOfReadsEncodedStatus() {
+        ByteBuffer head = HttpResponseHead.encode("503 Service Unavailable", 3, null, -1);
+        assertEquals(503, HttpResponseHead.statusOf(head));
+        assertEquals(0, head.position());
+        assertEquals(-1, HttpResponseHead.statusOf(ByteBuffer.wrap("garbage".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    private static String decode(ByteBuffer head) {
+        byte[] bytes = new byte[head.remaining()];
+        head.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
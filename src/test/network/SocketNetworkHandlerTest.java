@@ -0,0 +1,374 @@
+package test.network;
+
+import main.network.ClientRequest;
+import main.network.Connection;
+import main.network.Frame;
+import main.network.HttpCompression;
+import main.network.ReadDeadlines;
+import main.network.RetryLaterException;
+import main.network.SocketConnection;
+import main.network.SocketNetworkHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SocketNetworkHandlerTest {
+    private static final String BODY = "{\"id\":\"IDS60901\",\"name\":\"Ad\u00e9la\u00efde\"}";
+
+    private ServerSocket serverSocket;
+    private SocketNetworkHandler handler;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        handler = new SocketNetworkHandler();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        handler.closeClient();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testWaitForClientDataReadsBodyByByteLength() throws Exception {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<String> received = receiveOne();
+
+        send(request("", body));
+
+        assertEquals("PUT /weather.json HTTP/1.1\r\nContent-Length: " + body.length + "\r\n\r\n" + BODY,
+                received.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWaitForClientDataDecompressesGzipBody() throws Exception {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<String> received = receiveOne();
+
+        send(request("Content-Encoding: gzip\r\n", HttpCompression.gzip(body)));
+
+        assertEquals("PUT /weather.json HTTP/1.1\r\nContent-Length: " + body.length + "\r\n\r\n" + BODY,
+                received.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testGzipBombIsRejectedWith413() throws Exception {
+        handler = new SocketNetworkHandler(ReadDeadlines.fromSystemProperties(), 64 * 1024, 256 * 1024);
+        byte[] bomb = HttpCompression.gzip(new byte[8 * 1024 * 1024]);
+        assertTrue(bomb.length < 64 * 1024);
+        CompletableFuture<ClientRequest> received = receiveRequest();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write(request("Content-Encoding: gzip\r\n", bomb));
+            assertNull(received.get(5, TimeUnit.SECONDS));
+            String response = new String(client.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 413 Payload Too Large"), response);
+        }
+    }
+
+    @Test
+    public void testOversizedHeaderLineIsRejectedWith413() throws Exception {
+        handler = new SocketNetworkHandler(ReadDeadlines.fromSystemProperties(), 1024, 64 * 1024, 256 * 1024);
+        CompletableFuture<String> received = receiveOne();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write(request("X-Padding: " + "a".repeat(4096) + "\r\n", BODY.getBytes(StandardCharsets.UTF_8)));
+            assertNull(received.get(5, TimeUnit.SECONDS));
+            String response = new String(client.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 413 Payload Too Large"), response);
+        }
+    }
+
+    @Test
+    public void testTooManyHeadersAreRejectedWith413() throws Exception {
+        handler = new SocketNetworkHandler(ReadDeadlines.fromSystemProperties(), 1024, 64 * 1024, 256 * 1024);
+        CompletableFuture<String> received = receiveOne();
+        StringBuilder headers = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            headers.append("X-Header-").append(i).append(": x\r\n"); // Every line is short; only the head as a whole is too large
+        }
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write(request(headers.toString(), BODY.getBytes(StandardCharsets.UTF_8)));
+            assertNull(received.get(5, TimeUnit.SECONDS));
+            String response = new String(client.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 413 Payload Too Large"), response);
+        }
+    }
+
+    @Test
+    public void testHeadAtTheLimitIsRead() throws Exception {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        int headBytes = request("", body).length - body.length;
+        handler = new SocketNetworkHandler(ReadDeadlines.fromSystemProperties(), headBytes, 64 * 1024, 256 * 1024);
+        CompletableFuture<String> received = receiveOne();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write(request("", body));
+            assertTrue(received.get(5, TimeUnit.SECONDS).endsWith(BODY));
+        }
+    }
+
+    @Test
+    public void testBodyOverLimitIsRejectedWith413() throws Exception {
+        handler = new SocketNetworkHandler(ReadDeadlines.fromSystemProperties(), 16, 1024);
+        CompletableFuture<String> received = receiveOne();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write(request("", BODY.getBytes(StandardCharsets.UTF_8)));
+            assertNull(received.get(5, TimeUnit.SECONDS));
+            String response = new String(client.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 413 Payload Too Large"), response);
+        }
+    }
+
+    @Test
+    public void testSendAndReceiveDataDecompressesGzipResponse() throws Exception {
+        byte[] compressed = HttpCompression.gzip(BODY.getBytes(StandardCharsets.UTF_8));
+        CompletableFuture.runAsync(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                OutputStream out = socket.getOutputStream();
+                out.write("LamportClock: 3\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                handler.waitForClientData(new SocketConnection(socket));
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Encoding: gzip\r\n"
+                        + "Content-Length: " + compressed.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.write(compressed);
+                out.flush();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        SocketNetworkHandler client = new SocketNetworkHandler();
+        assertEquals(3, client.initializeSocket("localhost", serverSocket.getLocalPort()));
+        String response = client.sendAndReceiveData("localhost", serverSocket.getLocalPort(),
+                "GET /weather.json HTTP/1.1\r\nAccept-Encoding: gzip\r\n\r\n", false);
+
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                + BODY.getBytes(StandardCharsets.UTF_8).length + "\r\n\r\n" + BODY, response);
+    }
+
+    @Test
+    public void testInitializeSocketReportsRetryAfterOfShedConnection() {
+        CompletableFuture.runAsync(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                socket.getOutputStream().write("HTTP/1.1 503 Service Unavailable\r\nLamportClock: 3\r\nRetry-After: 4\r\n\r\n"
+                        .getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        SocketNetworkHandler client = new SocketNetworkHandler();
+        RetryLaterException shed = assertThrows(RetryLaterException.class,
+                () -> client.initializeSocket("localhost", serverSocket.getLocalPort()));
+        assertEquals(503, shed.getStatus());
+        assertEquals(4, shed.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testWaitForClientRequestTellsProtocolsApart() throws Exception {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+
+        CompletableFuture<ClientRequest> received = receiveRequest();
+        send(request("", body));
+        ClientRequest http = received.get(5, TimeUnit.SECONDS);
+        assertFalse(http.isFrame());
+        assertTrue(http.getHttpText().endsWith("\r\n\r\n" + BODY));
+
+        received = receiveRequest();
+        send(Frame.put(4, "sender-1", "IDS60901", body).encode());
+        ClientRequest binary = received.get(5, TimeUnit.SECONDS);
+        assertTrue(binary.isFrame());
+        assertEquals(Frame.OP_PUT, binary.getFrame().getOpCode());
+        assertEquals("IDS60901", binary.getFrame().getStationId());
+        assertEquals(BODY, binary.getFrame().getPayloadText());
+    }
+
+    @Test
+    public void testSendAndReceiveFrame() throws Exception {
+        CompletableFuture<Frame> serverSide = CompletableFuture.supplyAsync(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                OutputStream out = socket.getOutputStream();
+                out.write("LamportClock: 3\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Frame request = handler.waitForClientRequest(new SocketConnection(socket)).getFrame();
+                out.write(Frame.response(200, 6, BODY.getBytes(StandardCharsets.UTF_8)).encode());
+                out.flush();
+                return request;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        SocketNetworkHandler client = new SocketNetworkHandler();
+        assertEquals(3, client.initializeSocket("localhost", serverSocket.getLocalPort()));
+        Frame response = client.sendAndReceiveFrame("localhost", serverSocket.getLocalPort(), Frame.get(4, "client-1", "IDS60901"));
+
+        assertEquals(Frame.OP_GET, serverSide.get(5, TimeUnit.SECONDS).getOpCode());
+        assertEquals(200, response.getStatus());
+        assertEquals(6, response.getLamportTime());
+        assertEquals(BODY, response.getPayloadText());
+    }
+
+    @Test
+    public void testSendResponseGathersBuffersOnChannelSocket() throws Exception {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(0))) {
+            assertEquals(BODY, sendBuffers(serverChannel.socket(), true));
+        }
+    }
+
+    @Test
+    public void testSendResponseWritesBuffersToPlainSocket() throws Exception {
+        assertEquals(BODY, sendBuffers(serverSocket, false));
+    }
+
+    @Test
+    public void testSilentClientIsClosedAtHeaderDeadline() throws Exception {
+        ReadDeadlines deadlines = new ReadDeadlines(null, 100, 5000, 5000);
+        handler = new SocketNetworkHandler(deadlines);
+        CompletableFuture<ClientRequest> received = receiveRequest();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write("GET /weather.json HTTP/1.1\r\n".getBytes(StandardCharsets.UTF_8));
+            assertNull(received.get(5, TimeUnit.SECONDS));
+            assertEquals(-1, client.getInputStream().read());
+        }
+        assertEquals(1, deadlines.getHeaderTimeoutCount());
+        assertEquals(1, deadlines.getTimedOutCount());
+    }
+
+    @Test
+    public void testStalledBodyIsClosedAtIdleDeadline() throws Exception {
+        ReadDeadlines deadlines = new ReadDeadlines(null, 5000, 5000, 100);
+        handler = new SocketNetworkHandler(deadlines);
+        CompletableFuture<String> received = receiveOne();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            client.getOutputStream().write("PUT /weather.json HTTP/1.1\r\nContent-Length: 10\r\n\r\n{\"id\"".getBytes(StandardCharsets.UTF_8));
+            assertNull(received.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, deadlines.getIdleTimeoutCount());
+        assertEquals(0, deadlines.getHeaderTimeoutCount());
+    }
+
+    @Test
+    public void testSlowButSteadyClientIsServed() throws Exception {
+        ReadDeadlines deadlines = new ReadDeadlines(null, 5000, 5000, 150);
+        handler = new SocketNetworkHandler(deadlines);
+        byte[] request = request("", BODY.getBytes(StandardCharsets.UTF_8));
+        CompletableFuture<String> received = receiveOne();
+
+        try (Socket client = new Socket("localhost", serverSocket.getLocalPort())) {
+            // Each chunk arrives within the idle time, although the whole request takes longer
+            for (int offset = 0; offset < request.length; offset += 16) {
+                client.getOutputStream().write(request, offset, Math.min(16, request.length - offset));
+                client.getOutputStream().flush();
+                Thread.sleep(30);
+            }
+            assertTrue(received.get(5, TimeUnit.SECONDS).endsWith(BODY));
+        }
+        assertEquals(0, deadlines.getTimedOutCount());
+    }
+
+    private String sendBuffers(ServerSocket server, boolean expectChannel) throws Exception {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(body.length).put(body).flip();
+        CompletableFuture.runAsync(() -> {
+            try {
+                Socket socket = server.accept();
+                assertEquals(expectChannel, socket.getChannel() != null);
+                handler.sendResponseToClient(new ByteBuffer[] {ByteBuffer.wrap(BODY.substring(0, 5).getBytes(StandardCharsets.UTF_8)),
+                        direct.position(5)}, new SocketConnection(socket));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try (Socket client = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = client.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testUnixDomainSocketRoundTrip() throws Exception {
+        Path path = Files.createTempDirectory("unix").resolve("server.sock");
+        SocketNetworkHandler server = new SocketNetworkHandler();
+        server.startServer(UnixDomainSocketAddress.of(path));
+        CompletableFuture<String> received = CompletableFuture.supplyAsync(() -> {
+            try {
+                Connection socket = server.acceptConnection();
+                socket.getOutputStream().write("LamportClock: 7\r\n".getBytes(StandardCharsets.US_ASCII));
+                String request = server.waitForClientData(socket);
+                server.sendResponseToClient("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n{}", socket);
+                return request;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertEquals(7, handler.initializeSocket("unix:" + path, 0));
+        String response = handler.sendAndReceiveData("unix:" + path, 0, "GET /weather.json HTTP/1.1\r\n\r\n", false);
+
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n{}", response);
+        assertEquals("GET /weather.json HTTP/1.1\r\n\r\n", received.get(5, TimeUnit.SECONDS));
+        server.closeServer();
+        assertFalse(Files.exists(path));
+    }
+
+    private CompletableFuture<ClientRequest> receiveRequest() {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                return handler.waitForClientRequest(new SocketConnection(socket));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private CompletableFuture<String> receiveOne() {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                return handler.waitForClientData(new SocketConnection(socket));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private void send(byte[] request) throws Exception {
+        try (Socket socket = new Socket("localhost", serverSocket.getLocalPort())) {
+            socket.getOutputStream().write(request);
+            socket.getOutputStream().flush();
+            Thread.sleep(200); // Let the server read the request before the socket closes
+        }
+    }
+
+    private static byte[] request(String extraHeaders, byte[] body) {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        request.writeBytes(("PUT /weather.json HTTP/1.1\r\n" + extraHeaders + "Content-Length: " + body.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        request.writeBytes(body);
+        return request.toByteArray();
+    }
+}
@@ -1,11 +1,21 @@
 package test.network;
 
+import main.network.ClientRequest;
+import main.network.Connection;
+import main.network.Frame;
 import main.network.NetworkHandler;
+import main.network.SocketConnection;
 
 import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class StubNetworkHandler implements NetworkHandler {
     private String lastSentData;
+    private byte[] lastSentBytes;
+    private Frame lastSentFrame;
+    private Frame simulatedFrameResponse;
     private int sentDataCount = 0;
     private String simulatedResponse = "HTTP/1.1 200 OK"; // Default simulated response for sendData
 
@@ -15,30 +25,76 @@ public class StubNetworkHandler implements NetworkHandler {
     }
 
     @Override
-    public Socket acceptConnection() {
-        return new Socket();  // Return a new mock socket without binding it
+    public void startServer(UnixDomainSocketAddress address) {
+        // Do nothing in the stub
+    }
+
+    @Override
+    public Connection acceptConnection() {
+        return new SocketConnection(new Socket());  // Return a connection over a socket that is not bound
     }
 
     @Override
-    public String waitForClientData(Socket clientSocket) {
+    public String waitForClientData(Connection clientSocket) {
         return "Simulated client data";  // Mocked data to simulate a client sending something
     }
 
     @Override
-    public void sendResponseToClient(String response, Socket clientSocket) {
+    public ClientRequest waitForClientRequest(Connection clientSocket) {
+        return ClientRequest.http(waitForClientData(clientSocket));
+    }
+
+    @Override
+    public void sendResponseToClient(String response, Connection clientSocket) {
         // In this stub, we won't actually send anything over a network
         // But, we can save the response to check it later if needed
         lastSentData = response;
         sentDataCount++;
     }
 
+    @Override
+    public void sendResponseToClient(byte[] response, Connection clientSocket) {
+        lastSentBytes = response;
+        lastSentData = new String(response, StandardCharsets.UTF_8);
+        sentDataCount++;
+    }
+
+    @Override
+    public void sendResponseToClient(ByteBuffer[] response, Connection clientSocket) {
+        int length = 0;
+        for (ByteBuffer buffer : response) {
+            length += buffer.remaining();
+        }
+        ByteBuffer combined = ByteBuffer.allocate(length);
+        for (ByteBuffer buffer : response) {
+            combined.put(buffer);
+        }
+        sendResponseToClient(combined.array(), clientSocket);
+    }
+
     @Override
     public String sendAndReceiveData(String serverName, int portNumber, String data, boolean isContentServer) {
         lastSentData = data;
+        lastSentBytes = data.getBytes(StandardCharsets.UTF_8);
         sentDataCount++;
         return simulatedResponse;
     }
 
+    @Override
+    public String sendAndReceiveData(String serverName, int portNumber, byte[] data, boolean isContentServer) {
+        lastSentBytes = data;
+        lastSentData = new String(data, StandardCharsets.UTF_8);
+        sentDataCount++;
+        return simulatedResponse;
+    }
+
+    @Override
+    public Frame sendAndReceiveFrame(String serverName, int portNumber, Frame request) {
+        lastSentFrame = request;
+        sentDataCount++;
+        return simulatedFrameResponse;
+    }
+
     @Override
     public void closeClient() {
     }
@@ -56,6 +112,18 @@ public class StubNetworkHandler implements NetworkHandler {
         return lastSentData;
     }
 
+    public byte[] getLastSentBytes() {
+        return lastSentBytes;
+    }
+
+    public Frame getLastSentFrame() {
+        return lastSentFrame;
+    }
+
+    public void setSimulatedFrameResponse(Frame response) {
+        this.simulatedFrameResponse = response;
+    }
+
     public void setSimulatedResponse(String response) {
         this.simulatedResponse = response;
     }
@@ -0,0 +1,97 @@
+package test.network;
+
+import main.network.UnixDomainSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnixDomainSocketTest {
+    private Path path;
+    private ServerSocketChannel serverChannel;
+    private UnixDomainSocket socket;
+    private SocketChannel peer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        path = Files.createTempDirectory("unix").resolve("test.sock");
+        serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX).bind(UnixDomainSocketAddress.of(path), 1);
+        socket = UnixDomainSocket.connect("unix:" + path);
+        peer = serverChannel.accept();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        socket.close();
+        peer.close();
+        serverChannel.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testStreamsUseTheChannel() throws Exception {
+        socket.getOutputStream().write("ping".getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer received = ByteBuffer.allocate(4);
+        while (received.hasRemaining()) {
+            peer.read(received);
+        }
+        assertEquals("ping", new String(received.array(), StandardCharsets.US_ASCII));
+
+        peer.write(ByteBuffer.wrap("pong".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("pong", new String(socket.getInputStream().readNBytes(4), StandardCharsets.US_ASCII));
+        assertNull(socket.getInetAddress());
+    }
+
+    @Test
+    public void testCloseClosesTheChannel() throws Exception {
+        socket.close();
+        assertFalse(socket.getChannel().isOpen());
+        assertEquals(-1, peer.read(ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    public void testIsListening() throws Exception {
+        assertTrue(UnixDomainSocket.isListening(UnixDomainSocketAddress.of(path), 1000));
+        assertFalse(UnixDomainSocket.isListening(UnixDomainSocketAddress.of(path.resolveSibling("missing.sock")), 1000));
+    }
+
+    @Test
+    public void testIsListeningGivesUpWhenTheBacklogIsFull() throws Exception {
+        // Nothing accepts, so once the backlog is full a blocking connect would wait indefinitely
+        List<SocketChannel> waiting = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+                channel.configureBlocking(false);
+                waiting.add(channel);
+                try {
+                    if (!channel.connect(UnixDomainSocketAddress.of(path))) {
+                        break;
+                    }
+                } catch (Exception e) {
+                    break; // The backlog is full
+                }
+            }
+
+            long start = System.nanoTime();
+            assertFalse(UnixDomainSocket.isListening(UnixDomainSocketAddress.of(path), 200));
+            assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        } finally {
+            for (SocketChannel channel : waiting) {
+                channel.close();
+            }
+        }
+    }
+}